@@ -0,0 +1,46 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+/**
+ * Input data shared by the benchmarks.
+ */
+final class BenchmarkData {
+	/** The voice used by the benchmarks which need a running MARY server */
+	static final String VOICE = "cmu-slt-hsmm";
+
+	/** The English lexicon and letter-to-sound rules, from the CMU dictionary */
+	static final String LEXICON = "/marytts/language/en_US/lexicon/cmudict.fst";
+	static final String LETTER_TO_SOUND = "/marytts/language/en_US/lexicon/cmudict.lts";
+
+	/** About ten seconds of speech */
+	static final String TEXT = "Welcome to the world of speech synthesis. "
+			+ "This text is read aloud for every invocation of the benchmark, so that its speed can be compared between builds. "
+			+ "It contains a few sentences of ordinary English, with numbers like 42 and abbreviations like Dr. Smith.";
+
+	/** Common and less common words, some of which are not in the lexicon */
+	static final String[] WORDS = { "the", "of", "and", "synthesis", "speech", "welcome", "world", "benchmark", "between",
+			"builds", "ordinary", "english", "abbreviations", "numbers", "invocation", "compared", "aloud", "sentences",
+			"marytts", "quixotic", "phonemiser", "zeitgeist", "rhythm", "through", "thought", "colonel", "queue", "psychology",
+			"knight", "gnome", "xylophone", "unbelievably" };
+
+	private BenchmarkData() {
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import marytts.cart.CART;
+import marytts.cart.io.MaryCARTReader;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.unitselection.select.Target;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decision tree interpretation ({@link CART#interpret(Target, int)}) with the English letter-to-sound tree, which is one of the
+ * largest trees used at run time. There is one target per letter of the benchmark words, with the letter context features
+ * computed as in {@link marytts.modules.phonemiser.TrainedLTS}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartBenchmark {
+	private CART cart;
+	private List<Target> targets;
+
+	@Setup
+	public void setUp() throws Exception {
+		InputStream stream = CartBenchmark.class.getResourceAsStream(BenchmarkData.LETTER_TO_SOUND);
+		if (stream == null) {
+			throw new IllegalStateException("Letter-to-sound tree " + BenchmarkData.LETTER_TO_SOUND + " not found in classpath");
+		}
+		try {
+			cart = new MaryCARTReader().loadFromStream(stream);
+		} finally {
+			stream.close();
+		}
+		FeatureDefinition featureDefinition = cart.getFeatureDefinition();
+		int context = Integer.parseInt(cart.getProperties().getProperty("context"));
+		targets = new ArrayList<Target>();
+		for (String word : BenchmarkData.WORDS) {
+			for (int i = 0; i < word.length(); i++) {
+				byte[] features = new byte[2 * context + 1];
+				for (int f = 0; f < features.length; f++) {
+					int pos = i - context + f;
+					String letter = pos < 0 || pos >= word.length() ? "null" : word.substring(pos, pos + 1);
+					try {
+						features[f] = featureDefinition.getFeatureValueAsByte(f, letter);
+					} catch (IllegalArgumentException iae) {
+						features[f] = featureDefinition.getFeatureValueAsByte(f, "null");
+					}
+				}
+				Target target = new Target(word.substring(i, i + 1), null);
+				target.setFeatureVector(new FeatureVector(features, new short[0], new float[0], 0));
+				targets.add(target);
+			}
+		}
+	}
+
+	@Benchmark
+	public void interpret(Blackhole blackhole) {
+		for (Target target : targets) {
+			blackhole.consume(cart.interpret(target, 0));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import marytts.util.math.ComplexArray;
+import marytts.util.math.FFTMixedRadix;
+import marytts.util.math.FftPlan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The transforms of a shared {@link FftPlan} compared to the previous implementation ({@link LegacyFFT}) and to the mixed radix
+ * FFT, for typical frame sizes. Each benchmark copies the input into a work buffer first, since the transforms work in place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FftBenchmark {
+	@Param({ "256", "1024", "4096" })
+	public int size;
+
+	private double[] signal;
+	private double[] real;
+	private double[] imag;
+	private double[] interleaved;
+	private FftPlan plan;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		signal = new double[size];
+		for (int i = 0; i < size; i++) {
+			signal[i] = random.nextGaussian();
+		}
+		real = new double[size];
+		imag = new double[size];
+		interleaved = new double[2 * size];
+		plan = FftPlan.get(size);
+	}
+
+	private void load() {
+		System.arraycopy(signal, 0, real, 0, size);
+		Arrays.fill(imag, 0);
+	}
+
+	@Benchmark
+	public double[] complexLegacy() {
+		load();
+		LegacyFFT.transform(real, imag, false);
+		return imag;
+	}
+
+	@Benchmark
+	public double[] complexPlan() {
+		load();
+		plan.transform(real, imag, false);
+		return imag;
+	}
+
+	@Benchmark
+	public ComplexArray complexMixedRadix() {
+		return FFTMixedRadix.fftReal(signal, size);
+	}
+
+	@Benchmark
+	public double[] interleavedLegacy() {
+		for (int i = 0; i < size; i++) {
+			interleaved[2 * i] = signal[i];
+			interleaved[2 * i + 1] = 0;
+		}
+		LegacyFFT.transform(interleaved, false);
+		return interleaved;
+	}
+
+	@Benchmark
+	public double[] interleavedPlan() {
+		for (int i = 0; i < size; i++) {
+			interleaved[2 * i] = signal[i];
+			interleaved[2 * i + 1] = 0;
+		}
+		plan.transform(interleaved, false);
+		return interleaved;
+	}
+
+	@Benchmark
+	public double[] realLegacy() {
+		System.arraycopy(signal, 0, real, 0, size);
+		LegacyFFT.realTransform(real, false);
+		return real;
+	}
+
+	@Benchmark
+	public double[] realPlan() {
+		System.arraycopy(signal, 0, real, 0, size);
+		plan.realTransform(real, false);
+		return real;
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import marytts.fst.FSTLookup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lexicon lookup ({@link FSTLookup#lookup(String)}) in the English CMU dictionary, for a mix of words which are and are not in
+ * the lexicon. The score is the time per word.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FstLookupBenchmark {
+	private FSTLookup lexicon;
+
+	@Setup
+	public void setUp() throws Exception {
+		InputStream stream = FstLookupBenchmark.class.getResourceAsStream(BenchmarkData.LEXICON);
+		if (stream == null) {
+			throw new IllegalStateException("Lexicon " + BenchmarkData.LEXICON + " not found in classpath");
+		}
+		try {
+			lexicon = new FSTLookup(stream, BenchmarkData.LEXICON);
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(32) // BenchmarkData.WORDS.length
+	public void lookup(Blackhole blackhole) {
+		for (String word : BenchmarkData.WORDS) {
+			blackhole.consume(lexicon.lookup(word));
+		}
+	}
+}
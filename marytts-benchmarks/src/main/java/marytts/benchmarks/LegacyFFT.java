@@ -0,0 +1,258 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import marytts.util.math.MathUtils;
+
+/**
+ * The radix-2 transforms of {@link marytts.util.math.FFT} as they were before {@link marytts.util.math.FftPlan} was introduced:
+ * the bit reversal is computed and the twiddle factors are accumulated on every call. Kept as the baseline for
+ * {@link FftBenchmark}.
+ */
+class LegacyFFT {
+	static double[] cosDelta;
+	static double[] sinDelta;
+
+	static {
+		int N = 32;
+		cosDelta = new double[N];
+		sinDelta = new double[N];
+		for (int i = 1; i < N; i++) {
+			double delta = -MathUtils.TWOPI / (1 << i);
+			cosDelta[i] = Math.cos(delta);
+			sinDelta[i] = Math.sin(delta);
+		}
+	}
+
+	static void transform(double[] real, double[] imag, boolean inverse) {
+		if (real == null || imag == null)
+			throw new NullPointerException("Received null argument");
+		if (real.length != imag.length)
+			throw new IllegalArgumentException("Arrays must be equal length");
+		int N = real.length;
+		assert MathUtils.isPowerOfTwo(N);
+		int halfN = N / 2;
+		// Re-order arrays for FFT via bit-inversion
+		int iReverse = 0;
+		for (int i = 0; i < N; i++) {
+			if (i > iReverse) {
+				// System.err.println("Swapping " + Integer.toBinaryString(i) + " with " + Integer.toBinaryString(iReverse));
+				double tmpReal = real[i];
+				double tmpImag = imag[i];
+				real[i] = real[iReverse];
+				imag[i] = imag[iReverse];
+				real[iReverse] = tmpReal;
+				imag[iReverse] = tmpImag;
+			}
+			// Calculate iReverse for next round:
+			int b = halfN;
+			while (b >= 1 && iReverse >= b) {
+				iReverse -= b;
+				b >>= 1;
+			}
+			iReverse += b;
+		}
+
+		// Now real and imag are in the right order for the FFT.
+		// FFT:
+		// Look at blocks of increasing length blockLength;
+		// in each block, pair the nth and the nPrime-th = (n+blockLength/2)th
+		// element, and combine them using a factor w = exp(n*delta*I),
+		// delta = (-) 2*PI/blockLength.
+		for (int blockLength = 2, powerOfTwo = 1; blockLength <= N; blockLength <<= 1, powerOfTwo++) {
+			double wStepReal = cosDelta[powerOfTwo];
+			double wStepImag = sinDelta[powerOfTwo];
+			if (inverse)
+				wStepImag = -wStepImag;
+			double wReal = 1;
+			double wImag = 0;
+			int halfBlockLength = blockLength / 2;
+			for (int n = 0; n < halfBlockLength; n++) {
+				// Do this for all blocks at once:
+				for (int i = n; i < N; i += blockLength) {
+					int j = i + halfBlockLength;
+					// And now combine the ith and the jth element,
+					// according to s(n)=s_even(n)+ w_n*s_odd(n)
+					// where w_n = exp(-2*PI*I*n/blockLength)
+					// s[i] = s[i] + w*s[j]
+					// w_j = w_(i+halfBlockLength) = w_i*exp(-PI*I) = -w_i
+					// => s[j] = s[i] - w*s[j]
+					double tmpReal = wReal * real[j] - wImag * imag[j];
+					double tmpImag = wReal * imag[j] + wImag * real[j];
+					real[j] = real[i] - tmpReal;
+					imag[j] = imag[i] - tmpImag;
+					real[i] += tmpReal;
+					imag[i] += tmpImag;
+				}
+				// Next w is computed by complex multiplication with wStep
+				// exp(i*(phi+delta)) = exp(i*phi)*exp(i*delta)
+				double oldWReal = wReal;
+				wReal = oldWReal * wStepReal - wImag * wStepImag;
+				wImag = oldWReal * wStepImag + wImag * wStepReal;
+			}
+		}
+		// For the inverse transform, scale down the resulting
+		// signal by a factor of 1/N:
+		if (inverse) {
+			for (int i = 0; i < N; i++) {
+				real[i] /= N;
+				imag[i] /= N;
+			}
+		}
+	}
+
+	static void transform(double[] realAndImag, boolean inverse) {
+		if (realAndImag == null)
+			throw new NullPointerException("Received null argument");
+		int N = realAndImag.length >> 1;
+		assert MathUtils.isPowerOfTwo(N);
+		int halfN = N >> 1;
+		// Re-order arrays for FFT via bit-inversion
+		int iReverse = 0;
+		for (int i = 0; i < N; i++) {
+			if (i > iReverse) {
+				// System.err.println("Swapping " + Integer.toBinaryString(i) + " with " + Integer.toBinaryString(iReverse));
+				int twoi = i << 1;
+				int twoi1 = twoi + 1;
+				int twoirev = iReverse << 1;
+				int twoirev1 = twoirev + 1;
+				double tmpReal = realAndImag[twoi];
+				double tmpImag = realAndImag[twoi1];
+				realAndImag[twoi] = realAndImag[twoirev];
+				realAndImag[twoi1] = realAndImag[twoirev1];
+				realAndImag[twoirev] = tmpReal;
+				realAndImag[twoirev1] = tmpImag;
+			}
+			// Calculate iReverse for next round:
+			int b = halfN;
+			while (b >= 1 && iReverse >= b) {
+				iReverse -= b;
+				b >>= 1;
+			}
+			iReverse += b;
+		}
+
+		// Now real and imag are in the right order for the FFT.
+		// FFT:
+		// Look at blocks of increasing length blockLength;
+		// in each block, pair the nth and the nPrime-th = (n+blockLength/2)th
+		// element, and combine them using a factor w = exp(n*delta*I),
+		// delta = (-) 2*PI/blockLength.
+		for (int blockLength = 2, powerOfTwo = 1; blockLength <= N; blockLength <<= 1, powerOfTwo++) {
+			double wStepReal = cosDelta[powerOfTwo];
+			double wStepImag = sinDelta[powerOfTwo];
+			if (inverse)
+				wStepImag = -wStepImag;
+			double wReal = 1;
+			double wImag = 0;
+			int halfBlockLength = blockLength >> 1;
+			for (int n = 0; n < halfBlockLength; n++) {
+				// Do this for all blocks at once:
+				for (int i = n; i < N; i += blockLength) {
+					int j = i + halfBlockLength;
+					// And now combine the ith and the jth element,
+					// according to s(n)=s_even(n)+ w_n*s_odd(n)
+					// where w_n = exp(-2*PI*I*n/blockLength)
+					// s[i] = s[i] + w*s[j]
+					// w_j = w_(i+halfBlockLength) = w_i*exp(-PI*I) = -w_i
+					// => s[j] = s[i] - w*s[j]
+					int twoi = i << 1;
+					int twoi1 = twoi + 1;
+					int twoj = j << 1;
+					int twoj1 = twoj + 1;
+					double tmpReal = wReal * realAndImag[twoj] - wImag * realAndImag[twoj1];
+					double tmpImag = wReal * realAndImag[twoj1] + wImag * realAndImag[twoj];
+					realAndImag[twoj] = realAndImag[twoi] - tmpReal;
+					realAndImag[twoj1] = realAndImag[twoi1] - tmpImag;
+					realAndImag[twoi] += tmpReal;
+					realAndImag[twoi1] += tmpImag;
+				}
+				// Next w is computed by complex multiplication with wStep
+				// exp(i*(phi+delta)) = exp(i*phi)*exp(i*delta)
+				double oldWReal = wReal;
+				wReal = oldWReal * wStepReal - wImag * wStepImag;
+				wImag = oldWReal * wStepImag + wImag * wStepReal;
+			}
+		}
+		// For the inverse transform, scale down the resulting
+		// signal by a factor of 1/N:
+		if (inverse) {
+			for (int i = 0; i < realAndImag.length; i++) {
+				realAndImag[i] /= N;
+			}
+		}
+	}
+
+	static void realTransform(double data[], boolean inverse) {
+		double c1 = 0.5;
+		int n = data.length;
+		double twoPi = -MathUtils.TWOPI;
+		if (inverse)
+			twoPi = MathUtils.TWOPI;
+		double delta = twoPi / n;
+		double wStepReal = Math.cos(delta);
+		double wStepImag = Math.sin(delta);
+		double wReal = wStepReal;
+		double wImag = wStepImag;
+
+		double c2;
+		if (!inverse) {
+			c2 = -0.5;
+			transform(data, false); // The forward transform is here.
+		} else {
+			c2 = 0.5; // Otherwise set up for an inverse transform
+		}
+		int n4 = n >> 2;
+		for (int i = 1; i < n4; i++) { // Case i=0 done separately below.
+			int twoI = i << 1;
+			int twoIPlus1 = twoI + 1;
+			int nMinusTwoI = n - twoI;
+			int nMinusTwoIPlus1 = nMinusTwoI + 1;
+			double h1r = c1 * (data[twoI] + data[nMinusTwoI]); // The two separate transforms are separated out of data.
+			double h1i = c1 * (data[twoIPlus1] - data[nMinusTwoIPlus1]);
+			double h2r = -c2 * (data[twoIPlus1] + data[nMinusTwoIPlus1]);
+			double h2i = c2 * (data[twoI] - data[nMinusTwoI]);
+			// Here they are recombined to form the true transform of the original real data.
+			data[twoI] = h1r + wReal * h2r - wImag * h2i;
+			data[twoIPlus1] = h1i + wReal * h2i + wImag * h2r;
+			data[nMinusTwoI] = h1r - wReal * h2r + wImag * h2i;
+			data[nMinusTwoIPlus1] = -h1i + wReal * h2i + wImag * h2r;
+			// Next w is computed by complex multiplication with wStep
+			// exp(i*(phi+delta)) = exp(i*phi)*exp(i*delta)
+			double oldWReal = wReal;
+			wReal = oldWReal * wStepReal - wImag * wStepImag;
+			wImag = oldWReal * wStepImag + wImag * wStepReal;
+
+		}
+		if (!inverse) {
+			double tmp = data[0];
+			// Squeeze the first and last data together to get them all within the original array.
+			data[0] += data[1];
+			data[1] = tmp - data[1];
+			data[n / 2 + 1] = -data[n / 2 + 1];
+		} else { // inverse
+			double tmp = data[0];
+			data[0] = 0.5 * (tmp + data[1]);
+			data[1] = 0.5 * (tmp - data[1]);
+			data[n / 2 + 1] = -data[n / 2 + 1];
+			transform(data, true);
+		}
+	}
+}
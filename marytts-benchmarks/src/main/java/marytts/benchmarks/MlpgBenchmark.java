@@ -0,0 +1,102 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import marytts.htsengine.HMMData;
+import marytts.htsengine.HTSPStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Maximum likelihood parameter generation ({@link HTSPStream#mlpg(HMMData, boolean)}) of an MGC stream, with and without global
+ * variance optimisation, from synthetic means and variances. The number of frames corresponds to a few seconds of speech.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MlpgBenchmark {
+	/** number of static coefficients */
+	@Param({ "35" })
+	public int order;
+
+	/** number of frames */
+	@Param({ "1000" })
+	public int frames;
+
+	@Param({ "100" })
+	public int maxGvIterations;
+
+	private HMMData htsData;
+	private HTSPStream stream;
+
+	@Setup
+	public void setUp() throws Exception {
+		htsData = new HMMData();
+		stream = new HTSPStream(3 * order, frames, HMMData.FeatureType.MGC, maxGvIterations);
+		Random random = new Random(1);
+		int vsize = stream.getVsize();
+		for (int t = 0; t < frames; t++) {
+			double[] mean = new double[vsize];
+			double[] var = new double[vsize];
+			for (int k = 0; k < vsize; k++) {
+				mean[k] = random.nextGaussian() / (1 + k % order);
+				var[k] = 0.01 + 0.1 * random.nextDouble();
+			}
+			stream.setMseq(t, mean);
+			stream.setVseq(t, var);
+		}
+		stream.fixDynFeatOnBoundaries();
+		double[] gvMean = new double[order];
+		double[] gvIvar = new double[order];
+		for (int k = 0; k < order; k++) {
+			gvMean[k] = 0.05 / (1 + k);
+			gvIvar[k] = 1000;
+		}
+		stream.setGvMeanVar(gvMean, gvIvar);
+	}
+
+	@Benchmark
+	public HTSPStream mlpg() {
+		stream.mlpg(htsData, false);
+		return stream;
+	}
+
+	@Benchmark
+	public HTSPStream mlpgWithGv() {
+		stream.mlpg(htsData, true);
+		return stream;
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import marytts.htsengine.HTSVocoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The MLSA filter of the HMM vocoder ({@link HTSVocoder#mlsadf}), filtering one frame of pulse train excitation with a fixed
+ * set of filter coefficients. The filter state and buffer sizes are set up as in {@link HTSVocoder}, for the mel-cepstral order
+ * and frequency warping of voice-cmu-slt-hsmm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MlsadfBenchmark {
+	/** number of mel-cepstral coefficients */
+	@Param({ "35" })
+	public int order;
+
+	@Param({ "0.55" })
+	public double alpha;
+
+	/** samples per frame, i.e. 5 ms at 48 kHz */
+	@Param({ "240" })
+	public int frameLength;
+
+	private double[] b;
+	private double[] d;
+	private int pt2;
+	private final int[] pt3 = new int[HTSVocoder.PADEORDER + 1];
+	private double[] excitation;
+	private double[] output;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		// a smooth spectral envelope: mel-cepstral coefficients decaying with the quefrency
+		double[] mc = new double[order];
+		for (int i = 1; i < order; i++) {
+			mc[i] = 0.5 * random.nextGaussian() / i;
+		}
+		b = new double[order];
+		HTSVocoder.mc2b(mc, b, order - 1, alpha);
+
+		int vsize = 3 * order - 1;
+		d = new double[(vsize * (3 + HTSVocoder.PADEORDER) + 5 * HTSVocoder.PADEORDER + 6) - 3 * order];
+		pt2 = 2 * (HTSVocoder.PADEORDER + 1) + HTSVocoder.PADEORDER * (order + 1);
+		for (int i = HTSVocoder.PADEORDER; i >= 1; i--) {
+			pt3[i] = 2 * (HTSVocoder.PADEORDER + 1) + (i - 1) * (order + 1);
+		}
+
+		// pulses at 200 Hz
+		excitation = new double[frameLength];
+		for (int i = 0; i < frameLength; i += 240) {
+			excitation[i] = Math.sqrt(240) * Math.exp(b[0]);
+		}
+		output = new double[frameLength];
+	}
+
+	@Benchmark
+	public double[] mlsadf() {
+		for (int i = 0; i < frameLength; i++) {
+			output[i] = HTSVocoder.mlsadf(excitation[i], b, order, alpha, d, pt2, pt3);
+		}
+		return output;
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import marytts.LocalMaryInterface;
+import marytts.MaryInterface;
+import marytts.datatypes.MaryData;
+import marytts.datatypes.MaryDataType;
+import marytts.modules.MaryModule;
+import marytts.modules.ModuleRegistry;
+import marytts.modules.ProsodyGeneric;
+import marytts.util.MaryRuntimeUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Concurrent prosody assignment: the English {@link ProsodyGeneric} module, which is shared by all requests, applied to the
+ * benchmark text by one, two, four and eight threads. Since the rule engine keeps no shared mutable state, the throughput should
+ * grow linearly with the number of threads, up to the number of processors. Each operation includes copying the PHONEMES
+ * document, which the module modifies in place.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProsodyBenchmark {
+	private MaryModule prosody;
+	private Document phonemes;
+
+	@Setup
+	public void setUp() throws Exception {
+		MaryRuntimeUtils.ensureMaryStarted();
+		for (MaryModule module : ModuleRegistry.getAllModules()) {
+			if (module instanceof ProsodyGeneric && Locale.US.equals(module.getLocale())) {
+				prosody = module;
+				break;
+			}
+		}
+		if (prosody == null) {
+			throw new IllegalStateException("No prosody module for " + Locale.US);
+		}
+		MaryInterface mary = new LocalMaryInterface();
+		mary.setLocale(Locale.US);
+		mary.setOutputType(MaryDataType.PHONEMES.name());
+		phonemes = mary.generateXML(BenchmarkData.TEXT);
+	}
+
+	/**
+	 * Each thread copies the input document from its own copy, since DOM trees are not safe for concurrent reading.
+	 */
+	@State(Scope.Thread)
+	public static class Input {
+		private Document phonemes;
+
+		@Setup
+		public void setUp(ProsodyBenchmark benchmark) {
+			synchronized (benchmark) {
+				phonemes = (Document) benchmark.phonemes.cloneNode(true);
+			}
+		}
+	}
+
+	private MaryData process(Input in) throws Exception {
+		MaryData input = new MaryData(MaryDataType.PHONEMES, Locale.US);
+		input.setDocument((Document) in.phonemes.cloneNode(true));
+		return prosody.process(input);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public MaryData threads1(Input in) throws Exception {
+		return process(in);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public MaryData threads2(Input in) throws Exception {
+		return process(in);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public MaryData threads4(Input in) throws Exception {
+		return process(in);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public MaryData threads8(Input in) throws Exception {
+		return process(in);
+	}
+}
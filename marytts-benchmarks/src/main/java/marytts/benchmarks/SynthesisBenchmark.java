@@ -0,0 +1,84 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+
+import marytts.datatypes.MaryDataType;
+import marytts.modules.synthesis.Voice;
+import marytts.server.Request;
+import marytts.util.MaryRuntimeUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end synthesis of the benchmark text with voice-cmu-slt-hsmm: {@link Request#process()} from TEXT to AUDIO, including
+ * reading the complete audio stream, in the same way as a server request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SynthesisBenchmark {
+	private Voice voice;
+	private AudioFileFormat audioFileFormat;
+	private int requestId;
+
+	@Setup
+	public void setUp() throws Exception {
+		MaryRuntimeUtils.ensureMaryStarted();
+		voice = Voice.getVoice(BenchmarkData.VOICE);
+		if (voice == null) {
+			throw new IllegalStateException("Voice " + BenchmarkData.VOICE + " not available");
+		}
+		audioFileFormat = new AudioFileFormat(AudioFileFormat.Type.WAVE, voice.dbAudioFormat(), AudioSystem.NOT_SPECIFIED);
+	}
+
+	@Benchmark
+	public long textToAudio() throws Exception {
+		Request request = new Request(MaryDataType.TEXT, MaryDataType.AUDIO, voice.getLocale(), voice, null, null, requestId++,
+				audioFileFormat);
+		request.setInputData(BenchmarkData.TEXT);
+		request.process();
+		InputStream audio = request.getOutputData().getAudio();
+		byte[] buf = new byte[8192];
+		long total = 0;
+		int n;
+		while ((n = audio.read(buf)) != -1) {
+			total += n;
+		}
+		return total;
+	}
+}
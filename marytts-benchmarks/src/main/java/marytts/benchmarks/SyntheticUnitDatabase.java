@@ -0,0 +1,212 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureVector;
+import marytts.unitselection.data.FeatureFileReader;
+import marytts.unitselection.data.Unit;
+import marytts.unitselection.data.UnitDatabase;
+import marytts.unitselection.select.JoinCostFunction;
+import marytts.unitselection.select.Target;
+import marytts.unitselection.select.TargetCostFunction;
+import marytts.unitselection.select.viterbi.ViterbiCandidate;
+
+/**
+ * A unit database generated from random numbers, for benchmarking the unit selection search without a unit selection voice. The
+ * "corpus" is a random sequence of phones; each unit has random discrete target features and random join feature vectors at its
+ * left and right edges. The target cost is the weighted number of mismatching features, the join cost is the Euclidean distance
+ * between the adjacent edges, and zero for units which are adjacent in the corpus.
+ */
+class SyntheticUnitDatabase extends UnitDatabase {
+	private static final int NUM_TARGET_FEATURES = 20;
+	private static final int NUM_FEATURE_VALUES = 4;
+	private static final int NUM_JOIN_FEATURES = 12;
+
+	private final int numPhones;
+	private final Unit[] units;
+	private final int[] unitPhones;
+	private final FeatureVector[] unitFeatures;
+	private final float[][] leftJoinFeatures;
+	private final float[][] rightJoinFeatures;
+	private final float[] weights;
+	private final List<List<Unit>> unitsByPhone;
+	private final Random random;
+
+	/**
+	 * Generate a database.
+	 *
+	 * @param numPhones
+	 *            the size of the phone set
+	 * @param numUnits
+	 *            the number of units in the corpus
+	 * @param seed
+	 *            the random seed, so that the same database can be generated again
+	 */
+	SyntheticUnitDatabase(int numPhones, int numUnits, long seed) {
+		this.numPhones = numPhones;
+		random = new Random(seed);
+		units = new Unit[numUnits];
+		unitPhones = new int[numUnits];
+		unitFeatures = new FeatureVector[numUnits];
+		leftJoinFeatures = new float[numUnits][];
+		rightJoinFeatures = new float[numUnits][];
+		unitsByPhone = new ArrayList<List<Unit>>();
+		for (int p = 0; p < numPhones; p++) {
+			unitsByPhone.add(new ArrayList<Unit>());
+		}
+		for (int i = 0; i < numUnits; i++) {
+			units[i] = new Unit(i * 1000L, 1000, i);
+			unitPhones[i] = random.nextInt(numPhones);
+			unitFeatures[i] = randomFeatures(i);
+			leftJoinFeatures[i] = randomJoinFeatures();
+			rightJoinFeatures[i] = randomJoinFeatures();
+			unitsByPhone.get(unitPhones[i]).add(units[i]);
+		}
+		weights = new float[NUM_TARGET_FEATURES];
+		for (int f = 0; f < NUM_TARGET_FEATURES; f++) {
+			weights[f] = random.nextFloat();
+		}
+		targetCostFunction = new SyntheticTargetCostFunction();
+		joinCostFunction = new SyntheticJoinCostFunction();
+		this.numUnits = numUnits;
+	}
+
+	private FeatureVector randomFeatures(int unitIndex) {
+		byte[] features = new byte[NUM_TARGET_FEATURES];
+		for (int f = 0; f < NUM_TARGET_FEATURES; f++) {
+			features[f] = (byte) random.nextInt(NUM_FEATURE_VALUES);
+		}
+		return new FeatureVector(features, new short[0], new float[0], unitIndex);
+	}
+
+	private float[] randomJoinFeatures() {
+		float[] features = new float[NUM_JOIN_FEATURES];
+		for (int f = 0; f < NUM_JOIN_FEATURES; f++) {
+			features[f] = (float) random.nextGaussian();
+		}
+		return features;
+	}
+
+	/**
+	 * Generate a target sequence: half of it copies stretches of the corpus, so that there are good paths through adjacent units,
+	 * the other half consists of random phones.
+	 *
+	 * @param length
+	 *            the number of targets
+	 * @return the targets, each with its feature vector
+	 */
+	List<Target> createTargets(int length) {
+		List<Target> targets = new ArrayList<Target>(length);
+		while (targets.size() < length) {
+			int stretch = Math.min(1 + random.nextInt(8), length - targets.size());
+			boolean fromCorpus = random.nextBoolean();
+			int start = random.nextInt(units.length - stretch);
+			for (int i = 0; i < stretch; i++) {
+				int phone = fromCorpus ? unitPhones[start + i] : random.nextInt(numPhones);
+				Target target = new Target(String.valueOf(phone), null);
+				target.setFeatureVector(fromCorpus ? unitFeatures[start + i] : randomFeatures(0));
+				targets.add(target);
+			}
+		}
+		return targets;
+	}
+
+	@Override
+	public List<ViterbiCandidate> getCandidates(Target target) {
+		List<Unit> phoneUnits = unitsByPhone.get(Integer.parseInt(target.getName()));
+		List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>(phoneUnits.size());
+		for (Unit unit : phoneUnits) {
+			candidates.add(new ViterbiCandidate(target, unit, targetCostFunction));
+		}
+		return candidates;
+	}
+
+	@Override
+	public String getFilenameAndTime(Unit unit) {
+		return "synthetic " + unit.index;
+	}
+
+	private class SyntheticTargetCostFunction implements TargetCostFunction {
+		public double cost(Target target, Unit unit) {
+			FeatureVector targetFeatures = target.getFeatureVector();
+			FeatureVector features = unitFeatures[unit.index];
+			double cost = 0;
+			for (int f = 0; f < NUM_TARGET_FEATURES; f++) {
+				if (targetFeatures.getByteFeature(f) != features.getByteFeature(f)) {
+					cost += weights[f];
+				}
+			}
+			return cost;
+		}
+
+		public FeatureVector getFeatureVector(Unit unit) {
+			return unitFeatures[unit.index];
+		}
+
+		public FeatureVector[] getFeatureVectors() {
+			return unitFeatures;
+		}
+
+		public String getFeature(Unit unit, String featureName) {
+			return "phone".equals(featureName) ? String.valueOf(unitPhones[unit.index]) : null;
+		}
+
+		public FeatureDefinition getFeatureDefinition() {
+			return null;
+		}
+
+		public void computeTargetFeatures(Target target) {
+		}
+
+		public void load(String featureFileName, InputStream weightsStream, FeatureProcessorManager featProc) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void load(FeatureFileReader featureFileReader, InputStream weightsStream, FeatureProcessorManager featProc) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private class SyntheticJoinCostFunction implements JoinCostFunction {
+		public double cost(Target t1, Unit u1, Target t2, Unit u2) {
+			if (u2.index == u1.index + 1) {
+				return 0;
+			}
+			float[] right = rightJoinFeatures[u1.index];
+			float[] left = leftJoinFeatures[u2.index];
+			double sum = 0;
+			for (int f = 0; f < NUM_JOIN_FEATURES; f++) {
+				double d = right[f] - left[f];
+				sum += d * d;
+			}
+			return Math.sqrt(sum);
+		}
+
+		public void init(String configPrefix) {
+		}
+	}
+}
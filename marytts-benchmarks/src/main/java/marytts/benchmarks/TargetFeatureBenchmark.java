@@ -0,0 +1,90 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import marytts.LocalMaryInterface;
+import marytts.MaryInterface;
+import marytts.datatypes.MaryDataType;
+import marytts.datatypes.MaryXML;
+import marytts.features.FeatureRegistry;
+import marytts.features.TargetFeatureComputer;
+import marytts.modules.TargetFeatureLister;
+import marytts.modules.synthesis.Voice;
+import marytts.unitselection.select.Target;
+import marytts.util.MaryRuntimeUtils;
+import marytts.util.dom.MaryDomUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.traversal.TreeWalker;
+
+/**
+ * Target feature computation ({@link TargetFeatureComputer#computeFeatureVector(Target)}) with the features of
+ * voice-cmu-slt-hsmm, for all phones and boundaries of the benchmark text, which is processed up to ALLOPHONES once during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TargetFeatureBenchmark {
+	private TargetFeatureComputer featureComputer;
+	private List<Target> targets;
+
+	@Setup
+	public void setUp() throws Exception {
+		MaryRuntimeUtils.ensureMaryStarted();
+		MaryInterface mary = new LocalMaryInterface();
+		mary.setVoice(BenchmarkData.VOICE);
+		mary.setOutputType(MaryDataType.ALLOPHONES.name());
+		Document doc = mary.generateXML(BenchmarkData.TEXT);
+		TreeWalker tw = MaryDomUtils.createTreeWalker(doc, doc, MaryXML.PHONE, MaryXML.BOUNDARY);
+		List<Element> segmentsAndBoundaries = new ArrayList<Element>();
+		Element e;
+		while ((e = (Element) tw.nextNode()) != null) {
+			segmentsAndBoundaries.add(e);
+		}
+		featureComputer = FeatureRegistry.getTargetFeatureComputer(Voice.getVoice(BenchmarkData.VOICE), null);
+		targets = TargetFeatureLister.createTargetsWithPauses(segmentsAndBoundaries, featureComputer.getPauseSymbol());
+	}
+
+	@Benchmark
+	public void computeFeatureVectors(Blackhole blackhole) {
+		for (Target target : targets) {
+			blackhole.consume(featureComputer.computeFeatureVector(target));
+		}
+	}
+}
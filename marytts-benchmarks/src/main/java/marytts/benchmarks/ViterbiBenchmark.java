@@ -0,0 +1,90 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import marytts.unitselection.select.SelectedUnit;
+import marytts.unitselection.select.Target;
+import marytts.unitselection.select.viterbi.Viterbi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The unit selection search ({@link Viterbi#apply()} and {@link Viterbi#getSelectedUnits()}) over a {@link SyntheticUnitDatabase},
+ * with the default target cost weight and beam size of unit selection voices, without and with pruning.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ViterbiBenchmark {
+	@Param({ "100" })
+	public int beamSize;
+
+	/** the number of candidates per target is about numUnits / numPhones */
+	@Param({ "20000" })
+	public int numUnits;
+
+	@Param({ "50" })
+	public int numPhones;
+
+	/** the number of targets, i.e. about one sentence of diphones */
+	@Param({ "100" })
+	public int numTargets;
+
+	/** "off", "exact", or the beam width of inexact pruning */
+	@Param({ "off", "exact" })
+	public String pruning;
+
+	private SyntheticUnitDatabase database;
+	private List<Target> targets;
+
+	@Setup
+	public void setUp() {
+		database = new SyntheticUnitDatabase(numPhones, numUnits, 1);
+		targets = database.createTargets(numTargets);
+	}
+
+	@Benchmark
+	public List<SelectedUnit> apply() throws Exception {
+		Viterbi viterbi = new Viterbi(targets, database, 0.33f, beamSize);
+		if (pruning.equals("exact")) {
+			viterbi.setPruning(true, 0);
+		} else if (!pruning.equals("off")) {
+			viterbi.setPruning(false, Double.parseDouble(pruning));
+		}
+		viterbi.apply();
+		return viterbi.getSelectedUnits();
+	}
+}
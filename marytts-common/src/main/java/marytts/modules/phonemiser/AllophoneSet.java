@@ -36,6 +36,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.util.MaryUtils;
@@ -47,7 +48,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.traversal.NodeIterator;
 
 public class AllophoneSet {
-	private static Map<String, AllophoneSet> allophoneSets = new HashMap<String, AllophoneSet>();
+	private static Map<String, AllophoneSet> allophoneSets = new ConcurrentHashMap<String, AllophoneSet>();
 
 	/**
 	 * Return the allophone set specified by the given filename. It will only be loaded if it was not loaded before.
@@ -96,7 +97,7 @@ public class AllophoneSet {
 
 	/**
 	 * Return the allophone set that can be read from the given input stream, identified by the given identifier. It will only be
-	 * loaded if it was not loaded before.
+	 * loaded if it was not loaded before; concurrent requests for the same allophone set will load it only once.
 	 * 
 	 * @param inStream
 	 *            an open stream from which the allophone set can be loaded. it will be closed when this method returns.
@@ -107,7 +108,7 @@ public class AllophoneSet {
 	 *             if no allophone set can be loaded from the given file.
 	 */
 
-	public static AllophoneSet getAllophoneSet(InputStream inStream, String identifier) throws MaryConfigurationException {
+	public static synchronized AllophoneSet getAllophoneSet(InputStream inStream, String identifier) throws MaryConfigurationException {
 		AllophoneSet as = allophoneSets.get(identifier);
 		if (as == null) {
 			// Need to load it:
@@ -437,8 +437,9 @@ public abstract class LeafNode extends Node {
 	 */
 	public static class PdfLeafNode extends LeafNode {
 		private int vectorSize;
-		private double[] mean; // mean vector.
-		private double[] variance; // diagonal covariance.
+		/* the means and then the variances, stored as float, which is the precision of the pdf files */
+		private float[] pool;
+		private int offset;
 		private double voicedWeight; // only for lf0 tree.
 
 		/**
@@ -450,31 +451,41 @@ public abstract class LeafNode extends Node {
 		 *             MaryConfigurationException
 		 */
 		public PdfLeafNode(int idx, double pdf[][]) throws MaryConfigurationException {
+			this(idx, pdf, pdf != null ? new float[getPoolSize(pdf)] : null, 0);
+		}
+
+		/**
+		 * Create a leaf whose mean and variance are stored in a pool shared with other leaves, such as all leaves of the trees of
+		 * one stream, rather than in arrays of its own.
+		 *
+		 * @param idx
+		 *            , a unique index number
+		 * @param pdf
+		 *            , pdf[numStreams][2*vectorSize]
+		 * @param pool
+		 *            the pool into which the mean and the variance are copied
+		 * @param offset
+		 *            the position of the mean and variance in the pool; {@link #getPoolSize(double[][])} floats are used
+		 * @throws MaryConfigurationException
+		 *             MaryConfigurationException
+		 */
+		public PdfLeafNode(int idx, double pdf[][], float[] pool, int offset) throws MaryConfigurationException {
 			super();
 			this.setUniqueLeafId(idx);
 			// System.out.println("adding leaf node: " + idx);
 			if (pdf != null) {
-				double val;
-				int i, j, vsize, nstream;
-				nstream = pdf.length;
-
+				int nstream = pdf.length;
+				this.pool = pool;
+				this.offset = offset;
 				if (nstream == 1) { // This is the case for dur, mgc, str, mag, or joinModel.
-					vsize = (pdf[0].length) / 2;
-					vectorSize = vsize;
-					mean = new double[vsize];
-					for (i = 0, j = 0; j < vsize; i++, j++)
-						mean[i] = pdf[0][j];
-					variance = new double[vsize];
-					for (i = 0, j = vsize; j < (2 * vsize); i++, j++)
-						variance[i] = pdf[0][j];
-
+					vectorSize = (pdf[0].length) / 2;
+					for (int i = 0; i < 2 * vectorSize; i++)
+						pool[offset + i] = (float) pdf[0][i];
 				} else { // this is the case for lf0
 					vectorSize = nstream;
-					mean = new double[nstream];
-					variance = new double[nstream];
 					for (int stream = 0; stream < nstream; stream++) {
-						mean[stream] = pdf[stream][0];
-						variance[stream] = pdf[stream][1];
+						pool[offset + stream] = (float) pdf[stream][0];
+						pool[offset + nstream + stream] = (float) pdf[stream][1];
 						// vw = lf0pdf[numStates][numPdfs][numStreams][2]; /* voiced weight */
 						// uvw = lf0pdf[numStates][numPdfs][numStreams][3]; /* unvoiced weight */
 						if (stream == 0)
@@ -487,18 +498,53 @@ public abstract class LeafNode extends Node {
 
 		}
 
+		/**
+		 * The number of floats needed in a pool for the mean and variance of the given pdf.
+		 *
+		 * @param pdf
+		 *            , pdf[numStreams][2*vectorSize]
+		 * @return twice the vector size
+		 */
+		public static int getPoolSize(double pdf[][]) {
+			return pdf.length == 1 ? pdf[0].length / 2 * 2 : 2 * pdf.length;
+		}
+
 		public int getDataLength() {
-			return mean.length;
+			return vectorSize;
 		}
 
+		/**
+		 * The mean vector.
+		 *
+		 * @return a new array
+		 */
 		public double[] getMean() {
+			double[] mean = new double[vectorSize];
+			for (int i = 0; i < vectorSize; i++)
+				mean[i] = pool[offset + i];
 			return mean;
 		}
 
+		/**
+		 * The diagonal of the covariance.
+		 *
+		 * @return a new array
+		 */
 		public double[] getVariance() {
+			double[] variance = new double[vectorSize];
+			for (int i = 0; i < vectorSize; i++)
+				variance[i] = pool[offset + vectorSize + i];
 			return variance;
 		}
 
+		public double getMean(int i) {
+			return pool[offset + i];
+		}
+
+		public double getVariance(int i) {
+			return pool[offset + vectorSize + i];
+		}
+
 		public double getVoicedWeight() {
 			return voicedWeight;
 		}
@@ -531,7 +577,7 @@ public abstract class LeafNode extends Node {
 		}
 
 		public String toString() {
-			if (mean == null)
+			if (pool == null)
 				return super.toString() + "(mean=null, stddev=null)";
 			return super.toString() + "(mean=[" + vectorSize + "], stddev=[" + vectorSize + "])";
 		}
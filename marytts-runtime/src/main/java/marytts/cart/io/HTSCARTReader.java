@@ -142,6 +142,18 @@ public class HTSCARTReader {
         double pdf[][][][];
         pdf = loadPdfs(numStates, pdfStream, fileFormat);
 
+        // the means and variances of all leaves of all states are kept in one pool of floats, at these offsets:
+        int poolSize = 0;
+        int offsets[][] = new int[pdf.length][];
+        for (i = 0; i < pdf.length; i++) {
+            offsets[i] = new int[pdf[i].length];
+            for (j = 0; j < pdf[i].length; j++) {
+                offsets[i][j] = poolSize;
+                poolSize += PdfLeafNode.getPoolSize(pdf[i][j]);
+            }
+        }
+        float pool[] = new float[poolSize];
+
         assert featDefinition != null : "Feature Definition was not set";
 
         /* read lines of tree-*.inf fileName */
@@ -158,7 +170,7 @@ public class HTSCARTReader {
                 aux = line.substring(line.indexOf("[") + 1, line.indexOf("]"));
                 state = Integer.parseInt(aux);
                 // loads one cart tree per state
-                treeSet[state - 2].setRootNode(loadStateTree(s, pdf[state - 2]));
+                treeSet[state - 2].setRootNode(loadStateTree(s, pdf[state - 2], pool, offsets[state - 2]));
 
                 // Now count all data once, so that getNumberOfData()
                 // will return the correct figure.
@@ -188,8 +200,13 @@ public class HTSCARTReader {
      *            : text scanner of the whole tree-*.inf file
      * @param pdf
      *            : the pdfs for this state, pdf[numPdfs][numStreams][2*vectorSize]
+     * @param pool
+     *            : the pool for the means and variances of the leaves
+     * @param offsets
+     *            : the offsets of the pdfs of this state in the pool
      */
-    private Node loadStateTree(BufferedReader s, double pdf[][][]) throws IOException, MaryConfigurationException {
+    private Node loadStateTree(BufferedReader s, double pdf[][][], float pool[], int offsets[]) throws IOException,
+            MaryConfigurationException {
 
         Node rootNode = null;
         Node lastNode = null;
@@ -269,7 +286,7 @@ public class HTSCARTReader {
                     } else { // LeafNode
                         iaux = Integer.parseInt(buf.substring(buf.lastIndexOf("_") + 1, buf.length() - 1));
                         // create an empty PdfLeafNode
-                        PdfLeafNode auxnode = new LeafNode.PdfLeafNode(iaux, pdf[iaux - 1]);
+                        PdfLeafNode auxnode = new LeafNode.PdfLeafNode(iaux, pdf[iaux - 1], pool, offsets[iaux - 1]);
                         ((DecisionNode) node).replaceDaughter(auxnode, 1);
                         nleaf++;
                     }
@@ -284,7 +301,7 @@ public class HTSCARTReader {
                     } else { // LeafNode
                         iaux = Integer.parseInt(buf.substring(buf.lastIndexOf("_") + 1, buf.length() - 1));
                         // create an empty PdfLeafNode
-                        PdfLeafNode auxnode = new LeafNode.PdfLeafNode(iaux, pdf[iaux - 1]);
+                        PdfLeafNode auxnode = new LeafNode.PdfLeafNode(iaux, pdf[iaux - 1], pool, offsets[iaux - 1]);
                         ((DecisionNode) node).replaceDaughter(auxnode, 0);
                         nleaf++;
                     }
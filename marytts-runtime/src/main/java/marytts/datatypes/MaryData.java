@@ -34,7 +34,6 @@ import java.util.Locale;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -45,6 +44,7 @@ import marytts.server.MaryProperties;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
 import marytts.util.data.audio.SequenceAudioInputStream;
+import marytts.util.data.audio.StreamingAudioFileWriter;
 import marytts.util.dom.DomUtils;
 import marytts.util.dom.MaryNormalisedWriter;
 import marytts.util.io.FileUtils;
@@ -286,7 +286,7 @@ public class MaryData {
 			writeTo(new OutputStreamWriter(os, "UTF-8"));
 		} else { // audio
 			logger.debug("Writing audio output, frame length " + audio.getFrameLength());
-			AudioSystem.write(audio, audioFileFormat.getType(), os);
+			StreamingAudioFileWriter.write(audio, audioFileFormat.getType(), os);
 			os.flush();
 			os.close();
 		}
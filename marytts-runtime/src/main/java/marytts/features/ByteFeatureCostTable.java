@@ -0,0 +1,129 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.features;
+
+import java.util.Arrays;
+
+/**
+ * The weighted target costs of the byte-valued features of a {@link FeatureDefinition}, precomputed for every pair of feature
+ * values. For each feature with a non-zero weight, the table holds a square block of costs, indexed by the unit value and the
+ * target value: the weight times the similarity if the feature has a similarity matrix, and otherwise the weight if the values
+ * differ and 0 if they are equal. The blocks of all features are concatenated in one array, so that the cost of a pair of feature
+ * vectors is a sum of table lookups, without branches or further arrays to follow.
+ * <p>
+ * A table is created by {@link FeatureDefinition#compileByteFeatureCosts(float[])}; it is immutable and can be shared between
+ * threads.
+ * 
+ * @see FeatureDefinition#compileByteFeatureCosts(float[])
+ */
+public final class ByteFeatureCostTable {
+	/** the indices of the features with non-zero weight, in increasing order */
+	private final int[] features;
+	/** for each entry in features, the start of its block in costs */
+	private final int[] blockOffsets;
+	/** for each entry in features, the number of values of the feature */
+	private final int[] strides;
+	/** for each byte feature, the start of its block in costs, or -1 if its weight is zero */
+	private final int[] featureOffsets;
+	private final int[] featureStrides;
+	private final float[] costs;
+
+	ByteFeatureCostTable(int[] features, int[] strides, int numByteFeatures, float[] costs) {
+		this.features = features;
+		this.strides = strides;
+		this.costs = costs;
+		blockOffsets = new int[features.length];
+		featureOffsets = new int[numByteFeatures];
+		featureStrides = new int[numByteFeatures];
+		Arrays.fill(featureOffsets, -1);
+		int offset = 0;
+		for (int k = 0; k < features.length; k++) {
+			blockOffsets[k] = offset;
+			featureOffsets[features[k]] = offset;
+			featureStrides[features[k]] = strides[k];
+			offset += strides[k] * strides[k];
+		}
+		assert offset == costs.length;
+	}
+
+	/**
+	 * The weighted cost of all byte features.
+	 * 
+	 * @param targetValues
+	 *            the byte feature values of the target
+	 * @param unitValues
+	 *            the byte feature values of the unit
+	 * @return the sum of the weighted costs of the features, in order of increasing feature index
+	 */
+	public double cost(byte[] targetValues, byte[] unitValues) {
+		double cost = 0;
+		for (int k = 0; k < features.length; k++) {
+			int i = features[k];
+			cost += costs[blockOffsets[k] + (unitValues[i] & 0xFF) * strides[k] + (targetValues[i] & 0xFF)];
+		}
+		return cost;
+	}
+
+	/**
+	 * The weighted cost of a single byte feature.
+	 * 
+	 * @param featureIndex
+	 *            the index of a byte feature
+	 * @param targetValue
+	 *            the value of the feature for the target
+	 * @param unitValue
+	 *            the value of the feature for the unit
+	 * @return the weighted cost, which is 0 for a feature with zero weight
+	 */
+	public float cost(int featureIndex, byte targetValue, byte unitValue) {
+		int offset = featureOffsets[featureIndex];
+		if (offset < 0) {
+			return 0;
+		}
+		return costs[offset + (unitValue & 0xFF) * featureStrides[featureIndex] + (targetValue & 0xFF)];
+	}
+
+	/**
+	 * Add the weighted cost of each byte feature to the corresponding entry of the given array, e.g. to see which features
+	 * contribute most to the target costs.
+	 * 
+	 * @param targetValues
+	 *            the byte feature values of the target
+	 * @param unitValues
+	 *            the byte feature values of the unit
+	 * @param featureCosts
+	 *            an array indexed by feature index, with at least as many entries as there are byte features
+	 */
+	public void addCosts(byte[] targetValues, byte[] unitValues, double[] featureCosts) {
+		for (int k = 0; k < features.length; k++) {
+			int i = features[k];
+			featureCosts[i] += costs[blockOffsets[k] + (unitValues[i] & 0xFF) * strides[k] + (targetValues[i] & 0xFF)];
+		}
+	}
+
+	/**
+	 * The number of features with non-zero weight, i.e. the number of table lookups per cost computation.
+	 * 
+	 * @return the number of features in the table
+	 */
+	public int getNumberOfFeatures() {
+		return features.length;
+	}
+}
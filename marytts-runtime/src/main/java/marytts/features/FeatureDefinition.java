@@ -939,6 +939,59 @@ public class FeatureDefinition {
 		return this.similarityMatrices[featureIndex][i][j];
 	}
 
+	/**
+	 * Compile the weighted target costs of the byte-valued features into a lookup table, for every pair of unit and target values:
+	 * the weight times the similarity for features with a similarity matrix, or the weight if the values differ. Only the features
+	 * which have a non-zero weight in this feature definition are included. The table is meant to be compiled once, when a voice
+	 * is loaded.
+	 * 
+	 * @param weights
+	 *            the weights to apply, indexed by feature index, e.g. {@link #getFeatureWeights()} of this feature definition or of
+	 *            an equivalent one with different weights
+	 * @return the cost table
+	 * @throws IllegalStateException
+	 *             if this feature definition has no weights
+	 */
+	public ByteFeatureCostTable compileByteFeatureCosts(float[] weights) {
+		if (featureWeights == null) {
+			throw new IllegalStateException("Feature definition has no weights");
+		}
+		int numFeatures = 0;
+		int size = 0;
+		for (int i = 0; i < numByteFeatures; i++) {
+			if (featureWeights[i] > 0) {
+				numFeatures++;
+				size += getNumberOfValues(i) * getNumberOfValues(i);
+			}
+		}
+		int[] features = new int[numFeatures];
+		int[] strides = new int[numFeatures];
+		float[] costs = new float[size];
+		int pos = 0;
+		for (int i = 0, k = 0; i < numByteFeatures; i++) {
+			if (!(featureWeights[i] > 0)) {
+				continue;
+			}
+			int numValues = getNumberOfValues(i);
+			features[k] = i;
+			strides[k] = numValues;
+			k++;
+			float weight = weights[i];
+			float[][] similarity = hasSimilarityMatrix(i) ? similarityMatrices[i] : null;
+			for (int unitValue = 0; unitValue < numValues; unitValue++) {
+				for (int targetValue = 0; targetValue < numValues; targetValue++) {
+					if (similarity != null && unitValue < similarity.length && targetValue < similarity.length) {
+						costs[pos] = similarity[unitValue][targetValue] * weight;
+					} else if (unitValue != targetValue) {
+						costs[pos] = weight;
+					}
+					pos++;
+				}
+			}
+		}
+		return new ByteFeatureCostTable(features, strides, numByteFeatures, costs);
+	}
+
 	/**
 	 * Translate between a feature name and a feature index.
 	 * 
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.LeafNode.PdfLeafNode;
+import marytts.features.FeatureVector;
+import marytts.server.metrics.Counter;
+import marytts.server.metrics.MaryMetrics;
+
+/**
+ * The leaves found in the per-state trees of one stream, remembered for the contexts seen recently. Identical contexts recur
+ * constantly, within and across requests, and for them the trees need not be walked again. A context is identified by the
+ * values of the features which are actually tested somewhere in the trees, so that the features the trees do not depend on, such
+ * as continuous features used elsewhere, do not prevent a hit.
+ * <p>
+ * The leaves are shared, not copied; the models refer to their mean and variance vectors, which must not be modified. The cache
+ * can be used by any number of threads. When it is full, it is emptied, so that it adapts to the contexts currently in use.
+ */
+class CartLeafCache {
+	private final CART[] trees;
+	private final int minNumberOfData;
+	/** The indices of the features tested in the trees, in ascending order */
+	private final int[] featureIndices;
+	private final int maxSize;
+	private final ConcurrentMap<Context, PdfLeafNode[]> leaves;
+	private final Counter hits;
+	private final Counter misses;
+
+	/**
+	 * @param name
+	 *            the name of the cache in the metrics
+	 * @param voice
+	 *            the voice of the trees, by which the metrics are labelled, or null
+	 * @param trees
+	 *            the trees of the stream, one per state
+	 * @param minNumberOfData
+	 *            the minimum number of data passed to {@link CART#interpretToNode(FeatureVector, int)}
+	 * @param maxSize
+	 *            the maximum number of contexts remembered; if 0, nothing is remembered
+	 */
+	CartLeafCache(String name, String voice, CART[] trees, int minNumberOfData, int maxSize) {
+		this.trees = trees;
+		this.minNumberOfData = minNumberOfData;
+		this.maxSize = maxSize;
+		TreeSet<Integer> indices = new TreeSet<Integer>();
+		for (CART tree : trees) {
+			for (DecisionNode node : tree.getDecisionNodes()) {
+				indices.add(node.getFeatureIndex());
+			}
+		}
+		featureIndices = new int[indices.size()];
+		int i = 0;
+		for (int index : indices) {
+			featureIndices[i++] = index;
+		}
+		leaves = new ConcurrentHashMap<Context, PdfLeafNode[]>();
+		hits = MaryMetrics.cacheCounter(name, voice, true);
+		misses = MaryMetrics.cacheCounter(name, voice, false);
+	}
+
+	/**
+	 * The leaves of all trees for the given context.
+	 *
+	 * @param fv
+	 *            the context feature vector
+	 * @return one leaf per tree; the array must not be modified
+	 */
+	PdfLeafNode[] getLeaves(FeatureVector fv) {
+		if (maxSize <= 0) {
+			return findLeaves(fv);
+		}
+		Context context = new Context(fv, featureIndices);
+		PdfLeafNode[] result = leaves.get(context);
+		if (result != null) {
+			hits.inc();
+			return result;
+		}
+		misses.inc();
+		result = findLeaves(fv);
+		if (leaves.size() >= maxSize) {
+			leaves.clear();
+		}
+		leaves.put(context, result);
+		return result;
+	}
+
+	private PdfLeafNode[] findLeaves(FeatureVector fv) {
+		PdfLeafNode[] result = new PdfLeafNode[trees.length];
+		for (int s = 0; s < trees.length; s++) {
+			result[s] = (PdfLeafNode) trees[s].interpretToNode(fv, minNumberOfData);
+		}
+		return result;
+	}
+
+	int size() {
+		return leaves.size();
+	}
+
+	/**
+	 * The values of the tested features of a feature vector; continuous features by their bits.
+	 */
+	private static final class Context {
+		private final int[] values;
+		private final int hash;
+
+		Context(FeatureVector fv, int[] featureIndices) {
+			values = new int[featureIndices.length];
+			for (int i = 0; i < featureIndices.length; i++) {
+				int index = featureIndices[i];
+				if (fv.isByteFeature(index)) {
+					values[i] = fv.getByteFeature(index);
+				} else if (fv.isShortFeature(index)) {
+					values[i] = fv.getShortFeature(index);
+				} else {
+					values[i] = Float.floatToIntBits(fv.getContinuousFeature(index));
+				}
+			}
+			hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Context && hash == ((Context) o).hash && Arrays.equals(values, ((Context) o).values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -72,12 +72,14 @@ import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureVector;
 import marytts.htsengine.HMMData.PdfFileFormat;
+import marytts.server.MaryProperties;
 import marytts.util.MaryUtils;
 
 import org.apache.logging.log4j.Logger;
 
 /**
- * Set of CART trees used in HMM synthesis.
+ * Set of CART trees used in HMM synthesis. The leaves found for a context are remembered per stream, for up to
+ * <code>htsengine.cartcache.size</code> contexts (see {@link CartLeafCache}).
  * 
  * @author Marcela Charfuelan
  */
@@ -91,6 +93,12 @@ public class CartTreeSet {
 	private CART[] strTree; // CART trees for strengths
 	private CART[] magTree; // CART trees for Fourier magnitudes
 
+	private CartLeafCache durCache;
+	private CartLeafCache lf0Cache;
+	private CartLeafCache mgcCache;
+	private CartLeafCache strCache;
+	private CartLeafCache magCache;
+
 	private int numStates; /* # of HMM states for individual HMM */
 	private int lf0Stream; /* # of stream for log f0 modeling */
 	private int mcepVsize; /* vector size for mcep modeling */
@@ -188,13 +196,26 @@ public class CartTreeSet {
 					featureDef, phTranslator);
 			magVsize = htsReader.getVectorSize();
 		}
+
+		int cacheSize = MaryProperties.getInteger("htsengine.cartcache.size", 4096);
+		String voice = htsData.getVoiceName();
+		if (durTree != null)
+			durCache = new CartLeafCache("cart_dur", voice, durTree, 0, cacheSize);
+		if (lf0Tree != null)
+			lf0Cache = new CartLeafCache("cart_lf0", voice, lf0Tree, 1, cacheSize);
+		if (mgcTree != null)
+			mgcCache = new CartLeafCache("cart_mgc", voice, mgcTree, 1, cacheSize);
+		if (strTree != null)
+			strCache = new CartLeafCache("cart_str", voice, strTree, 1, cacheSize);
+		if (magTree != null)
+			magCache = new CartLeafCache("cart_mag", voice, magTree, 1, cacheSize);
 	}
 
 	/***
 	 * Searches fv in durTree CART[] set of trees, per state, and fill the information in the HTSModel m.
 	 * 
 	 * @param m
-	 *            HTSModel where mean and variances per state are copied
+	 *            HTSModel which is given the pdf per state
 	 * @param fv
 	 *            context feature vector
 	 * @param htsData
@@ -212,17 +233,13 @@ public class CartTreeSet {
 		double data, dd;
 		double rho = htsData.getRho();
 		double durscale = htsData.getDurationScale();
-		double meanVector[], varVector[];
 		// the duration tree has only one state
-		PdfLeafNode node = (PdfLeafNode) durTree[0].interpretToNode(fv, 0);
-
-		meanVector = node.getMean();
-		varVector = node.getVariance();
+		PdfLeafNode node = durCache.getLeaves(fv)[0];
 
 		dd = diffdur;
 		// in duration the length of the vector is the number of states.
 		for (int s = 0; s < numStates; s++) {
-			data = (meanVector[s] + rho * varVector[s]) * durscale;
+			data = (node.getMean(s) + rho * node.getVariance(s)) * durscale;
 
 			/*
 			 * check if the model is initial/final pause, if so reduce the length of the pause to 10% of the calculated value.
@@ -234,8 +251,8 @@ public class CartTreeSet {
 			if (m.getDur(s) < 1)
 				m.setDur(s, 1);
 
-			// System.out.format("   state=%d  dur=%d  dd=%f  mean=%f  vari=%f \n", s, m.getDur(s), dd, meanVector[s],
-			// varVector[s]);
+			// System.out.format("   state=%d  dur=%d  dd=%f  mean=%f  vari=%f \n", s, m.getDur(s), dd, node.getMean(s),
+			// node.getVariance(s));
 			m.incrTotalDur(m.getDur(s));
 			dd += data - m.getDur(s);
 		}
@@ -248,7 +265,7 @@ public class CartTreeSet {
 	 * Searches fv in Lf0Tree CART[] set of trees, per state, and fill the information in the HTSModel m.
 	 * 
 	 * @param m
-	 *            HTSModel where mean and variances per state are copied
+	 *            HTSModel which is given the pdf per state
 	 * @param fv
 	 *            context feature vector
 	 * @param featureDef
@@ -257,10 +274,10 @@ public class CartTreeSet {
 	 *            uvthresh
 	 */
 	public void searchLf0InCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef, double uvthresh) {
+		PdfLeafNode[] leaves = lf0Cache.getLeaves(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) lf0Tree[s].interpretToNode(fv, 1);
-			m.setLf0Mean(s, node.getMean());
-			m.setLf0Variance(s, node.getVariance());
+			PdfLeafNode node = leaves[s];
+			m.setLf0Pdf(s, node);
 			// set voiced or unvoiced
 			if (node.getVoicedWeight() > uvthresh)
 				m.setVoiced(s, true);
@@ -274,17 +291,17 @@ public class CartTreeSet {
 	 * Searches fv in mgcTree CART[] set of trees, per state, and fill the information in the HTSModel m.
 	 * 
 	 * @param m
-	 *            HTSModel where mean and variances per state are copied
+	 *            HTSModel which is given the pdf per state
 	 * @param fv
 	 *            context feature vector
 	 * @param featureDef
 	 *            Feature definition
 	 */
 	public void searchMgcInCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef) {
+		PdfLeafNode[] leaves = mgcCache.getLeaves(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) mgcTree[s].interpretToNode(fv, 1);
-			m.setMcepMean(s, node.getMean());
-			m.setMcepVariance(s, node.getVariance());
+			PdfLeafNode node = leaves[s];
+			m.setMcepPdf(s, node);
 		}
 	}
 
@@ -292,17 +309,17 @@ public class CartTreeSet {
 	 * Searches fv in StrTree CART[] set of trees, per state, and fill the information in the HTSModel m.
 	 * 
 	 * @param m
-	 *            HTSModel where mean and variances per state are copied
+	 *            HTSModel which is given the pdf per state
 	 * @param fv
 	 *            context feature vector
 	 * @param featureDef
 	 *            Feature definition
 	 */
 	public void searchStrInCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef) {
+		PdfLeafNode[] leaves = strCache.getLeaves(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) strTree[s].interpretToNode(fv, 1);
-			m.setStrMean(s, node.getMean());
-			m.setStrVariance(s, node.getVariance());
+			PdfLeafNode node = leaves[s];
+			m.setStrPdf(s, node);
 		}
 	}
 
@@ -317,10 +334,10 @@ public class CartTreeSet {
 	 *            Feature definition
 	 */
 	public void searchMagInCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef) {
+		PdfLeafNode[] leaves = magCache.getLeaves(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) magTree[s].interpretToNode(fv, 1);
-			m.setMagMean(s, node.getMean());
-			m.setMagVariance(s, node.getVariance());
+			PdfLeafNode node = leaves[s];
+			m.setMagPdf(s, node);
 		}
 	}
 
@@ -86,6 +86,7 @@ import marytts.features.FeatureDefinition;
 import marytts.server.MaryProperties;
 import marytts.util.FeatureUtils;
 import marytts.htsengine.HMMData.FeatureType;
+import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.io.PropertiesAccessor;
 
@@ -139,6 +140,8 @@ public class HMMData {
 	private boolean algnph = false; /* use phone level alignment for duration */
 	private boolean useMixExc = true; /* use Mixed Excitation */
 	private boolean useFourierMag = false; /* use Fourier magnitudes for pulse generation */
+	private String vocoder = HTSVocoder.class.getName(); /* the Vocoder implementation */
+	private String voiceName; /* the voice whose configuration was read, or null */
 
 	/** Global variance (GV) settings */
 	private boolean useGV = false; /* use global variance in parameter generation */
@@ -332,6 +335,36 @@ public class HMMData {
 		return useFourierMag;
 	}
 
+	public String getVocoder() {
+		return vocoder;
+	}
+
+	/**
+	 * @return the name of the voice whose configuration was read, or null if this data was not initialised from a voice
+	 */
+	public String getVoiceName() {
+		return voiceName;
+	}
+
+	/**
+	 * Create a new vocoder for an utterance, of the class given by the <code>vocoder</code> setting of the voice.
+	 *
+	 * @return a new vocoder
+	 * @throws MaryConfigurationException
+	 *             if the vocoder cannot be created, or if it cannot use the Fourier magnitudes of a voice that needs them
+	 */
+	public Vocoder createVocoder() throws MaryConfigurationException {
+		Object obj = MaryRuntimeUtils.instantiateObject(vocoder);
+		if (!(obj instanceof Vocoder)) {
+			throw new MaryConfigurationException(vocoder + " is not a " + Vocoder.class.getName());
+		}
+		if (useFourierMag && stage == 0 && obj instanceof OverlapAddVocoder) {
+			throw new MaryConfigurationException(vocoder + " does not support useFourierMag; use " + HTSVocoder.class.getName()
+					+ " for this voice");
+		}
+		return (Vocoder) obj;
+	}
+
 	public boolean getUseGV() {
 		return useGV;
 	}
@@ -488,6 +521,10 @@ public class HMMData {
 		useFourierMag = bval;
 	}
 
+	public void setVocoder(String sval) {
+		vocoder = sval;
+	}
+
 	public void setUseGV(boolean bval) {
 		useGV = bval;
 	}
@@ -545,6 +582,7 @@ public class HMMData {
 
 	public void initHMMData(PropertiesAccessor p, String voiceName) throws IOException, MaryConfigurationException {
 		logger.debug("Reached new initHMMData");
+		this.voiceName = voiceName;
 		String prefix = "voice." + voiceName;
 		rate = p.getInteger(prefix + ".samplingRate", rate);
 		fperiod = p.getInteger(prefix + ".framePeriod", fperiod);
@@ -571,6 +609,8 @@ public class HMMData {
 																		 */
 		useMixExc = p.getBoolean(prefix + ".useMixExc"); /* Use Mixed excitation */
 		useFourierMag = p.getBoolean(prefix + ".useFourierMag"); /* Use Fourier magnitudes for pulse generation */
+		vocoder = p.getProperty(prefix + ".vocoder", vocoder); /* Vocoder class, by default the MLSA vocoder */
+		createVocoder(); /* fail early if the vocoder cannot be created */
 
 		useGV = p.getBoolean(prefix + ".useGV"); /* Use Global Variance in parameter generation */
 		if (useGV) {
@@ -673,6 +713,7 @@ public class HMMData {
 	 */
 	public void initHMMDataForHMMModel(String voiceName) throws IOException, MaryConfigurationException {
 		PropertiesAccessor p = MaryConfig.getVoiceConfig(voiceName).getPropertiesAccessor(true);
+		this.voiceName = voiceName;
 		String prefix = "voice." + voiceName;
 		treeDurStream = p.getStream(prefix + ".Ftd");
 		pdfDurStream = p.getStream(prefix + ".Fmd");
@@ -68,6 +68,7 @@ import java.util.Locale;
 import javax.sound.sampled.AudioFormat;
 
 import marytts.config.MaryConfig;
+import marytts.exceptions.MaryConfigurationException;
 import marytts.modules.synthesis.Voice;
 import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.server.MaryProperties;
@@ -77,9 +78,15 @@ import org.apache.logging.log4j.Logger;
 
 public class HMMVoice extends Voice {
 
-	private HMMData htsData = new HMMData();
 	private Logger logger = MaryUtils.getLogger("HMMVoice");
 
+	/**
+	 * The HMM voice data, in addition to the data of any voice.
+	 */
+	protected static class HMMVoiceData extends VoiceData {
+		private HMMData htsData = new HMMData();
+	}
+
 	/**
 	 * constructor
 	 * 
@@ -92,31 +99,45 @@ public class HMMVoice extends Voice {
 	 */
 	public HMMVoice(String voiceName, WaveformSynthesizer synthesizer) throws Exception {
 		super(voiceName, synthesizer);
+	}
 
-		htsData.initHMMData(voiceName);
+	@Override
+	protected VoiceData newVoiceData() {
+		return new HMMVoiceData();
+	}
 
+	@Override
+	protected void loadVoiceData(VoiceData voiceData) throws MaryConfigurationException {
+		super.loadVoiceData(voiceData);
+		try {
+			((HMMVoiceData) voiceData).htsData.initHMMData(getName());
+		} catch (MaryConfigurationException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new MaryConfigurationException("Cannot load HMM data for voice '" + getName() + "'", e);
+		}
 	}
 
 	public HMMData getHMMData() {
-		return this.htsData;
+		return ((HMMVoiceData) getVoiceData()).htsData;
 	}
 
 	/* set parameters for generation: f0Std, f0Mean and length, default values 1.0, 0.0 and 0.0 */
 	/* take the values from audio effects component through a MaryData object */
 	public void setF0Std(double dval) {
-		htsData.setF0Std(dval);
+		getHMMData().setF0Std(dval);
 	}
 
 	public void setF0Mean(double dval) {
-		htsData.setF0Mean(dval);
+		getHMMData().setF0Mean(dval);
 	}
 
 	public void setLength(double dval) {
-		htsData.setLength(dval);
+		getHMMData().setLength(dval);
 	}
 
 	public void setDurationScale(double dval) {
-		htsData.setDurationScale(dval);
+		getHMMData().setDurationScale(dval);
 	}
 
 } /* class HMMVoice */
@@ -63,12 +63,14 @@
 
 package marytts.htsengine;
 
-import java.util.Arrays;
+import marytts.cart.LeafNode.PdfLeafNode;
 import marytts.htsengine.HMMData.FeatureType;
 
 /**
  * HMM model for a particular phone (or line in context feature file) This model is the unit when building a utterance model
  * sequence. For every phone (or line)in the context feature file, one of these models is created.
+ * The model refers to the leaves of the trees holding the pdfs of its states, whose means and variances are shared by all models
+ * and must not be modified.
  * 
  * Java port and extension of HTS engine API version 1.04 Extension: mixed excitation
  * 
@@ -83,15 +85,10 @@ public class HTSModel {
 	private int dur[]; /* duration for each state of this HMM */
 	private int totalDur; /* total duration of this HMM in frames */
 	private int totalDurMillisec; /* total duration of this model in milliseconds */
-	private double lf0Mean[][]; /* mean vector of log f0 pdfs for each state of this HMM */
-	private double lf0Variance[][]; /* variance (diag) elements of log f0 for each state of this HMM */
-	private double mcepMean[][]; /* mean vector of mel-cepstrum pdfs for each state of this HMM */
-	private double mcepVariance[][]; /* variance (diag) elements of mel-cepstrum for each state of this HMM */
-
-	private double strMean[][]; /* mean vector of strengths pdfs for each state of this HMM */
-	private double strVariance[][]; /* variance (diag) elements of strengths for each state of this HMM */
-	private double magMean[][]; /* mean vector of fourier magnitude pdfs for each state of this HMM */
-	private double magVariance[][]; /* variance (diag) elements of fourier magnitudes for each state of this HMM */
+	private PdfLeafNode lf0Pdf[]; /* log f0 pdf for each state of this HMM */
+	private PdfLeafNode mcepPdf[]; /* mel-cepstrum pdf for each state of this HMM */
+	private PdfLeafNode strPdf[]; /* strengths pdf for each state of this HMM */
+	private PdfLeafNode magPdf[]; /* fourier magnitude pdf for each state of this HMM */
 
 	private boolean voiced[]; /* voiced/unvoiced decision for each state of this HMM */
 
@@ -147,116 +144,92 @@ public class HTSModel {
 		return totalDurMillisec;
 	}
 
-	public void setLf0Mean(int i, int j, double val) {
-		lf0Mean[i][j] = val;
-	}
-
 	public double getLf0Mean(int i, int j) {
-		return lf0Mean[i][j];
-	}
-
-	public void setLf0Variance(int i, int j, double val) {
-		lf0Variance[i][j] = val;
+		return lf0Pdf[i].getMean(j);
 	}
 
 	public double getLf0Variance(int i, int j) {
-		return lf0Variance[i][j];
+		return lf0Pdf[i].getVariance(j);
 	}
 
-	// set the vector per state
-	public void setLf0Mean(int i, double val[]) {
-		lf0Mean[i] = val;
-	}
-
-	public void setLf0Variance(int i, double val[]) {
-		lf0Variance[i] = val;
-	}
-
-	public void setMcepMean(int i, int j, double val) {
-		mcepMean[i][j] = val;
+	// set the pdf per state
+	public void setLf0Pdf(int i, PdfLeafNode pdf) {
+		lf0Pdf[i] = pdf;
 	}
 
 	public double getMcepMean(int i, int j) {
-		return mcepMean[i][j];
-	}
-
-	public void setMcepVariance(int i, int j, double val) {
-		mcepVariance[i][j] = val;
+		return mcepPdf[i].getMean(j);
 	}
 
 	public double getMcepVariance(int i, int j) {
-		return mcepVariance[i][j];
+		return mcepPdf[i].getVariance(j);
 	}
 
-	// set the vector per state
-	public void setMcepMean(int i, double val[]) {
-		mcepMean[i] = val;
+	// set the pdf per state
+	public void setMcepPdf(int i, PdfLeafNode pdf) {
+		mcepPdf[i] = pdf;
 	}
 
-	public void setMcepVariance(int i, double val[]) {
-		mcepVariance[i] = val;
-	}
-
-	public double[] getMean(FeatureType type, int i) {
+	/**
+	 * The pdf of a state for the given stream.
+	 *
+	 * @param type
+	 *            the stream
+	 * @param i
+	 *            the state
+	 * @return the leaf holding the pdf, which must not be modified
+	 */
+	public PdfLeafNode getPdf(FeatureType type, int i) {
 		switch (type) {
 		case MGC:
-			return Arrays.copyOf(mcepMean[i], mcepMean[i].length);
+			return mcepPdf[i];
 		case STR:
-			return Arrays.copyOf(strMean[i], strMean[i].length);
+			return strPdf[i];
 		case MAG:
-			return Arrays.copyOf(magMean[i], magMean[i].length);
+			return magPdf[i];
 		case LF0:
-			return Arrays.copyOf(lf0Mean[i], lf0Mean[i].length);
+			return lf0Pdf[i];
 		default:
 			throw new RuntimeException("You must not ask me about DUR");
 		}
 	}
 
+	public double[] getMean(FeatureType type, int i) {
+		return getPdf(type, i).getMean();
+	}
+
 	public double[] getVariance(FeatureType type, int i) {
-		switch (type) {
-		case MGC:
-			return Arrays.copyOf(mcepVariance[i], mcepVariance[i].length);
-		case STR:
-			return Arrays.copyOf(strVariance[i], strVariance[i].length);
-		case MAG:
-			return Arrays.copyOf(magVariance[i], magVariance[i].length);
-		case LF0:
-			return Arrays.copyOf(lf0Variance[i], lf0Variance[i].length);
-		default:
-			throw new RuntimeException("You must not ask me about DUR");
-		}
+		return getPdf(type, i).getVariance();
 	}
 
 	/**
 	 * Print mean and variance of each state
 	 */
 	public void printMcepMean() {
-		printVectors(mcepMean, mcepVariance);
+		printVectors(mcepPdf);
 	}
 
 	/**
 	 * Print mean and variance of each state
 	 */
 	public void printLf0Mean() {
-		printVectors(lf0Mean, lf0Variance);
+		printVectors(lf0Pdf);
 	}
 
 	/**
 	 * Print mean and variance vectors
 	 * 
-	 * @param m
-	 *            m
-	 * @param v
-	 *            v
+	 * @param pdfs
+	 *            the pdf of each state
 	 */
-	public void printVectors(double m[][], double v[][]) {
-		for (int i = 0; i < v.length; i++) {
+	public void printVectors(PdfLeafNode pdfs[]) {
+		for (int i = 0; i < pdfs.length; i++) {
 			System.out.print("  mean[" + i + "]: ");
-			for (int j = 0; j < m[i].length; j++)
-				System.out.format("%.6f ", m[i][j]);
+			for (int j = 0; j < pdfs[i].getVectorSize(); j++)
+				System.out.format("%.6f ", pdfs[i].getMean(j));
 			System.out.print("\n  vari[" + i + "]: ");
-			for (int j = 0; j < v[i].length; j++)
-				System.out.format("%.6f ", v[i][j]);
+			for (int j = 0; j < pdfs[i].getVectorSize(); j++)
+				System.out.format("%.6f ", pdfs[i].getVariance(j));
 			System.out.println();
 		}
 	}
@@ -284,54 +257,30 @@ public class HTSModel {
 	 *            val
 	 */
 
-	public void setStrMean(int i, int j, double val) {
-		strMean[i][j] = val;
-	}
-
 	public double getStrMean(int i, int j) {
-		return strMean[i][j];
-	}
-
-	public void setStrVariance(int i, int j, double val) {
-		strVariance[i][j] = val;
+		return strPdf[i].getMean(j);
 	}
 
 	public double getStrVariance(int i, int j) {
-		return strVariance[i][j];
+		return strPdf[i].getVariance(j);
 	}
 
-	// set the vector per state
-	public void setStrMean(int i, double val[]) {
-		strMean[i] = val;
-	}
-
-	public void setStrVariance(int i, double val[]) {
-		strVariance[i] = val;
-	}
-
-	public void setMagMean(int i, int j, double val) {
-		magMean[i][j] = val;
+	// set the pdf per state
+	public void setStrPdf(int i, PdfLeafNode pdf) {
+		strPdf[i] = pdf;
 	}
 
 	public double getMagMean(int i, int j) {
-		return magMean[i][j];
-	}
-
-	public void setMagVariance(int i, int j, double val) {
-		magVariance[i][j] = val;
+		return magPdf[i].getMean(j);
 	}
 
 	public double getMagVariance(int i, int j) {
-		return magVariance[i][j];
-	}
-
-	// set the vector per state
-	public void setMagMean(int i, double val[]) {
-		magMean[i] = val;
+		return magPdf[i].getVariance(j);
 	}
 
-	public void setMagVariance(int i, double val[]) {
-		magVariance[i] = val;
+	// set the pdf per state
+	public void setMagPdf(int i, PdfLeafNode pdf) {
+		magPdf[i] = pdf;
 	}
 
 	public void setVoiced(int i, boolean val) {
@@ -388,18 +337,12 @@ public class HTSModel {
 		int i;
 		totalDur = 0;
 		dur = new int[nstate];
-		lf0Mean = new double[nstate][];
-		lf0Variance = new double[nstate][];
+		lf0Pdf = new PdfLeafNode[nstate];
 		voiced = new boolean[nstate];
 
-		mcepMean = new double[nstate][];
-		mcepVariance = new double[nstate][];
-
-		strMean = new double[nstate][];
-		strVariance = new double[nstate][];
-
-		magMean = new double[nstate][];
-		magVariance = new double[nstate][];
+		mcepPdf = new PdfLeafNode[nstate];
+		strPdf = new PdfLeafNode[nstate];
+		magPdf = new PdfLeafNode[nstate];
 
 		maryXmlDur = null;
 		maryXmlF0 = null;
@@ -63,6 +63,7 @@
 
 package marytts.htsengine;
 
+import marytts.cart.LeafNode.PdfLeafNode;
 import marytts.util.MaryUtils;
 import java.util.Arrays;
 
@@ -227,6 +228,24 @@ public class HTSPStream {
 		}
 	}
 
+	/**
+	 * Set the mean and the inverse variance of frame i from a pdf.
+	 *
+	 * @param i
+	 *            the frame
+	 * @param pdf
+	 *            the pdf, with the vector size of this stream
+	 */
+	public void setPdf(int i, PdfLeafNode pdf) {
+		assert pdf.getVectorSize() == vSize;
+		double[] m = mseq[i];
+		double[] iv = ivseq[i];
+		for (int j = 0; j < vSize; j++) {
+			m[j] = pdf.getMean(j);
+			iv[j] = HTSParameterGeneration.finv(pdf.getVariance(j));
+		}
+	}
+
 	public void setIvseq(int i, int j, double val) {
 		ivseq[i][j] = val;
 	}
@@ -238,24 +238,21 @@ public class HTSParameterGeneration {
 
 					/* copy pdfs for mcep */
 					if (mcepPst != null) {
-						mcepPst.setMseq(uttFrame, m.getMean(FeatureType.MGC, state));
-						mcepPst.setVseq(uttFrame, m.getVariance(FeatureType.MGC, state));
+						mcepPst.setPdf(uttFrame, m.getPdf(FeatureType.MGC, state));
 						if (!gvSwitch)
 							mcepPst.setGvSwitch(uttFrame, false);
 					}
 
 					/* copy pdf for str */
 					if (strPst != null) {
-						strPst.setMseq(uttFrame, m.getMean(FeatureType.STR, state));
-						strPst.setVseq(uttFrame, m.getVariance(FeatureType.STR, state));
+						strPst.setPdf(uttFrame, m.getPdf(FeatureType.STR, state));
 						if (!gvSwitch)
 							strPst.setGvSwitch(uttFrame, false);
 					}
 
 					/* copy pdf for mag */
 					if (magPst != null) {
-						magPst.setMseq(uttFrame, m.getMean(FeatureType.MAG, state));
-						magPst.setVseq(uttFrame, m.getVariance(FeatureType.MAG, state));
+						magPst.setPdf(uttFrame, m.getPdf(FeatureType.MAG, state));
 						if (!gvSwitch)
 							magPst.setGvSwitch(uttFrame, false);
 					}
@@ -98,7 +98,7 @@ import org.apache.logging.log4j.Logger;
  *
  * @author Marcela Charfuelan
  */
-public class HTSVocoder {
+public class HTSVocoder implements Vocoder {
 
 	public static final int IPERIOD = 1; /* interpolation period */
 	public static final int SEED = 1;
@@ -137,11 +137,20 @@ public class HTSVocoder {
 	private int numM; /* Number of bandpass filters for mixed excitation */
 	private int orderM; /* Order of filters for mixed excitation */
 	private double h[][]; /* filters for mixed excitation */
-	private double xpulseSignal[]; /* the size of this should be orderM */
-	private double xnoiseSignal[]; /* the size of this should be orderM */
+	private double xpulseSignal[]; /* the last orderM pulse samples of the previous frame, then the current frame */
+	private double xnoiseSignal[]; /* the last orderM noise samples of the previous frame, then the current frame */
 	private boolean mixedExcitation = false;
 	private boolean fourierMagnitudes = false;
 
+	/* per frame scratch buffers, allocated once per utterance */
+	private double mc[]; /* mel-cepstral vector of the current frame */
+	private double excitation[]; /* excitation of the current frame, filtered in place */
+	private PostfilterBuffers postfilterBuffers; /* used in postfilter_mgc */
+	private double magVector[]; /* Fourier magnitudes of the current frame */
+	private double magPulse[]; /* pulse generated from Fourier magnitudes */
+	private double magReal[]; /* used in genPulseFromFourierMag */
+	private double magImag[]; /* used in genPulseFromFourierMag */
+
 	/**
 	 * The initialisation of VocoderSetup should be done when there is already information about the number of feature vectors to
 	 * be processed, size of the mcep vector file, etc.
@@ -167,6 +176,8 @@ public class HTSVocoder {
 		C = new double[mcep_order];
 		CC = new double[mcep_order];
 		CINC = new double[mcep_order];
+		mc = new double[mcep_order];
+		excitation = new double[fprd];
 
 		if (stage == 0) { /* for MGC */
 
@@ -179,6 +190,8 @@ public class HTSVocoder {
 			for (int i = PADEORDER; i >= 1; i--)
 				pt3[i] = (2 * (PADEORDER + 1)) + ((i - 1) * (mcep_order + 1));
 
+			postfilterBuffers = new PostfilterBuffers(mcep_order - 1);
+
 		} else { /* for LSP */
 			int vector_size = ((mcep_vsize + 1) * (stage + 3)) - (3 * (mcep_order));
 			D1 = new double[vector_size];
@@ -227,6 +240,10 @@ public class HTSVocoder {
 		 */
 	} // method htsMLSAVocoder()
 
+	public AudioInputStream synthesize(HTSParameterGeneration pdf2par, HMMData htsData) throws Exception {
+		return htsMLSAVocoder(pdf2par, htsData);
+	}
+
 	/**
 	 * get the audio format produced by the hts vocoder
 	 *
@@ -247,15 +264,13 @@ public class HTSVocoder {
 	public double[] htsMLSAVocoder(HTSPStream lf0Pst, HTSPStream mcepPst, HTSPStream strPst, HTSPStream magPst, boolean[] voiced,
 			HMMData htsData, HTSVocoderDataProducer audioProducer) throws Exception {
 
-		double inc, x, MaxSample;
-		double xp = 0.0, xn = 0.0, fxp, fxn, mix; /* samples for pulse and for noise and the filtered ones */
-		int k, m, mcepframe, lf0frame;
+		double inc, x;
+		double xp = 0.0, xn = 0.0; /* samples for pulse and for noise */
+		int m, mcepframe;
 		double alpha = htsData.getAlpha();
 		double beta = htsData.getBeta();
-		double[] magPulse = null; /* pulse generated from Fourier magnitudes */
 		int magSample, magPulseSize;
 
-		double f0Std, f0Shift, f0MeanOri;
 		double hp[] = null; /* pulse shaping filter, it is initialised once it is known orderM */
 		double hn[] = null; /* noise shaping filter, it is initialised once it is known orderM */
 
@@ -265,11 +280,6 @@ public class HTSVocoder {
 		 */
 		m = mcepPst.getOrder();
 		initVocoder(m, mcepPst.getVsize() - 1, htsData);
-		double pulse[] = new double[fprd];
-		double noise[] = new double[fprd];
-		double source[] = new double[fprd];
-
-		double[] d = new double[m];
 		mixedExcitation = htsData.getUseMixExc();
 		fourierMagnitudes = htsData.getUseFourierMag();
 
@@ -277,8 +287,8 @@ public class HTSVocoder {
 			numM = htsData.getNumFilters();
 			orderM = htsData.getOrderFilters();
 
-			xpulseSignal = new double[orderM];
-			xnoiseSignal = new double[orderM];
+			xpulseSignal = new double[orderM + fprd];
+			xnoiseSignal = new double[orderM + fprd];
 			/* initialise xp_sig and xn_sig */// -> automatically initialized to 0.0
 
 			h = htsData.getMixFilters();
@@ -307,20 +317,7 @@ public class HTSVocoder {
 		else
 			logger.debug("No postfiltering applied.");
 
-		f0Std = htsData.getF0Std();
-		f0Shift = htsData.getF0Mean();
-		f0MeanOri = 0.0;
-
-		for (mcepframe = 0, lf0frame = 0; mcepframe < mcepPst.getT(); mcepframe++) {
-			if (voiced[mcepframe]) {
-				f0MeanOri = f0MeanOri + Math.exp(lf0Pst.getPar(lf0frame, 0));
-				// System.out.println("voiced t=" + mcepframe + "  " + lf0Pst.getPar(lf0frame, 0) + "  ");
-				lf0frame++;
-			}
-			// else
-			// System.out.println("unvoiced t=" + mcepframe + "  0.0  ");
-		}
-		f0MeanOri = f0MeanOri / lf0frame;
+		double[] f0s = getF0(lf0Pst, voiced, mcepPst.getT(), htsData);
 
 		/* _______________________Synthesize speech waveforms_____________________ */
 		/* generate Nperiod samples per mcepframe */
@@ -331,21 +328,13 @@ public class HTSVocoder {
 
 		magSample = 1;
 		magPulseSize = 0;
-		for (mcepframe = 0, lf0frame = 0; mcepframe < mcepPst.getT(); mcepframe++) { /* for each mcep frame */
+		for (mcepframe = 0; mcepframe < mcepPst.getT(); mcepframe++) { /* for each mcep frame */
 
-			/** feature vector for a particular frame */
-			double mc[] = new double[m]; /* feature vector for a particular frame */
 			/* get current feature vector mgc */
 			for (int i = 0; i < m; i++)
 				mc[i] = mcepPst.getPar(mcepframe, i);
 
-			/* f0 modification through the MARY audio effects */
-			double f0 = 0.0;
-			if (voiced[mcepframe]) {
-				f0 = f0Std * Math.exp(lf0Pst.getPar(lf0frame, 0)) + (1 - f0Std) * f0MeanOri + f0Shift;
-				lf0frame++;
-				f0 = Math.max(0.0, f0);
-			}
+			double f0 = f0s[mcepframe];
 
 			/*
 			 * if mixed excitation get shaping filters for this frame the strength of pulse, is taken from the predicted value,
@@ -392,7 +381,7 @@ public class HTSVocoder {
 
 			if (stage == 0) {
 				/* postfiltering, this is done if beta>0.0 */
-				postfilter_mgc(mc, (m - 1), alpha, beta);
+				postfilter_mgc(mc, (m - 1), alpha, beta, postfilterBuffers);
 				/* mc2b: transform mel-cepstrum to MLSA digital filter coefficients */
 				mc2b(mc, CC, (m - 1), alpha);
 				for (int i = 0; i < m; i++)
@@ -427,9 +416,11 @@ public class HTSVocoder {
 			/* Here i need to generate both xp:pulse and xn:noise signals separately */
 			// gauss = false; /* Mixed excitation works better with nomal noise */
 
-			/* Generate fperiod samples per feature vector, normally 80 samples per frame */
-			// p1=0.0;
-			for (int j = fprd - 1, i = (IPERIOD + 1) / 2; j >= 0; j--) {
+			/*
+			 * Generate fperiod samples per feature vector, normally 80 samples per frame: first the excitation of the whole frame,
+			 * then the filtered signal, so that each inner loop does one thing only.
+			 */
+			for (int j = 0, i = (IPERIOD + 1) / 2; j < fprd; j++) {
 				if (p1 == 0.0) {
 
 					x = uniformRand(); /* returns 1.0 or -1.0 uniformly distributed */
@@ -441,9 +432,8 @@ public class HTSVocoder {
 				} else {
 					if ((pc += 1.0) >= p1) {
 						if (fourierMagnitudes) {
-							magPulse = genPulseFromFourierMag(magPst, mcepframe, p1);
+							magPulseSize = genMagPulse(magPst, mcepframe, p1);
 							magSample = 0;
-							magPulseSize = magPulse.length;
 							x = magPulse[magSample];
 							magSample++;
 						} else
@@ -467,62 +457,28 @@ public class HTSVocoder {
 						xn = uniformRand();
 					}
 				}
-				// System.out.print("    x=" + x);
 
-				/* apply the shaping filters to the pulse and noise samples */
-				/* i need memory of at least for M samples in both signals */
 				if (mixedExcitation) {
-					fxp = 0.0;
-					fxn = 0.0;
-					for (k = orderM - 1; k > 0; k--) {
-						fxp += hp[k] * xpulseSignal[k];
-						fxn += hn[k] * xnoiseSignal[k];
-						xpulseSignal[k] = xpulseSignal[k - 1];
-						xnoiseSignal[k] = xnoiseSignal[k - 1];
-					}
-					fxp += hp[0] * xp;
-					fxn += hn[0] * xn;
-					xpulseSignal[0] = xp;
-					xnoiseSignal[0] = xn;
-
-					/* x is a pulse noise excitation and mix is mixed excitation */
-					mix = fxp + fxn;
-					pulse[j] = fxp;
-					noise[j] = fxn;
-					source[j] = mix;
-					// System.out.format("%d = %f \n", j, mix);
-
-					/* comment this line if no mixed excitation, just pulse and noise */
-					x = mix; /* excitation sample */
-				}
-
-				if (stage == 0) {
-					if (x != 0.0)
-						x *= Math.exp(C[0]);
-					x = mlsadf(x, C, m, alpha, D1, pt2, pt3);
-
+					xpulseSignal[orderM + j] = xp;
+					xnoiseSignal[orderM + j] = xn;
 				} else {
-					x *= C[0];
-					x = mglsadf(x, C, (m - 1), alpha, stage, D1);
-				}
-
-				// System.out.format("%f ", x);
-				audio_double[s_double] = x;
-				if (audioProducer != null) {
-					audioProducer.putOneDataPoint(x);
+					excitation[j] = x;
 				}
 
-				s_double++;
-
 				if ((--i) == 0) {
 					p1 += inc;
-					for (k = 0; k < m; k++) {
-						C[k] += CINC[k];
-					}
 					i = IPERIOD;
 				}
+			}
 
-			} /* for each sample in a period fprd */
+			/* apply the shaping filters to the pulse and noise samples, x is then the mixed excitation */
+			if (mixedExcitation)
+				mixExcitation(hp, hn);
+
+			filterExcitation(m, alpha, audioProducer);
+
+			System.arraycopy(excitation, 0, audio_double, s_double, fprd);
+			s_double += fprd;
 
 			/*********
 			 * For debuging if(voiced[mcepframe]) { double magf[] = SignalProcUtils.getFrameHalfMagnitudeSpectrum(source, 512, 1);
@@ -542,6 +498,117 @@ public class HTSVocoder {
 
 	} /* method htsMLSAVocoder() */
 
+	/**
+	 * Mix the pulse and noise excitation of one frame, in xpulseSignal and xnoiseSignal after the last orderM samples of the
+	 * previous frame, filtered with the pulse and noise shaping filters, into the excitation buffer. As in the sample by sample
+	 * implementation this replaces, the coefficients h[k] for k &gt; 0 apply to the sample k+1 samples before the current one.
+	 *
+	 * @param hp
+	 *            pulse shaping filter
+	 * @param hn
+	 *            noise shaping filter
+	 */
+	private void mixExcitation(double hp[], double hn[]) {
+		for (int j = 0; j < fprd; j++) {
+			int n = orderM + j; /* current sample */
+			double fxp = 0.0;
+			double fxn = 0.0;
+			for (int k = orderM - 1; k > 0; k--) {
+				fxp += hp[k] * xpulseSignal[n - 1 - k];
+				fxn += hn[k] * xnoiseSignal[n - 1 - k];
+			}
+			fxp += hp[0] * xpulseSignal[n];
+			fxn += hn[0] * xnoiseSignal[n];
+			excitation[j] = fxp + fxn;
+		}
+		/* keep the memory of the filters for the next frame */
+		System.arraycopy(xpulseSignal, fprd, xpulseSignal, 0, orderM);
+		System.arraycopy(xnoiseSignal, fprd, xnoiseSignal, 0, orderM);
+	}
+
+	/**
+	 * Filter the excitation of one frame in place with the MLSA or MGLSA filter, interpolating the filter coefficients C towards
+	 * CC by CINC every IPERIOD samples. The samples are passed on to the audio producer as soon as they are filtered.
+	 *
+	 * @param m
+	 *            m
+	 * @param alpha
+	 *            alpha
+	 * @param audioProducer
+	 *            audioProducer, or null
+	 */
+	private void filterExcitation(int m, double alpha, HTSVocoderDataProducer audioProducer) {
+		if (stage == 0) {
+			for (int j = 0, i = (IPERIOD + 1) / 2; j < fprd; j++) {
+				double x = excitation[j];
+				if (x != 0.0)
+					x *= Math.exp(C[0]);
+				excitation[j] = x = mlsadf(x, C, m, alpha, D1, pt2, pt3);
+				if (audioProducer != null)
+					audioProducer.putOneDataPoint(x);
+				if ((--i) == 0) {
+					interpolate(m);
+					i = IPERIOD;
+				}
+			}
+		} else {
+			for (int j = 0, i = (IPERIOD + 1) / 2; j < fprd; j++) {
+				double x = excitation[j] * C[0];
+				excitation[j] = x = mglsadf(x, C, (m - 1), alpha, stage, D1);
+				if (audioProducer != null)
+					audioProducer.putOneDataPoint(x);
+				if ((--i) == 0) {
+					interpolate(m);
+					i = IPERIOD;
+				}
+			}
+		}
+	}
+
+	private void interpolate(int m) {
+		for (int k = 0; k < m; k++) {
+			C[k] += CINC[k];
+		}
+	}
+
+	/**
+	 * The F0 of each frame, modified through the MARY audio effects as configured in htsData, or 0 for unvoiced frames.
+	 *
+	 * @param lf0Pst
+	 *            the log F0 of the voiced frames
+	 * @param voiced
+	 *            voiced
+	 * @param numFrames
+	 *            the number of frames
+	 * @param htsData
+	 *            htsData
+	 * @return the F0 in Hz per frame
+	 */
+	static double[] getF0(HTSPStream lf0Pst, boolean[] voiced, int numFrames, HMMData htsData) {
+		double f0Std = htsData.getF0Std();
+		double f0Shift = htsData.getF0Mean();
+		double f0MeanOri = 0.0;
+		int lf0frame = 0;
+		for (int t = 0; t < numFrames; t++) {
+			if (voiced[t]) {
+				f0MeanOri = f0MeanOri + Math.exp(lf0Pst.getPar(lf0frame, 0));
+				lf0frame++;
+			}
+		}
+		f0MeanOri = f0MeanOri / lf0frame;
+
+		double[] f0 = new double[numFrames];
+		lf0frame = 0;
+		for (int t = 0; t < numFrames; t++) {
+			if (voiced[t]) {
+				f0[t] = f0Std * Math.exp(lf0Pst.getPar(lf0frame, 0)) + (1 - f0Std) * f0MeanOri + f0Shift;
+				lf0frame++;
+				f0[t] = Math.max(0.0, f0[t]);
+			}
+		}
+		return f0;
+	}
+
 	/**
 	 * Compute the audio size, in samples, that this vocoder is going to produce for the given data.
 	 *
@@ -583,18 +650,13 @@ public class HTSVocoder {
 		d[_pt3 + 0] = x;
 		d[_pt3 + 1] = (1 - a * a) * d[_pt3 + 0] + (a * d[_pt3 + 1]);
 
-		for (int i = 2; i <= m; i++) {
-			d[_pt3 + i] += a * (d[_pt3 + i + 1] - d[_pt3 + i - 1]);
-		}
-
 		double y = 0.0;
 		for (int i = 2; i <= m; i++) {
+			d[_pt3 + i] += a * (d[_pt3 + i + 1] - d[_pt3 + i - 1]);
 			y += d[_pt3 + i] * b[i];
 		}
 
-		for (int i = m + 1; i > 1; i--) {
-			d[_pt3 + i] = d[_pt3 + i - 1];
-		}
+		System.arraycopy(d, _pt3 + 1, d, _pt3 + 2, m);
 
 		return y;
 	}
@@ -768,9 +830,13 @@ public class HTSVocoder {
 	 *            a
 	 */
 	public static void freqt(double c1[], int m1, double c2[], int m2, double a) {
+		freqt(c1, m1, c2, m2, a, new double[(m2 + m2 + 2)]);
+	}
+
+	private static void freqt(double c1[], int m1, double c2[], int m2, double a, double freqt_buff[]) {
 		double b = 1 - a * a;
 
-		double freqt_buff[] = new double[(m2 + m2 + 2)]; /* used in freqt */
+		Arrays.fill(freqt_buff, 0, m2 + m2 + 2, 0.0);
 		int g = m2 + 1; /* offset of freqt_buff */
 
 		for (int i = -m1; i <= 0; i++) {
@@ -824,15 +890,16 @@ public class HTSVocoder {
 	 * @return en
 	 */
 	public static double b2en(double b[], int m, double a) {
-		double cep[], ir[];
-		int arrayLength = (m + 1) + 2 * IRLENG;
-		double[] spectrum2en_buff = new double[arrayLength];
-		cep = new double[arrayLength]; /* CHECK! these sizes!!! */
-		ir = new double[arrayLength];
+		return b2en(b, m, a, new PostfilterBuffers(m));
+	}
+
+	private static double b2en(double b[], int m, double a, PostfilterBuffers buffers) {
+		double cep[] = buffers.cep;
+		double ir[] = buffers.ir;
 
-		b2mc(b, spectrum2en_buff, m, a);
+		b2mc(b, buffers.spectrum2en, m, a);
 		/* freqt(vs->mc, m, vs->cep, vs->irleng - 1, -a); */
-		freqt(spectrum2en_buff, m, cep, IRLENG - 1, -a);
+		freqt(buffers.spectrum2en, m, cep, IRLENG - 1, -a, buffers.freqt);
 		/* HTS_c2ir(vs->cep, vs->irleng, vs->ir, vs->irleng); */
 		c2ir(cep, IRLENG, ir, IRLENG);
 		double en = 0.0;
@@ -1168,14 +1235,20 @@ public class HTSVocoder {
 	 */
 	public static void postfilter_mgc(double mgc[], int m, double alpha, double beta) {
 		if (beta > 0.0 && m > 1) {
-			double[] postfilter_buff = new double[m + 1];
+			postfilter_mgc(mgc, m, alpha, beta, new PostfilterBuffers(m));
+		}
+	}
+
+	private static void postfilter_mgc(double mgc[], int m, double alpha, double beta, PostfilterBuffers buffers) {
+		if (beta > 0.0 && m > 1) {
+			double[] postfilter_buff = buffers.postfilter;
 			mc2b(mgc, postfilter_buff, m, alpha);
-			double e1 = b2en(postfilter_buff, m, alpha);
+			double e1 = b2en(postfilter_buff, m, alpha, buffers);
 
 			postfilter_buff[1] -= beta * alpha * mgc[2];
 			for (int k = 2; k < m; k++)
 				postfilter_buff[k] *= (1.0 + beta);
-			double e2 = b2en(postfilter_buff, m, alpha);
+			double e2 = b2en(postfilter_buff, m, alpha, buffers);
 			postfilter_buff[0] += Math.log(e1 / e2) / 2;
 			b2mc(postfilter_buff, mgc, m, alpha);
 
@@ -1186,6 +1259,32 @@ public class HTSVocoder {
 		return genPulseFromFourierMag(mag.getParVec(n), f0);
 	}
 
+	/**
+	 * Generate one pitch period from the Fourier magnitudes of frame n into magPulse, reusing the buffers of this vocoder.
+	 *
+	 * @param mag
+	 *            mag
+	 * @param n
+	 *            n
+	 * @param f0
+	 *            f0
+	 * @return the length of the pulse
+	 */
+	private int genMagPulse(HTSPStream mag, int n, double f0) {
+		if (magVector == null) {
+			magVector = new double[mag.getOrder()];
+			magPulse = new double[getPulseLength(Double.MAX_VALUE)];
+		}
+		for (int i = 0; i < magVector.length; i++)
+			magVector[i] = mag.getPar(n, i);
+		int T = getPulseLength(f0);
+		if (magReal == null || magReal.length != 2 * T) {
+			magReal = new double[2 * T];
+			magImag = new double[2 * T];
+		}
+		return genPulseFromFourierMag(magVector, f0, magPulse, magReal, magImag);
+	}
+
 	/**
 	 * Generate one pitch period from Fourier magnitudes
 	 *
@@ -1196,25 +1295,54 @@ public class HTSVocoder {
 	 * @return pulse
 	 */
 	public static double[] genPulseFromFourierMag(double[] mag, double f0) {
+		int T = getPulseLength(f0);
+		double[] pulse = new double[T];
+		genPulseFromFourierMag(mag, f0, pulse, new double[2 * T], new double[2 * T]);
+		return pulse;
+	}
 
-		int numHarm = mag.length;
+	/**
+	 * The length of the pulses generated from Fourier magnitudes, i.e. the FFT size used for them.
+	 *
+	 * @param f0
+	 *            f0
+	 * @return 512 or 1024
+	 */
+	private static int getPulseLength(double f0) {
 		int currentF0 = (int) Math.round(f0);
-		int T;
 		if (currentF0 < 512)
-			T = 512;
+			return 512;
 		else
-			T = 1024;
+			return 1024;
+	}
+
+	/**
+	 * Generate one pitch period from Fourier magnitudes into the given buffers.
+	 *
+	 * @param mag
+	 *            mag
+	 * @param f0
+	 *            f0
+	 * @param pulse
+	 *            receives the pulse, at least of length getPulseLength(f0)
+	 * @param real
+	 *            scratch buffer of length 2*getPulseLength(f0)
+	 * @param imag
+	 *            scratch buffer of length 2*getPulseLength(f0)
+	 * @return the length of the pulse
+	 */
+	private static int genPulseFromFourierMag(double[] mag, double f0, double[] pulse, double[] real, double[] imag) {
+
+		int numHarm = mag.length;
+		int currentF0 = (int) Math.round(f0);
+		int T = getPulseLength(f0);
 		int T2 = 2 * T;
 
 		/* since is FFT2 no aperiodicFlag or jitter of 25% is applied */
 
-		/* get the pulse */
-		double[] pulse = new double[T];
-		double[] real = new double[T2];
-		double[] imag = new double[T2];
-
 		/* copy Fourier magnitudes (Wai C. Chu "Speech Coding algorithms foundation and evolution of standardized coders" pg. 460) */
 		real[0] = real[T] = 0.0; /* DC component set to zero */
+		imag[0] = imag[T] = 0.0;
 		for (int i = 1; i <= numHarm; i++) {
 			real[i] = real[T - i] = real[T + i] = real[T2 - i] = mag[i - 1]; /* Symetric extension */
 			imag[i] = imag[T - i] = imag[T + i] = imag[T2 - i] = 0.0;
@@ -1232,7 +1360,7 @@ public class HTSVocoder {
 		for (int i = 0; i < T; i++)
 			pulse[i] = real[(i - numHarm) % T] * sqrt_f0;
 
-		return pulse;
+		return T;
 	}
 
 	private void circularShift(double y[], int T, int n) {
@@ -1791,6 +1919,26 @@ public class HTSVocoder {
 
 	}
 
+	/**
+	 * Scratch buffers for postfilter_mgc and b2en, for mel-cepstra of order m.
+	 */
+	private static final class PostfilterBuffers {
+		final double[] postfilter;
+		final double[] spectrum2en;
+		final double[] cep;
+		final double[] ir;
+		final double[] freqt;
+
+		PostfilterBuffers(int m) {
+			int arrayLength = (m + 1) + 2 * IRLENG;
+			postfilter = new double[m + 1];
+			spectrum2en = new double[arrayLength];
+			cep = new double[arrayLength]; /* CHECK! these sizes!!! */
+			ir = new double[arrayLength];
+			freqt = new double[IRLENG + IRLENG];
+		}
+	}
+
 	protected class HTSVocoderDataProducer extends ProducingDoubleDataSource {
 		private static final double INITIAL_MAX_AMPLITUDE = 17000.;
 
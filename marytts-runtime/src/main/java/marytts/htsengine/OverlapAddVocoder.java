@@ -0,0 +1,474 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.sound.sampled.AudioInputStream;
+
+import marytts.signalproc.process.AmplitudeNormalizer;
+import marytts.util.MaryUtils;
+import marytts.util.data.ProducingDoubleDataSource;
+import marytts.util.data.audio.DDSAudioInputStream;
+import marytts.util.math.FftPlan;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A fast vocoder for mel-cepstral voices, which filters the excitation in the frequency domain instead of with the MLSA filter.
+ * For every frame, the excitation of two frame periods is windowed with a Hann window and multiplied in the frequency domain
+ * with the spectral envelope of the frame, which is computed directly from the mel-cepstrum on the warped frequency axis; the
+ * filtered frames are overlapped and added. The excitation (pulses, noise and mixed excitation) is generated as in
+ * {@link HTSVocoder}, except that pulses from Fourier magnitudes are not supported: {@link HMMData#createVocoder()} refuses this
+ * vocoder for mel-cepstral voices with <code>useFourierMag</code>.
+ * <p>
+ * This needs a fraction of the CPU time of {@link HTSVocoder}. Since the spectral envelope is interpolated between frames by the
+ * overlapping windows rather than sample by sample, the quality is slightly lower. A voice uses it with
+ * <code>voice.(name).vocoder = marytts.htsengine.OverlapAddVocoder</code>. LSP voices (gamma &gt; 0) are always vocoded with
+ * {@link HTSVocoder}.
+ */
+public class OverlapAddVocoder implements Vocoder {
+	private static final Logger logger = MaryUtils.getLogger("Vocoder");
+
+	private Random rand;
+	private int order; /* number of mel-cepstral coefficients */
+	private int fprd; /* frame shift */
+	private double rate;
+	private double p1; /* used in excitation generation, as in HTSVocoder */
+	private double pc; /* used in excitation generation, as in HTSVocoder */
+
+	private int fftSize;
+	private int bins; /* fftSize / 2 + 1 */
+	private FftPlan fft;
+	private double cosTable[]; /* cos(2 pi n / fftSize) */
+	private double sinTable[]; /* sin(2 pi n / fftSize) */
+	private double warpedCos[]; /* cos(m beta_k) at k * order + m, beta_k the warped frequency of bin k */
+	private double warpedSin[]; /* sin(m beta_k) at k * order + m */
+	private double window[]; /* periodic Hann window of two frame periods */
+
+	/* mixed excitation */
+	private int numM; /* number of bandpass filters, 0 if there is no mixed excitation */
+	private double filterRe[]; /* frequency response of bandpass filter i at bin k, at i * bins + k */
+	private double filterIm[];
+
+	/* buffers, allocated once per utterance */
+	private double mc[]; /* mel-cepstral vector of the current frame */
+	private double postfilteredMc[]; /* used in postfiltering */
+	private double b[]; /* used in postfiltering */
+	private double str[]; /* bandpass strengths of the current frame */
+	private double pulse[]; /* pulses of the current and the next frame */
+	private double noise[]; /* noise of the current and the next frame */
+	private double envRe[]; /* spectral envelope of the current frame */
+	private double envIm[];
+	private double pulseRe[]; /* spectrum of the windowed pulses */
+	private double pulseIm[];
+	private double noiseSpectrum[]; /* spectrum of the windowed noise, in the layout of FftPlan.realTransform() */
+	private double frame[]; /* spectrum and then signal of the filtered frame */
+	private double output[]; /* overlap-add buffer, from the first sample of the current frame */
+
+	public AudioInputStream synthesize(HTSParameterGeneration pdf2par, HMMData htsData) throws Exception {
+		if (htsData.getStage() != 0) {
+			logger.debug("Overlap-add vocoder needs mel-cepstra, using the MLSA vocoder.");
+			return new HTSVocoder().synthesize(pdf2par, htsData);
+		}
+		int audioSize = pdf2par.getMcepPst().getT() * htsData.getFperiod();
+		OverlapAddDataProducer producer = new OverlapAddDataProducer(audioSize, pdf2par, htsData);
+		producer.start();
+		return new DDSAudioInputStream(producer, HTSVocoder.getHTSAudioFormat(htsData));
+	}
+
+	/**
+	 * Allocate the tables and buffers for an utterance.
+	 *
+	 * @param mcepOrder
+	 *            the number of mel-cepstral coefficients
+	 * @param alpha
+	 *            the frequency warping factor
+	 * @param framePeriod
+	 *            the frame shift in samples
+	 * @param mixFilters
+	 *            the bandpass filters for mixed excitation, or null
+	 */
+	void setUp(int mcepOrder, double alpha, int framePeriod, double[][] mixFilters) {
+		order = mcepOrder;
+		fprd = framePeriod;
+		rand = new Random(HTSVocoder.SEED);
+		p1 = -1;
+		pc = 0.0;
+
+		/* the filtered frame must fit into the FFT without wrapping around: two frame periods plus the impulse responses */
+		int minSize = 2 * fprd + HTSVocoder.IRLENG + (mixFilters != null ? mixFilters[0].length : 0);
+		fftSize = Integer.highestOneBit(minSize - 1) << 1;
+		bins = fftSize / 2 + 1;
+		fft = FftPlan.get(fftSize);
+
+		cosTable = new double[fftSize];
+		sinTable = new double[fftSize];
+		for (int n = 0; n < fftSize; n++) {
+			cosTable[n] = Math.cos(2 * Math.PI * n / fftSize);
+			sinTable[n] = Math.sin(2 * Math.PI * n / fftSize);
+		}
+
+		/* the all-pass z^-1 -> (z^-1 - alpha) / (1 - alpha z^-1) maps frequency omega to beta */
+		warpedCos = new double[bins * order];
+		warpedSin = new double[bins * order];
+		for (int k = 0, t = 0; k < bins; k++) {
+			double omega = 2 * Math.PI * k / fftSize;
+			double beta = omega + 2 * Math.atan(alpha * Math.sin(omega) / (1 - alpha * Math.cos(omega)));
+			for (int m = 0; m < order; m++, t++) {
+				warpedCos[t] = Math.cos(m * beta);
+				warpedSin[t] = Math.sin(m * beta);
+			}
+		}
+
+		window = new double[2 * fprd];
+		for (int n = 0; n < window.length; n++) {
+			window[n] = 0.5 - 0.5 * Math.cos(Math.PI * n / fprd);
+		}
+
+		numM = mixFilters != null ? mixFilters.length : 0;
+		filterRe = new double[numM * bins];
+		filterIm = new double[numM * bins];
+		for (int i = 0; i < numM; i++) {
+			double h[] = mixFilters[i];
+			for (int k = 0; k < bins; k++) {
+				double re = 0.0;
+				double im = 0.0;
+				for (int n = 0, idx = 0; n < h.length; n++) {
+					re += h[n] * cosTable[idx];
+					im -= h[n] * sinTable[idx];
+					idx += k;
+					if (idx >= fftSize)
+						idx -= fftSize;
+				}
+				filterRe[i * bins + k] = re;
+				filterIm[i * bins + k] = im;
+			}
+		}
+
+		mc = new double[order];
+		postfilteredMc = new double[order];
+		b = new double[order];
+		str = new double[numM];
+		pulse = new double[2 * fprd];
+		noise = new double[2 * fprd];
+		envRe = new double[bins];
+		envIm = new double[bins];
+		pulseRe = new double[bins];
+		pulseIm = new double[bins];
+		noiseSpectrum = new double[fftSize];
+		frame = new double[fftSize];
+		output = new double[fftSize];
+	}
+
+	int getFftSize() {
+		return fftSize;
+	}
+
+	/**
+	 * Vocode an utterance.
+	 *
+	 * @param lf0Pst
+	 *            lf0Pst
+	 * @param mcepPst
+	 *            mcepPst
+	 * @param strPst
+	 *            strPst
+	 * @param voiced
+	 *            voiced
+	 * @param htsData
+	 *            htsData
+	 * @param audioProducer
+	 *            receives the samples as they are produced, or null
+	 * @return the audio
+	 * @throws Exception
+	 *             if the bandpass strengths do not match the mixed excitation filters
+	 */
+	public double[] vocode(HTSPStream lf0Pst, HTSPStream mcepPst, HTSPStream strPst, boolean[] voiced, HMMData htsData,
+			ProducingDoubleDataSource audioProducer) throws Exception {
+		boolean mixedExcitation = htsData.getUseMixExc() && htsData.getPdfStrStream() != null;
+		if (mixedExcitation && htsData.getNumFilters() != strPst.getOrder()) {
+			throw new Exception("Error num mix-excitation filters = " + htsData.getNumFilters()
+					+ " in configuration file is different from generated str order=" + strPst.getOrder());
+		}
+		setUp(mcepPst.getOrder(), htsData.getAlpha(), htsData.getFperiod(), mixedExcitation ? htsData.getMixFilters() : null);
+		rate = htsData.getRate();
+		double alpha = htsData.getAlpha();
+		double beta = htsData.getBeta();
+
+		int numFrames = mcepPst.getT();
+		double[] f0 = HTSVocoder.getF0(lf0Pst, voiced, numFrames, htsData);
+		double[] audio = new double[numFrames * fprd];
+
+		if (numFrames > 0)
+			generateExcitation(f0[0], fprd);
+		for (int t = 0; t < numFrames; t++) {
+			/* the excitation of frame t, then of frame t+1 */
+			System.arraycopy(pulse, fprd, pulse, 0, fprd);
+			System.arraycopy(noise, fprd, noise, 0, fprd);
+			if (t + 1 < numFrames) {
+				generateExcitation(f0[t + 1], fprd);
+			} else {
+				Arrays.fill(pulse, fprd, 2 * fprd, 0.0);
+				Arrays.fill(noise, fprd, 2 * fprd, 0.0);
+			}
+
+			for (int i = 0; i < order; i++)
+				mc[i] = mcepPst.getPar(t, i);
+			if (beta > 0.0 && order > 2) {
+				computePostfilteredEnvelope(alpha, beta);
+			} else {
+				computeEnvelope(mc, envRe, envIm);
+			}
+			for (int i = 0; i < numM; i++)
+				str[i] = strPst.getPar(t, i);
+
+			filterFrame();
+
+			System.arraycopy(output, 0, audio, t * fprd, fprd);
+			if (audioProducer != null) {
+				for (int n = 0; n < fprd; n++)
+					audioProducer.putOneDataPoint(output[n]);
+			}
+			System.arraycopy(output, fprd, output, 0, fftSize - fprd);
+			Arrays.fill(output, fftSize - fprd, fftSize, 0.0);
+		}
+		logger.debug("Finish processing " + numFrames + " mcep frames.");
+		return audio;
+	}
+
+	/**
+	 * Generate the excitation of one frame into pulse and noise, from the given offset, exactly as {@link HTSVocoder} does.
+	 *
+	 * @param f0
+	 *            the F0 of the frame, or 0 if unvoiced
+	 * @param offset
+	 *            offset
+	 */
+	private void generateExcitation(double f0, int offset) {
+		double period = f0 != 0.0 ? rate / f0 : 0.0;
+		/* p1 is initialised in -1, so this will be done just for the first frame */
+		if (p1 < 0) {
+			p1 = period;
+			pc = p1;
+		}
+		double inc;
+		if (p1 != 0.0 && period != 0.0) {
+			inc = (period - p1) * (double) HTSVocoder.IPERIOD / (double) fprd;
+		} else {
+			inc = 0.0;
+			pc = period;
+			p1 = 0.0;
+		}
+		for (int j = offset; j < offset + fprd; j++) {
+			if (p1 == 0.0) {
+				pulse[j] = 0.0;
+				noise[j] = uniformRand();
+			} else {
+				if ((pc += 1.0) >= p1) {
+					pulse[j] = Math.sqrt(p1);
+					pc = pc - p1;
+				} else {
+					pulse[j] = 0.0;
+				}
+				noise[j] = numM > 0 ? uniformRand() : 0.0;
+			}
+			p1 += inc;
+		}
+		p1 = period;
+	}
+
+	private double uniformRand() {
+		return (rand.nextBoolean()) ? 1.0 : -1.0;
+	}
+
+	/**
+	 * The frequency response of the MLSA filter for a mel-cepstrum, exp(sum_m mc[m] z~^-m) with the all-pass z~^-1, at the
+	 * frequencies of the FFT bins from 0 to fftSize / 2.
+	 *
+	 * @param mc
+	 *            the mel-cepstrum, of length order
+	 * @param re
+	 *            receives the real part
+	 * @param im
+	 *            receives the imaginary part
+	 */
+	void computeEnvelope(double[] mc, double[] re, double[] im) {
+		for (int k = 0, t = 0; k < bins; k++) {
+			double logAmplitude = 0.0;
+			double phase = 0.0;
+			for (int m = 0; m < order; m++, t++) {
+				logAmplitude += mc[m] * warpedCos[t];
+				phase -= mc[m] * warpedSin[t];
+			}
+			double amplitude = Math.exp(logAmplitude);
+			re[k] = amplitude * Math.cos(phase);
+			im[k] = amplitude * Math.sin(phase);
+		}
+	}
+
+	/**
+	 * The envelope of the current frame with postfiltering as in {@link HTSVocoder#postfilter_mgc(double[], int, double, double)}:
+	 * the MLSA filter coefficients except the gain are emphasized by beta, and the gain is corrected so that the energy of the
+	 * envelope stays the same. The energies are computed from the envelopes rather than from impulse responses.
+	 *
+	 * @param alpha
+	 *            alpha
+	 * @param beta
+	 *            beta
+	 */
+	private void computePostfilteredEnvelope(double alpha, double beta) {
+		int m = order - 1;
+		HTSVocoder.mc2b(mc, b, m, alpha);
+		b[1] -= beta * alpha * mc[2];
+		for (int k = 2; k < m; k++)
+			b[k] *= (1.0 + beta);
+		HTSVocoder.b2mc(b, postfilteredMc, m, alpha);
+
+		double e1 = 0.0;
+		double e2 = 0.0;
+		for (int k = 0, t = 0; k < bins; k++) {
+			double logAmplitude = 0.0;
+			double postfilteredLogAmplitude = 0.0;
+			double phase = 0.0;
+			for (int i = 0; i < order; i++, t++) {
+				logAmplitude += mc[i] * warpedCos[t];
+				postfilteredLogAmplitude += postfilteredMc[i] * warpedCos[t];
+				phase -= postfilteredMc[i] * warpedSin[t];
+			}
+			double amplitude = Math.exp(postfilteredLogAmplitude);
+			/* the bins other than 0 and fftSize / 2 stand for two bins of the full spectrum */
+			double weight = (k == 0 || k == bins - 1) ? 1.0 : 2.0;
+			e1 += weight * Math.exp(2 * logAmplitude);
+			e2 += weight * amplitude * amplitude;
+			envRe[k] = amplitude * Math.cos(phase);
+			envIm[k] = amplitude * Math.sin(phase);
+		}
+		double gain = Math.sqrt(e1 / e2);
+		for (int k = 0; k < bins; k++) {
+			envRe[k] *= gain;
+			envIm[k] *= gain;
+		}
+	}
+
+	/**
+	 * Filter the windowed excitation in pulse and noise with the envelope and the mixed excitation filters of the current frame,
+	 * and add the result to the output.
+	 */
+	private void filterFrame() {
+		int length = 2 * fprd;
+
+		boolean hasNoise = false;
+		for (int n = 0; n < length; n++) {
+			noiseSpectrum[n] = window[n] * noise[n];
+			hasNoise |= noise[n] != 0.0;
+		}
+		if (hasNoise) {
+			Arrays.fill(noiseSpectrum, length, fftSize, 0.0);
+			fft.realTransform(noiseSpectrum, false);
+		} else {
+			Arrays.fill(noiseSpectrum, 0.0);
+		}
+
+		/* there are only a few pulses per frame, so their spectrum is computed directly */
+		Arrays.fill(pulseRe, 0.0);
+		Arrays.fill(pulseIm, 0.0);
+		for (int n = 0; n < length; n++) {
+			if (pulse[n] == 0.0)
+				continue;
+			double a = window[n] * pulse[n];
+			for (int k = 0, idx = 0; k < bins; k++) {
+				pulseRe[k] += a * cosTable[idx];
+				pulseIm[k] -= a * sinTable[idx];
+				idx += n;
+				if (idx >= fftSize)
+					idx -= fftSize;
+			}
+		}
+
+		int half = fftSize / 2;
+		for (int k = 0; k < bins; k++) {
+			double nRe, nIm;
+			if (k == 0) {
+				nRe = noiseSpectrum[0];
+				nIm = 0.0;
+			} else if (k == half) {
+				nRe = noiseSpectrum[1];
+				nIm = 0.0;
+			} else {
+				nRe = noiseSpectrum[2 * k];
+				nIm = noiseSpectrum[2 * k + 1];
+			}
+			double xRe, xIm;
+			if (numM > 0) {
+				double hpRe = 0.0, hpIm = 0.0, hnRe = 0.0, hnIm = 0.0;
+				for (int i = 0, ik = k; i < numM; i++, ik += bins) {
+					hpRe += str[i] * filterRe[ik];
+					hpIm += str[i] * filterIm[ik];
+					hnRe += (1 - str[i]) * filterRe[ik];
+					hnIm += (1 - str[i]) * filterIm[ik];
+				}
+				xRe = hpRe * pulseRe[k] - hpIm * pulseIm[k] + hnRe * nRe - hnIm * nIm;
+				xIm = hpRe * pulseIm[k] + hpIm * pulseRe[k] + hnRe * nIm + hnIm * nRe;
+			} else {
+				xRe = pulseRe[k] + nRe;
+				xIm = pulseIm[k] + nIm;
+			}
+			double yRe = xRe * envRe[k] - xIm * envIm[k];
+			double yIm = xRe * envIm[k] + xIm * envRe[k];
+			if (k == 0) {
+				frame[0] = yRe;
+			} else if (k == half) {
+				frame[1] = yRe;
+			} else {
+				frame[2 * k] = yRe;
+				frame[2 * k + 1] = yIm;
+			}
+		}
+		fft.realTransform(frame, true); /* this includes the scaling of the inverse transform */
+
+		for (int n = 0; n < fftSize; n++) {
+			output[n] += frame[n];
+		}
+	}
+
+	protected class OverlapAddDataProducer extends ProducingDoubleDataSource {
+		private static final double INITIAL_MAX_AMPLITUDE = 17000.;
+
+		private HTSParameterGeneration pdf2par;
+		private HMMData htsData;
+
+		public OverlapAddDataProducer(int audioSize, HTSParameterGeneration pdf2par, HMMData htsData) {
+			super(audioSize, new AmplitudeNormalizer(INITIAL_MAX_AMPLITUDE));
+			this.pdf2par = pdf2par;
+			this.htsData = htsData;
+		}
+
+		public void run() {
+			try {
+				vocode(pdf2par.getlf0Pst(), pdf2par.getMcepPst(), pdf2par.getStrPst(), pdf2par.getVoicedArray(), htsData, this);
+				putEndOfStream();
+			} catch (Exception e) {
+				logger.error("Cannot vocode", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Synthesis of the speech waveform from the parameters generated for an utterance. Each HMM voice uses the vocoder configured
+ * with <code>voice.(name).vocoder</code>, by default {@link HTSVocoder}. A new vocoder is created for every utterance, so an
+ * implementation can keep the state of the utterance in fields; it must have a public constructor without arguments.
+ */
+public interface Vocoder {
+
+	/**
+	 * Synthesize the speech of an utterance. The audio may be produced while it is being read.
+	 *
+	 * @param pdf2par
+	 *            the generated speech parameters
+	 * @param htsData
+	 *            the data of the voice
+	 * @return the audio, in the format of {@link HTSVocoder#getHTSAudioFormat(HMMData)}
+	 * @throws Exception
+	 *             if the parameters cannot be vocoded
+	 */
+	public AudioInputStream synthesize(HTSParameterGeneration pdf2par, HMMData htsData) throws Exception;
+}
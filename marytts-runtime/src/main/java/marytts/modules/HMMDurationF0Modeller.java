@@ -49,6 +49,7 @@ import marytts.htsengine.HTSPStream;
 import marytts.htsengine.HTSParameterGeneration;
 import marytts.htsengine.HTSUttModel;
 import marytts.modules.synthesis.Voice;
+import marytts.server.Mary;
 import marytts.util.MaryUtils;
 import marytts.util.dom.MaryDomUtils;
 import marytts.util.math.Polynomial;
@@ -102,8 +103,8 @@ public class HMMDurationF0Modeller extends InternalModule {
 			logger.info("Starting my own TargetFeatureLister");
 			targetFeatureLister = new TargetFeatureLister();
 			targetFeatureLister.startup();
-		} else if (targetFeatureLister.getState() == MaryModule.MODULE_OFFLINE) {
-			targetFeatureLister.startup();
+		} else {
+			Mary.startModule(targetFeatureLister);
 		}
 	}
 
@@ -90,8 +90,8 @@ import marytts.htsengine.HMMVoice;
 import marytts.htsengine.HTSModel;
 import marytts.htsengine.HTSParameterGeneration;
 import marytts.htsengine.HTSUttModel;
-import marytts.htsengine.HTSVocoder;
 import marytts.htsengine.HTSEngineTest.PhonemeDuration;
+import marytts.htsengine.Vocoder;
 import marytts.modules.synthesis.Voice;
 import marytts.unitselection.select.Target;
 import marytts.util.MaryUtils;
@@ -220,11 +220,11 @@ public class HTSEngine extends InternalModule {
 		/* set parameters for generation: f0Std, f0Mean and length, default values 1.0, 0.0 and 0.0 */
 		/* These values are fixed in HMMVoice */
 
-		/* Process generated parameters */
-		HTSVocoder par2speech = new HTSVocoder();
+		/* Process generated parameters with the vocoder of the voice */
+		Vocoder par2speech = hmmv.getHMMData().createVocoder();
 
 		/* Synthesize speech waveform, generate speech out of sequence of parameters */
-		AudioInputStream ais = par2speech.htsMLSAVocoder(pdf2par, hmmv.getHMMData());
+		AudioInputStream ais = par2speech.synthesize(pdf2par, hmmv.getHMMData());
 
 		MaryData output = new MaryData(getOutputType(), d.getLocale());
 		if (d.getAudioFileFormat() != null) {
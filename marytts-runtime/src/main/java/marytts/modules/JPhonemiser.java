@@ -41,6 +41,7 @@ import marytts.fst.FSTLookup;
 import marytts.modules.phonemiser.AllophoneSet;
 import marytts.modules.phonemiser.TrainedLTS;
 import marytts.server.MaryProperties;
+import marytts.server.metrics.MaryMetrics;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.dom.MaryDomUtils;
@@ -265,6 +266,7 @@ public class JPhonemiser extends InternalModule {
 		// Cannot find it in the lexicon -- apply letter-to-sound rules
 		// to the normalised form
 
+		MaryMetrics.ltsFallback(getLocale().toString());
 		String phones = lts.predictPronunciation(text);
 		try {
 			result = lts.syllabify(phones);
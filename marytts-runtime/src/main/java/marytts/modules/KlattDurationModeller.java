@@ -41,6 +41,7 @@ import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.modules.phonemiser.Allophone;
 import marytts.modules.phonemiser.AllophoneSet;
+import marytts.server.Mary;
 import marytts.server.MaryProperties;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
@@ -89,8 +90,7 @@ public class KlattDurationModeller extends InternalModule {
 		}
 		assert synthesis != null;
 
-		if (synthesis.getState() == MaryModule.MODULE_OFFLINE)
-			synthesis.startup();
+		Mary.startModule(synthesis);
 		// load klatt rules
 		klattRuleParams = new Properties();
 		klattRuleParams.load(new FileInputStream(MaryProperties.needFilename(localePrefix + ".cap.klattrulefile")));
@@ -27,6 +27,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import marytts.datatypes.MaryDataType;
 import marytts.exceptions.MaryConfigurationException;
@@ -43,16 +45,30 @@ import org.apache.logging.log4j.Logger;
  * voice. A given lookup will search for a combination of datatype, locale and voice first; if it does not find a value, it will
  * look for datatype, locale, and null; if it does notfind that, it will look for datatype, null, and null.
  *
+ * <p>
+ * Once the registration is complete, the registry does not change any more, so the chains of modules found by
+ * {@link #modulesRequiredForProcessing(MaryDataType, MaryDataType, Locale, Voice)} are remembered and shared between all
+ * requests, which can look them up concurrently without locking.
+ *
  * @author marc
  *
  */
 public class ModuleRegistry {
+	/**
+	 * The maximum number of chains of modules remembered; since the locale of a request can be anything, the number of
+	 * combinations is not bounded otherwise.
+	 */
+	private static final int MAX_CACHED_PATHS = 1000;
+
 	private static MultiKeyMap mkm;
 	private static List<MaryModule> allModules;
-	private static boolean registrationComplete;
+	private static volatile boolean registrationComplete;
 	private static Logger logger;
 
-	private static List<MaryModule> preferredModules;
+	private static volatile List<MaryModule> preferredModules;
+
+	/** The chains of modules found so far, each one unmodifiable; emptied whenever the registry changes */
+	private static final ConcurrentMap<PathKey, List<MaryModule>> paths = new ConcurrentHashMap<PathKey, List<MaryModule>>();
 
 	private ModuleRegistry() {
 	}
@@ -131,6 +147,7 @@ public class ModuleRegistry {
 		l.add(module);
 
 		allModules.add(module);
+		paths.clear();
 
 		MaryDataType.registerDataType(type);
 		MaryDataType.registerDataType(module.getOutputType());
@@ -161,24 +178,27 @@ public class ModuleRegistry {
 		// Set registration complete lockup
 		registrationComplete = true;
 		MaryDataType.setRegistrationComplete();
+		paths.clear();
 
 		// Define system preferred modules
 		List<String> preferredModulesClasses = MaryProperties.getList("modules.preferred.classes.list");
 		if ((preferredModulesClasses == null) || (preferredModulesClasses.isEmpty()))
 			return;
 
-		preferredModules = new ArrayList<MaryModule>();
+		List<MaryModule> preferred = new ArrayList<MaryModule>();
 		for (String moduleInfo : preferredModulesClasses) {
 			try {
 				MaryModule mm = null;
 				if (!moduleInfo.contains("(")) { // no constructor info
 					mm = ModuleRegistry.getModule(Class.forName(moduleInfo));
 				}
-				preferredModules.add(mm);
+				preferred.add(mm);
 			} catch (ClassNotFoundException e) {
 				logger.warn("Cannot initialise preferred module " + moduleInfo + " -- skipping.", e);
 			}
 		}
+		preferredModules = Collections.unmodifiableList(preferred);
+		paths.clear();
 	}
 
 	// ////////////////////////////////////////////////////////////////
@@ -192,10 +212,12 @@ public class ModuleRegistry {
 	 *            the specified input type
 	 * @return the list of system wide preferred modules, null if none
 	 */
-	public static synchronized List<MaryModule> getPreferredModulesForInputType(MaryDataType wanted_input_type) {
-		if (preferredModules != null) {
+	public static List<MaryModule> getPreferredModulesForInputType(MaryDataType wanted_input_type) {
+		// the list is never modified once it has been set, so no locking is needed:
+		List<MaryModule> preferred = preferredModules;
+		if (preferred != null) {
 			List<MaryModule> v = new ArrayList<MaryModule>();
-			for (Iterator<MaryModule> it = preferredModules.iterator(); it.hasNext();) {
+			for (Iterator<MaryModule> it = preferred.iterator(); it.hasNext();) {
 				MaryModule m = (MaryModule) it.next();
 				if (m.getInputType().equals(wanted_input_type)) {
 					v.add(m);
@@ -269,7 +291,8 @@ public class ModuleRegistry {
 
 	/**
 	 * A method for determining the list of modules required to transform the given source data type into the requested target
-	 * data type. If the voice given is not null, any preferred modules it may have are taken into account.
+	 * data type. If the voice given is not null, any preferred modules it may have are taken into account. The chain is looked up
+	 * only once for each combination of data types, locale and voice; the list returned is a copy which the caller may modify.
 	 *
 	 * @param sourceType
 	 *            sourceType
@@ -295,9 +318,22 @@ public class ModuleRegistry {
 			throw new NullPointerException("Received null target type");
 		// if (locale == null)
 		// throw new NullPointerException("Received null locale");
-		LinkedList<MaryDataType> seenTypes = new LinkedList<MaryDataType>();
-		seenTypes.add(sourceType);
-		return modulesRequiredForProcessing(sourceType, targetType, locale, voice, seenTypes);
+		PathKey key = new PathKey(sourceType, targetType, locale, voice);
+		List<MaryModule> path = paths.get(key);
+		if (path == null) {
+			LinkedList<MaryDataType> seenTypes = new LinkedList<MaryDataType>();
+			seenTypes.add(sourceType);
+			LinkedList<MaryModule> found = modulesRequiredForProcessing(sourceType, targetType, locale, voice, seenTypes);
+			if (found == null) {
+				// not remembered: a failure is an error of the request, which need not be fast
+				return null;
+			}
+			path = Collections.unmodifiableList(new ArrayList<MaryModule>(found));
+			if (paths.size() < MAX_CACHED_PATHS) {
+				paths.putIfAbsent(key, path);
+			}
+		}
+		return new LinkedList<MaryModule>(path);
 	}
 
 	/**
@@ -416,4 +452,41 @@ public class ModuleRegistry {
 		return returnList;
 	}
 
+	/**
+	 * The combination of data types, locale and voice for which a chain of modules was looked up.
+	 */
+	private static final class PathKey {
+		private final MaryDataType sourceType;
+		private final MaryDataType targetType;
+		private final Locale locale;
+		private final Voice voice;
+		private final int hash;
+
+		PathKey(MaryDataType sourceType, MaryDataType targetType, Locale locale, Voice voice) {
+			this.sourceType = sourceType;
+			this.targetType = targetType;
+			this.locale = locale;
+			this.voice = voice;
+			int h = sourceType.hashCode();
+			h = 31 * h + targetType.hashCode();
+			h = 31 * h + (locale != null ? locale.hashCode() : 0);
+			h = 31 * h + (voice != null ? voice.hashCode() : 0);
+			this.hash = h;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof PathKey)) {
+				return false;
+			}
+			PathKey other = (PathKey) o;
+			return sourceType == other.sourceType && targetType == other.targetType && voice == other.voice
+					&& (locale == null ? other.locale == null : locale.equals(other.locale));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
 }
@@ -29,6 +29,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
@@ -46,13 +48,17 @@ import org.w3c.dom.traversal.TreeWalker;
 
 /**
  * Part-of-speech tagger using OpenNLP.
+ * <p>
+ * <code>POSTaggerME</code> is not thread-safe, but the <code>POSModel</code> it uses is. This module therefore loads the model
+ * once and keeps a pool of taggers sharing it; a request borrows one tagger for all sentences of its document. The pool size can
+ * be set with the property <code>&lt;propertyPrefix&gt;.poolsize</code>; it defaults to the number of available processors.
  *
  * @author Marc Schr&ouml;der
  */
 
 public class OpenNLPPosTagger extends InternalModule {
 	private String propertyPrefix;
-	private POSTaggerME tagger;
+	private BlockingQueue<POSTaggerME> taggers;
 	private Map<String, String> posMapper = null;
 
 	/**
@@ -79,8 +85,17 @@ public class OpenNLPPosTagger extends InternalModule {
 		InputStream modelStream = MaryProperties.needStream(propertyPrefix + "model");
 		InputStream posMapperStream = MaryProperties.getStream(propertyPrefix + "posMap");
 
-		tagger = new POSTaggerME(new POSModel(modelStream));
+		POSModel model = new POSModel(modelStream);
 		modelStream.close();
+		int poolSize = MaryProperties.getInteger(propertyPrefix + "poolsize", Runtime.getRuntime().availableProcessors());
+		if (poolSize < 1) {
+			poolSize = 1;
+		}
+		taggers = new ArrayBlockingQueue<POSTaggerME>(poolSize);
+		for (int i = 0; i < poolSize; i++) {
+			taggers.add(new POSTaggerME(model));
+		}
+		logger.debug("Created pool of " + poolSize + " taggers");
 		if (posMapperStream != null) {
 			posMapper = new HashMap<String, String>();
 			BufferedReader br = new BufferedReader(new InputStreamReader(posMapperStream, "UTF-8"));
@@ -99,10 +114,12 @@ public class OpenNLPPosTagger extends InternalModule {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	public MaryData process(MaryData d) throws Exception {
 
 		Document doc = d.getDocument();
+		// Collect the tokens of all sentences first, so that they can be tagged in one go with a single borrowed tagger
+		List<Element> sentences = new ArrayList<Element>();
+		List<String[]> sentenceTokens = new ArrayList<String[]>();
 		NodeIterator sentenceIt = MaryDomUtils.createNodeIterator(doc, doc, MaryXML.SENTENCE);
 		Element sentence;
 		while ((sentence = (Element) sentenceIt.nextNode()) != null) {
@@ -115,14 +132,17 @@ public class OpenNLPPosTagger extends InternalModule {
 			if (tokens.size() == 1) {
 				tokens.add(".");
 			}
-			List<String> partsOfSpeech = null;
-			synchronized (this) {
-				// Tagger expects an array, not a list!  TODO: consider
-				String[] res = tagger.tag(tokens.toArray(new String[tokens.size()]));
-				partsOfSpeech = Arrays.asList(res);
-			}
-			tokenIt.setCurrentNode(sentence); // reset treewalker so we can walk through once again
-			Iterator<String> posIt = partsOfSpeech.iterator();
+			sentences.add(sentence);
+			// Tagger expects an array, not a list!
+			sentenceTokens.add(tokens.toArray(new String[tokens.size()]));
+		}
+
+		List<String[]> sentencePartsOfSpeech = tag(sentenceTokens);
+
+		for (int i = 0; i < sentences.size(); i++) {
+			TreeWalker tokenIt = MaryDomUtils.createTreeWalker(sentences.get(i), MaryXML.TOKEN);
+			Iterator<String> posIt = Arrays.asList(sentencePartsOfSpeech.get(i)).iterator();
+			Element t;
 			while ((t = (Element) tokenIt.nextNode()) != null) {
 				assert posIt.hasNext();
 				String pos = posIt.next();
@@ -145,4 +165,30 @@ public class OpenNLPPosTagger extends InternalModule {
 		return output;
 	}
 
+	/**
+	 * Tag a batch of sentences, using one tagger from the pool for the whole batch. If all taggers are in use, this waits until
+	 * one is returned to the pool.
+	 *
+	 * @param sentences
+	 *            the tokens of each sentence
+	 * @return the parts of speech of each sentence, in the same order
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a free tagger
+	 */
+	public List<String[]> tag(List<String[]> sentences) throws InterruptedException {
+		List<String[]> result = new ArrayList<String[]>(sentences.size());
+		if (sentences.isEmpty()) {
+			return result;
+		}
+		POSTaggerME tagger = taggers.take();
+		try {
+			for (String[] tokens : sentences) {
+				result.add(tagger.tag(tokens));
+			}
+		} finally {
+			taggers.add(tagger);
+		}
+		return result;
+	}
+
 }
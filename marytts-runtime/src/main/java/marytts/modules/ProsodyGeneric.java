@@ -25,17 +25,16 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -44,6 +43,7 @@ import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.MaryConfigurationException;
 import marytts.exceptions.NoSuchPropertyException;
+import marytts.modules.prosody.ProsodyRuleSet;
 import marytts.server.MaryProperties;
 import marytts.util.dom.DomUtils;
 import marytts.util.dom.MaryDomUtils;
@@ -51,7 +51,6 @@ import marytts.util.dom.NameNodeFilter;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.traversal.DocumentTraversal;
@@ -76,11 +75,14 @@ public class ProsodyGeneric extends InternalModule {
 	// and and a number which reflects the probability for their accentuation) specified in maryrc file
 	protected String accentPriorities;
 	protected Properties priorities;
+	// the same priorities, parsed once at startup; read-only afterwards
+	protected Map<String, Integer> priorityMap = Collections.emptyMap();
 
 	protected String tobiPredFilename; // xml rule file for prosody prediction
-	protected HashMap<String, Element> tobiPredMap = new HashMap<String, Element>(); // map that will be filled with the rules
-	protected HashMap<String, Object> listMap = new HashMap<String, Object>(); // map that will contain the lists defined in the
-																				// xml rule file
+	// the precompiled rules; immutable, and therefore shared by all request threads without locking
+	protected ProsodyRuleSet tobiPredRules;
+	// map that will contain the lists defined in the xml rule file; read-only after startup
+	protected Map<String, Object> listMap = Collections.emptyMap();
 	private boolean convertToBI2Contour;
 	protected HashMap<String, String> toBI2ContourMap;
 
@@ -133,6 +135,15 @@ public class ProsodyGeneric extends InternalModule {
 				accentStream.close();
 			}
 		}
+		HashMap<String, Integer> prio = new HashMap<String, Integer>();
+		for (String pos : priorities.stringPropertyNames()) {
+			try {
+				prio.put(pos, Integer.valueOf(priorities.getProperty(pos)));
+			} catch (NumberFormatException e) {
+				// invalid entries are treated as missing entries
+			}
+		}
+		priorityMap = Collections.unmodifiableMap(prio);
 
 		if (syllableAccents != null) {
 			accentedSyllables = MaryProperties.getBoolean(syllableAccents);
@@ -170,50 +181,21 @@ public class ProsodyGeneric extends InternalModule {
 		super.startup();
 	}
 
-	protected synchronized void loadTobiPredRules() throws FactoryConfigurationError, ParserConfigurationException,
+	protected void loadTobiPredRules() throws FactoryConfigurationError, ParserConfigurationException,
 			org.xml.sax.SAXException, IOException, NoSuchPropertyException, MaryConfigurationException {
-		// parsing the xml rule file
-		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
-		f.setValidating(false);
-		DocumentBuilder b = f.newDocumentBuilder();
+		// parsing the xml rule file and compiling it into an immutable rule set
 		InputStream tobiruleStream = MaryProperties.needStream(tobiPredFilename);
-		Document tobiPredRules = null;
 		try {
-			tobiPredRules = b.parse(tobiruleStream);
+			tobiPredRules = ProsodyRuleSet.parse(tobiruleStream);
 		} finally {
 			tobiruleStream.close();
 		}
-
-		Element root = tobiPredRules.getDocumentElement();
-		for (Element e = MaryDomUtils.getFirstChildElement(root); e != null; e = MaryDomUtils.getNextSiblingElement(e)) { // HashMap
-																															// with
-																															// 4
-																															// entries
-			if (e.getTagName().equals("definitions")) { // list defintions
-				tobiPredMap.put("definitions", e);
-			}
-			if (e.getTagName().equals("accentposition")) { // these rules determine which words receive accents
-				tobiPredMap.put("accentposition", e);
-			}
-			if (e.getTagName().equals("accentshape")) { // these rules determine which type of accent a word receives
-				tobiPredMap.put("accentshape", e);
-			}
-			if (e.getTagName().equals("boundaries")) { // these rules determine locatian and type of boundaries
-				tobiPredMap.put("boundaries", e);
-			}
-		}
 	}
 
-	protected synchronized void buildListMap() throws IOException {
-		Element listDefinitions = null;
-		listDefinitions = (Element) tobiPredMap.get("definitions");
-
-		// search for entries with tag "list"
-		TreeWalker tw = ((DocumentTraversal) listDefinitions.getOwnerDocument()).createTreeWalker(listDefinitions,
-				NodeFilter.SHOW_ELEMENT, new NameNodeFilter(new String[] { "list" }), false);
-
-		Element list = null;
-		while ((list = (Element) tw.nextNode()) != null) {
+	protected void buildListMap() throws IOException {
+		HashMap<String, Object> lists = new HashMap<String, Object>();
+		// the entries with tag "list"
+		for (ProsodyRuleSet.RulePart list : tobiPredRules.getListDefinitions()) {
 			String name = list.getAttribute("name"); // list name
 			if (list.hasAttribute("items")) { // list is defined in the xml file (no external list)
 				String items = list.getAttribute("items");
@@ -228,14 +210,15 @@ public class ProsodyGeneric extends InternalModule {
 				while (st.hasMoreTokens()) {
 					itemSet.add(st.nextToken());
 				}
-				listMap.put(name, itemSet); // put the set on the map
+				lists.put(name, Collections.unmodifiableSet(itemSet)); // put the set on the map
 			}
 
 			if (list.hasAttribute("file")) { // external list definition
 				String fileName = list.getAttribute("file");
-				listMap.put(name, readListFromResource(fileName));
+				lists.put(name, readListFromResource(fileName));
 			}
 		}
+		listMap = Collections.unmodifiableMap(lists);
 	}
 
 	/**
@@ -594,16 +577,14 @@ public class ProsodyGeneric extends InternalModule {
 						int priorBestCandidate = -1;
 						// search for pos in accentPriorities property list
 						// first check priority for current token
-						String posCurrentToken = token.getAttribute("pos");
-						try {
-							priorToken = Integer.parseInt(priorities.getProperty(posCurrentToken));
-						} catch (NumberFormatException e) {
+						Integer prio = priorityMap.get(token.getAttribute("pos"));
+						if (prio != null) {
+							priorToken = prio;
 						}
 						// now check priority for bestCandidate
-						String posBestCandidate = bestCandidate.getAttribute("pos");
-						try {
-							priorBestCandidate = Integer.parseInt(priorities.getProperty(posBestCandidate));
-						} catch (NumberFormatException e) {
+						prio = priorityMap.get(bestCandidate.getAttribute("pos"));
+						if (prio != null) {
+							priorBestCandidate = prio;
 						}
 						// if the current token has higher priority than the best candidate,
 						// current token becomes the best candidate for accentuation
@@ -836,53 +817,24 @@ public class ProsodyGeneric extends InternalModule {
 	 *            (end of vorfeld or end of paragraph)
 	 */
 
-	protected synchronized void getAccentPosition(Element token, NodeList tokens, int position, String sentenceType,
+	protected void getAccentPosition(Element token, NodeList tokens, int position, String sentenceType,
 			String specialPositionType) {
 
 		String tokenText = MaryDomUtils.tokenText(token); // text of current token
 
-		Element ruleList = null;
 		// only the "accentposition" rules are relevant
-		ruleList = (Element) tobiPredMap.get("accentposition");
-		// search for concrete rules, with tag "rule"
-		TreeWalker tw = ((DocumentTraversal) ruleList.getOwnerDocument()).createTreeWalker(ruleList, NodeFilter.SHOW_ELEMENT,
-				new NameNodeFilter(new String[] { "rule" }), false);
-
-		boolean rule_fired = false;
-		String accent = ""; // default
-		Element rule = null;
-
 		// search for appropriate rules; the top rule has highest prority
 		// if a rule fires (that is: all the conditions are fulfilled),
 		// the accent value("tone","force" or "") is assigned and the loop stops
 		// if no rule is found, the accent value is ""
-
-		while (!rule_fired && (rule = (Element) tw.nextNode()) != null) {
-			// rule = the whole rule
-			// currentRulePart = part of the rule (type of condition (f.e. attributes pos="NN") or action)
-			Element currentRulePart = DomUtils.getFirstChildElement(rule);
-
-			while (!rule_fired && currentRulePart != null) {
-
-				boolean conditionSatisfied = false;
-
-				// if rule part with tag "action": accent assignment
-				if (currentRulePart.getTagName().equals("action")) {
-					accent = currentRulePart.getAttribute("accent");
-					token.setAttribute("accent", accent);
-					rule_fired = true;
-					break;
-				}
-				// check if the condition is satisfied
-				conditionSatisfied = checkRulePart(currentRulePart, token, tokens, position, sentenceType, specialPositionType,
-						tokenText);
-				if (!conditionSatisfied)
-					break; // condition violated, try next rule
-
-				// the previous conditions are satisfied --> check the next rule part
-				currentRulePart = DomUtils.getNextSiblingElement(currentRulePart);
-			} // while loop that checks the rule parts
-		} // while loop that checks the whole rule
+		for (ProsodyRuleSet.Rule rule : tobiPredRules.getAccentPositionRules()) {
+			if (ruleFires(rule, token, tokens, position, sentenceType, specialPositionType, null, tokenText)) {
+				// rule part with tag "action": accent assignment
+				String accent = rule.getAction().getAttribute("accent");
+				token.setAttribute("accent", accent);
+				break;
+			}
+		}
 	}
 
 	/**
@@ -904,7 +856,7 @@ public class ProsodyGeneric extends InternalModule {
 	 * @return nucleusAssigned
 	 */
 
-	protected synchronized boolean getAccentShape(Element token, NodeList tokens, int position, String sentenceType,
+	protected boolean getAccentShape(Element token, NodeList tokens, int position, String sentenceType,
 			String specialPositionType, boolean nucleusAssigned) {
 		String tokenText = MaryDomUtils.tokenText(token); // text of current token
 
@@ -922,57 +874,22 @@ public class ProsodyGeneric extends InternalModule {
 		} else
 			prosodicPositionType = "prenuclear"; // nucleus is assigned --> prenuclear
 
-		Element ruleList = null;
 		// only the "accentshape" rules are relevant
-		ruleList = (Element) tobiPredMap.get("accentshape");
-		// search for concrete rules (search for tag "rule")
-		TreeWalker tw = ((DocumentTraversal) ruleList.getOwnerDocument()).createTreeWalker(ruleList, NodeFilter.SHOW_ELEMENT,
-				new NameNodeFilter(new String[] { "rule" }), false);
-
-		boolean rule_fired = false;
-		String accent = "";
-		Element rule = null;
-
 		// search for appropriate rules; the top rule has highest prority
 		// if a rule fires (that is: all the conditions are fulfilled), the accent type (f.e. "L+H*") is assigned and the loop
 		// stops
 		// if no rule is found, the accent value is ""
-		while (!rule_fired && (rule = (Element) tw.nextNode()) != null) {
-			// rule = the whole rule
-			// currentRulePart = part of the rule (type of condition (f.e. attributes pos="NN") or action)
-			Element currentRulePart = DomUtils.getFirstChildElement(rule);
-
-			while (!rule_fired && currentRulePart != null) {
-				boolean conditionSatisfied = false;
-
-				// if rule part with tag "action": accent type assignment
-				if (currentRulePart.getTagName().equals("action")) {
-					accent = currentRulePart.getAttribute("accent");
-					token.setAttribute("accent", accent);
-					rule_fired = true;
-					if (!nucleusAssigned && !accent.equals("*")) {
-						nucleusAssigned = true;
-					}
-					break;
-				}
-				// check if the condition is satisfied
-				// special case: prosodic position (only in the accentshape rule part)
-				// values: prenuclear,nuclearParagraphFinal,nuclearNonParagraphFinal,postnuclear
-				if (currentRulePart.getTagName().equals("prosodicPosition")) {
-					if (!checkProsodicPosition(currentRulePart, prosodicPositionType)) {
-						break;
-					}
+		for (ProsodyRuleSet.Rule rule : tobiPredRules.getAccentShapeRules()) {
+			if (ruleFires(rule, token, tokens, position, sentenceType, specialPositionType, prosodicPositionType, tokenText)) {
+				// rule part with tag "action": accent type assignment
+				String accent = rule.getAction().getAttribute("accent");
+				token.setAttribute("accent", accent);
+				if (!nucleusAssigned && !accent.equals("*")) {
+					nucleusAssigned = true;
 				}
-				// the usual check
-				conditionSatisfied = checkRulePart(currentRulePart, token, tokens, position, sentenceType, specialPositionType,
-						tokenText);
-				if (!conditionSatisfied)
-					break; // condition violated, try next rule
-
-				// the previous conditions are satisfied --> check the next rule part
-				currentRulePart = DomUtils.getNextSiblingElement(currentRulePart);
-			}// while loop that checks the rule parts
-		} // while loop that checks the whole rule
+				break;
+			}
+		}
 		return nucleusAssigned;
 	}
 
@@ -997,70 +914,82 @@ public class ProsodyGeneric extends InternalModule {
 	 * @return firstTokenInPhrase (if a boundary was inserted, firstTokenInPhrase gets null)
 	 */
 
-	protected synchronized Element getBoundary(Element token, NodeList tokens, int position, String sentenceType,
+	protected Element getBoundary(Element token, NodeList tokens, int position, String sentenceType,
 			String specialPositionType, boolean invalidXML, Element firstTokenInPhrase) {
 		String tokenText = MaryDomUtils.tokenText(token); // text of current token
 
-		Element ruleList = null;
 		// only the "boundaries" rules are relevant
-		ruleList = (Element) tobiPredMap.get("boundaries");
-		// search for concrete rules (search for tag "rule")
-		TreeWalker tw = ((DocumentTraversal) ruleList.getOwnerDocument()).createTreeWalker(ruleList, NodeFilter.SHOW_ELEMENT,
-				new NameNodeFilter(new String[] { "rule" }), false);
-
-		boolean rule_fired = false;
-		Element rule = null;
-
 		// search for appropriate rules; the top rule has highest prority
 		// if a rule fires (that is: all the conditions are fulfilled), the boundary is inserted and the loop stops
-		while (!rule_fired && (rule = (Element) tw.nextNode()) != null) {
-			// rule = the whole rule
-			// currentRulePart = part of the rule (condition or action)
-			Element currentRulePart = DomUtils.getFirstChildElement(rule);
-
-			while (!rule_fired && currentRulePart != null) {
-				boolean conditionSatisfied = false;
-
-				// if rule part with tag "action": boundary insertion
-				if (currentRulePart.getTagName().equals("action")) {
-					int bi = Integer.parseInt(currentRulePart.getAttribute("bi"));
-					if (bi == 0) {
-						// no boundary insertion
-					} else if (currentRulePart.hasAttribute("tone")) {
-						String tone = currentRulePart.getAttribute("tone");
-						if (tone.endsWith("%")) {
-							if (!invalidXML) {
-								Element boundary = insertMajorBoundary(tokens, position, firstTokenInPhrase, tone, bi);
-								if (boundary != null)
-									firstTokenInPhrase = null;
-							}
-						} else if (tone.endsWith("-")) {
-							insertBoundary(token, tone, bi);
-						} else
-							insertBoundary(token, null, bi);
+		for (ProsodyRuleSet.Rule rule : tobiPredRules.getBoundaryRules()) {
+			if (ruleFires(rule, token, tokens, position, sentenceType, specialPositionType, null, tokenText)) {
+				// rule part with tag "action": boundary insertion
+				ProsodyRuleSet.RulePart action = rule.getAction();
+				int bi = Integer.parseInt(action.getAttribute("bi"));
+				if (bi == 0) {
+					// no boundary insertion
+				} else if (action.hasAttribute("tone")) {
+					String tone = action.getAttribute("tone");
+					if (tone.endsWith("%")) {
+						if (!invalidXML) {
+							Element boundary = insertMajorBoundary(tokens, position, firstTokenInPhrase, tone, bi);
+							if (boundary != null)
+								firstTokenInPhrase = null;
+						}
+					} else if (tone.endsWith("-")) {
+						insertBoundary(token, tone, bi);
 					} else
 						insertBoundary(token, null, bi);
-					rule_fired = true;
-					break;
-				}
-
-				// check if the condition is satisfied
-				conditionSatisfied = checkRulePart(currentRulePart, token, tokens, position, sentenceType, specialPositionType,
-						tokenText);
-				if (!conditionSatisfied)
-					break; // condition violated, try next rule
-
-				// the previous conditions are satisfied --> check the next rule part
-				currentRulePart = DomUtils.getNextSiblingElement(currentRulePart);
-			}// while loop that checks the rule parts
-		} // while loop that checks the whole rule
+				} else
+					insertBoundary(token, null, bi);
+				break;
+			}
+		}
 		return firstTokenInPhrase;
 	}
 
-	protected static final Pattern nextPlusXTextPattern = Pattern.compile("nextPlus[0-9]+Text");
-	protected static final Pattern previousMinusXTextPattern = Pattern.compile("previousMinus[0-9]+Text");
-	protected static final Pattern nextPlusXAttributesPattern = Pattern.compile("nextPlus[0-9]+Attributes");
-	protected static final Pattern previousMinusXAttributesPattern = Pattern.compile("previousMinus[0-9]+Attributes");
+	/**
+	 * checks whether all conditions of a rule are satisfied for the current token; rules without an action never fire.
+	 *
+	 * @param rule
+	 *            the rule to check
+	 * @param token
+	 *            (current token)
+	 * @param tokens
+	 *            (list of all tokens in sentence)
+	 * @param position
+	 *            (position in token list)
+	 * @param sentenceType
+	 *            (declarative, exclamative or interrogative)
+	 * @param specialPositionType
+	 *            (special position in sentence(end of vorfeld) or text(end of paragraph))
+	 * @param prosodicPositionType
+	 *            (prenuclear, nuclear or postnuclear) for accentshape rules; null if prosodicPosition conditions are not
+	 *            applicable
+	 * @param tokenText
+	 *            (text of token)
+	 * @return true if the rule fires
+	 */
+	protected boolean ruleFires(ProsodyRuleSet.Rule rule, Element token, NodeList tokens, int position, String sentenceType,
+			String specialPositionType, String prosodicPositionType, String tokenText) {
+		if (rule.getAction() == null) {
+			return false;
+		}
+		for (ProsodyRuleSet.RulePart currentRulePart : rule.getConditions()) {
+			// special case: prosodic position (only in the accentshape rule part)
+			// values: prenuclear,nuclearParagraphFinal,nuclearNonParagraphFinal,postnuclear
+			if (prosodicPositionType != null && currentRulePart.getTagName().equals("prosodicPosition")) {
+				if (!checkProsodicPosition(currentRulePart, prosodicPositionType)) {
+					return false;
+				}
+			}
+			// the usual check
+			if (!checkRulePart(currentRulePart, token, tokens, position, sentenceType, specialPositionType, tokenText)) {
+				return false; // condition violated, try next rule
+			}
+		}
+		return true;
+	}
 
 	/**
 	 * checks condition of a rule part, f.e. attributes pos="NN"
@@ -1081,7 +1010,7 @@ public class ProsodyGeneric extends InternalModule {
 	 *            (text of token)
 	 * @return true if condition is satisfied
 	 */
-	protected boolean checkRulePart(Element currentRulePart, Element token, NodeList tokens, int position, String sentenceType,
+	protected boolean checkRulePart(ProsodyRuleSet.RulePart currentRulePart, Element token, NodeList tokens, int position, String sentenceType,
 			String specialPositionType, String tokenText) {
 		String currentRulePartTagName = currentRulePart.getTagName();
 		// if rule part with tag text and attribute word, check if text of token equals text in rule
@@ -1089,11 +1018,8 @@ public class ProsodyGeneric extends InternalModule {
 			return checkText(currentRulePart, tokenText);
 		}
 		// text of following+X token or preceding-X token
-		else if (currentRulePart.hasAttribute("word")
-				&& (currentRulePartTagName.equals("nextText") || nextPlusXTextPattern.matcher(currentRulePartTagName).find()
-						|| currentRulePartTagName.equals("previousText") || previousMinusXTextPattern.matcher(
-						currentRulePartTagName).find())) {
-			return checkTextOfOtherToken(currentRulePartTagName, currentRulePart, position, tokens);
+		else if (currentRulePart.hasAttribute("word") && currentRulePart.isTextOfOtherToken()) {
+			return checkTextOfOtherToken(currentRulePart, position, tokens);
 		}
 		// check number of following tokens
 		else if (currentRulePartTagName.equals("folTokens") && currentRulePart.hasAttribute("num")) {
@@ -1126,11 +1052,8 @@ public class ProsodyGeneric extends InternalModule {
 		}
 		// if rule part with tag nextPlusXAttributes or previousMinusXAttributes
 		// --> check the MaryXML attribute values of the corresponding token
-		else if (currentRulePartTagName.equals("nextAttributes")
-				|| nextPlusXAttributesPattern.matcher(currentRulePart.getTagName()).find()
-				|| currentRulePartTagName.equals("previousAttributes")
-				|| previousMinusXAttributesPattern.matcher(currentRulePart.getTagName()).find()) {
-			return checkAttributesOfOtherToken(currentRulePart.getTagName(), currentRulePart, position, tokens);
+		else if (currentRulePart.isAttributesOfOtherToken()) {
+			return checkAttributesOfOtherToken(currentRulePart, position, tokens);
 		} else {
 			// unknown rules always match
 			return true;
@@ -1147,14 +1070,11 @@ public class ProsodyGeneric extends InternalModule {
 	 *            tokenText
 	 * @return checkList(currentVal, tokenText)
 	 */
-	protected boolean checkText(Element currentRulePart, String tokenText) {
-
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
+	protected boolean checkText(ProsodyRuleSet.RulePart currentRulePart, String tokenText) {
 
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("word")) { // there is only the "word" attribute right now
 				if (!currentVal.startsWith("INLIST") && !currentVal.startsWith("INFSTLIST") && !currentVal.startsWith("!INLIST")
@@ -1178,8 +1098,6 @@ public class ProsodyGeneric extends InternalModule {
 	 * checks rule part with tag "nextText","previousText","nextPlusXText" or "previousMinusXText"; there is only the "word"
 	 * attribute right now: checks if text of a token is the same as the value of the word attribute in the rule
 	 *
-	 * @param tag
-	 *            tag
 	 * @param currentRulePart
 	 *            currentRulePart
 	 * @param position
@@ -1188,38 +1106,9 @@ public class ProsodyGeneric extends InternalModule {
 	 *            tokens
 	 * @return checkText(currentRulePart, otherTokenText)
 	 */
-	protected boolean checkTextOfOtherToken(String tag, Element currentRulePart, int position, NodeList tokens) {
-
-		Element otherToken = null;
-
-		if (tag.equals("nextText")) { // text of next token
-			if (position < tokens.getLength() - 1) {
-				otherToken = (Element) tokens.item(position + 1);
-			}
-		}
-
-		if (nextPlusXTextPattern.matcher(tag).find()) { // text of some other token following the next token
-			String tempString = tag.replaceAll("nextPlus", "");
-			String newString = tempString.replaceAll("Text", "");
-			int num = Integer.parseInt(newString);
-			if (position < tokens.getLength() - (num + 1))
-				otherToken = (Element) tokens.item(position + 1 + num);
-		}
-
-		if (tag.equals("previousText")) { // text of previous token
-			if (position > 0)
-				otherToken = (Element) tokens.item(position - 1);
-		}
-
-		if (previousMinusXTextPattern.matcher(tag).find()) { // text of some other token preceding the previous token
-			String tempString = tag.replaceAll("previousMinus", "");
-			String newString = tempString.replaceAll("Text", "");
-			int num = Integer.parseInt(newString);
-
-			if (position > num)
-				otherToken = (Element) tokens.item(position - (num + 1));
-		}
-
+	protected boolean checkTextOfOtherToken(ProsodyRuleSet.RulePart currentRulePart, int position, NodeList tokens) {
+		// the position of the other token relative to the current one is precompiled from the tag name
+		Element otherToken = getOtherToken(currentRulePart, position, tokens);
 		if (otherToken == null)
 			return false;
 		String otherTokenText = MaryDomUtils.tokenText(otherToken);
@@ -1239,14 +1128,11 @@ public class ProsodyGeneric extends InternalModule {
 	 *            tokens
 	 * @return true if everything is fine
 	 */
-	protected boolean checkFolTokens(Element currentRulePart, int position, NodeList tokens) {
+	protected boolean checkFolTokens(ProsodyRuleSet.RulePart currentRulePart, int position, NodeList tokens) {
 
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
-
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("num")) { // there is only the "num" attribute right now
 				int num = Integer.parseInt(currentVal.substring(0, 1));
@@ -1280,14 +1166,11 @@ public class ProsodyGeneric extends InternalModule {
 	 *            tokens
 	 * @return true if everything passes
 	 */
-	protected boolean checkPrevTokens(Element currentRulePart, int position, NodeList tokens) {
-
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
+	protected boolean checkPrevTokens(ProsodyRuleSet.RulePart currentRulePart, int position, NodeList tokens) {
 
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("num")) { // there is only the "num" attribute right now
 				int num = Integer.parseInt(currentVal.substring(0, 1));
@@ -1322,14 +1205,11 @@ public class ProsodyGeneric extends InternalModule {
 	 *            tokens
 	 * @return true if everything passes
 	 */
-	protected boolean checkFolWords(Element currentRulePart, int position, NodeList tokens) {
-
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
+	protected boolean checkFolWords(ProsodyRuleSet.RulePart currentRulePart, int position, NodeList tokens) {
 
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("num")) { // there is only the "num" attribute right now
 				int requiredNum = Integer.parseInt(currentVal.substring(0, 1));
@@ -1366,14 +1246,11 @@ public class ProsodyGeneric extends InternalModule {
 	 *            tokens
 	 * @return true if everything passes
 	 */
-	protected boolean checkPrevWords(Element currentRulePart, int position, NodeList tokens) {
+	protected boolean checkPrevWords(ProsodyRuleSet.RulePart currentRulePart, int position, NodeList tokens) {
 
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
-
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("num")) { // there is only the "num" attribute right now
 				int requiredNum = Integer.parseInt(currentVal.substring(0, 1));
@@ -1407,13 +1284,10 @@ public class ProsodyGeneric extends InternalModule {
 	 *            sentenceType
 	 * @return true if everything passes
 	 */
-	protected boolean checkSentence(Element currentRulePart, String sentenceType) {
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
-
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+	protected boolean checkSentence(ProsodyRuleSet.RulePart currentRulePart, String sentenceType) {
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("type")) { // there is only the "type" attribute right now
 				if (!currentVal.startsWith("!")) { // no negation
@@ -1439,13 +1313,10 @@ public class ProsodyGeneric extends InternalModule {
 	 *            specialPositionType
 	 * @return true if everything passes
 	 */
-	protected boolean checkSpecialPosition(Element currentRulePart, String specialPositionType) {
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
-
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+	protected boolean checkSpecialPosition(ProsodyRuleSet.RulePart currentRulePart, String specialPositionType) {
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("type")) { // there is only the "type" attribute right now
 				if (!currentVal.startsWith("!")) { // no negation
@@ -1472,13 +1343,10 @@ public class ProsodyGeneric extends InternalModule {
 	 *            prosodicPositionType
 	 * @return true if everything passes
 	 */
-	protected boolean checkProsodicPosition(Element currentRulePart, String prosodicPositionType) {
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
-
-		for (int z = 0; z < attNodes.getLength(); z++) {
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+	protected boolean checkProsodicPosition(ProsodyRuleSet.RulePart currentRulePart, String prosodicPositionType) {
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) {
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			if (currentAtt.equals("type")) { // there is only the "type" attribute right now
 				if (!currentVal.startsWith("!")) { // no negation
@@ -1504,17 +1372,14 @@ public class ProsodyGeneric extends InternalModule {
 	 *            token
 	 * @return checkList(currentVal, token.getAttribute(currentAtt))
 	 */
-	protected boolean checkAttributes(Element currentRulePart, Element token) {
-
-		NamedNodeMap attNodes = currentRulePart.getAttributes();
+	protected boolean checkAttributes(ProsodyRuleSet.RulePart currentRulePart, Element token) {
 
 		if (token == null)
 			return false; // token doesn't exist
 
-		for (int z = 0; z < attNodes.getLength(); z++) { // loop over MaryXML attributes in rule part
-			Node el = attNodes.item(z);
-			String currentAtt = el.getNodeName();
-			String currentVal = el.getNodeValue();
+		for (int z = 0; z < currentRulePart.getAttributeCount(); z++) { // loop over MaryXML attributes in rule part
+			String currentAtt = currentRulePart.getAttributeName(z);
+			String currentVal = currentRulePart.getAttributeValue(z);
 
 			// first the special cases
 			if (!token.hasAttribute(currentAtt)) { // token doesn't have attribute
@@ -1557,8 +1422,6 @@ public class ProsodyGeneric extends InternalModule {
 	 * the MaryXML attributes and values of other token than the current one are the same as in rule (f.e. the 3th token after
 	 * current token)
 	 *
-	 * @param tag
-	 *            tag
 	 * @param currentRulePart
 	 *            currentRulePart
 	 * @param position
@@ -1567,43 +1430,27 @@ public class ProsodyGeneric extends InternalModule {
 	 *            tokens
 	 * @return checkAttributes(currentRulePart, otherToken)
 	 */
-	protected boolean checkAttributesOfOtherToken(String tag, Element currentRulePart, int position, NodeList tokens) {
-
-		Element otherToken = null;
-
-		if (tag.equals("nextAttributes")) { // MaryXML attributes of next token
-			if (position < tokens.getLength() - 1) {
-				otherToken = (Element) tokens.item(position + 1);
-			}
-		}
-
-		if (nextPlusXAttributesPattern.matcher(tag).find()) { // MaryXML attributes of some token following the next token
-			String tempString = tag.replaceAll("nextPlus", "");
-			String newString = tempString.replaceAll("Attributes", "");
-			int num = Integer.parseInt(newString);
-			if (position < tokens.getLength() - (num + 1)) {
-				otherToken = (Element) tokens.item(position + 1 + num);
-			}
-		}
-
-		if (tag.equals("previousAttributes")) { // MaryXML attributes of previous token
-			if (position > 0) {
-				otherToken = (Element) tokens.item(position - 1);
-			}
-		}
-
-		if (previousMinusXAttributesPattern.matcher(tag).find()) { // MaryXML attributes of some token preceding the previous
-																	// token
-			String tempString = tag.replaceAll("previousMinus", "");
-			String newString = tempString.replaceAll("Attributes", "");
-			int num = Integer.parseInt(newString);
+	protected boolean checkAttributesOfOtherToken(ProsodyRuleSet.RulePart currentRulePart, int position, NodeList tokens) {
+		return checkAttributes(currentRulePart, getOtherToken(currentRulePart, position, tokens));
+	}
 
-			if (position > num) {
-				otherToken = (Element) tokens.item(position - (num + 1));
-			}
+	/**
+	 * The token a "next..." or "previous..." rule part refers to.
+	 *
+	 * @param currentRulePart
+	 *            currentRulePart
+	 * @param position
+	 *            position of the current token
+	 * @param tokens
+	 *            tokens
+	 * @return the other token, or null if there is no token at that position
+	 */
+	private Element getOtherToken(ProsodyRuleSet.RulePart currentRulePart, int position, NodeList tokens) {
+		int otherPosition = position + currentRulePart.getTokenOffset();
+		if (otherPosition == position || otherPosition < 0 || otherPosition >= tokens.getLength()) {
+			return null;
 		}
-
-		return checkAttributes(currentRulePart, otherToken);
+		return (Element) tokens.item(otherPosition);
 	}
 
 	/**
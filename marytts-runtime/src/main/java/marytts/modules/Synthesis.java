@@ -32,11 +32,13 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
+import marytts.exceptions.MaryConfigurationException;
 import marytts.exceptions.SynthesisException;
 import marytts.modules.synthesis.Voice;
 import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.server.MaryProperties;
 import marytts.signalproc.effects.EffectsApplier;
+import marytts.signalproc.filter.PolyphaseResampler;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
 import marytts.util.dom.MaryDomUtils;
 import marytts.util.dom.NameNodeFilter;
@@ -242,16 +244,33 @@ public class Synthesis extends InternalModule {
 			return null;
 		}
 
+		// keep the voice data loaded, so that all of this section is synthesized with the same data:
+		try {
+			voice.acquire();
+		} catch (MaryConfigurationException e) {
+			throw new SynthesisException("Cannot load voice " + voice.getName(), e);
+		}
 		EffectsApplier ef = new EffectsApplier();
-
-		// HMM-only effects need to get their parameters prior to synthesis
-		ef.setHMMEffectParameters(voice, currentEffect);
-		//
-
 		AudioInputStream ais = null;
-		ais = voice.synthesize(tokensAndBoundaries, outputParams);
+		try {
+			// HMM-only effects need to get their parameters prior to synthesis
+			ef.setHMMEffectParameters(voice, currentEffect);
+			//
+
+			ais = voice.synthesize(tokensAndBoundaries, outputParams);
+		} finally {
+			voice.release();
+		}
 		if (ais == null)
 			return null;
+		// Sampling rate conversion required? Our own resampler reads the audio only as it is needed, i.e. it keeps streaming.
+		AudioFormat sourceFormat = ais.getFormat();
+		if (targetFormat.getSampleRate() != AudioSystem.NOT_SPECIFIED
+				&& targetFormat.getSampleRate() != sourceFormat.getSampleRate()
+				&& sourceFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) && sourceFormat.getChannels() == 1
+				&& PolyphaseResampler.canResample((int) sourceFormat.getSampleRate(), (int) targetFormat.getSampleRate())) {
+			ais = PolyphaseResampler.resample(ais, (int) targetFormat.getSampleRate());
+		}
 		// Conversion to targetFormat required?
 		if (!ais.getFormat().matches(targetFormat)) {
 			// Attempt conversion; if not supported, log a warning
@@ -24,8 +24,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.WeakHashMap;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
@@ -40,6 +38,7 @@ import marytts.unitselection.select.Target;
 import marytts.util.MaryUtils;
 
 import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 /**
@@ -75,11 +74,27 @@ public class HMMModel extends Model {
 	private boolean predictDurAndF0 = false;
 
 	/**
-	 * This list keeps a copy of the utterance model, this is done when the same HMMModel is used for predicting durations and F0,
-	 * the idea is to keep in the utterance model list the state durations predicted together with duration, these state durations
-	 * are used when predicting F0, so the same state duration is applied.
+	 * When the same HMMModel is used for predicting durations and F0, the utterance model created when predicting durations is
+	 * kept with the MaryXML document of the request, under this key, so that its state durations can be used when predicting F0.
+	 * Keeping it with the document rather than in the model means that any number of requests can use the model at the same
+	 * time.
 	 */
-	private Map<List<Element>, HTSUttModel> uttModels = new WeakHashMap<List<Element>, HTSUttModel>();
+	private static final String UTT_MODEL_KEY = HMMModel.class.getName() + ".uttModel";
+
+	/**
+	 * The utterance model handed over from duration to F0 prediction, and what it was created for.
+	 */
+	private static final class UttModelHandoff {
+		private final HMMModel model;
+		private final List<Element> elements;
+		private final HTSUttModel um;
+
+		private UttModelHandoff(HMMModel model, List<Element> elements, HTSUttModel um) {
+			this.model = model;
+			this.elements = elements;
+			this.um = um;
+		}
+	}
 
 	/**
 	 * Model constructor
@@ -146,7 +161,8 @@ public class HMMModel extends Model {
 
 	/**
 	 * Predict duration for the list of elements. If the same HMMModel is used to predict duration and F0 then a utterance model
-	 * is created and kept in a WeakHashMap, so the next call to this module, for predicting F0, can use that utterance model.
+	 * is created and kept with the elements' document, so the next call to this module, for predicting F0, can use that utterance
+	 * model.
 	 *
 	 * @param elements
 	 *            elements from MaryXML for which to predict the values
@@ -158,8 +174,8 @@ public class HMMModel extends Model {
 	public void applyTo(List<Element> elements) throws MaryConfigurationException {
 		logger.debug("predicting duration");
 		HTSUttModel um = predictAndSetDuration(elements, elements);
-		if (predictDurAndF0) { // this same model will be used for predicting F0 -- remember um
-			uttModels.put(elements, um);
+		if (predictDurAndF0 && !elements.isEmpty()) { // this same model will be used for predicting F0 -- remember um
+			elements.get(0).getOwnerDocument().setUserData(UTT_MODEL_KEY, new UttModelHandoff(this, elements, um), null);
 		}
 	}
 
@@ -182,10 +198,12 @@ public class HMMModel extends Model {
 		// Two possibilities: Either we have an uttModel due to a previous call to applyTo()
 		// (in which case the lookup key should be applyToElements),
 		// or we don't -- in which case we must create an uttModel from the XML.
-		HTSUttModel um;
+		HTSUttModel um = null;
 		if (predictDurAndF0) {
+			um = takeUttModel(applyToElements);
+		}
+		if (um != null) {
 			logger.debug("using already created utterance model, it contains predicted state durations.");
-			um = uttModels.get(applyToElements); // it must be already created so get it from the uttModels Map
 		} else {
 			logger.debug("creating utterance model with equal values for state durations.");
 			um = createUttModel(predictFromElements); // create a um, state durations are set equal for all states
@@ -194,6 +212,31 @@ public class HMMModel extends Model {
 		predictAndSetF0(applyToElements, um);
 	}
 
+	/**
+	 * Get the utterance model created by this model when predicting durations for the given elements, and remove it from their
+	 * document.
+	 *
+	 * @param applyToElements
+	 *            the elements to which durations were applied
+	 * @return the utterance model, or null if there is none for these elements.
+	 */
+	private HTSUttModel takeUttModel(List<Element> applyToElements) {
+		if (applyToElements.isEmpty()) {
+			return null;
+		}
+		Document doc = applyToElements.get(0).getOwnerDocument();
+		Object handoff = doc.getUserData(UTT_MODEL_KEY);
+		if (!(handoff instanceof UttModelHandoff)) {
+			return null;
+		}
+		UttModelHandoff h = (UttModelHandoff) handoff;
+		if (h.model != this || !h.elements.equals(applyToElements)) {
+			return null;
+		}
+		doc.setUserData(UTT_MODEL_KEY, null, null);
+		return h.um;
+	}
+
 	/**
 	 * Predict durations and state durations from predictFromElements and apply durations to applyToElements. A utterance model is
 	 * created that contains the predicted state durations.
@@ -0,0 +1,343 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.prosody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import marytts.util.dom.MaryDomUtils;
+import marytts.util.dom.NameNodeFilter;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.traversal.DocumentTraversal;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+import org.xml.sax.SAXException;
+
+/**
+ * A precompiled, immutable representation of a ToBI prediction rule file (e.g. <code>tobipredparams.xml</code>). The rule file
+ * is parsed once; the resulting rule set does not keep any reference to the DOM it was built from, so that it can be shared
+ * between any number of request threads without locking.
+ */
+public final class ProsodyRuleSet {
+	private final List<RulePart> listDefinitions;
+	private final List<Rule> accentPositionRules;
+	private final List<Rule> accentShapeRules;
+	private final List<Rule> boundaryRules;
+
+	/**
+	 * Compile the rule set from the root element of a ToBI prediction rule document.
+	 *
+	 * @param root
+	 *            the document element of the rule file
+	 */
+	public ProsodyRuleSet(Element root) {
+		List<RulePart> definitions = Collections.emptyList();
+		List<Rule> accentPosition = Collections.emptyList();
+		List<Rule> accentShape = Collections.emptyList();
+		List<Rule> boundaries = Collections.emptyList();
+		for (Element e = MaryDomUtils.getFirstChildElement(root); e != null; e = MaryDomUtils.getNextSiblingElement(e)) {
+			if (e.getTagName().equals("definitions")) { // list defintions
+				definitions = compileParts(e, "list");
+			} else if (e.getTagName().equals("accentposition")) { // these rules determine which words receive accents
+				accentPosition = compileRules(e);
+			} else if (e.getTagName().equals("accentshape")) { // these rules determine which type of accent a word receives
+				accentShape = compileRules(e);
+			} else if (e.getTagName().equals("boundaries")) { // these rules determine locatian and type of boundaries
+				boundaries = compileRules(e);
+			}
+		}
+		this.listDefinitions = definitions;
+		this.accentPositionRules = accentPosition;
+		this.accentShapeRules = accentShape;
+		this.boundaryRules = boundaries;
+	}
+
+	/**
+	 * Parse and compile a ToBI prediction rule file.
+	 *
+	 * @param ruleStream
+	 *            the stream to read the rule file from; it is not closed by this method.
+	 * @return the compiled rule set
+	 * @throws ParserConfigurationException
+	 *             if no XML parser is available
+	 * @throws SAXException
+	 *             if the rule file is not well-formed
+	 * @throws IOException
+	 *             if the rule file cannot be read
+	 */
+	public static ProsodyRuleSet parse(InputStream ruleStream) throws ParserConfigurationException, SAXException, IOException {
+		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+		f.setValidating(false);
+		DocumentBuilder b = f.newDocumentBuilder();
+		Document tobiPredRules = b.parse(ruleStream);
+		return new ProsodyRuleSet(tobiPredRules.getDocumentElement());
+	}
+
+	private static List<RulePart> compileParts(Element parent, String tagName) {
+		List<RulePart> parts = new ArrayList<RulePart>();
+		TreeWalker tw = ((DocumentTraversal) parent.getOwnerDocument()).createTreeWalker(parent, NodeFilter.SHOW_ELEMENT,
+				new NameNodeFilter(new String[] { tagName }), false);
+		Element e;
+		while ((e = (Element) tw.nextNode()) != null) {
+			parts.add(new RulePart(e));
+		}
+		return Collections.unmodifiableList(parts);
+	}
+
+	private static List<Rule> compileRules(Element ruleList) {
+		List<Rule> rules = new ArrayList<Rule>();
+		// search for concrete rules, with tag "rule"
+		TreeWalker tw = ((DocumentTraversal) ruleList.getOwnerDocument()).createTreeWalker(ruleList, NodeFilter.SHOW_ELEMENT,
+				new NameNodeFilter(new String[] { "rule" }), false);
+		Element rule;
+		while ((rule = (Element) tw.nextNode()) != null) {
+			rules.add(new Rule(rule));
+		}
+		return Collections.unmodifiableList(rules);
+	}
+
+	/**
+	 * The <code>list</code> elements of the <code>definitions</code> section, in document order.
+	 *
+	 * @return an unmodifiable list
+	 */
+	public List<RulePart> getListDefinitions() {
+		return listDefinitions;
+	}
+
+	/**
+	 * The rules of the <code>accentposition</code> section, in order of priority.
+	 *
+	 * @return an unmodifiable list
+	 */
+	public List<Rule> getAccentPositionRules() {
+		return accentPositionRules;
+	}
+
+	/**
+	 * The rules of the <code>accentshape</code> section, in order of priority.
+	 *
+	 * @return an unmodifiable list
+	 */
+	public List<Rule> getAccentShapeRules() {
+		return accentShapeRules;
+	}
+
+	/**
+	 * The rules of the <code>boundaries</code> section, in order of priority.
+	 *
+	 * @return an unmodifiable list
+	 */
+	public List<Rule> getBoundaryRules() {
+		return boundaryRules;
+	}
+
+	/**
+	 * A single rule: a sequence of conditions, followed by the action to apply if all conditions are satisfied. Rule parts
+	 * following the first action are ignored, as they would never be looked at.
+	 */
+	public static final class Rule {
+		private final List<RulePart> conditions;
+		private final RulePart action;
+
+		private Rule(Element rule) {
+			List<RulePart> parts = new ArrayList<RulePart>();
+			RulePart firstAction = null;
+			for (Element e = MaryDomUtils.getFirstChildElement(rule); e != null; e = MaryDomUtils.getNextSiblingElement(e)) {
+				RulePart part = new RulePart(e);
+				if (part.getTagName().equals("action")) {
+					firstAction = part;
+					break;
+				}
+				parts.add(part);
+			}
+			this.conditions = Collections.unmodifiableList(parts);
+			this.action = firstAction;
+		}
+
+		/**
+		 * The conditions of this rule, in the order in which they are to be checked.
+		 *
+		 * @return an unmodifiable list
+		 */
+		public List<RulePart> getConditions() {
+			return conditions;
+		}
+
+		/**
+		 * The action of this rule.
+		 *
+		 * @return the action, or null if the rule has no action and can therefore never fire.
+		 */
+		public RulePart getAction() {
+			return action;
+		}
+	}
+
+	/**
+	 * A condition or action of a rule: the tag name and the attributes of the corresponding XML element, in the order in which
+	 * the DOM reported them.
+	 */
+	public static final class RulePart {
+		private static final Pattern nextPlusXTextPattern = Pattern.compile("nextPlus([0-9]+)Text");
+		private static final Pattern previousMinusXTextPattern = Pattern.compile("previousMinus([0-9]+)Text");
+		private static final Pattern nextPlusXAttributesPattern = Pattern.compile("nextPlus([0-9]+)Attributes");
+		private static final Pattern previousMinusXAttributesPattern = Pattern.compile("previousMinus([0-9]+)Attributes");
+
+		private final String tagName;
+		private final String[] attributeNames;
+		private final String[] attributeValues;
+		private final boolean textOfOtherToken;
+		private final boolean attributesOfOtherToken;
+		private final int tokenOffset;
+
+		private RulePart(Element e) {
+			this.tagName = e.getTagName();
+			NamedNodeMap attNodes = e.getAttributes();
+			int n = attNodes.getLength();
+			this.attributeNames = new String[n];
+			this.attributeValues = new String[n];
+			for (int z = 0; z < n; z++) {
+				Node el = attNodes.item(z);
+				attributeNames[z] = el.getNodeName();
+				attributeValues[z] = el.getNodeValue();
+			}
+
+			// conditions on tokens other than the current one: resolve the relative token position once
+			int offset = 0;
+			boolean text = false;
+			boolean attributes = false;
+			Matcher m;
+			if (tagName.equals("nextText")) {
+				text = true;
+				offset = 1;
+			} else if (tagName.equals("previousText")) {
+				text = true;
+				offset = -1;
+			} else if (tagName.equals("nextAttributes")) {
+				attributes = true;
+				offset = 1;
+			} else if (tagName.equals("previousAttributes")) {
+				attributes = true;
+				offset = -1;
+			} else if ((m = nextPlusXTextPattern.matcher(tagName)).find()) {
+				text = true;
+				offset = 1 + Integer.parseInt(m.group(1));
+			} else if ((m = previousMinusXTextPattern.matcher(tagName)).find()) {
+				text = true;
+				offset = -(Integer.parseInt(m.group(1)) + 1);
+			} else if ((m = nextPlusXAttributesPattern.matcher(tagName)).find()) {
+				attributes = true;
+				offset = 1 + Integer.parseInt(m.group(1));
+			} else if ((m = previousMinusXAttributesPattern.matcher(tagName)).find()) {
+				attributes = true;
+				offset = -(Integer.parseInt(m.group(1)) + 1);
+			}
+			this.textOfOtherToken = text;
+			this.attributesOfOtherToken = attributes;
+			this.tokenOffset = offset;
+		}
+
+		public String getTagName() {
+			return tagName;
+		}
+
+		public int getAttributeCount() {
+			return attributeNames.length;
+		}
+
+		public String getAttributeName(int i) {
+			return attributeNames[i];
+		}
+
+		public String getAttributeValue(int i) {
+			return attributeValues[i];
+		}
+
+		public boolean hasAttribute(String name) {
+			for (String attributeName : attributeNames) {
+				if (attributeName.equals(name)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * The value of the given attribute; like {@link Element#getAttribute(String)}, returns the empty string if there is no
+		 * such attribute.
+		 *
+		 * @param name
+		 *            the attribute name
+		 * @return the attribute value, or "" if not present
+		 */
+		public String getAttribute(String name) {
+			for (int i = 0; i < attributeNames.length; i++) {
+				if (attributeNames[i].equals(name)) {
+					return attributeValues[i];
+				}
+			}
+			return "";
+		}
+
+		/**
+		 * Whether this is a condition on the text of a token other than the current one (<code>nextText</code>,
+		 * <code>previousMinus2Text</code> etc.).
+		 *
+		 * @return true for such conditions
+		 */
+		public boolean isTextOfOtherToken() {
+			return textOfOtherToken;
+		}
+
+		/**
+		 * Whether this is a condition on the attributes of a token other than the current one (<code>nextAttributes</code>,
+		 * <code>nextPlus1Attributes</code> etc.).
+		 *
+		 * @return true for such conditions
+		 */
+		public boolean isAttributesOfOtherToken() {
+			return attributesOfOtherToken;
+		}
+
+		/**
+		 * For conditions on tokens other than the current one (<code>nextText</code>, <code>previousMinus2Attributes</code>
+		 * etc.), the position of that token relative to the current token.
+		 *
+		 * @return the relative token position, or 0 if this rule part refers to the current token.
+		 */
+		public int getTokenOffset() {
+			return tokenOffset;
+		}
+	}
+}
@@ -66,6 +66,7 @@ package marytts.modules.synthesis;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
@@ -81,11 +82,12 @@ import marytts.features.FeatureRegistry;
 import marytts.features.TargetFeatureComputer;
 import marytts.htsengine.HMMVoice;
 import marytts.modules.HTSEngine;
-import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
 import marytts.modules.TargetFeatureLister;
 import marytts.modules.synthesis.Voice.Gender;
+import marytts.server.Mary;
 import marytts.server.MaryProperties;
+import marytts.server.StartupScheduler;
 import marytts.unitselection.select.Target;
 import marytts.util.MaryUtils;
 import marytts.util.dom.MaryDomUtils;
@@ -127,8 +129,8 @@ public class HMMSynthesizer implements WaveformSynthesizer {
 			logger.info("Starting my own TargetFeatureLister");
 			targetFeatureLister = new TargetFeatureLister();
 			targetFeatureLister.startup();
-		} else if (targetFeatureLister.getState() == MaryModule.MODULE_OFFLINE) {
-			targetFeatureLister.startup();
+		} else {
+			Mary.startModule(targetFeatureLister);
 		}
 
 		try {
@@ -140,21 +142,37 @@ public class HMMSynthesizer implements WaveformSynthesizer {
 			logger.info("Starting my own HTSEngine");
 			htsEngine = new HTSEngine();
 			htsEngine.startup();
-		} else if (htsEngine.getState() == MaryModule.MODULE_OFFLINE) {
-			htsEngine.startup();
+		} else {
+			Mary.startModule(htsEngine);
 		}
 
 		// Register HMM voices:
-		List<String> voiceNames = MaryProperties.getList("hmm.voices.list");
-		for (String voiceName : voiceNames) {
-			logger.debug("Voice '" + voiceName + "'");
-
-			/**
-			 * When creating a HMMVoice object it should create and initialise a TreeSet ts, a ModelSet ms and load the context
-			 * feature list used in this voice.
-			 */
-
-			HMMVoice v = new HMMVoice(voiceName, this);
+		List<String> voiceNames = new ArrayList<String>(new LinkedHashSet<String>(MaryProperties.getList("hmm.voices.list")));
+		// Voices are loaded in parallel, but registered in the configured order:
+		final HMMVoice[] voices = new HMMVoice[voiceNames.size()];
+		StartupScheduler scheduler = new StartupScheduler("HMM voices", StartupScheduler.getConfiguredThreads("modules.startup.threads"));
+		for (int i = 0; i < voiceNames.size(); i++) {
+			final int index = i;
+			final String voiceName = voiceNames.get(i);
+			scheduler.addTask(voiceName, null, new StartupScheduler.Task() {
+				public void run() throws Exception {
+					logger.debug("Voice '" + voiceName + "'");
+
+					/**
+					 * When creating a HMMVoice object it should create and initialise a TreeSet ts, a ModelSet ms and load the
+					 * context feature list used in this voice.
+					 */
+
+					voices[index] = new HMMVoice(voiceName, HMMSynthesizer.this);
+					if (!voices[index].isLazy()) {
+						voices[index].load();
+					}
+				}
+			});
+		}
+		scheduler.run();
+		scheduler.logReport(logger);
+		for (HMMVoice v : voices) {
 			Voice.registerVoice(v);
 		}
 		logger.info("started.");
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.synthesis;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import marytts.server.MaryProperties;
+import marytts.util.MaryRuntimeUtils;
+import marytts.util.MaryUtils;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Periodically unloads lazy voices (see {@link Voice#isLazy()}): those which have not been used for
+ * <code>voices.lazy.idletime</code> seconds, and, while memory is low, the least recently used one.
+ */
+public class LazyVoiceMonitor {
+	private static ScheduledExecutorService executor;
+	private static Logger logger = MaryUtils.getLogger("LazyVoiceMonitor");
+
+	/**
+	 * Start monitoring, if any of the registered voices is lazy.
+	 */
+	public static synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		boolean haveLazyVoices = false;
+		for (Voice v : Voice.getAvailableVoices()) {
+			haveLazyVoices |= v.isLazy();
+		}
+		if (!haveLazyVoices) {
+			return;
+		}
+		final long idleMillis = 1000L * MaryProperties.getInteger("voices.lazy.idletime", 600);
+		int intervalSeconds = Math.max(1, MaryProperties.getInteger("voices.lazy.checkinterval", 10));
+		logger.info("Unloading lazy voices after " + (idleMillis > 0 ? idleMillis / 1000 + " s without use or " : "")
+				+ "when memory is low, checking every " + intervalSeconds + " s");
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "LazyVoiceMonitor");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					if (idleMillis > 0) {
+						Voice.unloadIdleVoices(idleMillis);
+					}
+					if (MaryRuntimeUtils.lowMemoryCondition()) {
+						Voice.unloadLeastRecentlyUsedVoice(null);
+					}
+				} catch (Throwable t) {
+					logger.warn("Problem unloading voices", t);
+				}
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop monitoring.
+	 */
+	public static synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+}
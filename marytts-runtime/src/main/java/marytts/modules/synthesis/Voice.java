@@ -33,8 +33,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -62,6 +63,7 @@ import marytts.modules.acoustic.SoPModel;
 import marytts.modules.phonemiser.Allophone;
 import marytts.modules.phonemiser.AllophoneSet;
 import marytts.server.MaryProperties;
+import marytts.server.metrics.MaryMetrics;
 import marytts.unitselection.data.FeatureFileReader;
 import marytts.unitselection.interpolation.InterpolatingSynthesizer;
 import marytts.unitselection.interpolation.InterpolatingVoice;
@@ -111,9 +113,9 @@ public class Voice {
 					: true); // big-endian
 	/**
 	 * List all registered voices. This set will always return the voices in the order of their wantToBeDefault value, highest
-	 * first.
+	 * first. Voices may be registered concurrently while the server starts up.
 	 */
-	private static Set<Voice> allVoices = new TreeSet<Voice>(new Comparator<Voice>() {
+	private static Set<Voice> allVoices = new ConcurrentSkipListSet<Voice>(new Comparator<Voice>() {
 		public int compare(Voice v1, Voice v2) {
 			// Return negative number if v1 should be listed before v2
 			int desireDelta = v2.wantToBeDefault - v1.wantToBeDefault;
@@ -124,7 +126,7 @@ public class Voice {
 		}
 	});
 
-	private static Map<Locale, Voice> defaultVoices = new HashMap<Locale, Voice>();
+	private static Map<Locale, Voice> defaultVoices = new ConcurrentHashMap<Locale, Voice>();
 
 	protected static Logger logger = MaryUtils.getLogger("Voice");
 
@@ -138,11 +140,15 @@ public class Voice {
 	String preferredModulesClasses;
 	private Vector<MaryModule> preferredModules;
 	private boolean vocalizationSupport;
-	private VocalizationSynthesizer vocalizationSynthesizer;
-	protected DirectedGraph durationGraph;
-	protected DirectedGraph f0Graph;
-	protected FeatureFileReader f0ContourFeatures;
-	protected Map<String, Model> acousticModels;
+	private boolean lazy;
+	private final Object loadLock = new Object();
+	private volatile VoiceData data;
+	private VoiceData loading;
+	private int users;
+	private volatile long lastUsed;
+	private volatile long loadCount;
+	private volatile long evictionCount;
+	private volatile long lastLoadMillis = -1;
 
 	@Deprecated
 	public Voice(String name, Locale locale, AudioFormat dbAudioFormat, WaveformSynthesizer synthesizer, Gender gender)
@@ -213,39 +219,266 @@ public class Voice {
 		String lexiconClass = MaryProperties.getProperty(header + ".lexiconClass");
 		String lexiconName = MaryProperties.getProperty(header + ".lexicon");
 		vocalizationSupport = MaryProperties.getBoolean(header + ".vocalizationSupport", false);
-		if (vocalizationSupport) {
-			vocalizationSynthesizer = new VocalizationSynthesizer(this);
-		}
+		lazy = MaryProperties.getBoolean(header + ".lazy", MaryProperties.getBoolean("voices.lazy", false));
+	}
+
+	/**
+	 * The data of a voice which is expensive to hold in memory: models, graphs, databases. It is loaded by {@link #load()}, or
+	 * on first use; for lazy voices, it can be dropped again by {@link #unload()} when the voice is not used. Subclasses with
+	 * data of their own extend this class, and override {@link Voice#newVoiceData()} and
+	 * {@link Voice#loadVoiceData(VoiceData)}.
+	 */
+	protected static class VoiceData {
+		private DirectedGraph durationGraph;
+		private DirectedGraph f0Graph;
+		private FeatureFileReader f0ContourFeatures;
+		private Map<String, Model> acousticModels;
+		private VocalizationSynthesizer vocalizationSynthesizer;
+	}
+
+	/**
+	 * Create an empty data object of the type used by this voice.
+	 *
+	 * @return a new data object
+	 */
+	protected VoiceData newVoiceData() {
+		return new VoiceData();
+	}
 
-		loadOldStyleProsodyModels(header);
-		loadAcousticModels(header);
+	/**
+	 * Load the voice data. Subclasses overriding this method must call it first.
+	 *
+	 * @param voiceData
+	 *            the data object to fill, as created by {@link #newVoiceData()}
+	 * @throws MaryConfigurationException
+	 *             if the data cannot be loaded
+	 */
+	protected void loadVoiceData(VoiceData voiceData) throws MaryConfigurationException {
+		String header = "voice." + getName();
+		try {
+			if (vocalizationSupport) {
+				voiceData.vocalizationSynthesizer = new VocalizationSynthesizer(this);
+			}
+			loadOldStyleProsodyModels(header, voiceData);
+			loadAcousticModels(header, voiceData);
+		} catch (MaryConfigurationException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new MaryConfigurationException("Cannot load voice '" + voiceName + "'", e);
+		}
 		// initialization of FeatureProcessorManager for this voice, if needed:
 		initFeatureProcessorManager();
 	}
 
+	/**
+	 * Load the voice data unless it is already loaded. If several threads request the same voice at the same time, the data is
+	 * loaded only once. Non-lazy voices should be loaded when they are created; lazy voices are loaded on first use.
+	 *
+	 * @throws MaryConfigurationException
+	 *             if the data cannot be loaded
+	 */
+	public void load() throws MaryConfigurationException {
+		getVoiceData(true);
+	}
+
+	/**
+	 * Load the voice data if necessary, and keep it loaded until {@link #release()} is called. A request acquires its voice
+	 * for as long as it runs, so that all the data it uses comes from the same load. Every call must be matched by a call to
+	 * {@link #release()}.
+	 *
+	 * @throws MaryConfigurationException
+	 *             if the data cannot be loaded; the voice is not acquired then.
+	 */
+	public void acquire() throws MaryConfigurationException {
+		synchronized (loadLock) {
+			users++;
+		}
+		boolean loaded = false;
+		try {
+			getVoiceData(true);
+			loaded = true;
+		} finally {
+			if (!loaded) {
+				release();
+			}
+		}
+	}
+
+	/**
+	 * Allow the voice data to be unloaded again, after {@link #acquire()}.
+	 */
+	public void release() {
+		synchronized (loadLock) {
+			assert users > 0;
+			users--;
+		}
+		lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Whether the voice is currently acquired by a request.
+	 *
+	 * @return true if the voice data must not be unloaded
+	 */
+	public boolean isInUse() {
+		synchronized (loadLock) {
+			return users > 0;
+		}
+	}
+
+	/**
+	 * Drop the voice data, so that it can be garbage collected; it will be loaded again when the voice is next used. A voice
+	 * which is in use by a request, see {@link #acquire()}, is not unloaded.
+	 *
+	 * @return true if the data was unloaded, false if it was not loaded or is in use.
+	 */
+	public boolean unload() {
+		synchronized (loadLock) {
+			if (data == null || users > 0) {
+				return false;
+			}
+			data = null;
+			evictionCount++;
+		}
+		MaryMetrics.voiceEvicted(voiceName);
+		logger.info("Unloaded voice " + voiceName + " after " + (System.currentTimeMillis() - lastUsed) + " ms without use");
+		return true;
+	}
+
+	/**
+	 * Get the voice data, loading it if necessary.
+	 *
+	 * @return the voice data, never null
+	 * @throws IllegalStateException
+	 *             if the voice data cannot be loaded; use {@link #load()} beforehand to get a checked exception instead.
+	 */
+	protected VoiceData getVoiceData() {
+		try {
+			return getVoiceData(false);
+		} catch (MaryConfigurationException e) {
+			throw new IllegalStateException("Cannot load voice '" + voiceName + "'", e);
+		}
+	}
+
+	private VoiceData getVoiceData(boolean explicit) throws MaryConfigurationException {
+		lastUsed = System.currentTimeMillis();
+		VoiceData d = data;
+		if (d != null) {
+			return d;
+		}
+		if (lazy && !Thread.holdsLock(loadLock)) {
+			// not while holding our own lock, as this takes the lock of another voice:
+			freeMemoryFor(this);
+		}
+		synchronized (loadLock) {
+			if (loading != null) {
+				// this thread is loading the voice, and the loading code uses the voice's getters:
+				return loading;
+			}
+			if (data != null) {
+				return data;
+			}
+			long before = System.currentTimeMillis();
+			if (lazy) {
+				logger.info("Loading voice " + voiceName + (explicit ? "" : " on first use"));
+			}
+			d = newVoiceData();
+			loading = d;
+			try {
+				loadVoiceData(d);
+			} finally {
+				loading = null;
+			}
+			data = d;
+			loadCount++;
+			lastLoadMillis = System.currentTimeMillis() - before;
+			MaryMetrics.voiceLoaded(voiceName, lastLoadMillis);
+			if (lazy) {
+				logger.info("Loading of voice " + voiceName + " took " + lastLoadMillis + " ms");
+			}
+			lastUsed = System.currentTimeMillis();
+			return d;
+		}
+	}
+
+	/**
+	 * Whether this voice is loaded on first use and unloaded when not used, as determined by the config setting
+	 * <code>voice.(name).lazy</code> or, if that is not set, <code>voices.lazy</code>.
+	 *
+	 * @return true for lazy voices
+	 */
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * Whether the voice data is currently loaded.
+	 *
+	 * @return true if loaded
+	 */
+	public boolean isLoaded() {
+		return data != null;
+	}
+
+	/**
+	 * The time when the voice was last used, as given by {@link System#currentTimeMillis()}.
+	 *
+	 * @return the time of last use
+	 */
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	/**
+	 * How often the voice data has been loaded.
+	 *
+	 * @return the number of loads
+	 */
+	public long getLoadCount() {
+		return loadCount;
+	}
+
+	/**
+	 * How often the voice data has been unloaded.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * How long it took to load the voice data the last time.
+	 *
+	 * @return the time in milliseconds, or -1 if the voice has never been loaded.
+	 */
+	public long getLastLoadMillis() {
+		return lastLoadMillis;
+	}
+
 	@Deprecated
-	private void loadOldStyleProsodyModels(String header) throws MaryConfigurationException {
+	private void loadOldStyleProsodyModels(String header, VoiceData voiceData) throws MaryConfigurationException {
 		// see if there are any voice-specific duration and f0 models to load
-		durationGraph = null;
+		voiceData.durationGraph = null;
 		String durationGraphFile = MaryProperties.getFilename(header + ".duration.cart");
 		if (durationGraphFile != null) {
 			logger.debug("...loading duration graph...");
 			try {
-				durationGraph = (new DirectedGraphReader()).load(durationGraphFile);
+				voiceData.durationGraph = (new DirectedGraphReader()).load(durationGraphFile);
 			} catch (IOException e) {
 				throw new MaryConfigurationException("Cannot load duration graph file '" + durationGraphFile + "'", e);
 			}
 		}
 
-		f0Graph = null;
+		voiceData.f0Graph = null;
 		String f0GraphFile = MaryProperties.getFilename(header + ".f0.graph");
 		if (f0GraphFile != null) {
 			logger.debug("...loading f0 contour graph...");
 			try {
-				f0Graph = (new DirectedGraphReader()).load(f0GraphFile);
+				voiceData.f0Graph = (new DirectedGraphReader()).load(f0GraphFile);
 				// If we have the graph, we need the contour:
 				String f0ContourFile = MaryProperties.needFilename(header + ".f0.contours");
-				f0ContourFeatures = new FeatureFileReader(f0ContourFile);
+				voiceData.f0ContourFeatures = new FeatureFileReader(f0ContourFile);
 			} catch (IOException e) {
 				throw new MaryConfigurationException("Cannot load f0 contour graph file '" + f0GraphFile + "'", e);
 			}
@@ -257,6 +490,8 @@ public class Voice {
 	 * 
 	 * @param header
 	 *            header
+	 * @param voiceData
+	 *            the voice data to which the models are added
 	 * @throws MaryConfigurationException
 	 *             MaryConfigurationException
 	 * @throws NoSuchPropertyException
@@ -264,14 +499,15 @@ public class Voice {
 	 * @throws IOException
 	 *             IOException
 	 */
-	private void loadAcousticModels(String header) throws MaryConfigurationException, NoSuchPropertyException, IOException {
+	private void loadAcousticModels(String header, VoiceData voiceData) throws MaryConfigurationException, NoSuchPropertyException, IOException {
 		// The feature processor manager that all acoustic models will use to predict their acoustics:
 		FeatureProcessorManager symbolicFPM = FeatureRegistry.determineBestFeatureProcessorManager(getLocale());
 
 		// Acoustic models:
 		String acousticModelsString = MaryProperties.getProperty(header + ".acousticModels");
 		if (acousticModelsString != null) {
-			acousticModels = new HashMap<String, Model>();
+			Map<String, Model> acousticModels = new HashMap<String, Model>();
+			voiceData.acousticModels = acousticModels;
 
 			// add boundary "model" (which could of course be overwritten by appropriate properties in voice config):
 			acousticModels.put("boundary", new BoundaryModel(symbolicFPM, voiceName, null, "duration", null, null, null,
@@ -496,7 +732,7 @@ public class Voice {
 	}
 
 	public VocalizationSynthesizer getVocalizationSynthesizer() {
-		return vocalizationSynthesizer;
+		return getVoiceData().vocalizationSynthesizer;
 	}
 
 	/**
@@ -528,15 +764,15 @@ public class Voice {
 	}
 
 	public DirectedGraph getDurationGraph() {
-		return durationGraph;
+		return getVoiceData().durationGraph;
 	}
 
 	public DirectedGraph getF0Graph() {
-		return f0Graph;
+		return getVoiceData().f0Graph;
 	}
 
 	public FeatureFileReader getF0ContourFeatures() {
-		return f0ContourFeatures;
+		return getVoiceData().f0ContourFeatures;
 	}
 
 	// Several getters for acoustic models, returning null if undefined:
@@ -547,7 +783,7 @@ public class Voice {
 	 * @return a Map mapping model names to models, or null if there are no such models.
 	 */
 	public Map<String, Model> getAcousticModels() {
-		return acousticModels;
+		return getVoiceData().acousticModels;
 	}
 
 	/**
@@ -556,6 +792,7 @@ public class Voice {
 	 * @return the model, or null if no such model is defined.
 	 */
 	public Model getDurationModel() {
+		Map<String, Model> acousticModels = getAcousticModels();
 		if (acousticModels == null) {
 			return null;
 		}
@@ -568,6 +805,7 @@ public class Voice {
 	 * @return the model, or null if no such model is defined.
 	 */
 	public Model getF0Model() {
+		Map<String, Model> acousticModels = getAcousticModels();
 		if (acousticModels == null) {
 			return null;
 		}
@@ -580,6 +818,7 @@ public class Voice {
 	 * @return the model, or null if no such model is defined.
 	 */
 	public Model getBoundaryModel() {
+		Map<String, Model> acousticModels = getAcousticModels();
 		if (acousticModels == null) {
 			return null;
 		}
@@ -592,6 +831,7 @@ public class Voice {
 	 * @return a Map mapping the model name to the model, or null if no other models exist.
 	 */
 	public Map<String, Model> getOtherModels() {
+		Map<String, Model> acousticModels = getAcousticModels();
 		if (acousticModels == null) {
 			return null;
 		}
@@ -619,7 +859,7 @@ public class Voice {
 	 * @param voice
 	 *            voicwe
 	 */
-	public static void registerVoice(Voice voice) {
+	public static synchronized void registerVoice(Voice voice) {
 		if (voice == null)
 			throw new NullPointerException("Cannot register null voice.");
 		if (!allVoices.contains(voice)) {
@@ -646,6 +886,54 @@ public class Voice {
 		}
 	}
 
+	/**
+	 * Unload all lazy voices which have not been used for at least the given time.
+	 *
+	 * @param maxIdleMillis
+	 *            the time in milliseconds after which an unused voice is unloaded
+	 * @return the number of voices unloaded
+	 */
+	public static int unloadIdleVoices(long maxIdleMillis) {
+		long now = System.currentTimeMillis();
+		int unloaded = 0;
+		for (Voice v : allVoices) {
+			if (v.isLazy() && v.isLoaded() && now - v.getLastUsed() >= maxIdleMillis && v.unload()) {
+				unloaded++;
+			}
+		}
+		return unloaded;
+	}
+
+	/**
+	 * Unload the lazy voice which has not been used for the longest time.
+	 *
+	 * @param except
+	 *            a voice which must not be unloaded, or null
+	 * @return true if a voice was unloaded, false if no lazy voice other than <code>except</code> is loaded and not in use.
+	 */
+	public static boolean unloadLeastRecentlyUsedVoice(Voice except) {
+		Voice lru = null;
+		for (Voice v : allVoices) {
+			if (v != except && v.isLazy() && v.isLoaded() && !v.isInUse() && (lru == null || v.getLastUsed() < lru.getLastUsed())) {
+				lru = v;
+			}
+		}
+		if (lru == null) {
+			return false;
+		}
+		logger.info("Low memory condition: unloading voice " + lru.getName());
+		return lru.unload();
+	}
+
+	/**
+	 * Before loading the given voice: if memory is low, unload the least recently used other lazy voice.
+	 */
+	private static void freeMemoryFor(Voice voice) {
+		if (MaryRuntimeUtils.lowMemoryCondition()) {
+			unloadLeastRecentlyUsedVoice(voice);
+		}
+	}
+
 	/**
 	 * Get the voice with the given name, or null if there is no voice with that name.
 	 * 
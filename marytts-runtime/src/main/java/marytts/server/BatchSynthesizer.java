@@ -0,0 +1,372 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+import marytts.datatypes.MaryDataType;
+import marytts.modules.synthesis.Voice;
+import marytts.util.MaryRuntimeUtils;
+import marytts.util.MaryUtils;
+import marytts.util.data.audio.MaryAudioUtils;
+import marytts.util.data.audio.StreamingAudioFileWriter;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Process many short requests in one call, e.g. to render a large set of prompts. The items are processed in parallel on a fixed
+ * number of threads, and each result is handed to a {@link Callback} as soon as it is ready. The voices and audio formats are looked
+ * up once per batch and shared between its items.
+ * <p>
+ * Each item has an id, an input text, optionally a voice, and optionally parameters overriding the defaults of the synthesizer.
+ * The parameter names are those of the HTTP interface: <code>INPUT_TYPE</code> (default TEXT), <code>OUTPUT_TYPE</code>
+ * (default AUDIO), <code>LOCALE</code> (default: the locale of the voice), <code>AUDIO</code> (default WAVE; a suffix "_FILE" or "_STREAM" is ignored),
+ * <code>STYLE</code>, <code>EFFECTS</code> (as in the socket protocol, e.g. "Robot(amount=100)") and
+ * <code>OUTPUT_TYPE_PARAMS</code>.
+ */
+public class BatchSynthesizer {
+	/**
+	 * One item of a batch.
+	 */
+	public static class Item {
+		private final String id;
+		private final String text;
+		private final String voice;
+		private final Map<String, String> params;
+
+		/**
+		 * @param id
+		 *            an id identifying the item in the results
+		 * @param text
+		 *            the input text
+		 * @param voice
+		 *            the name of the voice, "male" or "female" for a voice of the locale, or null for the default voice
+		 * @param params
+		 *            parameters overriding the defaults of the synthesizer, or null
+		 */
+		public Item(String id, String text, String voice, Map<String, String> params) {
+			this.id = id;
+			this.text = text;
+			this.voice = voice;
+			this.params = params != null ? params : Collections.<String, String> emptyMap();
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public String getVoice() {
+			return voice;
+		}
+
+		public Map<String, String> getParams() {
+			return params;
+		}
+	}
+
+	/**
+	 * Receives the results of a batch. The methods are called on the processing threads, concurrently for different items.
+	 */
+	public interface Callback {
+		/**
+		 * An item was processed successfully.
+		 *
+		 * @param item
+		 *            the item
+		 * @param output
+		 *            the output: an audio file for audio output, UTF-8 text otherwise
+		 * @param fileExtension
+		 *            a file name extension for the output, such as "wav" or "xml"
+		 * @throws IOException
+		 *             if the result cannot be passed on, which stops the batch
+		 */
+		public void completed(Item item, byte[] output, String fileExtension) throws IOException;
+
+		/**
+		 * An item could not be processed.
+		 *
+		 * @param item
+		 *            the item
+		 * @param e
+		 *            the reason
+		 * @throws IOException
+		 *             if the failure cannot be passed on, which stops the batch
+		 */
+		public void failed(Item item, Exception e) throws IOException;
+	}
+
+	private final Logger logger = MaryUtils.getLogger("batch");
+	private final int parallelism;
+	private final ExecutorService executor;
+	private final Map<String, String> defaults;
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	/**
+	 * The voices and audio formats looked up for the items of one batch. They are keyed by client input, so they are not kept
+	 * beyond the batch.
+	 */
+	private static class Lookups {
+		final ConcurrentMap<String, Voice> voices = new ConcurrentHashMap<String, Voice>();
+		final ConcurrentMap<String, AudioFileFormat> audioFileFormats = new ConcurrentHashMap<String, AudioFileFormat>();
+	}
+
+	/**
+	 * Create a batch synthesizer.
+	 *
+	 * @param parallelism
+	 *            the number of items to process at the same time
+	 * @param defaults
+	 *            the default parameters of all items, or null
+	 */
+	public BatchSynthesizer(int parallelism, Map<String, String> defaults) {
+		this.parallelism = Math.max(1, parallelism);
+		this.defaults = defaults != null ? new HashMap<String, String>(defaults) : new HashMap<String, String>();
+		final AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(this.parallelism, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Batch " + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Stop the processing threads. Batches in progress are interrupted.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Process a batch of items, and wait until all of them have been processed. Only a few more items than can be processed at
+	 * the same time are taken from the iterable at any time, so it can produce the items lazily.
+	 *
+	 * @param items
+	 *            the items
+	 * @param callback
+	 *            receives the result of each item, in the order in which they are completed
+	 * @throws IOException
+	 *             if the callback has thrown an IOException, in which case no further items are processed
+	 * @throws RuntimeException
+	 *             if the callback has thrown a RuntimeException, in which case no further items are processed either
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the items to be processed
+	 */
+	public void process(Iterable<Item> items, final Callback callback) throws IOException, InterruptedException {
+		final int maxInFlight = 2 * parallelism;
+		final Semaphore inFlight = new Semaphore(maxInFlight);
+		final AtomicReference<Exception> callbackFailure = new AtomicReference<Exception>();
+		final Lookups lookups = new Lookups();
+		for (final Item item : items) {
+			inFlight.acquire();
+			if (callbackFailure.get() != null) {
+				inFlight.release();
+				break;
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						Result result = process(item, lookups);
+						if (result.failure == null) {
+							callback.completed(item, result.output, result.fileExtension);
+						} else {
+							callback.failed(item, result.failure);
+						}
+					} catch (IOException e) {
+						callbackFailure.compareAndSet(null, e);
+					} catch (RuntimeException e) {
+						logger.warn("Callback failed for item " + item.getId(), e);
+						callbackFailure.compareAndSet(null, e);
+					} finally {
+						inFlight.release();
+					}
+				}
+			});
+		}
+		// wait for the items still being processed:
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+		Exception failure = callbackFailure.get();
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure != null) {
+			throw (RuntimeException) failure;
+		}
+	}
+
+	private static class Result {
+		byte[] output;
+		String fileExtension;
+		Exception failure;
+	}
+
+	private Result process(Item item, Lookups lookups) {
+		Result result = new Result();
+		try {
+			Request request = newRequest(item, lookups);
+			request.setInputData(item.getText());
+			MemoryAdmissionControl.Reservation reservation = MemoryAdmissionControl.getInstance().admit(
+					MemoryAdmissionControl.estimate(request));
+			if (reservation == null) {
+				throw new Exception("Not enough memory to process item " + item.getId());
+			}
+			try {
+				request.process();
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				if (request.getAudio() != null) {
+					AudioFileFormat.Type type = request.getAudioFileFormat().getType();
+					StreamingAudioFileWriter.write(request.getAudio(), type, out);
+					result.fileExtension = type.getExtension();
+				} else {
+					request.getOutputData().writeTo(out);
+					result.fileExtension = request.getOutputType().isXMLType() ? "xml" : "txt";
+				}
+				result.output = out.toByteArray();
+			} finally {
+				reservation.release();
+			}
+		} catch (Exception e) {
+			logger.info("Item " + item.getId() + " failed", e);
+			result.failure = e;
+		}
+		return result;
+	}
+
+	private String getParam(Item item, String name, String defaultValue) {
+		String value = item.getParams().get(name);
+		if (value == null) {
+			value = defaults.get(name);
+		}
+		return value != null ? value : defaultValue;
+	}
+
+	private Request newRequest(Item item, Lookups lookups) throws Exception {
+		String inputTypeName = getParam(item, "INPUT_TYPE", "TEXT");
+		MaryDataType inputType = MaryDataType.get(inputTypeName);
+		if (inputType == null) {
+			throw new IllegalArgumentException("Invalid input type: " + inputTypeName);
+		}
+		String outputTypeName = getParam(item, "OUTPUT_TYPE", "AUDIO");
+		MaryDataType outputType = MaryDataType.get(outputTypeName);
+		if (outputType == null) {
+			throw new IllegalArgumentException("Invalid output type: " + outputTypeName);
+		}
+		String localeName = getParam(item, "LOCALE", null);
+		Locale locale = localeName != null ? MaryUtils.string2locale(localeName) : null;
+		String voiceName = item.getVoice() != null ? item.getVoice() : defaults.get("VOICE");
+		Voice voice = getVoice(voiceName, locale, lookups);
+		if (locale == null) {
+			if (voice == null) {
+				throw new IllegalArgumentException("Need a locale or a voice");
+			}
+			locale = voice.getLocale();
+		}
+		String outputTypeParams = getParam(item, "OUTPUT_TYPE_PARAMS", null);
+		AudioFileFormat audioFileFormat = null;
+		if (outputType.name().contains("AUDIO")) {
+			audioFileFormat = getAudioFileFormat(getParam(item, "AUDIO", "WAVE"), voice, outputTypeParams, lookups);
+		}
+		String effects = getParam(item, "EFFECTS", null);
+		String style = getParam(item, "STYLE", "");
+		Request request = new Request(inputType, outputType, locale, voice, effects, style, requestCount.incrementAndGet(),
+				audioFileFormat, false, outputTypeParams);
+		return request;
+	}
+
+	private Voice getVoice(String voiceName, Locale locale, Lookups lookups) throws Exception {
+		String key = voiceName + " " + locale;
+		Voice voice = lookups.voices.get(key);
+		if (voice == null) {
+			if (voiceName == null) {
+				voice = locale != null ? Voice.getDefaultVoice(locale) : null;
+			} else if ((voiceName.equals("male") || voiceName.equals("female")) && locale != null) {
+				voice = Voice.getVoice(locale, new Voice.Gender(voiceName));
+			} else {
+				voice = Voice.getVoice(voiceName);
+			}
+			if (voiceName != null && voice == null) {
+				throw new IllegalArgumentException("No such voice: " + voiceName);
+			}
+			if (voice == null) {
+				return null;
+			}
+			// a lazy voice is loaded once here rather than by the first request of each thread:
+			voice.load();
+			lookups.voices.putIfAbsent(key, voice);
+		}
+		return voice;
+	}
+
+	private AudioFileFormat getAudioFileFormat(String audioTypeName, Voice voice, String outputTypeParams, Lookups lookups)
+			throws Exception {
+		String key = audioTypeName + " " + (voice != null ? voice.getName() : "") + " " + outputTypeParams;
+		AudioFileFormat audioFileFormat = lookups.audioFileFormats.get(key);
+		if (audioFileFormat == null) {
+			// as in the HTTP interface, "WAVE_FILE" is the same as "WAVE", and audio is never streamed:
+			String typeName = audioTypeName.replaceFirst("_(FILE|STREAM)$", "");
+			AudioFileFormat.Type type = MaryAudioUtils.getAudioFileFormatType(typeName);
+			if (type == null) {
+				throw new IllegalArgumentException("Invalid audio type: " + audioTypeName);
+			}
+			AudioFormat audioFormat;
+			if (type.toString().equals("MP3")) {
+				if (!MaryRuntimeUtils.canCreateMP3()) {
+					throw new IllegalArgumentException("Conversion to MP3 not supported.");
+				}
+				audioFormat = MaryRuntimeUtils.getMP3AudioFormat();
+			} else if (type.toString().equals("Vorbis")) {
+				if (!MaryRuntimeUtils.canCreateOgg()) {
+					throw new IllegalArgumentException("Conversion to OGG Vorbis format not supported.");
+				}
+				audioFormat = MaryRuntimeUtils.getOggAudioFormat();
+			} else if (voice != null) {
+				audioFormat = voice.dbAudioFormat();
+			} else {
+				audioFormat = Voice.AF16000;
+			}
+			audioFormat = MaryRuntimeUtils.getRequestedAudioFormat(audioFormat, outputTypeParams);
+			audioFileFormat = new AudioFileFormat(type, audioFormat, AudioSystem.NOT_SPECIFIED);
+			lookups.audioFileFormats.putIfAbsent(key, audioFileFormat);
+		}
+		return audioFileFormat;
+	}
+}
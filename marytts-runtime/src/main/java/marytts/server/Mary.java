@@ -34,10 +34,10 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
@@ -57,11 +57,11 @@ import marytts.features.FeatureRegistry;
 import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
 import marytts.modules.Synthesis;
+import marytts.modules.synthesis.LazyVoiceMonitor;
 import marytts.modules.synthesis.Voice;
 import marytts.util.MaryCache;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
-import marytts.util.Pair;
 import marytts.util.data.audio.MaryAudioUtils;
 import marytts.util.io.FileUtils;
 
@@ -139,40 +139,124 @@ public class Mary {
 		}
 		ModuleRegistry.setRegistrationComplete();
 
-		List<Pair<MaryModule, Long>> startupTimes = new ArrayList<Pair<MaryModule, Long>>();
-
-		// Separate loop for startup allows modules to cross-reference to each
+		// Separate step for startup allows modules to cross-reference to each
 		// other via Mary.getModule(Class) even if some have not yet been
-		// started.
+		// started. Modules are started in parallel, except where a dependency
+		// between them is declared in modules.startup.dependencies.list.
+		StartupScheduler scheduler = new StartupScheduler("modules", StartupScheduler.getConfiguredThreads("modules.startup.threads"));
+		Map<String, List<String>> prerequisites = getStartupDependencies();
+		Map<String, List<String>> taskIdsByClass = new HashMap<String, List<String>>();
+		List<MaryModule> toStart = new ArrayList<MaryModule>();
+		List<String> taskIds = new ArrayList<String>();
 		for (MaryModule m : ModuleRegistry.getAllModules()) {
 			// Only start the modules here if in server mode:
 			if (((!MaryProperties.getProperty("server").equals("commandline")) || m instanceof Synthesis)
 					&& m.getState() == MaryModule.MODULE_OFFLINE) {
-				long before = System.currentTimeMillis();
-				try {
-					m.startup();
-				} catch (Throwable t) {
-					throw new Exception("Problem starting module " + m.name(), t);
+				String baseId = m.getClass().getSimpleName() + (m.getLocale() != null ? "(" + m.getLocale() + ")" : "");
+				String taskId = baseId;
+				for (int i = 2; taskIds.contains(taskId); i++) {
+					taskId = baseId + "#" + i;
+				}
+				toStart.add(m);
+				taskIds.add(taskId);
+				List<String> ids = taskIdsByClass.get(m.getClass().getName());
+				if (ids == null) {
+					ids = new ArrayList<String>();
+					taskIdsByClass.put(m.getClass().getName(), ids);
+				}
+				ids.add(taskId);
+			}
+		}
+		for (int i = 0; i < toStart.size(); i++) {
+			final MaryModule m = toStart.get(i);
+			List<String> deps = new ArrayList<String>();
+			for (String className : getStartupPrerequisites(prerequisites, m.getClass())) {
+				List<String> depIds = taskIdsByClass.get(className);
+				if (depIds != null) {
+					deps.addAll(depIds);
 				}
-				long after = System.currentTimeMillis();
-				startupTimes.add(new Pair<MaryModule, Long>(m, after - before));
 			}
-			if (MaryProperties.getAutoBoolean("modules.poweronselftest", false)) {
+			scheduler.addTask(taskIds.get(i), deps, new StartupScheduler.Task() {
+				public void run() throws Exception {
+					startModule(m);
+				}
+			});
+		}
+		scheduler.run();
+		scheduler.logReport(logger);
+
+		if (MaryProperties.getAutoBoolean("modules.poweronselftest", false)) {
+			for (MaryModule m : ModuleRegistry.getAllModules()) {
 				m.powerOnSelfTest();
 			}
 		}
+	}
 
-		if (startupTimes.size() > 0) {
-			Collections.sort(startupTimes, new Comparator<Pair<MaryModule, Long>>() {
-				public int compare(Pair<MaryModule, Long> o1, Pair<MaryModule, Long> o2) {
-					return -o1.getSecond().compareTo(o2.getSecond());
+	/**
+	 * Start the given module unless it is already running. Modules which need another module to be running in their own startup
+	 * method should use this method to start it, so that a module started concurrently by several threads is started only once.
+	 *
+	 * @param m
+	 *            the module to start
+	 * @throws Exception
+	 *             if the module cannot be started
+	 */
+	public static void startModule(MaryModule m) throws Exception {
+		synchronized (m) {
+			if (m.getState() == MaryModule.MODULE_OFFLINE) {
+				m.startup();
+			}
+		}
+	}
+
+	/**
+	 * Read the declared startup dependencies between modules from the list property <code>modules.startup.dependencies.list</code>,
+	 * whose entries have the form <code>DependentModule:PrerequisiteModule</code>, with fully qualified or simple class names.
+	 *
+	 * @return a map from dependent module class name to the names of its prerequisite module classes
+	 * @throws MaryConfigurationException
+	 *             if an entry is malformed
+	 */
+	private static Map<String, List<String>> getStartupDependencies() throws MaryConfigurationException {
+		Map<String, List<String>> prerequisites = new HashMap<String, List<String>>();
+		for (String entry : MaryProperties.getList("modules.startup.dependencies.list")) {
+			int colon = entry.indexOf(':');
+			if (colon <= 0 || colon == entry.length() - 1) {
+				throw new MaryConfigurationException("Startup dependency '" + entry
+						+ "' is not of the form DependentModule:PrerequisiteModule");
+			}
+			String dependent = entry.substring(0, colon).trim();
+			List<String> list = prerequisites.get(dependent);
+			if (list == null) {
+				list = new ArrayList<String>();
+				prerequisites.put(dependent, list);
+			}
+			list.add(entry.substring(colon + 1).trim());
+		}
+		return prerequisites;
+	}
+
+	/**
+	 * The fully qualified class names of the modules which must be started before a module of the given class.
+	 */
+	private static List<String> getStartupPrerequisites(Map<String, List<String>> prerequisites, Class<?> moduleClass) {
+		List<String> result = new ArrayList<String>();
+		List<String> declared = new ArrayList<String>();
+		if (prerequisites.containsKey(moduleClass.getName())) {
+			declared.addAll(prerequisites.get(moduleClass.getName()));
+		}
+		if (prerequisites.containsKey(moduleClass.getSimpleName())) {
+			declared.addAll(prerequisites.get(moduleClass.getSimpleName()));
+		}
+		for (String name : declared) {
+			for (MaryModule other : ModuleRegistry.getAllModules()) {
+				String otherName = other.getClass().getName();
+				if ((otherName.equals(name) || other.getClass().getSimpleName().equals(name)) && !result.contains(otherName)) {
+					result.add(otherName);
 				}
-			});
-			logger.debug("Startup times:");
-			for (Pair<MaryModule, Long> p : startupTimes) {
-				logger.debug(p.getFirst().name() + ": " + p.getSecond() + " ms");
 			}
 		}
+		return result;
 	}
 
 	private static void setupFeatureProcessors() throws Exception {
@@ -296,6 +380,7 @@ public class Mary {
 
 		// Instantiate module classes and startup modules:
 		startModules();
+		LazyVoiceMonitor.start();
 
 		logger.info("Startup complete.");
 		currentState = STATE_RUNNING;
@@ -333,6 +418,7 @@ public class Mary {
 		if (currentState != STATE_RUNNING)
 			throw new IllegalStateException("MARY system is not running");
 		currentState = STATE_SHUTTING_DOWN;
+		LazyVoiceMonitor.stop();
 		logger.info("Shutting down modules...");
 		// Shut down modules:
 		for (MaryModule m : ModuleRegistry.getAllModules()) {
@@ -407,6 +493,7 @@ public class Mary {
 			} else {
 				audioFormat = Voice.AF22050;
 			}
+			audioFormat = MaryRuntimeUtils.getRequestedAudioFormat(audioFormat, outputTypeParams);
 			audioFileFormat = new AudioFileFormat(audioType, audioFormat, AudioSystem.NOT_SPECIFIED);
 		}
 
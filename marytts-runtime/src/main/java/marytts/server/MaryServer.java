@@ -49,6 +49,7 @@ import marytts.config.MaryConfig;
 import marytts.datatypes.MaryDataType;
 import marytts.htsengine.HMMVoice;
 import marytts.modules.synthesis.Voice;
+import marytts.server.binary.BinaryMaryServer;
 import marytts.signalproc.effects.AudioEffect;
 import marytts.signalproc.effects.AudioEffects;
 import marytts.signalproc.effects.BaseAudioEffect;
@@ -116,6 +117,10 @@ import org.apache.logging.log4j.Logger;
  * For example, "Robot(amount=100),Whisper(amount=50)" will convert the output into a whispered robotic voice with the specified
  * amounts.
  * <p>
+ * The optional SAMPLE_RATE=RATE requests audio at the given sampling rate in Hertz, e.g. SAMPLE_RATE=8000 for telephony, as
+ * <code>OUTPUT_TYPE_PARAMS=SAMPLE_RATE=8000</code> does in the HTTP interface. The request is refused if the audio of the voice
+ * cannot be converted to that rate.
+ * <p>
  * Example: The line
  *
  * <pre>
@@ -139,6 +144,10 @@ import org.apache.logging.log4j.Logger;
  * <li>The processing result is output to <code>dataSocket</code>.</li>
  * </ol>
  *
+ * <p>
+ * If <code>socket.binary.port</code> is set, the server also accepts clients using the binary protocol of
+ * {@link BinaryMaryServer} on that port, which can send any number of concurrent requests over one connection.
+ *
  * @see RequestHandler
  * @author Marc Schr&ouml;der
  */
@@ -157,6 +166,11 @@ public class MaryServer implements Runnable {
 	public void run() {
 		logger.info("Starting server.");
 		try {
+			if (MaryProperties.getInteger("socket.binary.port", 0) > 0) {
+				Thread binaryServer = new Thread(new BinaryMaryServer(), "BinaryMaryServer");
+				binaryServer.setDaemon(true);
+				binaryServer.start();
+			}
 			server = new ServerSocket(MaryProperties.needInteger("socket.port"), 0, MaryProperties.needInetAddress("socket.addr"));
 
 			while (true) {
@@ -175,6 +189,188 @@ public class MaryServer implements Runnable {
 		return runningNumber++;
 	}
 
+	/**
+	 * Parse a synthesis request line of the form "MARY IN=INPUTTYPE OUT=OUTPUTTYPE LOCALE=LOCALE [AUDIO=AUDIOTYPE]
+	 * [VOICE=VOICENAME] [STYLE=STYLE] [EFFECTS=EFFECTS] [SAMPLE_RATE=RATE] [LOG=...]", as described in the documentation of this
+	 * class.
+	 *
+	 * @param inputLine
+	 *            the request line
+	 * @param id
+	 *            the id of the new request
+	 * @return a new request, whose input data has not been set yet
+	 * @throws Exception
+	 *             if the request line is malformed or requests something that is not available
+	 */
+	public static Request parseSynthesisRequest(String inputLine, int id) throws Exception {
+		Logger logger = MaryUtils.getLogger("server");
+		StringTokenizer t = new StringTokenizer(inputLine);
+
+		if (t.hasMoreTokens()) {
+			t.nextToken(); // discard MARY head
+		}
+
+		MaryDataType inputType = parseSynthesisRequiredInputType(t);
+		MaryDataType outputType = parseSynthesisRequiredOutputType(t);
+		Locale locale = parseSynthesisRequiredLocale(t);
+
+		// Optional from here on
+		AudioFileFormat.Type audioFileFormatType = null;
+		boolean streamingAudio = false;
+		Voice voice = null;
+		String style = null;
+		String effects = null;
+		String outputTypeParams = null;
+
+		while (t.hasMoreTokens()) {
+			String token = t.nextToken();
+			if (token.startsWith("AUDIO")) {
+				// AUDIO (optional and ignored if output type != AUDIO)
+				String audio = parseProtocolParameter(token, "AUDIO", "AUDIOTYPE");
+				streamingAudio = audio.startsWith("STREAMING_");
+				if (outputType == MaryDataType.get("AUDIO")) {
+					if (streamingAudio) {
+						audioFileFormatType = MaryAudioUtils.getAudioFileFormatType(audio.substring(10));
+					} else {
+						audioFileFormatType = MaryAudioUtils.getAudioFileFormatType(audio);
+					}
+				}
+			} else if (token.startsWith("VOICE")) {
+				// Optional VOICE field
+				voice = parseSynthesisVoiceType(token, locale);
+			} else if (token.startsWith("STYLE")) {
+				// Optional STYLE field
+				style = parseProtocolParameter(token, "STYLE", "STYLE_NAME");
+			} else if (token.startsWith("EFFECTS")) {
+				// Optional EFFECTS field
+				effects = parseProtocolParameter(token, "EFFECTS", "EFFECTS_LIST");
+			} else if (token.startsWith("SAMPLE_RATE")) {
+				// Optional SAMPLE_RATE field, passed on like the output type parameter of the HTTP interface
+				outputTypeParams = MaryRuntimeUtils.SAMPLE_RATE_PARAM + parseProtocolParameter(token, "SAMPLE_RATE", "RATE");
+			} else if (token.startsWith("LOG")) {
+				// Optional LOG field
+				// If present, the rest of the line counts as the value of LOG=
+				parseSynthesisLog(token, t, logger);
+			}
+		}
+
+		// Construct audio file format -- even when output is not AUDIO,
+		// in case we need to pass via audio to get our output type.
+		if (audioFileFormatType == null) {
+			audioFileFormatType = AudioFileFormat.Type.WAVE;
+		}
+		if (voice == null) {
+			// no voice tag -- use locale default
+			voice = Voice.getDefaultVoice(locale);
+			logger.debug("No voice requested -- using default " + voice);
+		}
+		if (style == null) {
+			logger.debug("No style requested");
+		} else {
+			logger.debug("Style requested: " + style);
+		}
+		if (effects == null) {
+			logger.debug("No audio effects requested");
+		} else {
+			logger.debug("Audio effects requested: " + effects);
+		}
+
+		// Now, the parse is complete.
+		AudioFormat audioFormat = voice.dbAudioFormat();
+		if (audioFileFormatType.toString().equals("MP3")) {
+			if (!MaryRuntimeUtils.canCreateMP3()) {
+				throw new UnsupportedAudioFileException("Conversion to MP3 not supported.");
+			}
+			audioFormat = MaryRuntimeUtils.getMP3AudioFormat();
+		} else if (audioFileFormatType.toString().equals("Vorbis")) {
+			if (!MaryRuntimeUtils.canCreateOgg()) {
+				throw new UnsupportedAudioFileException("Conversion to OGG Vorbis format not supported.");
+			}
+			audioFormat = MaryRuntimeUtils.getOggAudioFormat();
+		}
+		audioFormat = MaryRuntimeUtils.getRequestedAudioFormat(audioFormat, outputTypeParams);
+
+		AudioFileFormat audioFileFormat = new AudioFileFormat(audioFileFormatType, audioFormat, AudioSystem.NOT_SPECIFIED);
+		return new Request(inputType, outputType, locale, voice, effects, style, id, audioFileFormat, streamingAudio,
+				outputTypeParams);
+	}
+
+	/**
+	 * Verifies and parses the protocol parameter
+	 *
+	 * @param token
+	 *            the string to read the parameter from
+	 * @param expectedParameterName
+	 *            the expected parameter name
+	 * @param parameterDescription
+	 *            human readable description of the parameter
+	 * @return The value for the given parameter.
+	 * @throws Exception
+	 *             if the parameter is not of the type expected or the protocol is malformed.
+	 * @throws NullPointerException
+	 *             - if token is null
+	 */
+	private static String parseProtocolParameter(String token, String expectedParameterType, String parameterDescription)
+			throws Exception {
+		StringTokenizer tt = new StringTokenizer(token, "=");
+		if (tt.countTokens() != 2 || !tt.nextToken().equals(expectedParameterType)) {
+			throw new Exception("Expected " + expectedParameterType + "=<" + parameterDescription + ">");
+		}
+		return tt.nextToken();
+	}
+
+	private static void parseSynthesisLog(String token, StringTokenizer t, Logger logger) throws Exception {
+		String log = parseProtocolParameter(token, "LOG", "LOG_INPUT");
+		// Rest of line:
+		while (t.hasMoreTokens()) {
+			log = log + " " + t.nextToken();
+		}
+		logger.info("Connection info: " + log);
+	}
+
+	private static Voice parseSynthesisVoiceType(String t, Locale locale) throws Exception {
+		String voiceName = parseProtocolParameter(t, "VOICE", "VOICE_NAME_OR_GENDER");
+		if ((voiceName.equals("male") || voiceName.equals("female")) && locale != null) {
+			// Locale-specific interpretation of gender
+			return Voice.getVoice(locale, new Voice.Gender(voiceName));
+		} else {
+			// Plain old voice name
+			return Voice.getVoice(voiceName);
+		}
+	}
+
+	private static MaryDataType parseSynthesisRequiredInputType(StringTokenizer t) throws Exception {
+		if (!t.hasMoreTokens()) {
+			throw new Exception("Expected IN=<INPUTTYPE>");
+		}
+		String input = parseProtocolParameter(t.nextToken(), "IN", "INPUTTYPE");
+		MaryDataType inputType = MaryDataType.get(input);
+		if (inputType == null) {
+			throw new Exception("Invalid input type: " + input);
+		}
+		return inputType;
+	}
+
+	private static MaryDataType parseSynthesisRequiredOutputType(StringTokenizer t) throws Exception {
+		if (!t.hasMoreTokens()) {
+			throw new Exception("Expected OUT=<OUTPUTTYPE>");
+		}
+		String output = parseProtocolParameter(t.nextToken(), "OUT", "OUTPUTTYPE");
+		MaryDataType outputType = MaryDataType.get(output);
+		if (outputType == null) {
+			throw new Exception("Invalid output type: " + output);
+		}
+		return outputType;
+	}
+
+	private static Locale parseSynthesisRequiredLocale(StringTokenizer t) throws Exception {
+		if (!t.hasMoreTokens()) {
+			throw new Exception("Expected LOCALE=<locale>");
+		}
+		String localeString = parseProtocolParameter(t.nextToken(), "LOCALE", "locale");
+		return MaryUtils.string2locale(localeString);
+	}
+
 	public class ClientHandler implements Runnable {
 
 		Socket client;
@@ -289,99 +485,12 @@ public class MaryServer implements Runnable {
 		}
 
 		private boolean handleSynthesisRequest(String inputLine) throws Exception {
-			int id = 0;
-
 			if (!inputLine.startsWith("MARY")) {
 				return false;
 			}
-
-			StringTokenizer t = new StringTokenizer(inputLine);
-
-			if (t.hasMoreTokens()) {
-				t.nextToken(); // discard MARY head
-			}
-
-			MaryDataType inputType = parseSynthesisRequiredInputType(t);
-			MaryDataType outputType = parseSynthesisRequiredOutputType(t);
-			Locale locale = parseSynthesisRequiredLocale(t);
-
-			// Optional from here on
-			AudioFileFormat.Type audioFileFormatType = null;
-			boolean streamingAudio = false;
-			Voice voice = null;
-			String style = null;
-			String effects = null;
-
-			while (t.hasMoreTokens()) {
-				String token = t.nextToken();
-				if (token.startsWith("AUDIO")) {
-					// AUDIO (optional and ignored if output type != AUDIO)
-					String audio = parseProtocolParameter(token, "AUDIO", "AUDIOTYPE");
-					streamingAudio = audio.startsWith("STREAMING_");
-					if (outputType == MaryDataType.get("AUDIO")) {
-						if (streamingAudio) {
-							audioFileFormatType = MaryAudioUtils.getAudioFileFormatType(audio.substring(10));
-						} else {
-							audioFileFormatType = MaryAudioUtils.getAudioFileFormatType(audio);
-						}
-					}
-				} else if (token.startsWith("VOICE")) {
-					// Optional VOICE field
-					voice = parseSynthesisVoiceType(token, locale);
-				} else if (token.startsWith("STYLE")) {
-					// Optional STYLE field
-					style = parseProtocolParameter(token, "STYLE", "STYLE_NAME");
-				} else if (token.startsWith("EFFECTS")) {
-					// Optional EFFECTS field
-					effects = parseProtocolParameter(token, "EFFECTS", "EFFECTS_LIST");
-				} else if (token.startsWith("LOG")) {
-					// Optional LOG field
-					// If present, the rest of the line counts as the value of LOG=
-					parseSynthesisLog(token, t);
-				}
-			}
-
-			// Construct audio file format -- even when output is not AUDIO,
-			// in case we need to pass via audio to get our output type.
-			if (audioFileFormatType == null) {
-				audioFileFormatType = AudioFileFormat.Type.WAVE;
-			}
-			if (voice == null) {
-				// no voice tag -- use locale default
-				voice = Voice.getDefaultVoice(locale);
-				logger.debug("No voice requested -- using default " + voice);
-			}
-			if (style == null) {
-				logger.debug("No style requested");
-			} else {
-				logger.debug("Style requested: " + style);
-			}
-			if (effects == null) {
-				logger.debug("No audio effects requested");
-			} else {
-				logger.debug("Audio effects requested: " + effects);
-			}
-
-			// Now, the parse is complete.
 			// this request's id:
-			id = getID();
-
-			AudioFormat audioFormat = voice.dbAudioFormat();
-			if (audioFileFormatType.toString().equals("MP3")) {
-				if (!MaryRuntimeUtils.canCreateMP3()) {
-					throw new UnsupportedAudioFileException("Conversion to MP3 not supported.");
-				}
-				audioFormat = MaryRuntimeUtils.getMP3AudioFormat();
-			} else if (audioFileFormatType.toString().equals("Vorbis")) {
-				if (!MaryRuntimeUtils.canCreateOgg()) {
-					throw new UnsupportedAudioFileException("Conversion to OGG Vorbis format not supported.");
-				}
-				audioFormat = MaryRuntimeUtils.getOggAudioFormat();
-			}
-
-			AudioFileFormat audioFileFormat = new AudioFileFormat(audioFileFormatType, audioFormat, AudioSystem.NOT_SPECIFIED);
-			Request request = new Request(inputType, outputType, locale, voice, effects, style, id, audioFileFormat,
-					streamingAudio, null);
+			int id = getID();
+			Request request = parseSynthesisRequest(inputLine, id);
 			clientOut.println(id);
 			// -- create new clientMap entry
 			Object[] value = new Object[2];
@@ -391,82 +500,6 @@ public class MaryServer implements Runnable {
 			return true;
 		}
 
-		/**
-		 * Verifies and parses the protocol parameter
-		 *
-		 * @param token
-		 *            the string to read the parameter from
-		 * @param expectedParameterName
-		 *            the expected parameter name
-		 * @param parameterDescription
-		 *            human readable description of the parameter
-		 * @return The value for the given parameter.
-		 * @throws Exception
-		 *             if the parameter is not of the type expected or the protocol is malformed.
-		 * @throws NullPointerException
-		 *             - if token is null
-		 */
-		private String parseProtocolParameter(String token, String expectedParameterType, String parameterDescription)
-				throws Exception {
-			StringTokenizer tt = new StringTokenizer(token, "=");
-			if (tt.countTokens() != 2 || !tt.nextToken().equals(expectedParameterType)) {
-				throw new Exception("Expected " + expectedParameterType + "=<" + parameterDescription + ">");
-			}
-			return tt.nextToken();
-		}
-
-		private void parseSynthesisLog(String token, StringTokenizer t) throws Exception {
-			String log = parseProtocolParameter(token, "LOG", "LOG_INPUT");
-			// Rest of line:
-			while (t.hasMoreTokens()) {
-				log = log + " " + t.nextToken();
-			}
-			logger.info("Connection info: " + log);
-		}
-
-		private Voice parseSynthesisVoiceType(String t, Locale locale) throws Exception {
-			String voiceName = parseProtocolParameter(t, "VOICE", "VOICE_NAME_OR_GENDER");
-			if ((voiceName.equals("male") || voiceName.equals("female")) && locale != null) {
-				// Locale-specific interpretation of gender
-				return Voice.getVoice(locale, new Voice.Gender(voiceName));
-			} else {
-				// Plain old voice name
-				return Voice.getVoice(voiceName);
-			}
-		}
-
-		private MaryDataType parseSynthesisRequiredInputType(StringTokenizer t) throws Exception {
-			if (!t.hasMoreTokens()) {
-				throw new Exception("Expected IN=<INPUTTYPE>");
-			}
-			String input = parseProtocolParameter(t.nextToken(), "IN", "INPUTTYPE");
-			MaryDataType inputType = MaryDataType.get(input);
-			if (inputType == null) {
-				throw new Exception("Invalid input type: " + input);
-			}
-			return inputType;
-		}
-
-		private MaryDataType parseSynthesisRequiredOutputType(StringTokenizer t) throws Exception {
-			if (!t.hasMoreTokens()) {
-				throw new Exception("Expected OUT=<OUTPUTTYPE>");
-			}
-			String output = parseProtocolParameter(t.nextToken(), "OUT", "OUTPUTTYPE");
-			MaryDataType outputType = MaryDataType.get(output);
-			if (outputType == null) {
-				throw new Exception("Invalid output type: " + output);
-			}
-			return outputType;
-		}
-
-		private Locale parseSynthesisRequiredLocale(StringTokenizer t) throws Exception {
-			if (!t.hasMoreTokens()) {
-				throw new Exception("Expected LOCALE=<locale>");
-			}
-			String localeString = parseProtocolParameter(t.nextToken(), "LOCALE", "locale");
-			return MaryUtils.string2locale(localeString);
-		}
-
 		private boolean handleNumberRequest(String inputLine, Reader reader) throws Exception {
 			// * if number
 			int id = 0;
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.datatypes.MaryData;
+import marytts.datatypes.MaryDataType;
+import marytts.htsengine.HMMVoice;
+import marytts.modules.synthesis.Voice;
+import marytts.server.metrics.MaryMetrics;
+import marytts.unitselection.UnitSelectionVoice;
+
+/**
+ * Admission control for requests based on memory pressure. Each request reserves the amount of memory it is estimated to need
+ * (see {@link #estimate(Request)}) before it is processed, and releases it when its output has been written. A request is
+ * admitted if its reservation fits into the maximum heap size next to the heap that was still live after the last garbage
+ * collection, the reservations of the requests in progress, and a headroom of <code>mary.lowmemory</code> bytes. Otherwise,
+ * it waits for up to <code>server.admission.timeout</code> milliseconds for memory to become free, and is then rejected, so that
+ * an overloaded server answers "busy" rather than running out of memory. A request arriving while no other request is in progress
+ * is always admitted.
+ * <p>
+ * Since the live heap includes the data of the requests in progress which survived a collection, the check errs on the safe
+ * side.
+ */
+public class MemoryAdmissionControl {
+	/** Memory needed by any request, independently of its size */
+	private static final long BASE_BYTES = 1000000;
+	/** Memory for the MaryXML document and the targets per character of input, for a request going all the way to audio */
+	private static final long BYTES_PER_CHAR = 4000;
+	/** Seconds of speech per character of input, at a normal speaking rate */
+	private static final double SECONDS_PER_CHAR = 0.07;
+	/** Memory for parameter generation per second of speech for HMM voices */
+	private static final long HMM_BYTES_PER_SECOND = 400000;
+	/** Memory for the selected units per second of speech for unit selection voices */
+	private static final long UNITSELECTION_BYTES_PER_SECOND = 100000;
+
+	private static MemoryAdmissionControl instance;
+
+	/**
+	 * The admission control of this server, configured from the Mary properties.
+	 *
+	 * @return the admission control
+	 */
+	public static synchronized MemoryAdmissionControl getInstance() {
+		if (instance == null) {
+			instance = new MemoryAdmissionControl(MaryProperties.getBoolean("server.admission", true),
+					MaryProperties.getInteger("server.admission.timeout", 10000), MaryProperties.getInteger("mary.lowmemory",
+							10000000));
+		}
+		return instance;
+	}
+
+	private final boolean enabled;
+	private final long timeoutMillis;
+	private final long headroom;
+
+	// all guarded by this:
+	private long reservedBytes;
+	private int inProgress;
+	private int waiting;
+	private long admittedCount;
+	private long rejectedCount;
+
+	/**
+	 * Create an admission control.
+	 *
+	 * @param enabled
+	 *            if false, all requests are admitted, but the gauges are maintained
+	 * @param timeoutMillis
+	 *            how long a request waits for memory to become available before it is rejected
+	 * @param headroom
+	 *            the number of bytes of heap that reservations must leave free
+	 */
+	public MemoryAdmissionControl(boolean enabled, long timeoutMillis, long headroom) {
+		this.enabled = enabled;
+		this.timeoutMillis = timeoutMillis;
+		this.headroom = headroom;
+	}
+
+	/**
+	 * Estimate the memory needed to process the request: its input data must have been set. The estimate grows with the length
+	 * of the input text; for audio output, it includes the audio, with a copy for effects and encoding, and the intermediate
+	 * data of the voice type per second of speech.
+	 *
+	 * @param request
+	 *            the request
+	 * @return the estimated memory in bytes
+	 */
+	public static long estimate(Request request) {
+		MaryData input = request.getInputData();
+		long chars = 0;
+		if (input != null) {
+			if (input.getPlainText() != null) {
+				chars = input.getPlainText().length();
+			} else if (input.getDocument() != null) {
+				chars = input.getDocument().getDocumentElement().getTextContent().length();
+			}
+		}
+		long bytes = BASE_BYTES + chars * BYTES_PER_CHAR;
+		if (request.getOutputType() == MaryDataType.AUDIO) {
+			double seconds = chars * SECONDS_PER_CHAR;
+			Voice voice = request.getDefaultVoice();
+			AudioFormat format = voice != null ? voice.dbAudioFormat() : request.getAudioFileFormat().getFormat();
+			double audioBytesPerSecond = format.getFrameRate() * format.getFrameSize();
+			if (audioBytesPerSecond <= 0) { // e.g., compressed formats
+				audioBytesPerSecond = 2 * Voice.AF16000.getFrameRate();
+			}
+			double bytesPerSecond = 2 * audioBytesPerSecond;
+			if (voice instanceof HMMVoice) {
+				bytesPerSecond += HMM_BYTES_PER_SECOND;
+			} else if (voice instanceof UnitSelectionVoice) {
+				bytesPerSecond += UNITSELECTION_BYTES_PER_SECOND;
+			}
+			bytes += (long) (seconds * bytesPerSecond);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reserve memory for a request, waiting for up to the configured timeout if it is not available.
+	 *
+	 * @param bytes
+	 *            the memory to reserve
+	 * @return the reservation, which must be released when the request is done, or null if the request is rejected
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized Reservation admit(long bytes) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		long start = System.nanoTime();
+		waiting++;
+		try {
+			while (!fits(bytes)) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					rejectedCount++;
+					return null;
+				}
+				// garbage collection frees memory without telling us, so look again from time to time:
+				wait(Math.min(wait, 100));
+			}
+		} finally {
+			waiting--;
+			MaryMetrics.queueWait("admission", System.nanoTime() - start);
+		}
+		reservedBytes += bytes;
+		inProgress++;
+		admittedCount++;
+		return new Reservation(bytes);
+	}
+
+	private boolean fits(long bytes) {
+		if (!enabled || inProgress == 0) {
+			return true;
+		}
+		return getLiveHeap() + reservedBytes + bytes + headroom <= getMaxHeap();
+	}
+
+	private synchronized void release(long bytes) {
+		reservedBytes -= bytes;
+		inProgress--;
+		notifyAll();
+	}
+
+	/**
+	 * The heap that was still in use after the last garbage collection of each heap memory pool, i.e. an estimate of the live data
+	 * which does not count garbage that has not been collected yet.
+	 *
+	 * @return the live heap in bytes
+	 */
+	public long getLiveHeap() {
+		long live = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP) {
+				continue;
+			}
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage == null) {
+				usage = pool.getUsage();
+			}
+			live += usage.getUsed();
+		}
+		return live;
+	}
+
+	public long getMaxHeap() {
+		return Runtime.getRuntime().maxMemory();
+	}
+
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	public synchronized int getInProgress() {
+		return inProgress;
+	}
+
+	public synchronized int getWaiting() {
+		return waiting;
+	}
+
+	public synchronized long getAdmittedCount() {
+		return admittedCount;
+	}
+
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * The current values of the gauges, one per line: name, a space, and the value.
+	 *
+	 * @return a multi-line string
+	 */
+	public String getStatus() {
+		String nl = System.getProperty("line.separator");
+		StringBuilder output = new StringBuilder();
+		synchronized (this) {
+			output.append("enabled ").append(enabled).append(nl);
+			output.append("requests_in_progress ").append(inProgress).append(nl);
+			output.append("requests_waiting ").append(waiting).append(nl);
+			output.append("requests_admitted ").append(admittedCount).append(nl);
+			output.append("requests_rejected ").append(rejectedCount).append(nl);
+			output.append("reserved_bytes ").append(reservedBytes).append(nl);
+		}
+		output.append("live_heap_bytes ").append(getLiveHeap()).append(nl);
+		output.append("max_heap_bytes ").append(getMaxHeap()).append(nl);
+		output.append("headroom_bytes ").append(headroom).append(nl);
+		return output.toString();
+	}
+
+	/**
+	 * The memory reserved for one request.
+	 */
+	public class Reservation {
+		private final long bytes;
+		private boolean released;
+
+		private Reservation(long bytes) {
+			this.bytes = bytes;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Give the reserved memory back. Calling this more than once has no effect.
+		 */
+		public void release() {
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				released = true;
+			}
+			MemoryAdmissionControl.this.release(bytes);
+		}
+	}
+}
@@ -48,8 +48,8 @@ import marytts.datatypes.MaryXML;
 import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
 import marytts.modules.synthesis.Voice;
+import marytts.server.metrics.MaryMetrics;
 import marytts.util.MaryCache;
-import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
 import marytts.util.dom.DomUtils;
@@ -185,6 +185,15 @@ public class Request {
 		return audioFileFormat;
 	}
 
+	/**
+	 * The input data, as set by <code>setInputData()</code> or <code>readInputData()</code>.
+	 *
+	 * @return the input data, or null if it has not been set yet.
+	 */
+	public MaryData getInputData() {
+		return inputData;
+	}
+
 	public AppendableSequenceAudioInputStream getAudio() {
 		return appendableAudioStream;
 	}
@@ -270,13 +279,29 @@ public class Request {
 	public void process() throws Exception {
 		assert Mary.currentState() == Mary.STATE_RUNNING;
 		long startTime = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
 		if (inputData == null)
 			throw new NullPointerException("Input data is not set.");
 		if (inputType.isXMLType() && inputData.getDocument() == null)
 			throw new NullPointerException("Input data contains no XML document.");
 		if (inputType.isMaryXML() && !inputData.getDocument().getDocumentElement().hasAttribute("xml:lang"))
 			throw new IllegalArgumentException("Mandatory attribute xml:lang is missing from maryxml document element.");
+		Voice voice = defaultVoice;
+		if (voice != null) {
+			// a lazy voice is loaded here, so that loading problems are reported as such,
+			// and it stays loaded until the request is done, so that all modules use the same data:
+			voice.acquire();
+		}
+		try {
+			processWithVoice(startTime, startNanos);
+		} finally {
+			if (voice != null) {
+				voice.release();
+			}
+		}
+	}
 
+	private void processWithVoice(long startTime, long startNanos) throws Exception {
 		NodeList inputDataList;
 		MaryData rawmaryxml;
 		// Is inputdata of a type that must be converted to RAWMARYXML?
@@ -353,6 +378,8 @@ public class Request {
 			}
 		}
 		long stopTime = System.currentTimeMillis();
+		MaryMetrics.requestProcessed(outputType.name(), defaultVoice != null ? defaultVoice.getName() : null, System.nanoTime()
+				- startNanos);
 		logger.info("Request processed in " + (stopTime - startTime) + " ms.");
 		for (MaryModule m : usedModules) {
 			logger.info("   " + m.name() + " took " + timingInfo.get(m) + " ms");
@@ -421,6 +448,7 @@ public class Request {
 			try {
 				String outputtext = cache.lookupText(inputtype, outputtype, localeString, voice, outputParams, defaultStyle,
 						defaultEffects, inputtext);
+				MaryMetrics.cacheLookup("text", outputtext != null);
 				if (outputtext != null) {
 					MaryData outData = new MaryData(oneOutputType, locale);
 					ByteArrayInputStream sr = new ByteArrayInputStream(outputtext.getBytes());
@@ -438,6 +466,7 @@ public class Request {
 			try {
 				byte[] wavFileData = cache.lookupAudio(inputtype, localeString, voice, outputParams, defaultStyle,
 						defaultEffects, inputtext);
+				MaryMetrics.cacheLookup("audio", wavFileData != null);
 				if (wavFileData != null) {
 					AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wavFileData));
 					MaryData outData = new MaryData(oneOutputType, locale);
@@ -487,8 +516,20 @@ public class Request {
 		AppendableSequenceAudioInputStream as = (AppendableSequenceAudioInputStream) currentData.getAudio();
 		assert as != appendableAudioStream;
 		as.doneAppending();
-		ByteArrayOutputStream baos = new ByteArrayOutputStream(2 * (int) as.getFrameLength() + 100);
-		AudioSystem.write(as, AudioFileFormat.Type.WAVE, baos);
+		AudioInputStream toCache = as;
+		if (as.getFrameLength() == AudioSystem.NOT_SPECIFIED) {
+			// e.g. audio with effects, whose length is only known at the end: the cache needs a complete WAVE header
+			ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = as.read(buf)) != -1) {
+				pcm.write(buf, 0, n);
+			}
+			toCache = new AudioInputStream(new ByteArrayInputStream(pcm.toByteArray()), as.getFormat(), pcm.size()
+					/ as.getFormat().getFrameSize());
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(2 * (int) Math.max(0, toCache.getFrameLength()) + 100);
+		AudioSystem.write(toCache, AudioFileFormat.Type.WAVE, baos);
 		byte[] wavFileData = baos.toByteArray();
 		cache.insertAudio(inputtype, localeString, voice, outputParams, defaultStyle, defaultEffects, inputtext, wavFileData);
 		AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wavFileData));
@@ -528,6 +569,8 @@ public class Request {
 			logger.info("- " + m.name() + " (" + m.getClass().getName() + ")");
 		}
 		MaryData currentData = oneInputData;
+		// the size of the chunk, rather than of each module's input, which would mean walking the document once per module:
+		long inputSize = MaryMetrics.inputSize(oneInputData);
 		for (MaryModule m : neededModules) {
 			if (abortRequested)
 				break;
@@ -539,6 +582,8 @@ public class Request {
 				assert m.getState() == MaryModule.MODULE_RUNNING;
 			}
 			long moduleStartTime = System.currentTimeMillis();
+			long allocatedBefore = MaryMetrics.threadAllocatedBytes();
+			long moduleStartNanos = System.nanoTime();
 			// Let synthesis know which audio format to produce:
 			// (this isn't nice -- instead, we could add a reference
 			// to the Request to each MaryData, and look up request-specific
@@ -575,6 +620,10 @@ public class Request {
 			outData.setDefaultEffects(defaultEffects);
 
 			currentData = outData;
+			long moduleNanos = System.nanoTime() - moduleStartNanos;
+			long allocated = allocatedBefore >= 0 ? MaryMetrics.threadAllocatedBytes() - allocatedBefore : -1;
+			MaryMetrics.moduleProcessed(m.name(), defaultVoice != null ? defaultVoice.getName() : null, inputSize, moduleNanos,
+					allocated);
 			long moduleStopTime = System.currentTimeMillis();
 			long delta = moduleStopTime - moduleStartTime;
 			Long soFar = timingInfo.get(m);
@@ -582,12 +631,6 @@ public class Request {
 				timingInfo.put(m, Long.valueOf(soFar.longValue() + delta));
 			else
 				timingInfo.put(m, Long.valueOf(delta));
-			if (MaryRuntimeUtils.veryLowMemoryCondition()) {
-				logger.info("Very low memory condition detected (only " + MaryUtils.availableMemory()
-						+ " bytes left). Triggering garbage collection.");
-				Runtime.getRuntime().gc();
-				logger.info("After garbage collection: " + MaryUtils.availableMemory() + " bytes available.");
-			}
 		}
 		if (currentData.getType() == MaryDataType.AUDIO) {
 			AudioInputStream ais = currentData.getAudio();
@@ -31,13 +31,14 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.net.Socket;
 
-import javax.sound.sampled.AudioSystem;
 import javax.xml.transform.TransformerException;
 
 import marytts.datatypes.MaryDataType;
+import marytts.modules.synthesis.Voice;
 import marytts.server.http.MaryHttpServerUtils;
-import marytts.util.MaryRuntimeUtils;
+import marytts.server.metrics.MaryMetrics;
 import marytts.util.MaryUtils;
+import marytts.util.data.audio.StreamingAudioFileWriter;
 import marytts.util.io.LoggingReader;
 
 import org.apache.http.HttpResponse;
@@ -160,78 +161,94 @@ public class RequestHandler extends Thread {
 			ok = false;
 		}
 
-		boolean streamingOutput = false;
-		StreamingOutputWriter rw = null;
-		// Process input data to output data
-		if (ok)
+		MemoryAdmissionControl.Reservation reservation = null;
+		if (ok) {
 			try {
-				if (request.getOutputType().equals(MaryDataType.get("AUDIO")) && request.getStreamAudio()) {
-					streamingOutput = true;
-					rw = new StreamingOutputWriter(request, dataSocket.getOutputStream());
-					rw.start();
-				}
-
-				request.process();
-			} catch (Throwable e) {
-				String message = "Processing failed.";
-				logger.error(message, e);
-				clientLogError(message, e);
-				ok = false;
+				reservation = MemoryAdmissionControl.getInstance().admit(MemoryAdmissionControl.estimate(request));
+			} catch (InterruptedException e) {
 			}
-
-		// For simple clients, we need to close the infoSocket before sending
-		// the data on dataSocket. Otherwise there may be deadlock.
-		try {
-			if (clientLogger != null) {
-                            // Remove appender
-                            final LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
-                            final Configuration config = ctx.getConfiguration();
-                            config.getLoggerConfig(clientLogger.getName()).removeAppender(clientLogger.getName());
-                            ctx.updateLoggers();
-
-                            // Free reference to the logger
-                            clientLogger = null;
+			if (reservation == null) {
+				String message = "Server is too busy, please try again later.";
+				logger.warn("Not enough memory for request -- rejecting it");
+				if (clientLogger != null)
+					clientLogger.error(message);
+				ok = false;
 			}
-			infoSocket.close();
-		} catch (IOException e) {
-			logger.warn("Couldn't close info socket properly.", e);
-			ok = false;
 		}
 
-		// Write output:
-		if (ok) {
-			if (!streamingOutput) {
+		// everything after a successful admission must release the reserved memory, whatever happens:
+		try {
+			boolean streamingOutput = false;
+			StreamingOutputWriter rw = null;
+			// Process input data to output data
+			if (ok)
 				try {
-					request.writeOutputData(dataSocket.getOutputStream());
-				} catch (Exception e) {
-					String message = "Cannot write output, client seems to have disconnected.";
-					logger.warn(message, e);
+					if (request.getOutputType().equals(MaryDataType.get("AUDIO")) && request.getStreamAudio()) {
+						streamingOutput = true;
+						rw = new StreamingOutputWriter(request, dataSocket.getOutputStream());
+						rw.start();
+					}
+
+					request.process();
+				} catch (Throwable e) {
+					String message = "Processing failed.";
+					logger.error(message, e);
+					clientLogError(message, e);
 					ok = false;
 				}
-			} else { // streaming output
-				try {
-					rw.join();
-				} catch (InterruptedException ie) {
-					logger.warn(ie);
+
+			// For simple clients, we need to close the infoSocket before sending
+			// the data on dataSocket. Otherwise there may be deadlock.
+			try {
+				if (clientLogger != null) {
+					// Remove appender
+					final LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
+					final Configuration config = ctx.getConfiguration();
+					config.getLoggerConfig(clientLogger.getName()).removeAppender(clientLogger.getName());
+					ctx.updateLoggers();
+
+					// Free reference to the logger
+					clientLogger = null;
 				}
+				infoSocket.close();
+			} catch (IOException e) {
+				logger.warn("Couldn't close info socket properly.", e);
+				ok = false;
+			}
+
+			// Write output:
+			if (ok) {
+				if (!streamingOutput) {
+					try {
+						request.writeOutputData(dataSocket.getOutputStream());
+					} catch (Exception e) {
+						String message = "Cannot write output, client seems to have disconnected.";
+						logger.warn(message, e);
+						ok = false;
+					}
+				} else { // streaming output
+					try {
+						rw.join();
+					} catch (InterruptedException ie) {
+						logger.warn(ie);
+					}
+				}
+			}
+			try {
+				dataSocket.close();
+			} catch (IOException e) {
+				logger.warn("Couldn't close data socket properly.", e);
+				ok = false;
+			}
+		} finally {
+			if (reservation != null) {
+				reservation.release();
 			}
-		}
-		try {
-			dataSocket.close();
-		} catch (IOException e) {
-			logger.warn("Couldn't close data socket properly.", e);
-			ok = false;
 		}
 		if (ok)
 			logger.info("Request handled successfully.");
 		else
 			logger.info("Request couldn't be handled successfully.");
-		if (MaryRuntimeUtils.lowMemoryCondition()) {
-			logger.info("Low memory condition detected (only " + MaryUtils.availableMemory()
-					+ " bytes left). Triggering garbage collection.");
-			Runtime.getRuntime().gc();
-			logger.info("After garbage collection: " + MaryUtils.availableMemory() + " bytes available.");
-		}
 
 	} // run()
 
@@ -249,10 +266,12 @@ public class RequestHandler extends Thread {
 
 		public void run() {
 			try {
-				AudioSystem.write(request.getAudio(), request.getAudioFileFormat().getType(), output);
+				StreamingAudioFileWriter.write(request.getAudio(), request.getAudioFileFormat().getType(), output);
 				output.flush();
 				output.close();
 				logger.info("Finished writing output");
+				Voice voice = request.getDefaultVoice();
+				MaryMetrics.audioStreamed(voice != null ? voice.getName() : null, request.getAudio());
 			} catch (IOException ioe) {
 				logger.info("Cannot write output, client seems to have disconnected. ", ioe);
 				request.abort();
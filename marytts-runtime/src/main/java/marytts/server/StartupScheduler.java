@@ -0,0 +1,368 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.exceptions.MaryConfigurationException;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs a set of startup tasks (module startup, voice loading, ...) on a number of threads, respecting declared dependencies
+ * between them: a task is only started once all the tasks it depends on have completed successfully. With a single thread, tasks
+ * are run on the calling thread, in the order in which they were added as far as the dependencies permit.
+ * <p>
+ * After {@link #run()}, the time each task took and the critical path, i.e. the chain of dependent tasks which determined the
+ * overall startup time, can be logged using {@link #logReport(Logger)}.
+ */
+public class StartupScheduler {
+	/**
+	 * A unit of startup work.
+	 */
+	public interface Task {
+		public void run() throws Exception;
+	}
+
+	private static class Node {
+		final String id;
+		final Task task;
+		final List<String> dependencies = new ArrayList<String>();
+		final List<Node> dependents = new ArrayList<Node>();
+		int pendingDependencies;
+		long startMillis = -1;
+		long endMillis = -1;
+		Node criticalPredecessor;
+
+		Node(String id, Task task) {
+			this.id = id;
+			this.task = task;
+		}
+
+		long duration() {
+			return endMillis - startMillis;
+		}
+	}
+
+	private final String name;
+	private final int numThreads;
+	private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+	private long runStartMillis;
+	private long runEndMillis;
+
+	/**
+	 * Create a scheduler.
+	 *
+	 * @param name
+	 *            a name for the set of tasks, used in thread names and the report
+	 * @param numThreads
+	 *            the maximum number of tasks to run in parallel
+	 */
+	public StartupScheduler(String name, int numThreads) {
+		this.name = name;
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * The number of startup threads configured in the given property. The value "auto", which is also the default, means one
+	 * thread per available processor.
+	 *
+	 * @param property
+	 *            the property name, e.g. <code>modules.startup.threads</code>
+	 * @return the number of threads, at least 1
+	 */
+	public static int getConfiguredThreads(String property) {
+		String value = MaryProperties.getProperty(property, "auto").trim();
+		if (value.equals("auto")) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		try {
+			return Math.max(1, Integer.parseInt(value));
+		} catch (NumberFormatException nfe) {
+			return 1;
+		}
+	}
+
+	/**
+	 * Add a task.
+	 *
+	 * @param id
+	 *            a unique id for the task
+	 * @param dependencies
+	 *            the ids of the tasks which must have completed before this one is started; ids of tasks which are not (or not
+	 *            yet) known to this scheduler when {@link #run()} is called are ignored. May be null.
+	 * @param task
+	 *            the work to do
+	 * @throws IllegalArgumentException
+	 *             if a task with the same id has already been added
+	 */
+	public void addTask(String id, Collection<String> dependencies, Task task) {
+		if (nodes.containsKey(id)) {
+			throw new IllegalArgumentException("Duplicate startup task '" + id + "'");
+		}
+		Node node = new Node(id, task);
+		if (dependencies != null) {
+			node.dependencies.addAll(dependencies);
+		}
+		nodes.put(id, node);
+	}
+
+	/**
+	 * Run all tasks, and wait until they are complete. If a task fails, no further tasks are started, and the failure is thrown
+	 * once the tasks already running have completed.
+	 *
+	 * @throws MaryConfigurationException
+	 *             if the dependencies contain a cycle
+	 * @throws Exception
+	 *             the failure of a task, wrapped in an exception naming the task
+	 */
+	public void run() throws Exception {
+		resolveDependencies();
+		runStartMillis = System.currentTimeMillis();
+		try {
+			if (numThreads == 1 || nodes.size() <= 1) {
+				runSequentially();
+			} else {
+				runInParallel();
+			}
+		} finally {
+			runEndMillis = System.currentTimeMillis();
+		}
+	}
+
+	private void resolveDependencies() throws MaryConfigurationException {
+		for (Node node : nodes.values()) {
+			node.pendingDependencies = 0;
+			node.dependents.clear();
+		}
+		for (Node node : nodes.values()) {
+			for (String dep : node.dependencies) {
+				Node prerequisite = nodes.get(dep);
+				if (prerequisite == null || prerequisite == node) {
+					continue;
+				}
+				prerequisite.dependents.add(node);
+				node.pendingDependencies++;
+			}
+		}
+		// Check for cycles on a copy of the pending counts:
+		Map<Node, Integer> pending = new LinkedHashMap<Node, Integer>();
+		LinkedList<Node> ready = new LinkedList<Node>();
+		for (Node node : nodes.values()) {
+			pending.put(node, node.pendingDependencies);
+			if (node.pendingDependencies == 0) {
+				ready.add(node);
+			}
+		}
+		int visited = 0;
+		while (!ready.isEmpty()) {
+			Node node = ready.removeFirst();
+			visited++;
+			for (Node dependent : node.dependents) {
+				int p = pending.get(dependent) - 1;
+				pending.put(dependent, p);
+				if (p == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+		if (visited < nodes.size()) {
+			List<String> cyclic = new ArrayList<String>();
+			for (Map.Entry<Node, Integer> e : pending.entrySet()) {
+				if (e.getValue() > 0) {
+					cyclic.add(e.getKey().id);
+				}
+			}
+			throw new MaryConfigurationException("Cyclic startup dependencies between " + cyclic);
+		}
+	}
+
+	private void runSequentially() throws Exception {
+		LinkedList<Node> ready = new LinkedList<Node>();
+		for (Node node : nodes.values()) {
+			if (node.pendingDependencies == 0) {
+				ready.add(node);
+			}
+		}
+		while (!ready.isEmpty()) {
+			Node node = ready.removeFirst();
+			execute(node).call();
+			completed(node, ready);
+		}
+	}
+
+	private void runInParallel() throws Exception {
+		final AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, nodes.size()), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "startup-" + name + "-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			CompletionService<Node> completion = new ExecutorCompletionService<Node>(executor);
+			LinkedList<Node> ready = new LinkedList<Node>();
+			for (Node node : nodes.values()) {
+				if (node.pendingDependencies == 0) {
+					ready.add(node);
+				}
+			}
+			int running = 0;
+			Exception failure = null;
+			while (true) {
+				if (failure == null) {
+					while (!ready.isEmpty()) {
+						completion.submit(execute(ready.removeFirst()));
+						running++;
+					}
+				}
+				if (running == 0) {
+					break;
+				}
+				Node node;
+				try {
+					node = completion.take().get();
+				} catch (ExecutionException e) {
+					running--;
+					if (failure == null) {
+						failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : new Exception(e.getCause());
+					}
+					continue;
+				}
+				running--;
+				completed(node, ready);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Callable<Node> execute(final Node node) {
+		return new Callable<Node>() {
+			public Node call() throws Exception {
+				node.startMillis = System.currentTimeMillis();
+				try {
+					node.task.run();
+				} catch (Throwable t) {
+					throw new Exception("Problem starting " + node.id, t);
+				} finally {
+					node.endMillis = System.currentTimeMillis();
+				}
+				return node;
+			}
+		};
+	}
+
+	private void completed(Node node, List<Node> ready) {
+		for (Node dependent : node.dependents) {
+			if (dependent.criticalPredecessor == null || dependent.criticalPredecessor.endMillis < node.endMillis) {
+				dependent.criticalPredecessor = node;
+			}
+			dependent.pendingDependencies--;
+			if (dependent.pendingDependencies == 0) {
+				ready.add(dependent);
+			}
+		}
+	}
+
+	/**
+	 * The critical path of the last run: the chain of tasks, each one depending on the previous one, ending with the task that
+	 * finished last.
+	 *
+	 * @return the ids of the tasks on the critical path, first task first; empty if nothing was run.
+	 */
+	public List<String> getCriticalPath() {
+		List<String> path = new ArrayList<String>();
+		for (Node node = lastFinished(); node != null; node = node.criticalPredecessor) {
+			path.add(0, node.id);
+		}
+		return path;
+	}
+
+	private Node lastFinished() {
+		Node last = null;
+		for (Node node : nodes.values()) {
+			if (node.endMillis >= 0 && (last == null || node.endMillis > last.endMillis)) {
+				last = node;
+			}
+		}
+		return last;
+	}
+
+	/**
+	 * Log how long the last run took: a summary and the critical path at info level, the times of all tasks, slowest first, at
+	 * debug level.
+	 *
+	 * @param logger
+	 *            the logger to write to
+	 */
+	public void logReport(Logger logger) {
+		List<Node> finished = new ArrayList<Node>();
+		long total = 0;
+		for (Node node : nodes.values()) {
+			if (node.endMillis >= 0) {
+				finished.add(node);
+				total += node.duration();
+			}
+		}
+		if (finished.isEmpty()) {
+			return;
+		}
+		logger.info("Startup of " + finished.size() + " " + name + " took " + (runEndMillis - runStartMillis) + " ms ("
+				+ total + " ms of work on up to " + numThreads + " threads)");
+		logger.info("Critical path:");
+		Node previous = null;
+		for (String id : getCriticalPath()) {
+			Node node = nodes.get(id);
+			long waited = node.startMillis - (previous != null ? previous.endMillis : runStartMillis);
+			logger.info("  " + id + ": " + node.duration() + " ms (started at +" + (node.startMillis - runStartMillis) + " ms"
+					+ (waited > 0 ? ", waited " + waited + " ms for a thread" : "") + ")");
+			previous = node;
+		}
+		Collections.sort(finished, new Comparator<Node>() {
+			public int compare(Node o1, Node o2) {
+				return Long.valueOf(o2.duration()).compareTo(o1.duration());
+			}
+		});
+		logger.debug("Startup times:");
+		for (Node node : finished) {
+			logger.debug(node.id + ": " + node.duration() + " ms");
+		}
+	}
+}
@@ -0,0 +1,676 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import marytts.modules.synthesis.Voice;
+import marytts.server.MaryProperties;
+import marytts.server.MaryServer;
+import marytts.server.MemoryAdmissionControl;
+import marytts.server.Request;
+import marytts.server.binary.BinaryProtocol.Frame;
+import marytts.server.metrics.MaryMetrics;
+import marytts.util.MaryUtils;
+import marytts.util.data.audio.StreamingAudioFileWriter;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A socket server for the binary protocol described in {@link BinaryProtocol}. Unlike the text protocol of {@link MaryServer},
+ * which needs two connections per request, a client keeps one connection open and sends any number of requests over it, each
+ * one in a single SYNTHESIS frame tagged with a request id of its choice. Requests on the same connection are processed
+ * concurrently; the server answers each with any number of DATA frames followed by an END or ERROR frame, tagged with the same
+ * request id, so that the frames of different requests can be interleaved. Streaming audio (AUDIO=STREAMING_...) is sent as it is
+ * being synthesised. A CANCEL frame aborts a request, which is then answered with an ERROR frame. A client which shuts down
+ * its output still receives the answers to the requests it has sent.
+ * <p>
+ * All connections are served by one thread using a selector; requests are processed on a pool of
+ * <code>socket.binary.threads</code> threads. If a client does not read its responses, a request stops producing output when
+ * {@value #MAX_PENDING_BYTES} bytes are waiting to be sent on the connection.
+ * <p>
+ * Requests are answered at once with an ERROR frame if more than <code>socket.binary.queue</code> requests are waiting for a
+ * thread, or more than {@value #MAX_QUEUED_BYTES} bytes of input, or if a connection has more than
+ * <code>socket.binary.maxrequests</code> requests in progress. Frames longer than {@value #MAX_REQUEST_LENGTH} bytes close the
+ * connection.
+ */
+public class BinaryMaryServer implements Runnable {
+	/** The initial size of the buffer for reading frames, which grows as needed for larger frames */
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+	/** The maximum payload of the DATA frames sent by the server */
+	private static final int MAX_DATA_PAYLOAD = 64 * 1024;
+	/** The number of bytes queued for sending on a connection above which requests wait before producing more */
+	public static final int MAX_PENDING_BYTES = 1024 * 1024;
+	/** The maximum length of a frame sent by a client, i.e. of the input of a request */
+	public static final int MAX_REQUEST_LENGTH = 1024 * 1024;
+	/** The maximum number of bytes of input of the requests waiting for a thread */
+	public static final long MAX_QUEUED_BYTES = 16 * 1024 * 1024;
+	/** The number of requests which can wait for a thread, unless set by <code>socket.binary.queue</code> */
+	public static final int DEFAULT_QUEUE_SIZE = 100;
+	/** The number of requests a connection can have in progress, unless set by <code>socket.binary.maxrequests</code> */
+	public static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 32;
+
+	private final Logger logger = MaryUtils.getLogger("binaryserver");
+	private final InetAddress address;
+	private final int port;
+	private final ExecutorService synthesisExecutor;
+	private final ExecutorService writerExecutor;
+	private final int maxRequestsPerConnection;
+	private final AtomicInteger requestCount = new AtomicInteger();
+	/** the bytes of input of the requests waiting for a thread; only increased by the selector thread */
+	private final AtomicLong queuedBytes = new AtomicLong();
+	/** connections with frames to send, whose selection key must be updated by the selector thread */
+	private final ConcurrentLinkedQueue<Connection> writeInterest = new ConcurrentLinkedQueue<Connection>();
+	private final CountDownLatch started = new CountDownLatch(1);
+	private volatile boolean running = true;
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+
+	/**
+	 * Create a server on <code>socket.addr</code>, port <code>socket.binary.port</code>.
+	 *
+	 * @throws UnknownHostException
+	 *             if socket.addr cannot be resolved
+	 */
+	public BinaryMaryServer() throws UnknownHostException {
+		this(MaryProperties.needInetAddress("socket.addr"), MaryProperties.needInteger("socket.binary.port"), MaryProperties
+				.getInteger("socket.binary.threads", Runtime.getRuntime().availableProcessors()), MaryProperties.getInteger(
+				"socket.binary.queue", DEFAULT_QUEUE_SIZE), MaryProperties.getInteger("socket.binary.maxrequests",
+				DEFAULT_MAX_REQUESTS_PER_CONNECTION));
+	}
+
+	/**
+	 * Create a server.
+	 *
+	 * @param address
+	 *            the address to listen on
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @param numThreads
+	 *            the number of requests to process at the same time
+	 */
+	public BinaryMaryServer(InetAddress address, int port, int numThreads) {
+		this(address, port, numThreads, DEFAULT_QUEUE_SIZE, DEFAULT_MAX_REQUESTS_PER_CONNECTION);
+	}
+
+	/**
+	 * Create a server.
+	 *
+	 * @param address
+	 *            the address to listen on
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @param numThreads
+	 *            the number of requests to process at the same time
+	 * @param queueSize
+	 *            the number of requests which can wait for a thread before further requests are rejected
+	 * @param maxRequestsPerConnection
+	 *            the number of requests a connection can have in progress before further requests are rejected
+	 */
+	public BinaryMaryServer(InetAddress address, int port, int numThreads, int queueSize, int maxRequestsPerConnection) {
+		this.address = address;
+		this.port = port;
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+		synthesisExecutor = new ThreadPoolExecutor(Math.max(1, numThreads), Math.max(1, numThreads), 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), daemonThreads("BinarySynthesis"));
+		writerExecutor = Executors.newCachedThreadPool(daemonThreads("BinaryWriter"));
+	}
+
+	private static ThreadFactory daemonThreads(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + " " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * The port the server listens on, once it has been started.
+	 *
+	 * @return the port
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the server to start
+	 */
+	public int getLocalPort() throws InterruptedException {
+		started.await();
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stop accepting connections, close all connections and abort their requests.
+	 */
+	public void shutdown() {
+		running = false;
+		if (selector != null) {
+			selector.wakeup();
+		}
+	}
+
+	public void run() {
+		try {
+			selector = Selector.open();
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.configureBlocking(false);
+			serverChannel.socket().bind(new InetSocketAddress(address, port));
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot start binary protocol server", e);
+		} finally {
+			started.countDown();
+		}
+		logger.info("Waiting for binary protocol clients to connect on port " + serverChannel.socket().getLocalPort());
+		while (running) {
+			try {
+				selector.select();
+				Connection connection;
+				while ((connection = writeInterest.poll()) != null) {
+					connection.updateInterest();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					} catch (IOException e) {
+						logger.info("Connection closed: " + e.getMessage());
+						connection.close();
+					}
+				}
+			} catch (IOException e) {
+				logger.warn("Problem in binary protocol server", e);
+			}
+		}
+		for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys())) {
+			if (key.attachment() instanceof Connection) {
+				((Connection) key.attachment()).close();
+			}
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException e) {
+			logger.info("Problem closing server socket", e);
+		}
+		synthesisExecutor.shutdownNow();
+		writerExecutor.shutdownNow();
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		logger.info("Connection from " + channel.socket().getInetAddress().getHostAddress() + ".");
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+	}
+
+	/**
+	 * Process one request: parse the payload of its SYNTHESIS frame, process it, and write its output to
+	 * {@link Exchange#getOutputStream()}. Called on a synthesis thread.
+	 *
+	 * @param exchange
+	 *            the request and its response
+	 * @throws Exception
+	 *             if the request fails; the message is sent to the client in an ERROR frame
+	 */
+	protected void process(Exchange exchange) throws Exception {
+		String payload = new String(exchange.getPayload(), "UTF-8");
+		int newline = payload.indexOf('\n');
+		String requestLine = newline == -1 ? payload : payload.substring(0, newline);
+		String input = newline == -1 ? "" : payload.substring(newline + 1);
+		if (!requestLine.startsWith("MARY")) {
+			throw new Exception("Expected a request line MARY IN=<INPUTTYPE> OUT=<OUTPUTTYPE> LOCALE=<LOCALE> ...");
+		}
+		final Request request = MaryServer.parseSynthesisRequest(requestLine, requestCount.incrementAndGet());
+		request.setInputData(input);
+		if (request.getAudio() != null) {
+			// so that the time to first audio includes the time spent waiting for a synthesis thread:
+			request.getAudio().setStartTime(exchange.getSubmitted());
+		}
+		exchange.setRequest(request);
+		MemoryAdmissionControl.Reservation reservation = MemoryAdmissionControl.getInstance().admit(
+				MemoryAdmissionControl.estimate(request));
+		if (reservation == null) {
+			throw new Exception("Server is too busy, please try again later.");
+		}
+		try {
+			final OutputStream out = exchange.getOutputStream();
+			if (request.getStreamAudio() && request.getAudio() != null) {
+				// encode and send the audio on another thread while it is being synthesised on this one:
+				Future<Void> writer = writerExecutor.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						StreamingAudioFileWriter.write(request.getAudio(), request.getAudioFileFormat().getType(), out);
+						Voice voice = request.getDefaultVoice();
+						MaryMetrics.audioStreamed(voice != null ? voice.getName() : null, request.getAudio());
+						return null;
+					}
+				});
+				Throwable failure = null;
+				try {
+					request.process();
+				} catch (Throwable t) {
+					// let the writer send what has been synthesised so far
+					request.getAudio().doneAppending();
+					failure = t;
+				}
+				try {
+					writer.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+				if (failure instanceof Error) {
+					throw (Error) failure;
+				} else if (failure instanceof Exception) {
+					throw (Exception) failure;
+				} else if (failure != null) {
+					throw new Exception(failure);
+				}
+			} else {
+				request.process();
+				if (request.getAudio() != null) {
+					StreamingAudioFileWriter.write(request.getAudio(), request.getAudioFileFormat().getType(), out);
+				} else {
+					BufferedOutputStream buffered = new BufferedOutputStream(out, MAX_DATA_PAYLOAD);
+					request.writeOutputData(buffered);
+					buffered.flush();
+				}
+			}
+		} finally {
+			reservation.release();
+		}
+	}
+
+	/**
+	 * A client connection. Read from and written to by the selector thread only; frames to send are queued by the request threads.
+	 */
+	private class Connection {
+		private final SocketChannel channel;
+		private SelectionKey key;
+		private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private final ConcurrentMap<Integer, Exchange> exchanges = new ConcurrentHashMap<Integer, Exchange>();
+		/** whether the client has shut down its output; the connection is closed once the requests are answered */
+		private volatile boolean inputClosed;
+		// guarded by this:
+		private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<ByteBuffer>();
+		private long pendingBytes;
+		private boolean closed;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void read() throws IOException {
+			if (channel.read(readBuffer) == -1) {
+				// no more requests, but answer those in progress:
+				inputClosed = true;
+				readBuffer = null;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+				closeIfDone();
+				return;
+			}
+			readBuffer.flip();
+			int nextFrameSize;
+			try {
+				Frame frame;
+				while ((frame = BinaryProtocol.decode(readBuffer)) != null) {
+					handle(frame);
+				}
+				nextFrameSize = BinaryProtocol.frameSize(readBuffer);
+			} catch (IllegalArgumentException e) {
+				logger.info("Closing connection after protocol error: " + e.getMessage());
+				close();
+				return;
+			}
+			readBuffer.compact();
+			if (nextFrameSize > MAX_REQUEST_LENGTH + BinaryProtocol.LENGTH_SIZE) {
+				logger.info("Closing connection after frame of " + nextFrameSize + " bytes, longer than " + MAX_REQUEST_LENGTH);
+				close();
+				return;
+			}
+			if (nextFrameSize > readBuffer.capacity()) {
+				ByteBuffer larger = ByteBuffer.allocate(nextFrameSize);
+				readBuffer.flip();
+				larger.put(readBuffer);
+				readBuffer = larger;
+			} else if (readBuffer.position() == 0 && readBuffer.capacity() > READ_BUFFER_SIZE) {
+				// don't hold on to the buffer of a large frame
+				readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			}
+		}
+
+		private void handle(Frame frame) throws IOException {
+			if (frame.type == BinaryProtocol.SYNTHESIS) {
+				Exchange exchange = new Exchange(this, frame.requestId, frame.payload);
+				String refusal = null;
+				if (exchanges.size() >= maxRequestsPerConnection) {
+					refusal = "Too many requests on this connection";
+				} else if (exchanges.putIfAbsent(frame.requestId, exchange) != null) {
+					refusal = "Request id " + frame.requestId + " is already in use";
+				} else if (!enqueue(exchange)) {
+					exchanges.remove(frame.requestId);
+					refusal = "Server is too busy, please try again later.";
+				}
+				if (refusal != null) {
+					logger.info("Refusing request " + frame.requestId + ": " + refusal);
+					send(BinaryProtocol.encode(BinaryProtocol.ERROR, frame.requestId, utf8(refusal)), false);
+				}
+			} else if (frame.type == BinaryProtocol.CANCEL) {
+				Exchange exchange = exchanges.get(frame.requestId);
+				if (exchange != null) {
+					exchange.cancel();
+				}
+			} else {
+				send(BinaryProtocol.encode(BinaryProtocol.ERROR, frame.requestId, utf8("Unknown frame type " + frame.type)),
+						false);
+			}
+		}
+
+		/**
+		 * Queue a frame for sending.
+		 *
+		 * @param frame
+		 *            the frame
+		 * @param mayWait
+		 *            whether to wait while too many bytes are waiting to be sent
+		 * @throws IOException
+		 *             if the connection is closed
+		 */
+		void send(ByteBuffer frame, boolean mayWait) throws IOException {
+			synchronized (this) {
+				while (mayWait && pendingBytes > MAX_PENDING_BYTES && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						throw new IOException("Interrupted while waiting to send");
+					}
+				}
+				if (closed) {
+					throw new IOException("Connection closed");
+				}
+				writeQueue.add(frame);
+				pendingBytes += frame.remaining();
+			}
+			writeInterest.add(this);
+			selector.wakeup();
+		}
+
+		/**
+		 * Hand the exchange to a synthesis thread, unless too many requests or bytes of input are waiting already.
+		 *
+		 * @return true if the exchange has been queued, false if it is rejected
+		 */
+		private boolean enqueue(Exchange exchange) {
+			long bytes = exchange.getPayload().length;
+			if (queuedBytes.get() + bytes > MAX_QUEUED_BYTES) {
+				return false;
+			}
+			queuedBytes.addAndGet(bytes);
+			try {
+				synthesisExecutor.execute(exchange);
+			} catch (RejectedExecutionException e) {
+				queuedBytes.addAndGet(-bytes);
+				return false;
+			}
+			return true;
+		}
+
+		private int readInterest() {
+			return inputClosed ? 0 : SelectionKey.OP_READ;
+		}
+
+		synchronized void updateInterest() {
+			if (!writeQueue.isEmpty() && key.isValid()) {
+				key.interestOps(readInterest() | SelectionKey.OP_WRITE);
+			}
+			closeIfDone();
+		}
+
+		/**
+		 * After the client has shut down its output: close the connection once all requests have been answered.
+		 */
+		synchronized void closeIfDone() {
+			if (inputClosed && exchanges.isEmpty() && writeQueue.isEmpty()) {
+				close();
+			}
+		}
+
+		synchronized void write() throws IOException {
+			while (!writeQueue.isEmpty()) {
+				ByteBuffer frame = writeQueue.peek();
+				pendingBytes -= channel.write(frame);
+				if (frame.hasRemaining()) {
+					break; // the socket buffer is full
+				}
+				writeQueue.poll();
+			}
+			if (writeQueue.isEmpty()) {
+				key.interestOps(readInterest());
+			}
+			notifyAll();
+			closeIfDone();
+		}
+
+		void close() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				writeQueue.clear();
+				notifyAll();
+			}
+			if (key != null) {
+				key.cancel();
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.debug("Problem closing connection", e);
+			}
+			for (Exchange exchange : exchanges.values()) {
+				exchange.cancel();
+			}
+		}
+	}
+
+	private static byte[] utf8(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new AssertionError("UTF-8 is always a supported encoding.");
+		}
+	}
+
+	/**
+	 * One request on a connection, and its response.
+	 */
+	public class Exchange implements Runnable {
+		private final Connection connection;
+		private final int requestId;
+		private final byte[] payload;
+		private final long submitted = System.nanoTime();
+		private final OutputStream out = new FrameOutputStream();
+		private volatile boolean cancelled;
+		private volatile Request request;
+
+		Exchange(Connection connection, int requestId, byte[] payload) {
+			this.connection = connection;
+			this.requestId = requestId;
+			this.payload = payload;
+		}
+
+		public int getRequestId() {
+			return requestId;
+		}
+
+		/**
+		 * @return the time when the request was received, in System.nanoTime() units
+		 */
+		public long getSubmitted() {
+			return submitted;
+		}
+
+		/**
+		 * @return the payload of the SYNTHESIS frame
+		 */
+		public byte[] getPayload() {
+			return payload;
+		}
+
+		/**
+		 * The stream to write the output to, which sends each write in DATA frames; it fails with an IOException once the request
+		 * has been cancelled or the connection has been closed.
+		 *
+		 * @return the output stream
+		 */
+		public OutputStream getOutputStream() {
+			return out;
+		}
+
+		/**
+		 * Set the request being processed, so that it can be aborted if the exchange is cancelled.
+		 *
+		 * @param request
+		 *            the request
+		 */
+		public void setRequest(Request request) {
+			this.request = request;
+			if (cancelled) {
+				request.abort();
+			}
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		void cancel() {
+			cancelled = true;
+			Request r = request;
+			if (r != null) {
+				r.abort();
+			}
+		}
+
+		public void run() {
+			MaryMetrics.queueWait("executor", System.nanoTime() - submitted);
+			queuedBytes.addAndGet(-payload.length);
+			try {
+				if (!cancelled) {
+					process(this);
+				}
+				if (cancelled) {
+					throw new IOException("Request cancelled");
+				}
+				connection.send(BinaryProtocol.encode(BinaryProtocol.END, requestId), false);
+			} catch (Throwable t) {
+				if (cancelled) {
+					logger.info("Request " + requestId + " cancelled");
+				} else {
+					logger.warn("Request " + requestId + " failed", t);
+				}
+				String message = t.getMessage() != null ? t.getMessage() : t.toString();
+				try {
+					connection.send(BinaryProtocol.encode(BinaryProtocol.ERROR, requestId, utf8(message)), false);
+				} catch (IOException e) {
+					// connection closed, nobody to tell
+				}
+			} finally {
+				connection.exchanges.remove(requestId);
+				if (connection.inputClosed) {
+					// let the selector thread close the connection once the answer is sent
+					writeInterest.add(connection);
+					selector.wakeup();
+				}
+			}
+		}
+
+		private class FrameOutputStream extends OutputStream {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (cancelled) {
+					throw new IOException("Request cancelled");
+				}
+				while (len > 0) {
+					int n = Math.min(len, MAX_DATA_PAYLOAD);
+					connection.send(BinaryProtocol.encode(BinaryProtocol.DATA, requestId, b, off, n), true);
+					off += n;
+					len -= n;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.binary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The frames of the binary socket protocol, see {@link BinaryMaryServer}. A frame consists of
+ * <ul>
+ * <li>the length of the rest of the frame, as a 4 byte big-endian integer;</li>
+ * <li>the frame type, one byte;</li>
+ * <li>the id of the request the frame belongs to, as a 4 byte big-endian integer, chosen by the client;</li>
+ * <li>the payload, whose meaning depends on the type.</li>
+ * </ul>
+ */
+public class BinaryProtocol {
+	/**
+	 * Client to server: a synthesis request. The payload is a request line in UTF-8, as in the text protocol of
+	 * {@link marytts.server.MaryServer}, e.g. "MARY IN=TEXT OUT=AUDIO LOCALE=en_US AUDIO=STREAMING_WAVE SAMPLE_RATE=8000",
+	 * followed by a newline and the input data in UTF-8.
+	 */
+	public static final byte SYNTHESIS = 1;
+	/** Client to server: abort a request. No payload. */
+	public static final byte CANCEL = 2;
+	/** Server to client: the next part of the output of a request. */
+	public static final byte DATA = 16;
+	/** Server to client: the output of a request is complete. No payload. */
+	public static final byte END = 17;
+	/** Server to client: a request failed; the payload is a message in UTF-8. No more frames follow for this request. */
+	public static final byte ERROR = 18;
+
+	/** The size of the length prefix */
+	public static final int LENGTH_SIZE = 4;
+	/** The size of the type and request id which follow the length prefix */
+	public static final int HEADER_SIZE = 5;
+	/** The maximum length of a frame after the length prefix */
+	public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	/**
+	 * One frame.
+	 */
+	public static class Frame {
+		public final byte type;
+		public final int requestId;
+		public final byte[] payload;
+
+		public Frame(byte type, int requestId, byte[] payload) {
+			this.type = type;
+			this.requestId = requestId;
+			this.payload = payload;
+		}
+	}
+
+	/**
+	 * Encode a frame.
+	 *
+	 * @param type
+	 *            the frame type
+	 * @param requestId
+	 *            the request id
+	 * @param payload
+	 *            the array containing the payload
+	 * @param off
+	 *            the start of the payload in the array
+	 * @param len
+	 *            the length of the payload
+	 * @return a buffer containing the frame, ready to be written
+	 */
+	public static ByteBuffer encode(byte type, int requestId, byte[] payload, int off, int len) {
+		if (len > MAX_FRAME_LENGTH - HEADER_SIZE) {
+			throw new IllegalArgumentException("Payload too large: " + len);
+		}
+		ByteBuffer frame = ByteBuffer.allocate(LENGTH_SIZE + HEADER_SIZE + len);
+		frame.putInt(HEADER_SIZE + len).put(type).putInt(requestId).put(payload, off, len);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Encode a frame.
+	 *
+	 * @param type
+	 *            the frame type
+	 * @param requestId
+	 *            the request id
+	 * @param payload
+	 *            the payload
+	 * @return a buffer containing the frame, ready to be written
+	 */
+	public static ByteBuffer encode(byte type, int requestId, byte[] payload) {
+		return encode(type, requestId, payload, 0, payload.length);
+	}
+
+	/**
+	 * Encode a frame without payload.
+	 *
+	 * @param type
+	 *            the frame type
+	 * @param requestId
+	 *            the request id
+	 * @return a buffer containing the frame, ready to be written
+	 */
+	public static ByteBuffer encode(byte type, int requestId) {
+		return encode(type, requestId, new byte[0]);
+	}
+
+	/**
+	 * Take the next complete frame from a buffer being filled from a channel. If the buffer does not yet contain the complete
+	 * frame, it is left unchanged.
+	 *
+	 * @param buffer
+	 *            a buffer in read mode, i.e. flipped after filling it
+	 * @return the frame, or null if the buffer does not contain a complete frame
+	 * @throws IllegalArgumentException
+	 *             if the frame length is invalid, in which case the connection cannot be used any further
+	 */
+	public static Frame decode(ByteBuffer buffer) {
+		if (buffer.remaining() < LENGTH_SIZE) {
+			return null;
+		}
+		int length = buffer.getInt(buffer.position());
+		if (length < HEADER_SIZE || length > MAX_FRAME_LENGTH) {
+			throw new IllegalArgumentException("Invalid frame length: " + length);
+		}
+		if (buffer.remaining() < LENGTH_SIZE + length) {
+			return null;
+		}
+		buffer.getInt();
+		byte type = buffer.get();
+		int requestId = buffer.getInt();
+		byte[] payload = new byte[length - HEADER_SIZE];
+		buffer.get(payload);
+		return new Frame(type, requestId, payload);
+	}
+
+	/**
+	 * The number of bytes the buffer must be able to hold to receive the frame that begins at its position.
+	 *
+	 * @param buffer
+	 *            a buffer in read mode
+	 * @return the size of the frame including its length prefix, or 0 if the length prefix is not complete yet
+	 */
+	public static int frameSize(ByteBuffer buffer) {
+		if (buffer.remaining() < LENGTH_SIZE) {
+			return 0;
+		}
+		return LENGTH_SIZE + buffer.getInt(buffer.position());
+	}
+}
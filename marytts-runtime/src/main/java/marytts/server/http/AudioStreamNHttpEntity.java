@@ -17,113 +17,95 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  *
  */
-
 package marytts.server.http;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
 
+import marytts.modules.synthesis.Voice;
+import marytts.server.MemoryAdmissionControl;
 import marytts.server.Request;
+import marytts.server.metrics.MaryMetrics;
 import marytts.util.MaryUtils;
-
-import org.apache.http.entity.AbstractHttpEntity;
-import org.apache.http.nio.ContentEncoder;
-import org.apache.http.nio.IOControl;
-import org.apache.http.nio.entity.ContentOutputStream;
-import org.apache.http.nio.entity.ProducingNHttpEntity;
-import org.apache.http.nio.util.HeapByteBufferAllocator;
-import org.apache.http.nio.util.SharedOutputBuffer;
-import org.apache.logging.log4j.Logger;
+import marytts.util.data.audio.AppendableSequenceAudioInputStream;
+import marytts.util.data.audio.StreamingAudioFileWriter;
 
 /**
+ * An entity sending the audio of a request to the client while it is being encoded, using chunked transfer encoding. The audio
+ * is encoded by {@link #run()}, which must be called on a thread of its own; it blocks whenever the client does not keep up, so
+ * that no more than one buffer of encoded audio is held in memory per request. This is used both for streaming audio, where the
+ * audio is encoded as it is being synthesised, and for audio which has been synthesised completely before the response is sent.
+ *
  * @author marc
- * 
+ *
  */
-public class AudioStreamNHttpEntity extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable {
+public class AudioStreamNHttpEntity extends StreamingNHttpEntity {
 	private Request maryRequest;
+	private MemoryAdmissionControl.Reservation reservation;
 	private AudioInputStream audio;
 	private AudioFileFormat.Type audioType;
-	private Logger logger;
-	private Object mutex;
-	private SharedOutputBuffer out;
 
 	public AudioStreamNHttpEntity(Request maryRequest) {
+		this(maryRequest, null);
+	}
+
+	/**
+	 * Create an entity which releases the memory reserved for the request once the audio has been written.
+	 *
+	 * @param maryRequest
+	 *            the request whose audio to send
+	 * @param reservation
+	 *            the memory reserved for the request, or null
+	 */
+	public AudioStreamNHttpEntity(Request maryRequest, MemoryAdmissionControl.Reservation reservation) {
+		super(MaryUtils.getLogger("HTTPWriter " + maryRequest.getId()));
 		this.maryRequest = maryRequest;
+		this.reservation = reservation;
 		this.audio = maryRequest.getAudio();
 		this.audioType = maryRequest.getAudioFileFormat().getType();
 		setContentType(MaryHttpServerUtils.getMimeType(audioType));
-		this.mutex = new Object();
-	}
-
-	public void finish() {
-		assert logger != null : "we should never be able to write if run() is not called";
-		logger.info("Completed sending streaming audio");
-		maryRequest = null;
-		audio = null;
-		audioType = null;
-		logger = null;
 	}
 
-	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
-		if (out == null) {
-			synchronized (mutex) {
-				out = new SharedOutputBuffer(8192, ioctrl, new HeapByteBufferAllocator());
-				mutex.notify();
-			}
+	@Override
+	protected void writeContent(OutputStream outStream) throws IOException {
+		StreamingAudioFileWriter.write(audio, audioType, outStream);
+		if (maryRequest.getStreamAudio()) {
+			recordStreamTiming();
 		}
-		while (!encoder.isCompleted())
-			out.produceContent(encoder);
 	}
 
-	public long getContentLength() {
-		return -1;
+	@Override
+	protected void aborted() {
+		maryRequest.abort();
 	}
 
-	public boolean isRepeatable() {
-		return false;
-	}
-
-	public boolean isStreaming() {
-		return true;
-	}
-
-	public InputStream getContent() {
-		return null;
-	}
-
-	public void writeTo(final OutputStream outstream) throws IOException {
-		throw new RuntimeException("Should not be called");
+	@Override
+	protected void done() {
+		maryRequest = null;
+		audio = null;
+		if (reservation != null) {
+			reservation.release();
+			reservation = null;
+		}
 	}
 
-	/**
-	 * Wait for the SharedOutputBuffer to become available, write audio data to it.
-	 */
-	public void run() {
-		this.logger = MaryUtils.getLogger(Thread.currentThread().getName());
-		// We must wait until produceContent() is called:
-		while (out == null) {
-			synchronized (mutex) {
-				try {
-					mutex.wait();
-				} catch (InterruptedException e) {
-				}
+	private void recordStreamTiming() {
+		AppendableSequenceAudioInputStream stream = maryRequest.getAudio();
+		Voice voice = maryRequest.getDefaultVoice();
+		MaryMetrics.audioStreamed(voice != null ? voice.getName() : null, stream);
+		logger.info("Time to first audio " + stream.getTimeToFirstAppend() / 1000000 + " ms, real-time factor "
+				+ MaryMetrics.realTimeFactor(stream) + ", " + stream.getUnderrunCount() + " underruns of "
+				+ stream.getUnderrunTime() / 1000000 + " ms in total");
+		if (logger.isDebugEnabled()) {
+			long[] times = stream.getAppendTimes();
+			for (int i = 0; i < times.length; i++) {
+				times[i] /= 1000000;
 			}
-		}
-		assert out != null;
-		ContentOutputStream outStream = new ContentOutputStream(out);
-		try {
-			AudioSystem.write(audio, audioType, outStream);
-			outStream.flush();
-			outStream.close();
-			logger.info("Finished writing output");
-		} catch (IOException ioe) {
-			logger.info("Cannot write output, client seems to have disconnected. ", ioe);
-			maryRequest.abort();
+			logger.debug("Audio chunks produced after (ms): " + Arrays.toString(times));
 		}
 	}
 }
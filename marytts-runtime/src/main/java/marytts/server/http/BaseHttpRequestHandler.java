@@ -19,10 +19,7 @@
  */
 package marytts.server.http;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -57,14 +54,11 @@ import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.MethodNotSupportedException;
-import org.apache.http.nio.ContentDecoder;
-import org.apache.http.nio.ContentDecoderChannel;
-import org.apache.http.nio.FileContentDecoder;
-import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.BufferingNHttpEntity;
 import org.apache.http.nio.entity.ConsumingNHttpEntity;
-import org.apache.http.nio.entity.ConsumingNHttpEntityTemplate;
-import org.apache.http.nio.entity.ContentListener;
-import org.apache.http.nio.protocol.SimpleNHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestHandler;
 import org.apache.http.util.EntityUtils;
@@ -75,9 +69,7 @@ import org.apache.logging.log4j.Logger;
  * 
  * @author Oytun T&uuml;rk, Marc Schröder
  */
-public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler implements HttpRequestHandler {
-	private final boolean useFileChannels = true;
-
+public abstract class BaseHttpRequestHandler implements NHttpRequestHandler, HttpRequestHandler {
 	protected static Logger logger;
 	private int runningNumber = 1;
 	private Map<String, Object[]> requestMap;
@@ -155,47 +147,24 @@ public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler i
 		return new Address(fullAddress);
 	}
 
+	/**
+	 * Buffer the body of POST requests in memory, so that it can be read as a query string in
+	 * {@link #handle(HttpRequest, HttpResponse, HttpContext)}.
+	 */
 	public ConsumingNHttpEntity entityRequest(final HttpEntityEnclosingRequest request, final HttpContext context)
 			throws HttpException, IOException {
-		return new ConsumingNHttpEntityTemplate(request.getEntity(), new FileWriteListener(useFileChannels));
+		return new BufferingNHttpEntity(request.getEntity(), new HeapByteBufferAllocator());
 	}
 
-	static class FileWriteListener implements ContentListener {
-		private final File file;
-		private final FileInputStream inputFile;
-		private final FileChannel fileChannel;
-		private final boolean useFileChannels;
-		private long idx = 0;
-
-		public FileWriteListener(boolean useFileChannels) throws IOException {
-			this.file = File.createTempFile("tmp", ".tmp", null);
-			this.inputFile = new FileInputStream(file);
-			this.fileChannel = inputFile.getChannel();
-			this.useFileChannels = useFileChannels;
-		}
-
-		public void contentAvailable(ContentDecoder decoder, IOControl ioctrl) throws IOException {
-			long transferred;
-			if (useFileChannels && decoder instanceof FileContentDecoder) {
-				transferred = ((FileContentDecoder) decoder).transfer(fileChannel, idx, Long.MAX_VALUE);
-			} else {
-				transferred = fileChannel.transferFrom(new ContentDecoderChannel(decoder), idx, Long.MAX_VALUE);
-			}
-
-			if (transferred > 0)
-				idx += transferred;
-		}
-
-		public void finished() {
-			try {
-				inputFile.close();
-			} catch (IOException ignored) {
-			}
-			try {
-				fileChannel.close();
-			} catch (IOException ignored) {
-			}
-		}
+	/**
+	 * The entry point of the asynchronous HTTP server. By default, the request is handled on the calling I/O thread, and the
+	 * response is submitted as soon as {@link #handle(HttpRequest, HttpResponse, HttpContext)} returns. Subclasses whose
+	 * requests take a long time to handle should override this to handle them on a thread of their own, and submit the response
+	 * via the trigger when done.
+	 */
+	public void handle(final HttpRequest request, final HttpResponse response, final NHttpResponseTrigger trigger,
+			final HttpContext context) throws HttpException, IOException {
+		handle(request, response, context);
+		trigger.submitResponse(response);
 	}
-
 }
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import marytts.server.BatchSynthesizer;
+import marytts.server.MaryProperties;
+import marytts.util.MaryUtils;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+
+/**
+ * Processes many short requests in one call, and sends the results as a ZIP archive while they are being produced. The input
+ * text (INPUT_TEXT) contains one item per line, either just the text, with the line number as the id, or
+ * <code>ID&lt;TAB&gt;TEXT</code>, optionally followed by tab-separated <code>KEY=VALUE</code> parameters of the item, such as
+ * <code>VOICE=...</code>. The other query parameters are the defaults of all items; see {@link BatchSynthesizer} for their
+ * names. The archive contains one entry <code>ID.EXT</code> per item, e.g. "prompt1.wav", or <code>ID.error.txt</code> with
+ * the error message if the item failed, in the order in which the items were completed. If several items have the same id, or
+ * ids which are the same once the characters not allowed in file names are replaced, the later ones are named
+ * <code>ID_2.EXT</code>, <code>ID_3.EXT</code> etc.
+ * <p>
+ * At most <code>server.http.batches</code> batches are processed at the same time; further batch requests are answered with 503
+ * Service Unavailable.
+ */
+public class BatchRequestHandler extends BaseHttpRequestHandler {
+	/** The number of batches processed at the same time, unless set by <code>server.http.batches</code> */
+	public static final int DEFAULT_MAX_BATCHES = 4;
+
+	private final BatchSynthesizer synthesizer;
+
+	/**
+	 * The threads writing the archives, one per batch in progress.
+	 */
+	private final ExecutorService writerExecutor;
+
+	public BatchRequestHandler() {
+		super();
+		int numThreads = MaryProperties.getInteger("server.http.batchthreads", Runtime.getRuntime().availableProcessors());
+		synthesizer = new BatchSynthesizer(numThreads, null);
+		int maxBatches = Math.max(1, MaryProperties.getInteger("server.http.batches", DEFAULT_MAX_BATCHES));
+		final AtomicInteger writerCount = new AtomicInteger();
+		// no queue: a batch is rejected unless a thread is free to write it
+		writerExecutor = new ThreadPoolExecutor(maxBatches, maxBatches, 0L, TimeUnit.MILLISECONDS,
+				new SynchronousQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "HTTPBatchWriter " + writerCount.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	@Override
+	protected void handleClientRequest(String absPath, Map<String, String> queryItems, HttpResponse response,
+			Address serverAddressAtClient) throws IOException {
+		if (queryItems == null || !queryItems.containsKey("INPUT_TEXT")) {
+			MaryHttpServerUtils.errorMissingQueryParameter(response, "'INPUT_TEXT'");
+			return;
+		}
+		final Map<String, String> defaults = new HashMap<String, String>(queryItems);
+		final List<BatchSynthesizer.Item> items = parseItems(defaults.remove("INPUT_TEXT"), defaults);
+		logger.debug("New batch request with " + items.size() + " items");
+
+		StreamingNHttpEntity entity = new StreamingNHttpEntity(MaryUtils.getLogger("HTTPBatchWriter")) {
+			private volatile boolean aborted;
+			private final EntryNames entryNames = new EntryNames();
+
+			@Override
+			protected void writeContent(OutputStream outStream) throws IOException {
+				final ZipOutputStream zip = new ZipOutputStream(outStream);
+				try {
+					synthesizer.process(items, new BatchSynthesizer.Callback() {
+						public void completed(BatchSynthesizer.Item item, byte[] output, String fileExtension)
+								throws IOException {
+							addEntry(zip, entryNames.get(item.getId(), fileExtension), output);
+						}
+
+						public void failed(BatchSynthesizer.Item item, Exception e) throws IOException {
+							addEntry(zip, entryNames.get(item.getId(), "error.txt"), String.valueOf(e.getMessage()).getBytes("UTF-8"));
+						}
+					});
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted", e);
+				}
+				zip.finish();
+			}
+
+			@Override
+			protected void aborted() {
+				aborted = true;
+			}
+
+			private void addEntry(ZipOutputStream zip, String name, byte[] data) throws IOException {
+				if (aborted) {
+					throw new IOException("Client has disconnected");
+				}
+				synchronized (zip) {
+					zip.putNextEntry(new ZipEntry(name));
+					zip.write(data);
+					zip.closeEntry();
+					zip.flush();
+				}
+			}
+		};
+		entity.setContentType("application/zip");
+		try {
+			writerExecutor.execute(entity);
+		} catch (RejectedExecutionException e) {
+			logger.warn("Too many batches in progress -- rejecting batch request");
+			MaryHttpServerUtils.errorServiceUnavailable(response, "Too many batches in progress, please try again later.", 30);
+			return;
+		}
+		response.setStatusCode(HttpStatus.SC_OK);
+		response.setHeader("Content-Disposition", "attachment; filename=\"batch.zip\"");
+		response.setEntity(entity);
+	}
+
+	/**
+	 * Parse the items of a batch, one per line.
+	 *
+	 * @param text
+	 *            the input text
+	 * @param defaults
+	 *            the default parameters of all items, including the default voice VOICE
+	 * @return the items, without empty lines
+	 * @throws IOException
+	 *             never
+	 */
+	static List<BatchSynthesizer.Item> parseItems(String text, Map<String, String> defaults) throws IOException {
+		List<BatchSynthesizer.Item> items = new ArrayList<BatchSynthesizer.Item>();
+		BufferedReader reader = new BufferedReader(new StringReader(text));
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().length() == 0) {
+				continue;
+			}
+			String[] fields = line.split("\t");
+			if (fields.length == 1) {
+				items.add(new BatchSynthesizer.Item(String.valueOf(lineNumber), line, defaults.get("VOICE"), defaults));
+				continue;
+			}
+			Map<String, String> params = new HashMap<String, String>(defaults);
+			for (int i = 2; i < fields.length; i++) {
+				int equals = fields[i].indexOf('=');
+				if (equals > 0) {
+					params.put(fields[i].substring(0, equals).trim(), fields[i].substring(equals + 1).trim());
+				}
+			}
+			String voice = params.containsKey("VOICE") ? params.remove("VOICE") : defaults.get("VOICE");
+			items.add(new BatchSynthesizer.Item(fields[0].trim(), fields[1], voice, params));
+		}
+		return items;
+	}
+
+	/**
+	 * A file name for the item id, without characters that are not allowed in file names or archive entries.
+	 */
+	private static String fileName(String id) {
+		String name = id.replaceAll("[^\\w\\-.]", "_");
+		return name.length() > 0 && !name.startsWith(".") ? name : "_" + name;
+	}
+
+	/**
+	 * The names of the entries of one archive, which must be unique even if the ids of the items are not.
+	 */
+	static class EntryNames {
+		private final Set<String> used = new HashSet<String>();
+
+		/**
+		 * The name of the entry for the item with the given id.
+		 *
+		 * @param id
+		 *            the id of the item
+		 * @param extension
+		 *            the file extension, without the dot
+		 * @return a name which has not been returned before
+		 */
+		synchronized String get(String id, String extension) {
+			String base = fileName(id);
+			String name = base + "." + extension;
+			for (int n = 2; !used.add(name); n++) {
+				name = base + "_" + n + "." + extension;
+			}
+			return name;
+		}
+	}
+}
@@ -27,6 +27,8 @@ import java.util.Map;
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureRegistry;
 import marytts.modules.synthesis.Voice;
+import marytts.server.MemoryAdmissionControl;
+import marytts.server.metrics.MetricsRegistry;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.http.Address;
@@ -58,7 +60,11 @@ public class InfoRequestHandler extends BaseHttpRequestHandler {
 		response.setStatusCode(HttpStatus.SC_OK);
 		try {
 			NStringEntity entity = new NStringEntity(infoResponse, "UTF-8");
-			entity.setContentType("text/plain; charset=UTF-8");
+			if (absPath.equals("/metrics")) {
+				entity.setContentType(MetricsRegistry.PROMETHEUS_CONTENT_TYPE);
+			} else {
+				entity.setContentType("text/plain; charset=UTF-8");
+			}
 			response.setEntity(entity);
 		} catch (UnsupportedEncodingException e) {
 		}
@@ -83,6 +89,12 @@ public class InfoRequestHandler extends BaseHttpRequestHandler {
 			return MaryRuntimeUtils.getLocales();
 		else if (request.equals("voices"))
 			return MaryRuntimeUtils.getVoices();
+		else if (request.equals("voiceloading"))
+			return MaryRuntimeUtils.getVoiceLoadingStatus();
+		else if (request.equals("memory"))
+			return MemoryAdmissionControl.getInstance().getStatus();
+		else if (request.equals("metrics"))
+			return MetricsRegistry.getInstance().toPrometheus();
 		else if (request.equals("audioformats"))
 			return MaryRuntimeUtils.getAudioFileFormatTypes();
 		else if (request.equals("exampletext")) {
@@ -33,8 +33,9 @@ import org.apache.http.impl.DefaultHttpResponseFactory;
 import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
 import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
 import org.apache.http.nio.NHttpConnection;
-import org.apache.http.nio.protocol.BufferingHttpServiceHandler;
+import org.apache.http.nio.protocol.AsyncNHttpServiceHandler;
 import org.apache.http.nio.protocol.EventListener;
+import org.apache.http.nio.protocol.NHttpRequestHandlerRegistry;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.ListeningIOReactor;
 import org.apache.http.params.BasicHttpParams;
@@ -43,7 +44,6 @@ import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpProcessor;
 import org.apache.http.protocol.ExecutionContext;
-import org.apache.http.protocol.HttpRequestHandlerRegistry;
 import org.apache.http.protocol.ResponseConnControl;
 import org.apache.http.protocol.ResponseContent;
 import org.apache.http.protocol.ResponseDate;
@@ -204,17 +204,23 @@ public class MaryHttpServer extends Thread {
 		httpproc.addInterceptor(new ResponseContent());
 		httpproc.addInterceptor(new ResponseConnControl());
 
-		BufferingHttpServiceHandler handler = new BufferingHttpServiceHandler(httpproc, new DefaultHttpResponseFactory(),
+		// Request handlers are called on the I/O reactor threads, and may submit their response later from another thread,
+		// so that long requests do not block I/O:
+		AsyncNHttpServiceHandler handler = new AsyncNHttpServiceHandler(httpproc, new DefaultHttpResponseFactory(),
 				new DefaultConnectionReuseStrategy(), params);
 
 		// Set up request handlers
-		HttpRequestHandlerRegistry registry = new HttpRequestHandlerRegistry();
+		NHttpRequestHandlerRegistry registry = new NHttpRequestHandlerRegistry();
 		registry.register("/process", new SynthesisRequestHandler());
+		registry.register("/batch", new BatchRequestHandler());
 		InfoRequestHandler infoRH = new InfoRequestHandler();
 		registry.register("/version", infoRH);
 		registry.register("/datatypes", infoRH);
 		registry.register("/locales", infoRH);
 		registry.register("/voices", infoRH);
+		registry.register("/voiceloading", infoRH);
+		registry.register("/memory", infoRH);
+		registry.register("/metrics", infoRH);
 		registry.register("/audioformats", infoRH);
 		registry.register("/exampletext", infoRH);
 		registry.register("/audioeffects", infoRH);
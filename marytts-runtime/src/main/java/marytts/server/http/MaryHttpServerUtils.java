@@ -34,6 +34,7 @@ import javax.sound.sampled.AudioFileFormat;
 import marytts.util.ConversionUtils;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.MaryAudioUtils;
+import marytts.util.data.audio.RawAudioEncoder;
 import marytts.util.string.StringUtils;
 
 import org.apache.http.HttpResponse;
@@ -154,6 +155,12 @@ public class MaryHttpServerUtils {
 			return "audio/x-aiff";
 		} else if (audioType.equals(MaryAudioUtils.getAudioFileFormatType("MP3"))) {
 			return "audio/x-mpeg"; // "audio/x-mp3; //Does not work for Internet Explorer"
+		} else if (audioType.equals(RawAudioEncoder.ULAW.getType())) {
+			return "audio/basic";
+		} else if (audioType.equals(RawAudioEncoder.ALAW.getType())) {
+			return "audio/x-alaw-basic";
+		} else if (audioType.equals(RawAudioEncoder.PCM16.getType())) {
+			return "application/octet-stream";
 		}
 		return "audio/basic"; // this is probably wrong but better than text/plain...
 	}
@@ -188,6 +195,20 @@ public class MaryHttpServerUtils {
 		}
 	}
 
+	public static void errorServiceUnavailable(HttpResponse response, String message, int retryAfterSeconds) {
+		int status = HttpStatus.SC_SERVICE_UNAVAILABLE;
+		response.setStatusCode(status);
+		response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+		logger.debug("Returning HTTP status " + status + ": " + message);
+		try {
+			NStringEntity entity = new NStringEntity("<html><body><h1>Service unavailable</h1><p>" + message + "</p></body></html>",
+					"UTF-8");
+			entity.setContentType("text/html; charset=UTF-8");
+			response.setEntity(entity);
+		} catch (UnsupportedEncodingException e) {
+		}
+	}
+
 	public static void errorMissingQueryParameter(HttpResponse response, String param) {
 		int status = HttpStatus.SC_BAD_REQUEST;
 		response.setStatusCode(status);
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentOutputStream;
+import org.apache.http.nio.entity.ProducingNHttpEntity;
+import org.apache.http.nio.util.ByteBufferAllocator;
+import org.apache.http.nio.util.SharedOutputBuffer;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An entity whose content is written by {@link #writeContent(OutputStream)} while it is being sent to the client, using chunked
+ * transfer encoding. The content is written by {@link #run()}, which must be called on a thread of its own; it blocks whenever
+ * the client does not keep up, so that no more than one buffer of content is held in memory per response.
+ * <p>
+ * The (direct) buffers between the writing thread and the I/O thread are recycled between responses.
+ */
+public abstract class StreamingNHttpEntity extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable {
+	private static final int BUFFER_SIZE = 32 * 1024;
+	private static final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<ByteBuffer>(64);
+	private static final ByteBufferAllocator pooledAllocator = new ByteBufferAllocator() {
+		public ByteBuffer allocate(int size) {
+			ByteBuffer buffer = size == BUFFER_SIZE ? bufferPool.poll() : null;
+			if (buffer == null) {
+				return ByteBuffer.allocateDirect(size);
+			}
+			buffer.clear();
+			return buffer;
+		}
+	};
+
+	protected Logger logger;
+	private Object mutex;
+	private volatile PooledOutputBuffer out;
+	private boolean finished;
+	/** The number of parties (I/O thread and writer thread) which are still using the buffer */
+	private final AtomicInteger bufferUsers = new AtomicInteger(2);
+
+	protected StreamingNHttpEntity(Logger logger) {
+		this.logger = logger;
+		setChunked(true);
+		this.mutex = new Object();
+	}
+
+	/**
+	 * Write the content. Called on the thread calling {@link #run()}, once the client is ready to receive it.
+	 *
+	 * @param outStream
+	 *            the stream to write to, which is closed afterwards
+	 * @throws IOException
+	 *             if the content cannot be written, usually because the client has disconnected
+	 */
+	protected abstract void writeContent(OutputStream outStream) throws IOException;
+
+	/**
+	 * Called if the content could not be written, or the connection was closed before it could be written, e.g. to stop
+	 * producing it.
+	 */
+	protected abstract void aborted();
+
+	/**
+	 * Called when the writer is done, successfully or not, e.g. to release resources. Does nothing by default.
+	 */
+	protected void done() {
+	}
+
+	/**
+	 * Called by the I/O thread when the response is complete or the connection was closed.
+	 */
+	public void finish() {
+		synchronized (mutex) {
+			finished = true;
+			if (out != null) {
+				// unblocks the writer if the client went away before everything was written
+				out.shutdown();
+			}
+			mutex.notifyAll();
+		}
+		logger.info("Completed sending response");
+		releaseBuffer();
+	}
+
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+		if (out == null) {
+			synchronized (mutex) {
+				out = new PooledOutputBuffer(ioctrl);
+				mutex.notifyAll();
+			}
+		}
+		// Sends what is available; output is suspended when the buffer runs empty,
+		// and requested again by the writer when there is more data.
+		out.produceContent(encoder);
+	}
+
+	public long getContentLength() {
+		return -1;
+	}
+
+	public boolean isRepeatable() {
+		return false;
+	}
+
+	public boolean isStreaming() {
+		return true;
+	}
+
+	public InputStream getContent() {
+		return null;
+	}
+
+	public void writeTo(final OutputStream outstream) throws IOException {
+		throw new RuntimeException("Should not be called");
+	}
+
+	/**
+	 * Wait for the SharedOutputBuffer to become available, write the content to it.
+	 */
+	public void run() {
+		try {
+			// We must wait until produceContent() is called:
+			synchronized (mutex) {
+				while (out == null && !finished) {
+					try {
+						mutex.wait();
+					} catch (InterruptedException e) {
+					}
+				}
+			}
+			if (out == null) {
+				logger.info("Connection closed before output could be written");
+				aborted();
+				return;
+			}
+			ContentOutputStream outStream = new ContentOutputStream(out);
+			try {
+				writeContent(outStream);
+				outStream.flush();
+				outStream.close();
+				logger.info("Finished writing output");
+			} catch (IOException ioe) {
+				logger.info("Cannot write output, client seems to have disconnected. ", ioe);
+				aborted();
+			}
+		} finally {
+			done();
+			releaseBuffer();
+		}
+	}
+
+	/**
+	 * Return the buffer to the pool once both the I/O thread and the writer thread are done with it.
+	 */
+	private void releaseBuffer() {
+		if (bufferUsers.decrementAndGet() == 0 && out != null) {
+			out.release();
+		}
+	}
+
+	private static class PooledOutputBuffer extends SharedOutputBuffer {
+		PooledOutputBuffer(IOControl ioctrl) {
+			super(BUFFER_SIZE, ioctrl, pooledAllocator);
+		}
+
+		void release() {
+			if (buffer != null && buffer.isDirect() && buffer.capacity() == BUFFER_SIZE) {
+				bufferPool.offer(buffer);
+			}
+			buffer = null;
+		}
+	}
+}
@@ -21,13 +21,18 @@ package marytts.server.http;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
@@ -36,16 +41,22 @@ import javax.sound.sampled.AudioSystem;
 
 import marytts.datatypes.MaryDataType;
 import marytts.modules.synthesis.Voice;
+import marytts.server.MaryProperties;
+import marytts.server.MemoryAdmissionControl;
 import marytts.server.Request;
-import marytts.server.RequestHandler.StreamingOutputPiper;
-import marytts.server.RequestHandler.StreamingOutputWriter;
+import marytts.server.metrics.MaryMetrics;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
+import marytts.util.data.audio.AppendableSequenceAudioInputStream;
 import marytts.util.data.audio.MaryAudioUtils;
 import marytts.util.http.Address;
 
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.protocol.HttpContext;
 import org.apache.logging.log4j.Logger;
 
 /**
@@ -55,24 +66,97 @@ import org.apache.logging.log4j.Logger;
  *
  */
 public class SynthesisRequestHandler extends BaseHttpRequestHandler {
+	/** The response header reporting the time to first audio in milliseconds, if requested with TIMING=on */
+	public static final String TIME_TO_FIRST_AUDIO_HEADER = "X-Mary-Time-To-First-Audio";
+	/** The response header reporting the real-time factor of non-streaming audio, if requested with TIMING=on */
+	public static final String REAL_TIME_FACTOR_HEADER = "X-Mary-Real-Time-Factor";
+
+	/** The number of requests which can wait for a synthesis thread, unless set by <code>server.http.synthesisqueue</code> */
+	public static final int DEFAULT_QUEUE_SIZE = 100;
+
 	private static int id = 0;
 
 	private static synchronized int getId() {
 		return id++;
 	}
 
-	private StreamingOutputWriter outputToStream;
-	private StreamingOutputPiper streamToPipe;
-	private PipedOutputStream pipedOutput;
-	private PipedInputStream pipedInput;
+	/**
+	 * The threads on which synthesis requests are processed, so that the I/O reactor threads calling this handler are free to
+	 * serve other connections in the meantime. Requests which find all threads busy and the queue full are rejected.
+	 */
+	private final ExecutorService synthesisExecutor;
+
+	/**
+	 * The threads encoding audio into the response entities, each one for as long as it takes the client to receive the audio.
+	 * There are as many as there are synthesis threads; responses which find all of them busy and the queue full are rejected.
+	 */
+	private final ExecutorService writerExecutor;
+
+	/**
+	 * The time at which the request being handled by the current synthesis thread arrived, in System.nanoTime() units.
+	 */
+	private static final ThreadLocal<Long> arrivalTime = new ThreadLocal<Long>();
 
 	public SynthesisRequestHandler() {
 		super();
 
-		outputToStream = null;
-		streamToPipe = null;
-		pipedOutput = null;
-		pipedInput = null;
+		int numThreads = Math.max(1,
+				MaryProperties.getInteger("server.http.synthesisthreads", Runtime.getRuntime().availableProcessors()));
+		int queueSize = Math.max(1, MaryProperties.getInteger("server.http.synthesisqueue", DEFAULT_QUEUE_SIZE));
+		final AtomicInteger threadCount = new AtomicInteger();
+		synthesisExecutor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "HTTPSynthesis " + threadCount.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		final AtomicInteger writerCount = new AtomicInteger();
+		writerExecutor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "HTTPWriter " + writerCount.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * Hand the request over to a synthesis thread, and submit the response from there when it is ready. If too many requests are
+	 * waiting for a synthesis thread already, answer at once with 503 Service Unavailable.
+	 */
+	@Override
+	public void handle(final HttpRequest request, final HttpResponse response, final NHttpResponseTrigger trigger,
+			final HttpContext context) throws HttpException, IOException {
+		final long submitted = System.nanoTime();
+		Runnable task = new Runnable() {
+			public void run() {
+				MaryMetrics.queueWait("executor", System.nanoTime() - submitted);
+				arrivalTime.set(submitted);
+				try {
+					handle(request, response, context);
+					trigger.submitResponse(response);
+				} catch (HttpException e) {
+					trigger.handleException(e);
+				} catch (IOException e) {
+					trigger.handleException(e);
+				} catch (Throwable t) {
+					logger.error("Cannot handle synthesis request", t);
+					trigger.handleException(new HttpException("Cannot handle synthesis request", t));
+				} finally {
+					arrivalTime.remove();
+				}
+			}
+		};
+		try {
+			synthesisExecutor.execute(task);
+		} catch (RejectedExecutionException e) {
+			logger.warn("Too many synthesis requests waiting -- rejecting request");
+			MaryHttpServerUtils.errorServiceUnavailable(response, "Server is too busy, please try again later.", 5);
+			trigger.submitResponse(response);
+		}
 	}
 
 	@Override
@@ -187,6 +271,9 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 		else
 			logger.debug("No audio effects requested");
 
+		// optionally, report the time to first audio and the real-time factor in response headers
+		boolean timingHeaders = "on".equals(queryItems.get("TIMING"));
+
 		String logMsg = queryItems.get("LOG");
 		if (logMsg != null) {
 			logger.info("Connection info: " + logMsg);
@@ -209,10 +296,21 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 		} else {
 			audioFormat = Voice.AF16000;
 		}
+		try {
+			audioFormat = MaryRuntimeUtils.getRequestedAudioFormat(audioFormat, outputTypeParams);
+		} catch (IllegalArgumentException iae) {
+			MaryHttpServerUtils.errorWrongQueryParameterValue(response, "OUTPUT_TYPE_PARAMS", outputTypeParams, iae.getMessage());
+			return;
+		}
 		AudioFileFormat audioFileFormat = new AudioFileFormat(audioFileFormatType, audioFormat, AudioSystem.NOT_SPECIFIED);
 
 		final Request maryRequest = new Request(inputType, outputType, locale, voice, effects, style, getId(), audioFileFormat,
 				streamingAudio, outputTypeParams);
+		Long arrival = arrivalTime.get();
+		if (arrival != null && maryRequest.getAudio() != null) {
+			// so that the time to first audio includes the time spent waiting for a synthesis thread:
+			maryRequest.getAudio().setStartTime(arrival);
+		}
 
 		// Process the request and send back the data
 		boolean ok = true;
@@ -225,77 +323,148 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 			MaryHttpServerUtils.errorInternalServerError(response, message, e);
 			ok = false;
 		}
+		MemoryAdmissionControl.Reservation reservation = null;
 		if (ok) {
-			if (streamingAudio) {
-				// Start two separate threads:
-				// 1. one thread to process the request;
-				new Thread("RH " + maryRequest.getId()) {
-					public void run() {
-						Logger myLogger = MaryUtils.getLogger(this.getName());
-						try {
-							maryRequest.process();
-							myLogger.info("Streaming request processed successfully.");
-						} catch (Throwable t) {
-							myLogger.error("Processing failed.", t);
+			try {
+				reservation = MemoryAdmissionControl.getInstance().admit(MemoryAdmissionControl.estimate(maryRequest));
+			} catch (InterruptedException e) {
+			}
+			if (reservation == null) {
+				logger.warn("Not enough memory for request -- rejecting it");
+				MaryHttpServerUtils.errorServiceUnavailable(response, "Server is too busy, please try again later.", 5);
+				ok = false;
+			}
+		}
+		try {
+			if (ok) {
+				if (streamingAudio) {
+					// Start two separate threads:
+					// 1. one thread to take the audio data as it becomes available
+					// and write it into the ProducingNHttpEntity;
+					// the AppendableSequenceAudioInputStream returned by
+					// maryRequest.getAudio() was already created in the constructor of Request.
+					AudioInputStream audio = maryRequest.getAudio();
+					assert audio != null : "Streaming audio but no audio stream -- very strange indeed! :-(";
+					AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(maryRequest, reservation);
+					if (startWriter(entity, response)) {
+						reservation = null; // released by the entity when the audio is written
+
+						// 2. one thread to process the request.
+						new Thread("RH " + maryRequest.getId()) {
+							public void run() {
+								Logger myLogger = MaryUtils.getLogger(this.getName());
+								try {
+									maryRequest.process();
+									myLogger.info("Streaming request processed successfully.");
+								} catch (Throwable t) {
+									myLogger.error("Processing failed.", t);
+									// let the writer finish, so that it releases the request's memory
+									maryRequest.getAudio().doneAppending();
+								}
+							}
+						}.start();
+						if (timingHeaders) {
+							// the headers are sent with the first audio, which cannot reach the client any earlier anyway
+							try {
+								maryRequest.getAudio().awaitFirstAppend();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+							addTimingHeaders(response, maryRequest.getAudio());
 						}
+						// entity knows its contentType, no need to set explicitly here.
+						response.setEntity(entity);
+						response.setStatusCode(HttpStatus.SC_OK);
+						return;
 					}
-				}.start();
-
-				// 2. one thread to take the audio data as it becomes available
-				// and write it into the ProducingNHttpEntity.
-				// The second one does not depend on the first one practically,
-				// because the AppendableSequenceAudioInputStream returned by
-				// maryRequest.getAudio() was already created in the constructor of Request.
-				AudioInputStream audio = maryRequest.getAudio();
-				assert audio != null : "Streaming audio but no audio stream -- very strange indeed! :-(";
-				AudioFileFormat.Type audioType = maryRequest.getAudioFileFormat().getType();
-				AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(maryRequest);
-				new Thread(entity, "HTTPWriter " + maryRequest.getId()).start();
-				// entity knows its contentType, no need to set explicitly here.
-				response.setEntity(entity);
-				response.setStatusCode(HttpStatus.SC_OK);
-				return;
-			} else { // not streaming audio
-				// Process input data to output data
-				try {
-					maryRequest.process(); // this may take some time
-				} catch (Throwable e) {
-					String message = "Processing failed.";
-					logger.error(message, e);
-					MaryHttpServerUtils.errorInternalServerError(response, message, e);
 					ok = false;
-				}
-				if (ok) {
-					// Write output data to client
+				} else { // not streaming audio
+					// Process input data to output data
 					try {
-						ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-						maryRequest.writeOutputData(outputStream);
-						String contentType;
-						if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) // text output
-							contentType = "text/plain; charset=UTF-8";
-						else
-							// audio output
-							contentType = MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat().getType());
-						MaryHttpServerUtils.toHttpResponse(outputStream.toByteArray(), response, contentType);
-					} catch (Exception e) {
-						String message = "Cannot write output";
-						logger.warn(message, e);
+						maryRequest.process(); // this may take some time
+					} catch (Throwable e) {
+						String message = "Processing failed.";
+						logger.error(message, e);
 						MaryHttpServerUtils.errorInternalServerError(response, message, e);
 						ok = false;
 					}
+					if (ok && maryRequest.getAudio() != null) {
+						// Audio is encoded while it is sent, rather than into a byte array first
+						AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(maryRequest, reservation);
+						if (startWriter(entity, response)) {
+							reservation = null; // released by the entity when the audio is written
+							if (timingHeaders) {
+								addTimingHeaders(response, maryRequest.getAudio());
+							}
+							response.setEntity(entity);
+							response.setStatusCode(HttpStatus.SC_OK);
+						} else {
+							ok = false;
+						}
+					} else if (ok) {
+						// Write output data to client
+						try {
+							ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+							maryRequest.writeOutputData(outputStream);
+							String contentType;
+							if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) // text output
+								contentType = "text/plain; charset=UTF-8";
+							else
+								// audio output
+								contentType = MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat().getType());
+							MaryHttpServerUtils.toHttpResponse(outputStream.toByteArray(), response, contentType);
+						} catch (Exception e) {
+							String message = "Cannot write output";
+							logger.warn(message, e);
+							MaryHttpServerUtils.errorInternalServerError(response, message, e);
+							ok = false;
+						}
+					}
 				}
 			}
+		} finally {
+			// not handed over to an entity, e.g. because the entity could not be created or started:
+			if (reservation != null) {
+				reservation.release();
+			}
 		}
-
 		if (ok)
 			logger.info("Request handled successfully.");
 		else
 			logger.info("Request couldn't be handled successfully.");
-		if (MaryRuntimeUtils.lowMemoryCondition()) {
-			logger.info("Low memory condition detected (only " + MaryUtils.availableMemory()
-					+ " bytes left). Triggering garbage collection.");
-			Runtime.getRuntime().gc();
-			logger.info("After garbage collection: " + MaryUtils.availableMemory() + " bytes available.");
+	}
+
+	/**
+	 * Hand the entity over to a writer thread, or answer with 503 Service Unavailable if too many responses are waiting for one.
+	 *
+	 * @return true if the entity will be written, false if the response is an error
+	 */
+	private boolean startWriter(AudioStreamNHttpEntity entity, HttpResponse response) {
+		try {
+			writerExecutor.execute(entity);
+			return true;
+		} catch (RejectedExecutionException e) {
+			logger.warn("Too many responses waiting for a writer -- rejecting request");
+			MaryHttpServerUtils.errorServiceUnavailable(response, "Server is too busy, please try again later.", 5);
+			return false;
+		}
+	}
+
+	/**
+	 * Report the timing of the audio production in the headers X-Mary-Time-To-First-Audio, in milliseconds, and, if the audio is
+	 * complete, X-Mary-Real-Time-Factor.
+	 */
+	private void addTimingHeaders(HttpResponse response, AppendableSequenceAudioInputStream audio) {
+		long timeToFirstAudio = audio.getTimeToFirstAppend();
+		if (timeToFirstAudio >= 0) {
+			response.setHeader(TIME_TO_FIRST_AUDIO_HEADER, String.valueOf(timeToFirstAudio / 1000000));
+		}
+		long productionTime = audio.getProductionTime();
+		long frames = audio.getFrameLength();
+		float frameRate = audio.getFormat().getFrameRate();
+		if (productionTime >= 0 && frames > 0 && frameRate > 0) {
+			double rtf = productionTime / 1.E9 / (frames / frameRate);
+			response.setHeader(REAL_TIME_FACTOR_HEADER, String.format(Locale.US, "%.3f", rtf));
 		}
 	}
 
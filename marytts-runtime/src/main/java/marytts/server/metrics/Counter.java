@@ -0,0 +1,51 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, which can be incremented concurrently from any number of threads without contention.
+ */
+public class Counter implements CounterMBean {
+	private final LongAdder count = new LongAdder();
+
+	Counter() {
+	}
+
+	public void inc() {
+		count.increment();
+	}
+
+	/**
+	 * @param n
+	 *            the amount to add, which must not be negative
+	 */
+	public void add(long n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Counters can only increase, but got " + n);
+		}
+		count.add(n);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+}
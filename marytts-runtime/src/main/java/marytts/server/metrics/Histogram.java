@@ -0,0 +1,108 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of observed values over a fixed set of buckets, as in Prometheus: each bucket counts the observations up to
+ * and including its upper bound. Observations can be recorded concurrently from any number of threads without contention; a
+ * snapshot taken while observations are recorded may be off by the observations in progress.
+ */
+public class Histogram implements HistogramMBean {
+	private final double[] bounds;
+	/** the observations per bucket, not cumulative; the last element counts the observations above the last bound */
+	private final LongAdder[] counts;
+	private final DoubleAdder sum = new DoubleAdder();
+
+	/**
+	 * @param bounds
+	 *            the upper bounds of the buckets, in increasing order
+	 */
+	Histogram(double[] bounds) {
+		for (int i = 1; i < bounds.length; i++) {
+			if (!(bounds[i - 1] < bounds[i])) {
+				throw new IllegalArgumentException("Bucket bounds must be increasing: " + Arrays.toString(bounds));
+			}
+		}
+		this.bounds = bounds.clone();
+		counts = new LongAdder[bounds.length + 1];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	public void observe(double value) {
+		int i = Arrays.binarySearch(bounds, value);
+		if (i < 0) {
+			i = -i - 1;
+		}
+		counts[i].increment();
+		sum.add(value);
+	}
+
+	/**
+	 * Observe a duration.
+	 *
+	 * @param nanos
+	 *            the duration in nanoseconds, which is recorded in seconds
+	 */
+	public void observeNanos(long nanos) {
+		observe(nanos / 1.E9);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder c : counts) {
+			count += c.sum();
+		}
+		return count;
+	}
+
+	public double getSum() {
+		return sum.sum();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : getSum() / count;
+	}
+
+	public double[] getBucketBounds() {
+		return bounds.clone();
+	}
+
+	/**
+	 * The number of observations up to and including each bound, followed by the total count.
+	 *
+	 * @return an array of length getBucketBounds().length + 1
+	 */
+	public long[] getCumulativeCounts() {
+		long[] cumulative = new long[counts.length];
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			count += counts[i].sum();
+			cumulative[i] = count;
+		}
+		return cumulative;
+	}
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import marytts.datatypes.MaryData;
+import marytts.util.data.audio.AppendableSequenceAudioInputStream;
+
+/**
+ * The metrics recorded by the server: the names, labels and buckets of the metrics in {@link MetricsRegistry#getInstance()}, and
+ * methods to record them.
+ */
+public class MaryMetrics {
+	/** Buckets for durations, in seconds */
+	public static final double[] SECONDS_BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30 };
+	/** Buckets for sizes, in characters or samples */
+	public static final double[] SIZE_BUCKETS = { 10, 30, 100, 300, 1000, 3000, 10000, 30000, 100000, 300000, 1000000 };
+	/** Buckets for memory, in bytes */
+	public static final double[] BYTES_BUCKETS = { 1 << 10, 1 << 12, 1 << 14, 1 << 16, 1 << 18, 1 << 20, 1 << 22, 1 << 24, 1 << 26,
+			1 << 28, 1 << 30 };
+
+	/** Buckets for real-time factors */
+	public static final double[] RTF_BUCKETS = { 0.01, 0.02, 0.05, 0.1, 0.2, 0.3, 0.5, 0.75, 1, 1.5, 2, 5, 10 };
+
+	private static final String NO_VOICE = "none";
+
+	private static final com.sun.management.ThreadMXBean allocationBean = getAllocationBean();
+
+	private static com.sun.management.ThreadMXBean getAllocationBean() {
+		try {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+				if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+					return sunBean;
+				}
+			}
+		} catch (LinkageError e) {
+			// not a HotSpot-based JVM
+		}
+		return null;
+	}
+
+	/**
+	 * The number of bytes allocated so far by the current thread, if the JVM can measure it.
+	 *
+	 * @return the allocated bytes, or -1 if the JVM cannot measure allocations per thread
+	 */
+	public static long threadAllocatedBytes() {
+		if (allocationBean == null) {
+			return -1;
+		}
+		return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * The size of a chunk of input data: the number of characters of text, or the number of audio frames. For XML data, this
+	 * walks the whole document, so it should be computed once per chunk.
+	 *
+	 * @param data
+	 *            the input data
+	 * @return the size, or 0 if unknown
+	 */
+	public static long inputSize(MaryData data) {
+		if (data.getPlainText() != null) {
+			return data.getPlainText().length();
+		} else if (data.getDocument() != null && data.getDocument().getDocumentElement() != null) {
+			return data.getDocument().getDocumentElement().getTextContent().length();
+		} else if (data.getAudio() != null && data.getAudio().getFrameLength() > 0) {
+			return data.getAudio().getFrameLength();
+		}
+		return 0;
+	}
+
+	/**
+	 * Record the processing of one chunk of data by one module, in the calling thread.
+	 *
+	 * @param module
+	 *            the module name
+	 * @param voice
+	 *            the voice name, or null
+	 * @param inputSize
+	 *            the size of the chunk of data processed by the request, see {@link #inputSize(MaryData)}
+	 * @param nanos
+	 *            the processing time
+	 * @param allocatedBytes
+	 *            the bytes allocated by the calling thread during processing, or a negative number if unknown
+	 */
+	public static void moduleProcessed(String module, String voice, long inputSize, long nanos, long allocatedBytes) {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		String v = voice != null ? voice : NO_VOICE;
+		registry.histogram("mary_module_duration_seconds", "Time spent in a module per chunk of data", SECONDS_BUCKETS,
+				"module", module, "voice", v).observeNanos(nanos);
+		registry.histogram("mary_module_input_size", "Size of the chunks processed by a module, in characters or audio frames",
+				SIZE_BUCKETS, "module", module, "voice", v).observe(inputSize);
+		if (allocatedBytes >= 0) {
+			registry.histogram("mary_module_allocated_bytes",
+					"Memory allocated by the request thread in a module per chunk of data", BYTES_BUCKETS, "module", module,
+					"voice", v).observe(allocatedBytes);
+		}
+	}
+
+	/**
+	 * Record the processing of a whole request.
+	 *
+	 * @param outputType
+	 *            the name of the output type
+	 * @param voice
+	 *            the voice name, or null
+	 * @param nanos
+	 *            the processing time
+	 */
+	public static void requestProcessed(String outputType, String voice, long nanos) {
+		MetricsRegistry.getInstance().histogram("mary_request_duration_seconds", "Time spent processing a request",
+				SECONDS_BUCKETS, "output_type", outputType, "voice", voice != null ? voice : NO_VOICE).observeNanos(nanos);
+	}
+
+	/**
+	 * Record the time a request waited before it was processed.
+	 *
+	 * @param stage
+	 *            what the request waited for, e.g. "executor" for a free synthesis thread or "admission" for memory
+	 * @param nanos
+	 *            the waiting time
+	 */
+	public static void queueWait(String stage, long nanos) {
+		MetricsRegistry.getInstance().histogram("mary_request_queue_wait_seconds", "Time a request waited before processing",
+				SECONDS_BUCKETS, "stage", stage).observeNanos(nanos);
+	}
+
+	/**
+	 * Record the loading of the data of a voice.
+	 *
+	 * @param voice
+	 *            the voice name
+	 * @param millis
+	 *            the time it took to load the data
+	 */
+	public static void voiceLoaded(String voice, long millis) {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		registry.counter("mary_voice_loads_total", "Times the data of a voice was loaded", "voice", voice).inc();
+		registry.histogram("mary_voice_load_seconds", "Time it took to load the data of a voice", SECONDS_BUCKETS, "voice", voice)
+				.observe(millis / 1000.);
+	}
+
+	/**
+	 * Record that the data of a lazily loaded voice was unloaded.
+	 *
+	 * @param voice
+	 *            the voice name
+	 */
+	public static void voiceEvicted(String voice) {
+		MetricsRegistry.getInstance()
+				.counter("mary_voice_evictions_total", "Times the data of a lazily loaded voice was unloaded", "voice", voice).inc();
+	}
+
+	/**
+	 * Record a cache lookup.
+	 *
+	 * @param cache
+	 *            the name of the cache
+	 * @param hit
+	 *            whether the lookup found an entry
+	 */
+	public static void cacheLookup(String cache, boolean hit) {
+		cacheCounter(cache, hit).inc();
+	}
+
+	/**
+	 * The counter of the hits or misses of a cache, for caches which are looked up so often that they keep their counters rather
+	 * than calling {@link #cacheLookup(String, boolean)}.
+	 *
+	 * @param cache
+	 *            the name of the cache
+	 * @param hit
+	 *            true for the counter of the hits, false for the misses
+	 * @return the counter
+	 */
+	public static Counter cacheCounter(String cache, boolean hit) {
+		return cacheCounter(cache, null, hit);
+	}
+
+	/**
+	 * The counter of the hits or misses of a cache which belongs to one voice.
+	 *
+	 * @param cache
+	 *            the name of the cache
+	 * @param voice
+	 *            the name of the voice, or null if the cache is shared by all voices
+	 * @param hit
+	 *            true for the counter of the hits, false for the misses
+	 * @return the counter
+	 */
+	public static Counter cacheCounter(String cache, String voice, boolean hit) {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		String v = voice != null ? voice : NO_VOICE;
+		if (hit) {
+			return registry.counter("mary_cache_hits_total", "Cache lookups which found an entry", "cache", cache, "voice", v);
+		} else {
+			return registry.counter("mary_cache_misses_total", "Cache lookups which found no entry", "cache", cache, "voice", v);
+		}
+	}
+
+	/**
+	 * Record that a word was transcribed by letter-to-sound rules because it was not in the lexicon.
+	 *
+	 * @param locale
+	 *            the locale of the phonemiser
+	 */
+	public static void ltsFallback(String locale) {
+		MetricsRegistry.getInstance()
+				.counter("mary_lts_fallbacks_total", "Words transcribed by letter-to-sound rules", "locale", locale).inc();
+	}
+
+	/**
+	 * Record a Viterbi search.
+	 *
+	 * @param targets
+	 *            the number of targets
+	 * @param candidates
+	 *            the total number of candidate units for all targets
+	 */
+	public static void viterbiSearch(int targets, long candidates) {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		registry.counter("mary_viterbi_targets_total", "Targets of unit selection searches").add(targets);
+		registry.counter("mary_viterbi_candidates_total", "Candidate units considered by unit selection searches").add(
+				candidates);
+	}
+
+	/**
+	 * Record the join costs which a Viterbi search skipped by pruning.
+	 *
+	 * @param skippedJoinCosts
+	 *            the number of skipped join costs
+	 */
+	public static void viterbiPruning(long skippedJoinCosts) {
+		MetricsRegistry.getInstance().counter("mary_viterbi_skipped_join_costs_total",
+				"Join costs skipped by the pruning of unit selection searches").add(skippedJoinCosts);
+	}
+
+	/**
+	 * The real-time factor of the production of a stream of audio: the time it took to produce it divided by its duration.
+	 *
+	 * @param audio
+	 *            an audio stream which has been read completely
+	 * @return the real-time factor, or -1 if it cannot be determined
+	 */
+	public static double realTimeFactor(AppendableSequenceAudioInputStream audio) {
+		long productionTime = audio.getProductionTime();
+		long frames = audio.getFramesRead();
+		float frameRate = audio.getFormat().getFrameRate();
+		if (productionTime < 0 || frames <= 0 || frameRate <= 0) {
+			return -1;
+		}
+		return productionTime / 1.E9 / (frames / frameRate);
+	}
+
+	/**
+	 * Record the timing of a streaming audio request, once its audio has been sent completely.
+	 *
+	 * @param voice
+	 *            the voice name, or null
+	 * @param audio
+	 *            the audio stream of the request, which has been read completely
+	 */
+	public static void audioStreamed(String voice, AppendableSequenceAudioInputStream audio) {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		String v = voice != null ? voice : NO_VOICE;
+		long timeToFirstAudio = audio.getTimeToFirstAppend();
+		if (timeToFirstAudio >= 0) {
+			registry.histogram("mary_stream_time_to_first_audio_seconds",
+					"Time from the arrival of a streaming request until its first audio was produced", SECONDS_BUCKETS, "voice", v)
+					.observeNanos(timeToFirstAudio);
+		}
+		long[] appendTimes = audio.getAppendTimes();
+		Histogram intervals = registry.histogram("mary_stream_chunk_interval_seconds",
+				"Time between the production of successive chunks of streaming audio", SECONDS_BUCKETS, "voice", v);
+		for (int i = 1; i < appendTimes.length; i++) {
+			intervals.observeNanos(appendTimes[i] - appendTimes[i - 1]);
+		}
+		double rtf = realTimeFactor(audio);
+		if (rtf >= 0) {
+			registry.histogram("mary_stream_real_time_factor", "Production time of streaming audio divided by its duration",
+					RTF_BUCKETS, "voice", v).observe(rtf);
+		}
+		registry.counter("mary_stream_underruns_total", "Times the writer of streaming audio waited for more audio", "voice", v)
+				.add(audio.getUnderrunCount());
+		registry.histogram("mary_stream_underrun_seconds", "Total time the writer of a streaming request waited for audio",
+				SECONDS_BUCKETS, "voice", v).observeNanos(audio.getUnderrunTime());
+	}
+}
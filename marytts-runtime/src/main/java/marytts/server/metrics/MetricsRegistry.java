@@ -0,0 +1,293 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import marytts.server.MaryProperties;
+import marytts.util.MaryUtils;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A registry of named counters and histograms. Each metric is identified by its name and a set of labels, given as alternating
+ * label names and values; all metrics of the same name are a family, which must use the same label names. Looking up a metric
+ * that does not exist yet creates it, so that the code recording a measurement needs no set-up.
+ * <p>
+ * The registry can be written in the Prometheus text exposition format, see {@link #writePrometheus(Appendable)}, and each metric
+ * is registered as an MBean in the domain <code>marytts</code> if the registry has an MBean server.
+ */
+public class MetricsRegistry {
+	/** The content type of the Prometheus text exposition format */
+	public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/** Creates the registry of this server on first use, without locking afterwards. */
+	private static class Holder {
+		static final MetricsRegistry INSTANCE = new MetricsRegistry(
+				MaryProperties.getBoolean("server.metrics.jmx", true) ? ManagementFactory.getPlatformMBeanServer() : null);
+	}
+
+	/**
+	 * The registry of this server. Its metrics are registered with the platform MBean server unless
+	 * <code>server.metrics.jmx</code> is false.
+	 *
+	 * @return the registry
+	 */
+	public static MetricsRegistry getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	private final Logger logger = MaryUtils.getLogger("metrics");
+	private final MBeanServer mbeanServer;
+	/** the families by name, sorted so that the output is stable */
+	private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<String, Family>();
+	/** all metrics by name and labels, for fast lookup */
+	private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * Create a registry.
+	 *
+	 * @param mbeanServer
+	 *            the MBean server with which to register the metrics, or null to not register them
+	 */
+	public MetricsRegistry(MBeanServer mbeanServer) {
+		this.mbeanServer = mbeanServer;
+	}
+
+	/**
+	 * The counter of the given name and labels, which is created if necessary.
+	 *
+	 * @param name
+	 *            the metric name, by convention ending in <code>_total</code>
+	 * @param help
+	 *            a description of the metric; used when the family is created
+	 * @param labels
+	 *            label names and values, alternating
+	 * @return the counter
+	 * @throws IllegalArgumentException
+	 *             if a metric of this name exists with a different type or label names
+	 */
+	public Counter counter(String name, String help, String... labels) {
+		Object metric = metrics.get(key(name, labels));
+		if (metric == null) {
+			metric = create(name, help, "counter", null, labels);
+		}
+		if (!(metric instanceof Counter)) {
+			throw new IllegalArgumentException(name + " is not a counter");
+		}
+		return (Counter) metric;
+	}
+
+	/**
+	 * The histogram of the given name and labels, which is created if necessary.
+	 *
+	 * @param name
+	 *            the metric name, by convention ending in the base unit such as <code>_seconds</code> or <code>_bytes</code>
+	 * @param help
+	 *            a description of the metric; used when the family is created
+	 * @param bounds
+	 *            the upper bounds of the buckets, in increasing order; used when the family is created
+	 * @param labels
+	 *            label names and values, alternating
+	 * @return the histogram
+	 * @throws IllegalArgumentException
+	 *             if a metric of this name exists with a different type or label names
+	 */
+	public Histogram histogram(String name, String help, double[] bounds, String... labels) {
+		Object metric = metrics.get(key(name, labels));
+		if (metric == null) {
+			metric = create(name, help, "histogram", bounds, labels);
+		}
+		if (!(metric instanceof Histogram)) {
+			throw new IllegalArgumentException(name + " is not a histogram");
+		}
+		return (Histogram) metric;
+	}
+
+	private static String key(String name, String[] labels) {
+		if (labels.length == 0) {
+			return name;
+		}
+		StringBuilder key = new StringBuilder(name);
+		for (String label : labels) {
+			key.append('\u0000').append(label);
+		}
+		return key.toString();
+	}
+
+	private synchronized Object create(String name, String help, String type, double[] bounds, String[] labels) {
+		String key = key(name, labels);
+		Object metric = metrics.get(key);
+		if (metric != null) {
+			return metric;
+		}
+		if ((labels.length & 1) != 0) {
+			throw new IllegalArgumentException("Labels must be given as name/value pairs: " + Arrays.toString(labels));
+		}
+		String[] labelNames = new String[labels.length / 2];
+		for (int i = 0; i < labelNames.length; i++) {
+			labelNames[i] = labels[2 * i];
+		}
+		Family family = families.get(name);
+		if (family == null) {
+			family = new Family(name, help, type, labelNames, bounds);
+			families.put(name, family);
+		} else if (!family.type.equals(type) || !Arrays.equals(family.labelNames, labelNames)) {
+			throw new IllegalArgumentException("Metric " + name + " already exists as " + family.type + " with labels "
+					+ Arrays.toString(family.labelNames));
+		}
+		metric = type.equals("counter") ? new Counter() : new Histogram(family.bounds);
+		family.metrics.put(formatLabels(labels), metric);
+		metrics.put(key, metric);
+		registerMBean(name, labels, metric);
+		return metric;
+	}
+
+	private void registerMBean(String name, String[] labels, Object metric) {
+		if (mbeanServer == null) {
+			return;
+		}
+		StringBuilder objectName = new StringBuilder("marytts:type=Metrics,name=").append(name);
+		for (int i = 0; i < labels.length; i += 2) {
+			objectName.append(',').append(labels[i]).append('=').append(ObjectName.quote(labels[i + 1]));
+		}
+		try {
+			mbeanServer.registerMBean(metric, new ObjectName(objectName.toString()));
+		} catch (JMException e) {
+			logger.debug("Cannot register metric " + objectName + " with JMX", e);
+		}
+	}
+
+	/**
+	 * Write all metrics in the Prometheus text exposition format, version 0.0.4.
+	 *
+	 * @param out
+	 *            where to write the metrics
+	 * @throws IOException
+	 *             if out throws an IOException
+	 */
+	public void writePrometheus(Appendable out) throws IOException {
+		for (Family family : families.values()) {
+			out.append("# HELP ").append(family.name).append(' ').append(escape(family.help, false)).append('\n');
+			out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+			for (Map.Entry<String, Object> entry : family.metrics.entrySet()) {
+				String labels = entry.getKey();
+				if (entry.getValue() instanceof Counter) {
+					out.append(family.name).append(labels).append(' ')
+							.append(Long.toString(((Counter) entry.getValue()).getCount())).append('\n');
+				} else {
+					Histogram histogram = (Histogram) entry.getValue();
+					long[] cumulative = histogram.getCumulativeCounts();
+					for (int i = 0; i < cumulative.length; i++) {
+						String le = i < family.bounds.length ? Double.toString(family.bounds[i]) : "+Inf";
+						out.append(family.name).append("_bucket").append(withLabel(labels, "le", le)).append(' ')
+								.append(Long.toString(cumulative[i])).append('\n');
+					}
+					out.append(family.name).append("_sum").append(labels).append(' ')
+							.append(Double.toString(histogram.getSum())).append('\n');
+					out.append(family.name).append("_count").append(labels).append(' ')
+							.append(Long.toString(cumulative[cumulative.length - 1])).append('\n');
+				}
+			}
+		}
+	}
+
+	/**
+	 * The metrics in the Prometheus text exposition format.
+	 *
+	 * @return a multi-line string
+	 */
+	public String toPrometheus() {
+		StringBuilder out = new StringBuilder();
+		try {
+			writePrometheus(out);
+		} catch (IOException e) {
+			throw new AssertionError("StringBuilder cannot throw IOException");
+		}
+		return out.toString();
+	}
+
+	private static String withLabel(String labels, String name, String value) {
+		String label = name + "=\"" + value + "\"";
+		if (labels.isEmpty()) {
+			return "{" + label + "}";
+		}
+		return labels.substring(0, labels.length() - 1) + "," + label + "}";
+	}
+
+	private static String formatLabels(String[] labels) {
+		if (labels.length == 0) {
+			return "";
+		}
+		StringBuilder formatted = new StringBuilder("{");
+		for (int i = 0; i < labels.length; i += 2) {
+			if (i > 0) {
+				formatted.append(',');
+			}
+			formatted.append(labels[i]).append("=\"").append(escape(labels[i + 1], true)).append('"');
+		}
+		return formatted.append('}').toString();
+	}
+
+	private static String escape(String s, boolean quotes) {
+		StringBuilder escaped = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '\\') {
+				escaped.append("\\\\");
+			} else if (c == '\n') {
+				escaped.append("\\n");
+			} else if (c == '"' && quotes) {
+				escaped.append("\\\"");
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private static class Family {
+		final String name;
+		final String help;
+		final String type;
+		final String[] labelNames;
+		final double[] bounds;
+		/** the metrics by their formatted labels */
+		final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<String, Object>();
+
+		Family(String name, String help, String type, String[] labelNames, double[] bounds) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.labelNames = labelNames;
+			this.bounds = bounds;
+		}
+	}
+}
@@ -27,6 +27,7 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
@@ -42,6 +43,7 @@ import marytts.modules.synthesis.Voice;
 import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.modules.synthesis.Voice.Gender;
 import marytts.server.MaryProperties;
+import marytts.server.StartupScheduler;
 import marytts.unitselection.concat.UnitConcatenator;
 import marytts.unitselection.concat.BaseUnitConcatenator.UnitData;
 import marytts.unitselection.data.Unit;
@@ -88,14 +90,31 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 		logger = MaryUtils.getLogger("UnitSelectionSynthesizer");
 		// Register UnitSelection voices:
 		logger.debug("Register UnitSelection voices:");
-		List<String> voiceNames = MaryProperties.getList("unitselection.voices.list");
-		for (String voiceName : voiceNames) {
-			long time = System.currentTimeMillis();
-			Voice unitSelVoice = new UnitSelectionVoice(voiceName, this);
-			logger.debug("Voice '" + unitSelVoice + "'");
+		List<String> voiceNames = new ArrayList<String>(new LinkedHashSet<String>(
+				MaryProperties.getList("unitselection.voices.list")));
+		// Voices are loaded in parallel, but registered in the configured order:
+		final Voice[] voices = new Voice[voiceNames.size()];
+		StartupScheduler scheduler = new StartupScheduler("unit selection voices",
+				StartupScheduler.getConfiguredThreads("modules.startup.threads"));
+		for (int i = 0; i < voiceNames.size(); i++) {
+			final int index = i;
+			final String voiceName = voiceNames.get(i);
+			scheduler.addTask(voiceName, null, new StartupScheduler.Task() {
+				public void run() throws Exception {
+					long time = System.currentTimeMillis();
+					voices[index] = new UnitSelectionVoice(voiceName, UnitSelectionSynthesizer.this);
+					if (!voices[index].isLazy()) {
+						voices[index].load();
+					}
+					logger.debug("Voice '" + voices[index] + "'");
+					long newtime = System.currentTimeMillis() - time;
+					logger.info("Loading of voice " + voiceName + " took " + newtime + " milliseconds");
+				}
+			});
+		}
+		scheduler.run();
+		for (Voice unitSelVoice : voices) {
 			Voice.registerVoice(unitSelVoice);
-			long newtime = System.currentTimeMillis() - time;
-			logger.info("Loading of voice " + voiceName + " took " + newtime + " milliseconds");
 		}
 		logger.info("started.");
 	}
@@ -68,16 +68,21 @@ import marytts.unitselection.select.UnitSelector;
  */
 public class UnitSelectionVoice extends Voice {
 
-	protected UnitDatabase database;
-	protected UnitSelector unitSelector;
-	protected UnitConcatenator concatenator;
-	protected UnitConcatenator modificationConcatenator;
 	protected String domain;
 	protected String name;
-	protected CART[] f0Carts;
 	protected String exampleText;
 
-        @SuppressWarnings("unchecked")
+	/**
+	 * The unit selection voice data, in addition to the data of any voice.
+	 */
+	protected static class UnitSelectionVoiceData extends VoiceData {
+		private UnitDatabase database;
+		private UnitSelector unitSelector;
+		private UnitConcatenator concatenator;
+		private volatile UnitConcatenator modificationConcatenator;
+		private CART[] f0Carts;
+	}
+
 	public UnitSelectionVoice(String name, WaveformSynthesizer synthesizer) throws MaryConfigurationException {
 		super(name, synthesizer);
 
@@ -95,12 +100,30 @@ public class UnitSelectionVoice extends Voice {
 			if (exampleTextStream != null) {
 				readExampleText(exampleTextStream);
 			}
+		} catch (MaryConfigurationException mce) {
+			throw mce;
+		} catch (Exception ex) {
+			throw new MaryConfigurationException("Cannot build unit selection voice '" + name + "'", ex);
+		}
+	}
+
+	@Override
+	protected VoiceData newVoiceData() {
+		return new UnitSelectionVoiceData();
+	}
 
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void loadVoiceData(VoiceData voiceData) throws MaryConfigurationException {
+		super.loadVoiceData(voiceData);
+		UnitSelectionVoiceData d = (UnitSelectionVoiceData) voiceData;
+		String header = "voice." + getName();
+		try {
 			FeatureProcessorManager featProcManager = FeatureRegistry.getFeatureProcessorManager(this);
 			if (featProcManager == null)
 				featProcManager = FeatureRegistry.getFeatureProcessorManager(getLocale());
 			if (featProcManager == null)
-				throw new MaryConfigurationException("No feature processor manager for voice '" + name + "' (locale "
+				throw new MaryConfigurationException("No feature processor manager for voice '" + getName() + "' (locale "
 						+ getLocale() + ")");
 
 			// build and load targetCostFunction
@@ -167,58 +190,57 @@ public class UnitSelectionVoice extends Voice {
 			// build and load database
 			logger.debug("...instantiating database...");
 			String databaseClass = MaryProperties.needProperty(header + ".databaseClass");
-			database = (UnitDatabase) Class.forName(databaseClass).getDeclaredConstructor().newInstance();
+			d.database = (UnitDatabase) Class.forName(databaseClass).getDeclaredConstructor().newInstance();
 			if (useSCost) {
-				database.load(targetFunction, joinFunction, sCostFunction, unitReader, cart, timelineReader,
+				d.database.load(targetFunction, joinFunction, sCostFunction, unitReader, cart, timelineReader,
 						basenameTimelineReader, backtrace);
 			} else {
-				database.load(targetFunction, joinFunction, unitReader, cart, timelineReader, basenameTimelineReader, backtrace);
+				d.database.load(targetFunction, joinFunction, unitReader, cart, timelineReader, basenameTimelineReader, backtrace);
 			}
 
 			// build Selector
 			logger.debug("...instantiating unit selector...");
 			String selectorClass = MaryProperties.needProperty(header + ".selectorClass");
-			unitSelector = (UnitSelector) Class.forName(selectorClass).getDeclaredConstructor().newInstance();
+			d.unitSelector = (UnitSelector) Class.forName(selectorClass).getDeclaredConstructor().newInstance();
 			float targetCostWeights = Float.parseFloat(MaryProperties.getProperty(header + ".viterbi.wTargetCosts", "0.33"));
 			int beamSize = MaryProperties.getInteger(header + ".viterbi.beamsize", 100);
 			if (!useSCost) {
-				unitSelector.load(database, targetCostWeights, beamSize);
+				d.unitSelector.load(d.database, targetCostWeights, beamSize);
 			} else {
 				float sCostWeights = Float.parseFloat(MaryProperties.getProperty(header + ".viterbi.wSCosts", "0.33"));
-				unitSelector.load(database, targetCostWeights, sCostWeights, beamSize);
+				d.unitSelector.load(d.database, targetCostWeights, sCostWeights, beamSize);
 			}
 
 			// samplingRate -> bin, audioformat -> concatenator
 			// build Concatenator
 			logger.debug("...instantiating unit concatenator...");
 			String concatenatorClass = MaryProperties.needProperty(header + ".concatenatorClass");
-			concatenator = (UnitConcatenator) Class.forName(concatenatorClass).getDeclaredConstructor().newInstance();
-			concatenator.load(database);
+			d.concatenator = (UnitConcatenator) Class.forName(concatenatorClass).getDeclaredConstructor().newInstance();
+			d.concatenator.load(d.database);
 
 			// TODO: this can be deleted at the same time as CARTF0Modeller
 			// see if there are any voice-specific duration and f0 models to load
-			f0Carts = null;
+			d.f0Carts = null;
 			InputStream leftF0CartStream = MaryProperties.getStream(header + ".f0.cart.left");
 			if (leftF0CartStream != null) {
 				logger.debug("...loading f0 trees...");
-				f0Carts = new CART[3];
-				f0Carts[0] = new MaryCARTReader().loadFromStream(leftF0CartStream);
+				d.f0Carts = new CART[3];
+				d.f0Carts[0] = new MaryCARTReader().loadFromStream(leftF0CartStream);
 				leftF0CartStream.close();
 				// mid cart:
 				InputStream midF0CartStream = MaryProperties.needStream(header + ".f0.cart.mid");
-				f0Carts[1] = new MaryCARTReader().loadFromStream(midF0CartStream);
+				d.f0Carts[1] = new MaryCARTReader().loadFromStream(midF0CartStream);
 				midF0CartStream.close();
 				// right cart:
 				InputStream rightF0CartStream = MaryProperties.needStream(header + ".f0.cart.right");
-				f0Carts[2] = new MaryCARTReader().loadFromStream(rightF0CartStream);
+				d.f0Carts[2] = new MaryCARTReader().loadFromStream(rightF0CartStream);
 				rightF0CartStream.close();
 			}
 		} catch (MaryConfigurationException mce) {
 			throw mce;
 		} catch (Exception ex) {
-			throw new MaryConfigurationException("Cannot build unit selection voice '" + name + "'", ex);
+			throw new MaryConfigurationException("Cannot build unit selection voice '" + getName() + "'", ex);
 		}
-
 	}
 
 	/**
@@ -227,7 +249,7 @@ public class UnitSelectionVoice extends Voice {
 	 * @return the database
 	 */
 	public UnitDatabase getDatabase() {
-		return database;
+		return ((UnitSelectionVoiceData) getVoiceData()).database;
 	}
 
 	/**
@@ -236,7 +258,7 @@ public class UnitSelectionVoice extends Voice {
 	 * @return the unit selector
 	 */
 	public UnitSelector getUnitSelector() {
-		return unitSelector;
+		return ((UnitSelectionVoiceData) getVoiceData()).unitSelector;
 	}
 
 	/**
@@ -245,7 +267,7 @@ public class UnitSelectionVoice extends Voice {
 	 * @return the unit selector
 	 */
 	public UnitConcatenator getConcatenator() {
-		return concatenator;
+		return ((UnitSelectionVoiceData) getVoiceData()).concatenator;
 	}
 
 	/**
@@ -254,6 +276,8 @@ public class UnitSelectionVoice extends Voice {
 	 * @return the modifying UnitConcatenator
 	 */
 	public UnitConcatenator getModificationConcatenator() {
+		UnitSelectionVoiceData d = (UnitSelectionVoiceData) getVoiceData();
+		UnitConcatenator modificationConcatenator = d.modificationConcatenator;
 		if (modificationConcatenator == null) {
 			// get sensible minimum and maximum values:
 			try {
@@ -278,7 +302,8 @@ public class UnitSelectionVoice extends Voice {
 				logger.debug("Initializing FD-PSOLA unit concatenator with default parameter thresholds.");
 				modificationConcatenator = new FdpsolaUnitConcatenator();
 			}
-			modificationConcatenator.load(database);
+			modificationConcatenator.load(d.database);
+			d.modificationConcatenator = modificationConcatenator;
 		}
 		return modificationConcatenator;
 	}
@@ -314,10 +339,11 @@ public class UnitSelectionVoice extends Voice {
 	}
 
 	public CART[] getF0Trees() {
-		return f0Carts;
+		return ((UnitSelectionVoiceData) getVoiceData()).f0Carts;
 	}
 
 	public FeatureDefinition getF0CartsFeatDef() {
+		CART[] f0Carts = getF0Trees();
 		if (f0Carts == null || f0Carts.length < 1)
 			return null;
 		return f0Carts[0].getFeatureDefinition();
@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 
 import marytts.exceptions.MaryConfigurationException;
+import marytts.features.ByteFeatureCostTable;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureVector;
@@ -41,6 +42,7 @@ public class FFRTargetCostFunction implements TargetCostFunction {
 	protected FeatureVector[] featureVectors;
 	protected FeatureDefinition featureDefinition;
 	protected boolean[] weightsNonZero;
+	protected ByteFeatureCostTable byteFeatureCosts;
 
 	protected boolean debugShowCostGraph = false;
 	protected double[] cumulWeightedCosts = null;
@@ -79,23 +81,11 @@ public class FFRTargetCostFunction implements TargetCostFunction {
 		double cost = 0;
 		// byte-valued features:
 		if (nBytes > 0) {
-			for (int i = 0; i < nBytes; i++) {
-				if (weightsNonZero[i]) {
-					float weight = weightVector[i];
-					if (featureDefinition.hasSimilarityMatrix(i)) {
-						byte targetFeatValueIndex = targetFeatures.byteValuedDiscreteFeatures[i];
-						byte unitFeatValueIndex = unitFeatures.byteValuedDiscreteFeatures[i];
-						float similarity = featureDefinition.getSimilarity(i, unitFeatValueIndex, targetFeatValueIndex);
-						cost += similarity * weight;
-						if (debugShowCostGraph)
-							cumulWeightedCosts[i] += similarity * weight;
-					} else if (targetFeatures.byteValuedDiscreteFeatures[i] != unitFeatures.byteValuedDiscreteFeatures[i]) {
-						cost += weight;
-						if (debugShowCostGraph)
-							cumulWeightedCosts[i] += weight;
-					}
-				}
-			}
+			ByteFeatureCostTable byteCosts = getByteFeatureCosts(weights);
+			cost += byteCosts.cost(targetFeatures.byteValuedDiscreteFeatures, unitFeatures.byteValuedDiscreteFeatures);
+			if (debugShowCostGraph)
+				byteCosts.addCosts(targetFeatures.byteValuedDiscreteFeatures, unitFeatures.byteValuedDiscreteFeatures,
+						cumulWeightedCosts);
 		}
 		// short-valued features:
 		if (nShorts > 0) {
@@ -175,21 +165,10 @@ public class FFRTargetCostFunction implements TargetCostFunction {
 		double cost = 0;
 
 		if (featureIndex < nBytes) {
-			if (weightsNonZero[featureIndex]) {
-				float weight = weightVector[featureIndex];
-				if (featureDefinition.hasSimilarityMatrix(featureIndex)) {
-					byte targetFeatValueIndex = targetFeatures.byteValuedDiscreteFeatures[featureIndex];
-					byte unitFeatValueIndex = unitFeatures.byteValuedDiscreteFeatures[featureIndex];
-					float similarity = featureDefinition.getSimilarity(featureIndex, unitFeatValueIndex, targetFeatValueIndex);
-					cost = similarity * weight;
-					if (debugShowCostGraph)
-						cumulWeightedCosts[featureIndex] += similarity * weight;
-				} else if (targetFeatures.byteValuedDiscreteFeatures[featureIndex] != unitFeatures.byteValuedDiscreteFeatures[featureIndex]) {
-					cost = weight;
-					if (debugShowCostGraph)
-						cumulWeightedCosts[featureIndex] += weight;
-				}
-			}
+			cost = getByteFeatureCosts(weights).cost(featureIndex, targetFeatures.byteValuedDiscreteFeatures[featureIndex],
+					unitFeatures.byteValuedDiscreteFeatures[featureIndex]);
+			if (debugShowCostGraph)
+				cumulWeightedCosts[featureIndex] += cost;
 		} else if (featureIndex < nShorts + nBytes) {
 			if (weightsNonZero[featureIndex]) {
 				float weight = weightVector[featureIndex];
@@ -283,6 +262,25 @@ public class FFRTargetCostFunction implements TargetCostFunction {
 		for (int i = 0, n = featureDefinition.getNumberOfFeatures(); i < n; i++) {
 			weightsNonZero[i] = (featureDefinition.getWeight(i) > 0);
 		}
+		byteFeatureCosts = featureDefinition.compileByteFeatureCosts(featureDefinition.getFeatureWeights());
+	}
+
+	/**
+	 * The precomputed costs of the byte-valued features for the given weights. Subclasses which use weights other than those of
+	 * the feature definition must compile tables for them when loading, and return them here.
+	 * 
+	 * @param weights
+	 *            the feature definition whose weights are to be applied
+	 * @return the cost table
+	 * @throws IllegalArgumentException
+	 *             if no table has been compiled for the weights, since compiling one for every cost would be very slow
+	 */
+	protected ByteFeatureCostTable getByteFeatureCosts(FeatureDefinition weights) {
+		if (weights == featureDefinition) {
+			return byteFeatureCosts;
+		}
+		throw new IllegalArgumentException("No byte feature cost table compiled for these weights; "
+				+ getClass().getSimpleName() + " must compile one when loading");
 	}
 
 	/**
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 
 import marytts.exceptions.MaryConfigurationException;
+import marytts.features.ByteFeatureCostTable;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureVector;
@@ -43,6 +44,8 @@ public class HalfPhoneFFRTargetCostFunction extends FFRTargetCostFunction {
 	protected FeatureDefinition rightWeights;
 	protected WeightFunc[] leftWeightFunction;
 	protected WeightFunc[] rightWeightFunction;
+	protected ByteFeatureCostTable leftByteFeatureCosts;
+	protected ByteFeatureCostTable rightByteFeatureCosts;
 
 	public HalfPhoneFFRTargetCostFunction() {
 	}
@@ -151,6 +154,19 @@ public class HalfPhoneFFRTargetCostFunction extends FFRTargetCostFunction {
 		this.targetFeatureComputer = new TargetFeatureComputer(featProc, leftWeights.getFeatureNames());
 
 		rememberWhichWeightsAreNonZero();
+		leftByteFeatureCosts = leftWeights == featureDefinition ? byteFeatureCosts : featureDefinition
+				.compileByteFeatureCosts(leftWeights.getFeatureWeights());
+		rightByteFeatureCosts = featureDefinition.compileByteFeatureCosts(rightWeights.getFeatureWeights());
+	}
+
+	@Override
+	protected ByteFeatureCostTable getByteFeatureCosts(FeatureDefinition weights) {
+		if (weights == leftWeights) {
+			return leftByteFeatureCosts;
+		} else if (weights == rightWeights) {
+			return rightByteFeatureCosts;
+		}
+		return super.getByteFeatureCosts(weights);
 	}
 
 	/**
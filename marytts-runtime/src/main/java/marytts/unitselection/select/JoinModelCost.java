@@ -33,7 +33,6 @@ import marytts.features.FeatureVector;
 import marytts.htsengine.PhoneTranslator;
 import marytts.htsengine.HMMData.PdfFileFormat;
 import marytts.server.MaryProperties;
-import marytts.signalproc.analysis.distance.DistanceComputer;
 import marytts.unitselection.data.DiphoneUnit;
 import marytts.unitselection.data.Unit;
 
@@ -200,17 +199,20 @@ public class JoinModelCost implements JoinCostFunction {
 		// String modelName = contextTranslator.features2context(featureDef, fv1, featureList);
 
 		int state = 0; // just one state in the joinModeller
-		double[] mean;
-		double[] variance;
 
 		Node node = joinTree[state].interpretToNode(fv1, 1);
 
 		assert node instanceof PdfLeafNode : "The node must be a PdfLeafNode.";
-
-		mean = ((PdfLeafNode) node).getMean();
-		variance = ((PdfLeafNode) node).getVariance();
-
-		double distance = DistanceComputer.getNormalizedEuclideanDistance(diff, mean, variance);
+		PdfLeafNode pdf = (PdfLeafNode) node;
+		assert diff.length == pdf.getVectorSize();
+
+		// the normalized euclidean distance (see DistanceComputer), read directly from the pdf:
+		double distance = 0;
+		for (int i = 0; i < diff.length; i++) {
+			double d = diff[i] - pdf.getMean(i);
+			distance += d * d / pdf.getVariance(i);
+		}
+		distance = Math.sqrt(distance);
 
 		cost += distance;
 
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import marytts.features.FeatureVector;
+import marytts.server.metrics.Counter;
+import marytts.server.metrics.MaryMetrics;
+import marytts.unitselection.select.viterbi.ViterbiLattice;
+import marytts.util.dom.DomUtils;
+
+import org.w3c.dom.Element;
+
+/**
+ * The Viterbi lattices of the sentences selected recently by a unit selector, so that selecting units again for the same
+ * sentence, e.g. with other weights or with some units excluded, neither preselects candidates nor computes target costs again.
+ * A sentence is identified by everything the candidates and target costs depend on: the names and feature vectors of its targets,
+ * and the units blacklisted in the MaryXML.
+ * <p>
+ * The cache can be used by any number of threads. When it is full, it is emptied, so that it only holds recent sentences.
+ */
+class LatticeCache {
+	private final int maxSize;
+	private final ConcurrentMap<Sentence, ViterbiLattice> lattices;
+	private final Counter hits;
+	private final Counter misses;
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of sentences remembered; if 0, nothing is remembered
+	 */
+	LatticeCache(int maxSize) {
+		this.maxSize = maxSize;
+		lattices = new ConcurrentHashMap<Sentence, ViterbiLattice>();
+		hits = MaryMetrics.cacheCounter("unitselection_lattice", true);
+		misses = MaryMetrics.cacheCounter("unitselection_lattice", false);
+	}
+
+	boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	/**
+	 * The lattice of the given sentence, if it is remembered.
+	 * 
+	 * @param sentence
+	 *            the sentence
+	 * @return the lattice, or null
+	 */
+	ViterbiLattice get(Sentence sentence) {
+		ViterbiLattice lattice = lattices.get(sentence);
+		if (lattice != null) {
+			hits.inc();
+		} else {
+			misses.inc();
+		}
+		return lattice;
+	}
+
+	void put(Sentence sentence, ViterbiLattice lattice) {
+		if (maxSize <= 0) {
+			return;
+		}
+		if (lattices.size() >= maxSize) {
+			lattices.clear();
+		}
+		lattices.put(sentence, lattice);
+	}
+
+	int size() {
+		return lattices.size();
+	}
+
+	/**
+	 * The targets of a sentence, by their names, feature vectors and blacklists. The features of the targets must have been
+	 * computed.
+	 */
+	static final class Sentence {
+		private final Object[] parts;
+		private final int hash;
+
+		Sentence(List<Target> targets) {
+			List<Object> list = new ArrayList<Object>(5 * targets.size());
+			for (Target target : targets) {
+				if (target instanceof DiphoneTarget) {
+					add(((DiphoneTarget) target).left, list);
+					add(((DiphoneTarget) target).right, list);
+				} else {
+					add(target, list);
+				}
+			}
+			parts = list.toArray();
+			hash = Arrays.deepHashCode(parts);
+		}
+
+		private static void add(Target target, List<Object> list) {
+			list.add(target.getName());
+			FeatureVector features = target.getFeatureVector();
+			list.add(features.byteValuedDiscreteFeatures);
+			list.add(features.shortValuedDiscreteFeatures);
+			list.add(features.continuousFeatures);
+			Element element = target.getMaryxmlElement();
+			list.add(element != null ? DomUtils.getAttributeFromClosestAncestorOfAnyKind(element, "blacklist") : "");
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Sentence)) {
+				return false;
+			}
+			Sentence other = (Sentence) o;
+			return hash == other.hash && Arrays.deepEquals(parts, other.parts);
+		}
+	}
+}
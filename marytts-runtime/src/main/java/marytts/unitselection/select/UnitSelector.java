@@ -21,11 +21,15 @@ package marytts.unitselection.select;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import marytts.datatypes.MaryXML;
+import marytts.exceptions.MaryConfigurationException;
 import marytts.exceptions.SynthesisException;
+import marytts.server.MaryProperties;
 import marytts.unitselection.data.UnitDatabase;
 import marytts.unitselection.select.viterbi.Viterbi;
+import marytts.unitselection.select.viterbi.ViterbiLattice;
 import marytts.util.MaryUtils;
 
 import org.apache.logging.log4j.Logger;
@@ -44,6 +48,10 @@ public class UnitSelector {
 	protected float targetCostWeight;
 	protected float sCostWeight = -1;
 	protected int beamSize;
+	protected LatticeCache latticeCache;
+	protected boolean pruning = false;
+	protected boolean exactPruning = true;
+	protected double pruningBeamWidth = Double.POSITIVE_INFINITY;
 
 	/**
 	 * Initialise the unit selector. Need to call load() separately.
@@ -54,6 +62,20 @@ public class UnitSelector {
 	 */
 	public UnitSelector() throws Exception {
 		logger = MaryUtils.getLogger(this.getClass());
+		latticeCache = new LatticeCache(MaryProperties.getInteger("unitselection.latticecache.size", 16));
+		String pruningMode = MaryProperties.getProperty("unitselection.pruning", "off").trim();
+		if (pruningMode.equals("exact")) {
+			pruning = true;
+		} else if (!pruningMode.equals("off")) {
+			pruning = true;
+			exactPruning = false;
+			try {
+				pruningBeamWidth = Double.parseDouble(pruningMode);
+			} catch (NumberFormatException e) {
+				throw new MaryConfigurationException("Value of unitselection.pruning must be 'off', 'exact' or a number, but is '"
+						+ pruningMode + "'", e);
+			}
+		}
 	}
 
 	public void load(UnitDatabase unitDatabase, float targetCostWeight, int beamSize) {
@@ -82,6 +104,52 @@ public class UnitSelector {
 	 */
 	public List<SelectedUnit> selectUnits(List<Element> tokensAndBoundaries, marytts.modules.synthesis.Voice voice)
 			throws SynthesisException {
+		return selectUnits(tokensAndBoundaries, voice, targetCostWeight, null);
+	}
+
+	/**
+	 * Select the units for the targets in the given list of tokens and boundaries, with the given weight of the target costs and
+	 * without the given units. If the units for the same sentence have been selected recently, the candidates and their target
+	 * costs are reused.
+	 * 
+	 * @param tokensAndBoundaries
+	 *            the token and boundary MaryXML elements representing an utterance.
+	 * @param voice
+	 *            the voice with which to synthesize
+	 * @param targetCostWeight
+	 *            the weight of the target costs; the join costs are weighted by the rest
+	 * @param excludedUnits
+	 *            the indices of units which must not be selected, or null
+	 * @return a list of SelectedUnit objects
+	 * @throws SynthesisException
+	 *             if no path for generating the target utterance could be found
+	 */
+	public List<SelectedUnit> selectUnits(List<Element> tokensAndBoundaries, marytts.modules.synthesis.Voice voice,
+			float targetCostWeight, Set<Integer> excludedUnits) throws SynthesisException {
+		return selectNBestUnits(tokensAndBoundaries, voice, 1, targetCostWeight, excludedUnits).get(0);
+	}
+
+	/**
+	 * Select the n best sequences of units for the targets in the given list of tokens and boundaries, with the given weight of
+	 * the target costs and without the given units. If the units for the same sentence have been selected recently, the
+	 * candidates and their target costs are reused.
+	 * 
+	 * @param tokensAndBoundaries
+	 *            the token and boundary MaryXML elements representing an utterance.
+	 * @param voice
+	 *            the voice with which to synthesize
+	 * @param n
+	 *            the maximum number of sequences to select
+	 * @param targetCostWeight
+	 *            the weight of the target costs; the join costs are weighted by the rest
+	 * @param excludedUnits
+	 *            the indices of units which must not be selected, or null
+	 * @return between 1 and n lists of SelectedUnit objects, best first
+	 * @throws SynthesisException
+	 *             if no path for generating the target utterance could be found
+	 */
+	public List<List<SelectedUnit>> selectNBestUnits(List<Element> tokensAndBoundaries, marytts.modules.synthesis.Voice voice,
+			int n, float targetCostWeight, Set<Integer> excludedUnits) throws SynthesisException {
 		long time = System.currentTimeMillis();
 
 		List<Element> segmentsAndBoundaries = new ArrayList<Element>();
@@ -104,24 +172,50 @@ public class UnitSelector {
 			tcf.computeTargetFeatures(target);
 		}
 
+		LatticeCache.Sentence sentence = null;
+		ViterbiLattice lattice = null;
+		if (latticeCache.isEnabled()) {
+			sentence = new LatticeCache.Sentence(targets);
+			lattice = latticeCache.get(sentence);
+		}
+
 		Viterbi viterbi;
 		// Select the best candidates using Viterbi and the join cost function.
-		if (sCostWeight < 0) {
+		if (lattice != null) {
+			viterbi = new Viterbi(targets, lattice, database, targetCostWeight, Math.max(sCostWeight, 0), beamSize);
+		} else if (sCostWeight < 0) {
 			viterbi = new Viterbi(targets, database, targetCostWeight, beamSize);
 		} else {
 			viterbi = new Viterbi(targets, database, targetCostWeight, sCostWeight, beamSize);
 		}
+		viterbi.setExcludedUnits(excludedUnits);
+		if (pruning && targetCostWeight + Math.max(sCostWeight, 0) <= 1) {
+			viterbi.setPruning(exactPruning, pruningBeamWidth);
+		}
+		viterbi.setNBest(n);
+		// only copy the candidates if the lattice is to be remembered:
+		viterbi.setRecordLattice(sentence != null && lattice == null);
 
 		viterbi.apply();
+		if (sentence != null && lattice == null) {
+			latticeCache.put(sentence, viterbi.getLattice());
+		}
 		List<SelectedUnit> selectedUnits = viterbi.getSelectedUnits();
 		// If you can not associate the candidate units in the best path
 		// with the items in the segment relation, there is no best path
 		if (selectedUnits == null) {
 			throw new IllegalStateException("Viterbi: can't find path");
 		}
+		List<List<SelectedUnit>> nBestUnits;
+		if (n == 1) {
+			nBestUnits = new ArrayList<List<SelectedUnit>>(1);
+			nBestUnits.add(selectedUnits);
+		} else {
+			nBestUnits = viterbi.getNBestSelectedUnits(n);
+		}
 		long newtime = System.currentTimeMillis() - time;
 		logger.debug("Selection took " + newtime + " milliseconds");
-		return selectedUnits;
+		return nBestUnits;
 	}
 
 	/**
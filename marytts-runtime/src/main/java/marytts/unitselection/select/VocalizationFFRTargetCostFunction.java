@@ -19,6 +19,7 @@
  */
 package marytts.unitselection.select;
 
+import marytts.features.ByteFeatureCostTable;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureVector;
 import marytts.unitselection.data.Unit;
@@ -102,23 +103,11 @@ public class VocalizationFFRTargetCostFunction extends FFRTargetCostFunction {
 		double cost = 0;
 		// byte-valued features:
 		if (nBytes > 0) {
-			for (int i = 0; i < nBytes; i++) {
-				if (weightsNonZero[i]) {
-					float weight = weightVector[i];
-					if (featureDefinition.hasSimilarityMatrix(i)) {
-						byte targetFeatValueIndex = targetFeatures.byteValuedDiscreteFeatures[i];
-						byte unitFeatValueIndex = unitFeatures.byteValuedDiscreteFeatures[i];
-						float similarity = featureDefinition.getSimilarity(i, unitFeatValueIndex, targetFeatValueIndex);
-						cost += similarity * weight;
-						if (debugShowCostGraph)
-							cumulWeightedCosts[i] += similarity * weight;
-					} else if (targetFeatures.byteValuedDiscreteFeatures[i] != unitFeatures.byteValuedDiscreteFeatures[i]) {
-						cost += weight;
-						if (debugShowCostGraph)
-							cumulWeightedCosts[i] += weight;
-					}
-				}
-			}
+			ByteFeatureCostTable byteCosts = getByteFeatureCosts(weights);
+			cost += byteCosts.cost(targetFeatures.byteValuedDiscreteFeatures, unitFeatures.byteValuedDiscreteFeatures);
+			if (debugShowCostGraph)
+				byteCosts.addCosts(targetFeatures.byteValuedDiscreteFeatures, unitFeatures.byteValuedDiscreteFeatures,
+						cumulWeightedCosts);
 		}
 		// short-valued features:
 		if (nShorts > 0) {
@@ -205,21 +194,10 @@ public class VocalizationFFRTargetCostFunction extends FFRTargetCostFunction {
 		double cost = 0;
 
 		if (featureIndex < nBytes) {
-			if (weightsNonZero[featureIndex]) {
-				float weight = weightVector[featureIndex];
-				if (featureDefinition.hasSimilarityMatrix(featureIndex)) {
-					byte targetFeatValueIndex = targetFeatures.byteValuedDiscreteFeatures[featureIndex];
-					byte unitFeatValueIndex = unitFeatures.byteValuedDiscreteFeatures[featureIndex];
-					float similarity = featureDefinition.getSimilarity(featureIndex, unitFeatValueIndex, targetFeatValueIndex);
-					cost = similarity * weight;
-					if (debugShowCostGraph)
-						cumulWeightedCosts[featureIndex] += similarity * weight;
-				} else if (targetFeatures.byteValuedDiscreteFeatures[featureIndex] != unitFeatures.byteValuedDiscreteFeatures[featureIndex]) {
-					cost = weight;
-					if (debugShowCostGraph)
-						cumulWeightedCosts[featureIndex] += weight;
-				}
-			}
+			cost = getByteFeatureCosts(weights).cost(featureIndex, targetFeatures.byteValuedDiscreteFeatures[featureIndex],
+					unitFeatures.byteValuedDiscreteFeatures[featureIndex]);
+			if (debugShowCostGraph)
+				cumulWeightedCosts[featureIndex] += cost;
 		} else if (featureIndex < nShorts + nBytes) {
 			if (weightsNonZero[featureIndex]) {
 				float weight = weightVector[featureIndex];
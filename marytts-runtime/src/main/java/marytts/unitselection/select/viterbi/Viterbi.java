@@ -34,13 +34,16 @@ package marytts.unitselection.select.viterbi;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import marytts.exceptions.SynthesisException;
+import marytts.server.metrics.MaryMetrics;
 import marytts.unitselection.data.DiphoneUnit;
 import marytts.unitselection.data.Unit;
 import marytts.unitselection.data.UnitDatabase;
@@ -90,6 +93,17 @@ public class Viterbi {
 	protected TargetCostFunction targetCostFunction;
 	protected JoinCostFunction joinCostFunction;
 	protected StatisticalCostFunction sCostFunction;
+	// the candidates and target costs: recorded by apply() if asked to, or given to the constructor to search again
+	protected ViterbiLattice lattice;
+	protected boolean reuseLattice = false;
+	protected boolean recordLattice = false;
+	protected Set<Integer> excludedUnits = null;
+	protected int nBest = 1;
+	// pruning of path extensions by lower bounds of their scores:
+	protected boolean pruning = false;
+	protected boolean exactPruning = true;
+	protected double pruningBeamWidth = Double.POSITIVE_INFINITY;
+	protected long nSkippedJoinCosts;
 	protected Logger logger;
 	// for debugging, try to get an idea of the average effect of join vs. target costs:
 	protected double cumulJoinCosts;
@@ -128,9 +142,11 @@ public class Viterbi {
 		this.cumulTargetCosts = 0;
 		this.nTargetCosts = 0;
 		ViterbiPoint last = null;
+		int targetIndex = 0;
 		// for each segment, build a ViterbiPoint
 		for (Target target : targets) {
 			ViterbiPoint nextPoint = new ViterbiPoint(target);
+			nextPoint.targetIndex = targetIndex++;
 
 			if (last != null) { // continue to build up the queue
 				last.setNext(nextPoint);
@@ -179,9 +195,11 @@ public class Viterbi {
 		this.cumulTargetCosts = 0;
 		this.nTargetCosts = 0;
 		ViterbiPoint last = null;
+		int targetIndex = 0;
 		// for each segment, build a ViterbiPoint
 		for (Target target : targets) {
 			ViterbiPoint nextPoint = new ViterbiPoint(target);
+			nextPoint.targetIndex = targetIndex++;
 
 			if (last != null) { // continue to build up the queue
 				last.setNext(nextPoint);
@@ -200,6 +218,133 @@ public class Viterbi {
 		}
 	}
 
+	/**
+	 * Creates a Viterbi class to search again through the candidates of an earlier search, without preselecting candidates or
+	 * computing target costs. The targets must be equivalent to those of the earlier search, i.e. they must have the same names
+	 * and feature vectors, in the same order.
+	 * 
+	 * @param targets
+	 *            targets
+	 * @param lattice
+	 *            the lattice recorded by the earlier search, see {@link #getLattice()}
+	 * @param database
+	 *            database
+	 * @param wTargetCosts
+	 *            wTargetCosts
+	 * @param wSCosts
+	 *            wSCosts
+	 * @param beamSize
+	 *            beamSize
+	 * @throws IllegalArgumentException
+	 *             if the lattice was recorded for a different number of targets
+	 */
+	public Viterbi(List<Target> targets, ViterbiLattice lattice, UnitDatabase database, float wTargetCosts, float wSCosts,
+			int beamSize) {
+		this(targets, database, wTargetCosts, wSCosts, beamSize);
+		if (lattice.getNumberOfTargets() != targets.size()) {
+			throw new IllegalArgumentException("Lattice was recorded for " + lattice.getNumberOfTargets() + " targets, not for "
+					+ targets.size());
+		}
+		this.lattice = lattice;
+		this.reuseLattice = true;
+		// build the queue again, including any points for the halves of diphone targets:
+		ViterbiPoint last = null;
+		for (int i = 0, n = lattice.getNumberOfPoints(); i < n; i++) {
+			ViterbiPoint nextPoint = new ViterbiPoint(lattice.getTarget(i, targets));
+			nextPoint.targetIndex = lattice.getTargetIndex(i);
+			nextPoint.targetPart = lattice.getTargetPart(i);
+			if (last != null) {
+				last.setNext(nextPoint);
+			} else {
+				firstPoint = nextPoint;
+				// dummy start path:
+				firstPoint.getPaths().add(new ViterbiPath(null, null, 0));
+			}
+			last = nextPoint;
+		}
+		lastPoint = new ViterbiPoint(null);
+		last.setNext(lastPoint);
+	}
+
+	/**
+	 * Exclude units from the search, e.g. to select again without units which turned out to sound bad. Must be called before
+	 * {@link #apply()}; the excluded units are not left out of the recorded lattice.
+	 * 
+	 * @param excludedUnits
+	 *            the indices of the units to exclude, or null to exclude none
+	 */
+	public void setExcludedUnits(Set<Integer> excludedUnits) {
+		this.excludedUnits = excludedUnits;
+	}
+
+	/**
+	 * Keep the n best paths leading to each candidate instead of only the best one, so that {@link #getNBestSelectedUnits(int)}
+	 * can return up to n paths. Must be called before {@link #apply()}.
+	 * 
+	 * @param n
+	 *            the number of paths to keep per candidate, at least 1
+	 */
+	public void setNBest(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Number of paths must be at least 1, but is " + n);
+		}
+		this.nBest = n;
+	}
+
+	/**
+	 * Skip the join costs of path extensions which cannot lead to a retained path, as shown by a lower bound of their score: the
+	 * score of the path so far plus the target cost of the candidate, and the statistical cost if any, i.e. with a join cost of 0.
+	 * If exact, an extension is only skipped if its score cannot be better than the scores of the paths already retained for its
+	 * candidate, so that the search yields exactly the same paths as without pruning. Otherwise, an extension is also skipped if
+	 * its lower bound is more than beamWidth worse than the best score at the next point so far, which is faster but may lose
+	 * the best path. Must be called before {@link #apply()}.
+	 * 
+	 * @param exact
+	 *            whether the result must be the same as without pruning
+	 * @param beamWidth
+	 *            the score difference to the best path at a point beyond which extensions are skipped, if not exact
+	 * @throws IllegalArgumentException
+	 *             if the weight of the join costs is negative, so that the lower bounds would not hold
+	 */
+	public void setPruning(boolean exact, double beamWidth) {
+		if (wJoinCosts < 0) {
+			throw new IllegalArgumentException("Cannot prune with a negative join cost weight " + wJoinCosts);
+		}
+		this.pruning = true;
+		this.exactPruning = exact;
+		this.pruningBeamWidth = beamWidth;
+	}
+
+	/**
+	 * The number of join costs which {@link #apply()} skipped because of pruning.
+	 * 
+	 * @return the number of skipped join costs
+	 */
+	public long getNumberOfSkippedJoinCosts() {
+		return nSkippedJoinCosts;
+	}
+
+	/**
+	 * Record the candidates and target costs of the search, so that {@link #getLattice()} can return them. Must be called before
+	 * {@link #apply()}; without it, the search does not copy its candidates.
+	 * 
+	 * @param record
+	 *            whether to record the lattice
+	 */
+	public void setRecordLattice(boolean record) {
+		this.recordLattice = record;
+	}
+
+	/**
+	 * The candidates and target costs of the search, which can be given to a new Viterbi for the same targets to search again.
+	 * 
+	 * @return the lattice given to the constructor or recorded by {@link #apply()} after {@link #setRecordLattice(boolean)}, or
+	 *         null if there is none
+	 */
+	public ViterbiLattice getLattice() {
+		return lattice;
+	}
+
 	/**
 	 * Carry out a Viterbi search in for a prepared queue of ViterbiPoints. In a nutshell, each Point represents a target item (a
 	 * target segment); for each target Point, a number of Candidate units in the voice database are determined; a Path structure
@@ -215,14 +360,23 @@ public class Viterbi {
 	 */
 	public void apply() throws SynthesisException {
 		logger.debug("Viterbi running with beam size " + beamSize);
+		int nTargets = 0;
+		long nCandidates = 0;
+		ViterbiLattice newLattice = reuseLattice || !recordLattice ? null : new ViterbiLattice(countTargets());
+		int pointIndex = 0;
 		// go through all but the last point
 		// (since last point has no item)
-		for (ViterbiPoint point = firstPoint; point.next != null; point = point.next) {
+		for (ViterbiPoint point = firstPoint; point.next != null; point = point.next, pointIndex++) {
 			// The candidates for the current item:
 			// candidate selection is carried out by UnitSelector
 			Target target = point.target;
-			List<ViterbiCandidate> candidates = database.getCandidates(target);
-			if (candidates.size() == 0) {
+			List<ViterbiCandidate> candidates;
+			if (reuseLattice) {
+				candidates = lattice.getCandidates(pointIndex, target);
+			} else {
+				candidates = database.getCandidates(target);
+			}
+			if (!reuseLattice && candidates.size() == 0) {
 				if (target instanceof DiphoneTarget) {
 					logger.debug("No diphone '" + target.getName() + "' -- will build from halfphones");
 					DiphoneTarget dt = (DiphoneTarget) target;
@@ -231,6 +385,9 @@ public class Viterbi {
 					Target right = dt.right;
 					point.setTarget(left);
 					ViterbiPoint newP = new ViterbiPoint(right);
+					newP.targetIndex = point.targetIndex;
+					newP.targetPart = ViterbiLattice.RIGHT_HALF;
+					point.targetPart = ViterbiLattice.LEFT_HALF;
 					newP.next = point.next;
 					point.next = newP;
 					candidates = database.getCandidates(left);
@@ -240,10 +397,22 @@ public class Viterbi {
 					throw new SynthesisException("Cannot find any units for target " + target);
 				}
 			}
+			if (!reuseLattice) {
+				// absolutely critical since candidates is no longer a SortedSet:
+				Collections.sort(candidates);
+				if (newLattice != null) {
+					newLattice.add(point.targetIndex, point.targetPart, candidates);
+				}
+			}
+			if (excludedUnits != null) {
+				candidates = removeExcludedUnits(candidates);
+				if (candidates.size() == 0) {
+					throw new SynthesisException("All units for target " + point.target + " are excluded");
+				}
+			}
 			assert candidates.size() > 0;
-
-			// absolutely critical since candidates is no longer a SortedSet:
-			Collections.sort(candidates);
+			nTargets++;
+			nCandidates += candidates.size();
 
 			point.candidates = candidates;
 			assert beamSize != 0; // general beam search not implemented
@@ -261,6 +430,8 @@ public class Viterbi {
 			// for searchStrategy == -1, no beam -- look at all candidates.
 			int i = 0;
 			int iMax = nPaths;
+			// the best score of the paths to the next point so far:
+			double pointBestScore = Double.POSITIVE_INFINITY;
 			for (ViterbiPath pp : paths) {
 				assert pp != null;
 				// We are at the very beginning of the search,
@@ -272,14 +443,40 @@ public class Viterbi {
 				// Go through the candidates as returned by the iterator of the sorted set,
 				// i.e. sorted according to increasing target cost.
 				for (ViterbiCandidate c : candidates) {
+					// computed once for the lower bound and the path:
+					double sCost = getSCost(pp, c);
+					if (pruning) {
+						double lowerBound = getLowerBound(pp, c, sCost);
+						if (!exactPruning && lowerBound > pointBestScore + pruningBeamWidth) {
+							if (sCostFunction == null) {
+								// the lower bounds of the remaining candidates are higher still:
+								int nRemaining = (jMax == -1 ? candidates.size() : Math.min(jMax, candidates.size())) - j;
+								nSkippedJoinCosts += nRemaining;
+								break;
+							}
+							nSkippedJoinCosts++;
+							if (++j == jMax)
+								break;
+							continue;
+						}
+						if (!canBeRetained(c, lowerBound)) {
+							nSkippedJoinCosts++;
+							if (++j == jMax)
+								break;
+							continue;
+						}
+					}
 					// For the candidate c, create a path extending the
 					// previous path pp to that candidate, taking into
 					// account the target and join costs:
-					ViterbiPath np = getPath(pp, c);
+					ViterbiPath np = getPath(pp, c, sCost);
 					// Compare this path to the existing best path
 					// (if any) leading to candidate c; only retain
 					// the one with the better score.
 					addPath(point.next, np);
+					if (np.score < pointBestScore) {
+						pointBestScore = np.score;
+					}
 					if (++j == jMax)
 						break;
 				}
@@ -287,6 +484,85 @@ public class Viterbi {
 					break;
 			}
 		}
+		if (!reuseLattice) {
+			lattice = newLattice;
+		}
+		MaryMetrics.viterbiSearch(nTargets, nCandidates);
+		if (pruning) {
+			logger.debug("Pruning skipped " + nSkippedJoinCosts + " of " + (nSkippedJoinCosts + nJoinCosts) + " join costs");
+			MaryMetrics.viterbiPruning(nSkippedJoinCosts);
+		}
+	}
+
+	/**
+	 * A lower bound of the score of the path extending the given path to the given candidate, computed without the join cost.
+	 * Since join costs are non-negative, the score computed by {@link #getPath(ViterbiPath, ViterbiCandidate, double)} can only be
+	 * higher, even in floating point arithmetic, where the sums are rounded monotonically.
+	 * 
+	 * @param path
+	 *            the path to extend
+	 * @param candidate
+	 *            the candidate to extend it to
+	 * @param sCost
+	 *            the statistical cost of the extension, see {@link #getSCost(ViterbiPath, ViterbiCandidate)}
+	 * @return the lower bound
+	 */
+	private double getLowerBound(ViterbiPath path, ViterbiCandidate candidate, double sCost) {
+		// the same operations as in getPath(), with a join cost of 0:
+		double cost = candidate.targetCost * wTargetCosts + sCost * wSCosts;
+		return cost + path.score;
+	}
+
+	/**
+	 * The unweighted statistical cost of extending the given path to the given candidate.
+	 * 
+	 * @param path
+	 *            the path to extend, or null
+	 * @param candidate
+	 *            the candidate to extend it to
+	 * @return the cost, or 0 if there is no statistical cost function or no previous candidate
+	 */
+	private double getSCost(ViterbiPath path, ViterbiCandidate candidate) {
+		if (sCostFunction == null || path == null || path.candidate == null) {
+			return 0;
+		}
+		return sCostFunction.cost(path.candidate.unit, candidate.unit);
+	}
+
+	/**
+	 * Whether a path to the candidate with a score of at least lowerBound could be retained by {@link #addPath(ViterbiPoint,
+	 * ViterbiPath)}.
+	 * 
+	 * @param candidate
+	 *            the candidate
+	 * @param lowerBound
+	 *            the lower bound of the score of the path
+	 * @return false if the path would certainly be rejected
+	 */
+	private boolean canBeRetained(ViterbiCandidate candidate, double lowerBound) {
+		if (nBest > 1) {
+			List<ViterbiPath> bestPaths = candidate.bestPaths;
+			return bestPaths == null || bestPaths.size() < nBest || lowerBound < bestPaths.get(nBest - 1).score;
+		}
+		return candidate.bestPath == null || lowerBound < candidate.bestPath.score;
+	}
+
+	private int countTargets() {
+		int n = 0;
+		for (ViterbiPoint point = firstPoint; point.next != null; point = point.next) {
+			n++;
+		}
+		return n;
+	}
+
+	private List<ViterbiCandidate> removeExcludedUnits(List<ViterbiCandidate> candidates) {
+		List<ViterbiCandidate> remaining = new ArrayList<ViterbiCandidate>(candidates.size());
+		for (ViterbiCandidate candidate : candidates) {
+			if (!excludedUnits.contains(candidate.unit.index)) {
+				remaining.add(candidate);
+			}
+		}
+		return remaining;
 	}
 
 	/**
@@ -305,6 +581,10 @@ public class Viterbi {
 		// in path array statePath of point
 		ViterbiCandidate candidate = newPath.candidate;
 		assert candidate != null;
+		if (nBest > 1) {
+			addNBestPath(point, newPath);
+			return;
+		}
 		ViterbiPath bestPathSoFar = candidate.bestPath;
 		List<ViterbiPath> paths = point.getPaths();
 		if (bestPathSoFar == null) {
@@ -319,36 +599,55 @@ public class Viterbi {
 		}
 	}
 
+	/**
+	 * Add the new path to the state path if it is among the nBest best paths leading to its candidate.
+	 *
+	 * @param point
+	 *            where the path is added
+	 * @param newPath
+	 *            the path to add if its score is among the best
+	 */
+	private void addNBestPath(ViterbiPoint point, ViterbiPath newPath) {
+		ViterbiCandidate candidate = newPath.candidate;
+		List<ViterbiPath> bestPaths = candidate.bestPaths;
+		if (bestPaths == null) {
+			bestPaths = new ArrayList<ViterbiPath>(nBest);
+			candidate.bestPaths = bestPaths;
+		}
+		List<ViterbiPath> paths = point.getPaths();
+		if (bestPaths.size() == nBest) {
+			ViterbiPath worst = bestPaths.get(nBest - 1);
+			if (!(newPath.score < worst.score)) {
+				return;
+			}
+			bestPaths.remove(nBest - 1);
+			paths.remove(worst);
+		}
+		// insert after the paths with the same or a better score:
+		int pos = bestPaths.size();
+		while (pos > 0 && newPath.score < bestPaths.get(pos - 1).score) {
+			pos--;
+		}
+		bestPaths.add(pos, newPath);
+		paths.add(newPath);
+		candidate.setBestPath(bestPaths.get(0));
+	}
+
 	/**
 	 * Collect and return the best path, as a List of SelectedUnit objects. Note: This is a replacement for result().
 	 * 
 	 * @return the list of selected units, or null if no path could be found.
 	 */
 	public List<SelectedUnit> getSelectedUnits() {
-		LinkedList<SelectedUnit> selectedUnits = new LinkedList<SelectedUnit>();
 		if (firstPoint == null || firstPoint.getNext() == null) {
-			return selectedUnits; // null case
+			return new LinkedList<SelectedUnit>(); // null case
 		}
 		ViterbiPath best = findBestPath();
 		if (best == null) {
 			// System.out.println("No best path found");
 			return null;
 		}
-		for (ViterbiPath path = best; path != null; path = path.getPrevious()) {
-			if (path.candidate != null) {
-				Unit u = path.candidate.unit;
-				Target t = path.candidate.target;
-				if (u instanceof DiphoneUnit) {
-					assert t instanceof DiphoneTarget;
-					DiphoneUnit du = (DiphoneUnit) u;
-					DiphoneTarget dt = (DiphoneTarget) t;
-					selectedUnits.addFirst(new SelectedUnit(du.right, dt.right));
-					selectedUnits.addFirst(new SelectedUnit(du.left, dt.left));
-				} else {
-					selectedUnits.addFirst(new SelectedUnit(u, t));
-				}
-			}
-		}
+		LinkedList<SelectedUnit> selectedUnits = getSelectedUnits(best);
 		if (logger.getLevel().equals(Level.DEBUG)) {
 			StringWriter sw = new StringWriter();
 			PrintWriter pw = new PrintWriter(sw);
@@ -446,6 +745,64 @@ public class Viterbi {
 		return selectedUnits;
 	}
 
+	/**
+	 * The n best paths, as lists of SelectedUnit objects. This requires apply() to have been run after
+	 * {@link #setNBest(int)}, with at least n; without it, the paths differ only in their last unit. The first path is the one
+	 * returned by {@link #getSelectedUnits()}.
+	 * 
+	 * @param n
+	 *            the maximum number of paths to return
+	 * @return the paths, best first; there are fewer than n if the search found fewer paths
+	 */
+	public List<List<SelectedUnit>> getNBestSelectedUnits(int n) {
+		List<List<SelectedUnit>> nBestUnits = new ArrayList<List<SelectedUnit>>();
+		if (firstPoint == null || firstPoint.getNext() == null || findBestPath() == null) {
+			return nBestUnits;
+		}
+		List<ViterbiPath> paths = lastPoint.getPaths(); // sorted by findBestPath()
+		for (int i = 0; i < n && i < paths.size(); i++) {
+			nBestUnits.add(getSelectedUnits(paths.get(i)));
+		}
+		return nBestUnits;
+	}
+
+	/**
+	 * The scores of the n best paths, in the order of {@link #getNBestSelectedUnits(int)}.
+	 * 
+	 * @param n
+	 *            the maximum number of scores to return
+	 * @return the scores, lowest first
+	 */
+	public double[] getNBestScores(int n) {
+		List<ViterbiPath> paths = lastPoint.getPaths();
+		Collections.sort(paths);
+		double[] scores = new double[Math.min(n, paths.size())];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = paths.get(i).score;
+		}
+		return scores;
+	}
+
+	private LinkedList<SelectedUnit> getSelectedUnits(ViterbiPath end) {
+		LinkedList<SelectedUnit> selectedUnits = new LinkedList<SelectedUnit>();
+		for (ViterbiPath path = end; path != null; path = path.getPrevious()) {
+			if (path.candidate != null) {
+				Unit u = path.candidate.unit;
+				Target t = path.candidate.target;
+				if (u instanceof DiphoneUnit) {
+					assert t instanceof DiphoneTarget;
+					DiphoneUnit du = (DiphoneUnit) u;
+					DiphoneTarget dt = (DiphoneTarget) t;
+					selectedUnits.addFirst(new SelectedUnit(du.right, dt.right));
+					selectedUnits.addFirst(new SelectedUnit(du.left, dt.left));
+				} else {
+					selectedUnits.addFirst(new SelectedUnit(u, t));
+				}
+			}
+		}
+		return selectedUnits;
+	}
+
 	/**
 	 * Construct a new path element linking a previous path to the given candidate. The (penalty) score associated with the new
 	 * path is calculated as the sum of the score of the old path plus the score of the candidate itself plus the join cost of
@@ -457,18 +814,19 @@ public class Viterbi {
 	 *            the previous path, or null if this candidate starts a new path
 	 * @param candiate
 	 *            the candidate to add to the path
+	 * @param sCost
+	 *            the unweighted statistical cost of appending the candidate, see {@link #getSCost(ViterbiPath, ViterbiCandidate)}
 	 *
 	 * @return a new path, consisting of this candidate appended to the previous path, and with the cumulative (penalty) score
 	 *         calculated.
 	 */
-	private ViterbiPath getPath(ViterbiPath path, ViterbiCandidate candidate) {
+	private ViterbiPath getPath(ViterbiPath path, ViterbiCandidate candidate, double sCost) {
 		double cost;
 
 		Target candidateTarget = candidate.target;
 		Unit candidateUnit = candidate.unit;
 
 		double joinCost;
-		double sCost = 0;
 		double targetCost;
 		// Target costs:
 		targetCost = candidate.targetCost;
@@ -481,8 +839,6 @@ public class Viterbi {
 			Target prevTarget = prevCandidate.target;
 			Unit prevUnit = prevCandidate.unit;
 			joinCost = joinCostFunction.cost(prevTarget, prevUnit, candidateTarget, candidateUnit);
-			if (sCostFunction != null)
-				sCost = sCostFunction.cost(prevUnit, candidateUnit);
 		}
 		// Total cost is a weighted sum of join cost and target cost:
 		// cost = (1-r) * joinCost + r * targetCost,
@@ -31,6 +31,8 @@
  */
 package marytts.unitselection.select.viterbi;
 
+import java.util.List;
+
 import marytts.unitselection.data.Unit;
 import marytts.unitselection.select.Target;
 import marytts.unitselection.select.TargetCostFunction;
@@ -43,6 +45,8 @@ public class ViterbiCandidate implements Comparable<ViterbiCandidate> {
 	final Unit unit;
 	final double targetCost;
 	ViterbiPath bestPath = null;
+	// when searching for several paths, the best paths leading to this candidate, sorted by score:
+	List<ViterbiPath> bestPaths = null;
 	ViterbiCandidate next = null;
 
 	public ViterbiCandidate(Target target, Unit unit, TargetCostFunction tcf) {
@@ -51,6 +55,22 @@ public class ViterbiCandidate implements Comparable<ViterbiCandidate> {
 		this.targetCost = tcf.cost(target, unit);
 	}
 
+	/**
+	 * Create a candidate whose target cost is already known, e.g. from a {@link ViterbiLattice}.
+	 * 
+	 * @param target
+	 *            target
+	 * @param unit
+	 *            unit
+	 * @param targetCost
+	 *            the cost of the unit for the target
+	 */
+	ViterbiCandidate(Target target, Unit unit, double targetCost) {
+		this.target = target;
+		this.unit = unit;
+		this.targetCost = targetCost;
+	}
+
 	/**
 	 * Calculates and returns the target cost for this candidate
 	 * 
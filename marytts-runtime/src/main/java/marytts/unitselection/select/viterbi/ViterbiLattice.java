@@ -0,0 +1,162 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select.viterbi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import marytts.unitselection.data.Unit;
+import marytts.unitselection.select.DiphoneTarget;
+import marytts.unitselection.select.Target;
+
+/**
+ * The candidates of a Viterbi search with their target costs, i.e. everything in the search that depends on the targets but not
+ * on the join costs or on the beam. A lattice is recorded by {@link Viterbi#apply()}; passing it to a new {@link Viterbi} for the
+ * same targets repeats the search without preselecting candidates or computing target costs again, e.g. with other weights, with
+ * some units excluded, or to get several paths.
+ * <p>
+ * A lattice refers to the targets only by their position in the list of targets, so that it can be used with the equivalent
+ * targets of a later request. It is not modified after the search which recorded it, and can be shared between threads.
+ */
+public class ViterbiLattice {
+	/** a point for a complete target */
+	static final int WHOLE_TARGET = 0;
+	/** a point for the left half of a diphone target for which no diphone units were found */
+	static final int LEFT_HALF = 1;
+	/** a point for the right half of a diphone target for which no diphone units were found */
+	static final int RIGHT_HALF = 2;
+
+	private final int numTargets;
+	private final List<Point> points = new ArrayList<Point>();
+	private int numCandidates;
+
+	ViterbiLattice(int numTargets) {
+		this.numTargets = numTargets;
+	}
+
+	/**
+	 * Record the candidates of the next point.
+	 * 
+	 * @param targetIndex
+	 *            the position of the point's target in the list of targets
+	 * @param targetPart
+	 *            {@link #WHOLE_TARGET}, {@link #LEFT_HALF} or {@link #RIGHT_HALF}
+	 * @param candidates
+	 *            the candidates, sorted by target cost
+	 */
+	void add(int targetIndex, int targetPart, List<ViterbiCandidate> candidates) {
+		Unit[] units = new Unit[candidates.size()];
+		double[] targetCosts = new double[units.length];
+		for (int i = 0; i < units.length; i++) {
+			ViterbiCandidate candidate = candidates.get(i);
+			units[i] = candidate.unit;
+			targetCosts[i] = candidate.targetCost;
+		}
+		points.add(new Point(targetIndex, targetPart, units, targetCosts));
+		numCandidates += units.length;
+	}
+
+	/**
+	 * The number of targets for which this lattice was recorded.
+	 * 
+	 * @return the number of targets
+	 */
+	public int getNumberOfTargets() {
+		return numTargets;
+	}
+
+	/**
+	 * The number of points, which is larger than the number of targets if diphone targets had to be split into halfphones.
+	 * 
+	 * @return the number of points
+	 */
+	public int getNumberOfPoints() {
+		return points.size();
+	}
+
+	/**
+	 * The total number of candidates of all points.
+	 * 
+	 * @return the number of candidates
+	 */
+	public int getNumberOfCandidates() {
+		return numCandidates;
+	}
+
+	/**
+	 * The target of the given point, among the given targets.
+	 * 
+	 * @param pointIndex
+	 *            the index of the point
+	 * @param targets
+	 *            targets equivalent to those for which this lattice was recorded
+	 * @return the target, or the half of it if the point is for half of a diphone target
+	 */
+	Target getTarget(int pointIndex, List<Target> targets) {
+		Point point = points.get(pointIndex);
+		Target target = targets.get(point.targetIndex);
+		if (point.targetPart == LEFT_HALF) {
+			return ((DiphoneTarget) target).left;
+		} else if (point.targetPart == RIGHT_HALF) {
+			return ((DiphoneTarget) target).right;
+		}
+		return target;
+	}
+
+	int getTargetIndex(int pointIndex) {
+		return points.get(pointIndex).targetIndex;
+	}
+
+	int getTargetPart(int pointIndex) {
+		return points.get(pointIndex).targetPart;
+	}
+
+	/**
+	 * Create new candidates for the given point, so that a search does not modify the candidates of another search.
+	 * 
+	 * @param pointIndex
+	 *            the index of the point
+	 * @param target
+	 *            the target of the point
+	 * @return the candidates, sorted by target cost
+	 */
+	List<ViterbiCandidate> getCandidates(int pointIndex, Target target) {
+		Point point = points.get(pointIndex);
+		List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>(point.units.length);
+		for (int i = 0; i < point.units.length; i++) {
+			candidates.add(new ViterbiCandidate(target, point.units[i], point.targetCosts[i]));
+		}
+		return candidates;
+	}
+
+	private static class Point {
+		final int targetIndex;
+		final int targetPart;
+		final Unit[] units;
+		final double[] targetCosts;
+
+		Point(int targetIndex, int targetPart, Unit[] units, double[] targetCosts) {
+			this.targetIndex = targetIndex;
+			this.targetPart = targetPart;
+			this.units = units;
+			this.targetCosts = targetCosts;
+		}
+	}
+}
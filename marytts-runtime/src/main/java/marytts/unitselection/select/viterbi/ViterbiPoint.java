@@ -45,6 +45,9 @@ public class ViterbiPoint {
 	List<ViterbiCandidate> candidates = null;
 	List<ViterbiPath> paths = new ArrayList<ViterbiPath>();
 	ViterbiPoint next = null;
+	// the position of the target in the list of targets, and which part of it this point represents:
+	int targetIndex = 0;
+	int targetPart = ViterbiLattice.WHOLE_TARGET;
 
 	/**
 	 * Creates a ViterbiPoint for the given target.
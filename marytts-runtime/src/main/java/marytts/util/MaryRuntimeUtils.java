@@ -50,10 +50,12 @@ import marytts.server.Mary;
 import marytts.server.MaryProperties;
 import marytts.signalproc.effects.AudioEffect;
 import marytts.signalproc.effects.AudioEffects;
+import marytts.signalproc.filter.PolyphaseResampler;
 import marytts.unitselection.UnitSelectionVoice;
 import marytts.unitselection.interpolation.InterpolatingVoice;
 import marytts.util.data.audio.AudioDestination;
 import marytts.util.data.audio.MaryAudioUtils;
+import marytts.util.data.audio.RawAudioEncoder;
 import marytts.util.dom.MaryDomUtils;
 import marytts.util.string.StringUtils;
 import marytts.vocalizations.VocalizationSynthesizer;
@@ -65,6 +67,10 @@ import org.w3c.dom.Element;
  *
  */
 public class MaryRuntimeUtils {
+	/**
+	 * The prefix of the output type parameter which requests audio at a given sampling rate, e.g. <code>SAMPLE_RATE=8000</code>.
+	 */
+	public static final String SAMPLE_RATE_PARAM = "SAMPLE_RATE=";
 
 	public static void ensureMaryStarted() throws Exception {
 		synchronized (MaryConfig.getMainConfig()) {
@@ -193,6 +199,10 @@ public class MaryRuntimeUtils {
 					output.append(typeName).append("_STREAM\n");
 			}
 		}
+		for (RawAudioEncoder encoder : RawAudioEncoder.values()) {
+			output.append(encoder.name()).append("_FILE\n");
+			output.append(encoder.name()).append("_STREAM\n");
+		}
 		return output.toString();
 	}
 
@@ -225,6 +235,51 @@ public class MaryRuntimeUtils {
 				AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, false);
 	}
 
+	/**
+	 * The audio format to produce for a request: the given format, with the sampling rate requested by a
+	 * <code>SAMPLE_RATE=</code><i>rate</i> item among the space-separated output type parameters, if there is one. Formats with
+	 * an unspecified sampling rate, such as MP3, are returned unchanged.
+	 *
+	 * @param audioFormat
+	 *            the audio format of the voice, or of the requested audio file type
+	 * @param outputTypeParams
+	 *            the output type parameters of the request, or null
+	 * @return the audio format with the requested sampling rate
+	 * @throws IllegalArgumentException
+	 *             if the requested sampling rate is not a positive integer, or if the audio cannot be converted to it
+	 */
+	public static AudioFormat getRequestedAudioFormat(AudioFormat audioFormat, String outputTypeParams) {
+		if (outputTypeParams == null || audioFormat.getSampleRate() == AudioSystem.NOT_SPECIFIED) {
+			return audioFormat;
+		}
+		StringTokenizer st = new StringTokenizer(outputTypeParams);
+		while (st.hasMoreTokens()) {
+			String token = st.nextToken();
+			if (!token.startsWith(SAMPLE_RATE_PARAM)) {
+				continue;
+			}
+			int sampleRate;
+			try {
+				sampleRate = Integer.parseInt(token.substring(SAMPLE_RATE_PARAM.length()));
+			} catch (NumberFormatException nfe) {
+				sampleRate = 0;
+			}
+			if (sampleRate <= 0) {
+				throw new IllegalArgumentException("Invalid sampling rate: " + token);
+			}
+			if (sampleRate == audioFormat.getSampleRate()) {
+				return audioFormat;
+			}
+			if (!PolyphaseResampler.canResample((int) audioFormat.getSampleRate(), sampleRate)) {
+				throw new IllegalArgumentException("Cannot convert audio from " + (int) audioFormat.getSampleRate() + " Hz to "
+						+ sampleRate + " Hz");
+			}
+			return new AudioFormat(audioFormat.getEncoding(), sampleRate, audioFormat.getSampleSizeInBits(),
+					audioFormat.getChannels(), audioFormat.getFrameSize(), sampleRate, audioFormat.isBigEndian());
+		}
+		return audioFormat;
+	}
+
 	/**
 	 * For an element in a MaryXML document, do what you can to determine the appropriate AllophoneSet. First search for the
 	 * suitable voice, then if that fails, go by locale.
@@ -391,6 +446,28 @@ public class MaryRuntimeUtils {
 		return output;
 	}
 
+	/**
+	 * List the loading state of the available voices, one voice per line: voice name, "lazy" or "eager", "loaded" or
+	 * "unloaded", number of loads, number of unloads, duration of the last load in ms (-1 if never loaded), and ms since last
+	 * use.
+	 *
+	 * @return a multi-line string
+	 */
+	public static String getVoiceLoadingStatus() {
+		StringBuilder output = new StringBuilder();
+		long now = System.currentTimeMillis();
+		for (Voice v : Voice.getAvailableVoices()) {
+			if (v instanceof InterpolatingVoice) {
+				continue;
+			}
+			output.append(v.getName()).append(" ").append(v.isLazy() ? "lazy" : "eager").append(" ")
+					.append(v.isLoaded() ? "loaded" : "unloaded").append(" ").append(v.getLoadCount()).append(" ")
+					.append(v.getEvictionCount()).append(" ").append(v.getLastLoadMillis()).append(" ")
+					.append(v.getLastUsed() > 0 ? now - v.getLastUsed() : -1).append(System.getProperty("line.separator"));
+		}
+		return output.toString();
+	}
+
 	public static String getDefaultVoiceName() {
 		String defaultVoiceName = "";
 		String allVoices = getVoices();
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.cart;
+
+import marytts.cart.LeafNode.PdfLeafNode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PdfLeafNodeTest {
+
+	@Test
+	public void testSharedPool() throws Exception {
+		// values as read from a pdf file, i.e. floats:
+		double[][] mgc = { { 0.25f, -1.5f, 3.1f, 0.01f, 0.02f, 0.03f } };
+		double[][] lf0 = { { 5.2f, 0.04f, 0.9f, 0.1f }, { 0.1f, 0.05f, 0.9f, 0.1f }, { -0.2f, 0.06f, 0.9f, 0.1f } };
+		float[] pool = new float[PdfLeafNode.getPoolSize(mgc) + PdfLeafNode.getPoolSize(lf0)];
+		PdfLeafNode mgcLeaf = new PdfLeafNode(1, mgc, pool, 0);
+		PdfLeafNode lf0Leaf = new PdfLeafNode(2, lf0, pool, PdfLeafNode.getPoolSize(mgc));
+
+		Assert.assertEquals(3, mgcLeaf.getVectorSize());
+		Assert.assertArrayEquals(new double[] { 0.25f, -1.5f, 3.1f }, mgcLeaf.getMean(), 0);
+		Assert.assertArrayEquals(new double[] { 0.01f, 0.02f, 0.03f }, mgcLeaf.getVariance(), 0);
+
+		Assert.assertEquals(3, lf0Leaf.getVectorSize());
+		Assert.assertEquals(5.2f, lf0Leaf.getMean(0), 0);
+		Assert.assertEquals(-0.2f, lf0Leaf.getMean(2), 0);
+		Assert.assertEquals(0.05f, lf0Leaf.getVariance(1), 0);
+		Assert.assertEquals(0.9f, lf0Leaf.getVoicedWeight(), 0);
+		// the first leaf is not affected by the second one:
+		Assert.assertEquals(0.03f, mgcLeaf.getVariance(2), 0);
+	}
+}
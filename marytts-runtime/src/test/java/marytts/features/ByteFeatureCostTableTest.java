@@ -0,0 +1,118 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.features;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteFeatureCostTableTest {
+
+	private FeatureDefinition featureDefinition;
+
+	@Before
+	public void setUp() throws Exception {
+		StringBuilder many = new StringBuilder("1 | many");
+		for (int v = 0; v < 200; v++) {
+			many.append(" v").append(v);
+		}
+		String definition = "ByteValuedFeatureProcessors\n" //
+				+ "2 | phone 0 a b c\n" //
+				+ "0 | unused 0 x y\n" //
+				+ many + "\n" //
+				+ "3 | stress 0 1\n" //
+				+ "ShortValuedFeatureProcessors\n" //
+				+ "ContinuousFeatureProcessors\n" //
+				+ "FeatureSimilarity\n" //
+				+ "phone 0 a b c\n" //
+				+ "0\n" //
+				+ "a 0.5\n" //
+				+ "b 0.2 0.3\n" //
+				+ "c 0.1 0.4 0.6\n";
+		featureDefinition = new FeatureDefinition(new BufferedReader(new StringReader(definition)), true);
+	}
+
+	/**
+	 * The weighted cost as computed by the target cost functions without a table.
+	 */
+	private double expectedCost(float[] weights, byte[] target, byte[] unit) {
+		double cost = 0;
+		for (int i = 0; i < target.length; i++) {
+			if (featureDefinition.getWeight(i) > 0) {
+				if (featureDefinition.hasSimilarityMatrix(i)) {
+					cost += featureDefinition.getSimilarity(i, unit[i], target[i]) * weights[i];
+				} else if (target[i] != unit[i]) {
+					cost += weights[i];
+				}
+			}
+		}
+		return cost;
+	}
+
+	private byte[] randomValues(Random random) {
+		byte[] values = new byte[featureDefinition.getNumberOfByteFeatures()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (byte) random.nextInt(featureDefinition.getNumberOfValues(i));
+		}
+		return values;
+	}
+
+	@Test
+	public void testSameCostsAsWithoutTable() {
+		float[] weights = featureDefinition.getFeatureWeights();
+		ByteFeatureCostTable table = featureDefinition.compileByteFeatureCosts(weights);
+		Assert.assertEquals(3, table.getNumberOfFeatures());
+		Random random = new Random(1);
+		for (int n = 0; n < 1000; n++) {
+			byte[] target = randomValues(random);
+			byte[] unit = randomValues(random);
+			Assert.assertEquals(expectedCost(weights, target, unit), table.cost(target, unit), 0);
+		}
+	}
+
+	@Test
+	public void testSingleFeatureCosts() {
+		float[] weights = featureDefinition.getFeatureWeights();
+		ByteFeatureCostTable table = featureDefinition.compileByteFeatureCosts(weights);
+		Assert.assertEquals(0.6f * weights[0], table.cost(0, (byte) 2, (byte) 3), 0);
+		Assert.assertEquals(0.6f * weights[0], table.cost(0, (byte) 3, (byte) 2), 0);
+		Assert.assertEquals(0, table.cost(1, (byte) 0, (byte) 1), 0);
+		Assert.assertEquals(weights[2], table.cost(2, (byte) 180, (byte) 20), 0);
+		Assert.assertEquals(0, table.cost(2, (byte) 180, (byte) 180), 0);
+		Assert.assertEquals(weights[3], table.cost(3, (byte) 0, (byte) 1), 0);
+	}
+
+	@Test
+	public void testOtherWeights() {
+		float[] weights = new float[] { 0.5f, 0.7f, 0.25f, 0 };
+		ByteFeatureCostTable table = featureDefinition.compileByteFeatureCosts(weights);
+		byte[] target = new byte[] { 1, 1, (byte) 150, 0 };
+		byte[] unit = new byte[] { 3, 2, 7, 1 };
+		// the unused feature is left out although it has a weight here, because its weight in the feature definition is zero:
+		Assert.assertEquals(0.4f * 0.5f + 0.25f, table.cost(target, unit), 1.E-7);
+		double[] featureCosts = new double[4];
+		table.addCosts(target, unit, featureCosts);
+		Assert.assertArrayEquals(new double[] { 0.4f * 0.5f, 0, 0.25f, 0 }, featureCosts, 1.E-7);
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.LeafNode.PdfLeafNode;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.server.metrics.Counter;
+import marytts.server.metrics.MaryMetrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CartLeafCacheTest {
+
+	private FeatureDefinition featureDefinition;
+	private CART[] trees;
+
+	@Before
+	public void setUp() throws Exception {
+		String definition = "ByteValuedFeatureProcessors\n" //
+				+ "0 | phone 0 a b c\n" //
+				+ "0 | stress 0 1\n" //
+				+ "0 | untested x y\n" //
+				+ "ShortValuedFeatureProcessors\n" //
+				+ "ContinuousFeatureProcessors\n" //
+				+ "0 linear | duration\n";
+		featureDefinition = new FeatureDefinition(new BufferedReader(new StringReader(definition)), true);
+		// one tree per state, the first one testing the phone, the second one the stress:
+		trees = new CART[] { tree("phone", "a", 1), tree("stress", "1", 3) };
+	}
+
+	private CART tree(String feature, String value, int firstLeafId) throws Exception {
+		DecisionNode root = new DecisionNode.BinaryByteDecisionNode(featureDefinition.getFeatureIndex(feature),
+				featureDefinition.getFeatureValueAsByte(feature, value), featureDefinition);
+		root.addDaughter(new PdfLeafNode(firstLeafId, new double[][] { { firstLeafId, 1 } }));
+		root.addDaughter(new PdfLeafNode(firstLeafId + 1, new double[][] { { firstLeafId + 1, 1 } }));
+		root.countData();
+		return new CART(root, featureDefinition);
+	}
+
+	private FeatureVector context(String phone, String stress, String untested, float duration) {
+		byte[] bytes = new byte[] { featureDefinition.getFeatureValueAsByte("phone", phone),
+				featureDefinition.getFeatureValueAsByte("stress", stress),
+				featureDefinition.getFeatureValueAsByte("untested", untested) };
+		return featureDefinition.toFeatureVector(0, bytes, new short[0], new float[] { duration });
+	}
+
+	@Test
+	public void testUntestedFeaturesHitSameEntry() {
+		CartLeafCache cache = new CartLeafCache("test_cart", null, trees, 0, 10);
+		PdfLeafNode[] leaves = cache.getLeaves(context("a", "1", "x", 0.1f));
+		Assert.assertEquals(1, leaves[0].getUniqueLeafId());
+		Assert.assertEquals(3, leaves[1].getUniqueLeafId());
+		Assert.assertSame(leaves, cache.getLeaves(context("a", "1", "y", 0.5f)));
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testTestedFeatureMisses() {
+		CartLeafCache cache = new CartLeafCache("test_cart", null, trees, 0, 10);
+		PdfLeafNode[] leaves = cache.getLeaves(context("a", "1", "x", 0.1f));
+		PdfLeafNode[] otherPhone = cache.getLeaves(context("b", "1", "x", 0.1f));
+		Assert.assertNotSame(leaves, otherPhone);
+		Assert.assertEquals(2, otherPhone[0].getUniqueLeafId());
+		Assert.assertEquals(3, otherPhone[1].getUniqueLeafId());
+		// a phone which leads to the same leaf, but is a different context:
+		Assert.assertNotSame(otherPhone, cache.getLeaves(context("c", "1", "x", 0.1f)));
+		PdfLeafNode[] otherStress = cache.getLeaves(context("a", "0", "x", 0.1f));
+		Assert.assertEquals(1, otherStress[0].getUniqueLeafId());
+		Assert.assertEquals(4, otherStress[1].getUniqueLeafId());
+		Assert.assertEquals(4, cache.size());
+	}
+
+	@Test
+	public void testClearsWhenFull() {
+		CartLeafCache cache = new CartLeafCache("test_cart", null, trees, 0, 2);
+		PdfLeafNode[] first = cache.getLeaves(context("a", "1", "x", 0));
+		cache.getLeaves(context("b", "1", "x", 0));
+		Assert.assertEquals(2, cache.size());
+		Assert.assertSame(first, cache.getLeaves(context("a", "1", "x", 0)));
+		cache.getLeaves(context("c", "1", "x", 0));
+		Assert.assertEquals(1, cache.size());
+		// forgotten, so found again:
+		PdfLeafNode[] again = cache.getLeaves(context("a", "1", "x", 0));
+		Assert.assertNotSame(first, again);
+		Assert.assertSame(first[0], again[0]);
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testSizeZeroRemembersNothing() {
+		CartLeafCache cache = new CartLeafCache("test_cart", null, trees, 0, 0);
+		PdfLeafNode[] leaves = cache.getLeaves(context("a", "1", "x", 0));
+		Assert.assertEquals(1, leaves[0].getUniqueLeafId());
+		Assert.assertNotSame(leaves, cache.getLeaves(context("a", "1", "x", 0)));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCountsPerVoice() {
+		Counter hitsA = MaryMetrics.cacheCounter("test_cart_voices", "voice_a", true);
+		Counter missesA = MaryMetrics.cacheCounter("test_cart_voices", "voice_a", false);
+		Counter hitsB = MaryMetrics.cacheCounter("test_cart_voices", "voice_b", true);
+		Counter missesB = MaryMetrics.cacheCounter("test_cart_voices", "voice_b", false);
+		long hitsA0 = hitsA.getCount(), missesA0 = missesA.getCount(), hitsB0 = hitsB.getCount(), missesB0 = missesB.getCount();
+		CartLeafCache cacheA = new CartLeafCache("test_cart_voices", "voice_a", trees, 0, 10);
+		CartLeafCache cacheB = new CartLeafCache("test_cart_voices", "voice_b", trees, 0, 10);
+		cacheA.getLeaves(context("a", "1", "x", 0));
+		cacheA.getLeaves(context("a", "1", "x", 0));
+		cacheB.getLeaves(context("a", "1", "x", 0));
+		Assert.assertEquals(1, hitsA.getCount() - hitsA0);
+		Assert.assertEquals(1, missesA.getCount() - missesA0);
+		Assert.assertEquals(0, hitsB.getCount() - hitsB0);
+		Assert.assertEquals(1, missesB.getCount() - missesB0);
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests of the MLSA vocoder: a fixed set of parameters must give the same samples as the per-frame implementation the
+ * vocoder had before it was rewritten to work block by block, whose output is stored as a checksum.
+ */
+public class HTSVocoderTest {
+	private static final int NUM_FRAMES = 200;
+	private static final int MCEP_ORDER = 25;
+	private static final int NUM_FILTERS = 5;
+
+	private static HMMData createData(boolean mixedExcitation) throws Exception {
+		HMMData data = new HMMData();
+		data.setRate(16000);
+		data.setFperiod(80);
+		data.setAlpha(0.42);
+		data.setBeta(0.1);
+		data.setUseMixExc(mixedExcitation);
+		data.setUseFourierMag(false);
+		data.setNumFilters(NUM_FILTERS);
+		// band-pass filters over equal parts of the spectrum, as text like a filter file:
+		StringBuilder filters = new StringBuilder("# test filters\n");
+		int taps = 31;
+		for (int f = 0; f < NUM_FILTERS; f++) {
+			double low = f * 0.1;
+			double high = (f + 1) * 0.1;
+			for (int j = 0; j < taps; j++) {
+				double n = j - taps / 2;
+				double h = n == 0 ? 2 * (high - low) : (Math.sin(2 * Math.PI * high * n) - Math.sin(2 * Math.PI * low * n))
+						/ (Math.PI * n);
+				h *= 0.54 - 0.46 * Math.cos(2 * Math.PI * j / (taps - 1));
+				filters.append(String.format(Locale.US, "%.8f\n", h));
+			}
+		}
+		data.readMixedExcitationFilters(new ByteArrayInputStream(filters.toString().getBytes("UTF-8")));
+		// the strengths are only used if there is a strengths stream:
+		data.setPdfStrStream(new ByteArrayInputStream(new byte[0]));
+		return data;
+	}
+
+	private static double[] vocode(boolean mixedExcitation) throws Exception {
+		HMMData data = createData(mixedExcitation);
+		boolean[] voiced = new boolean[NUM_FRAMES];
+		int numVoiced = 0;
+		for (int t = 0; t < NUM_FRAMES; t++) {
+			voiced[t] = t >= 20 && t < 170 && (t < 90 || t >= 100);
+			if (voiced[t]) {
+				numVoiced++;
+			}
+		}
+		HTSPStream mcep = new HTSPStream(3 * MCEP_ORDER, NUM_FRAMES, HMMData.FeatureType.MGC, 0);
+		HTSPStream str = new HTSPStream(3 * NUM_FILTERS, NUM_FRAMES, HMMData.FeatureType.STR, 0);
+		HTSPStream lf0 = new HTSPStream(3, numVoiced, HMMData.FeatureType.LF0, 0);
+		for (int t = 0; t < NUM_FRAMES; t++) {
+			mcep.setPar(t, 0, 6.0 + 0.5 * Math.sin(t / 15.0));
+			for (int k = 1; k < MCEP_ORDER; k++) {
+				mcep.setPar(t, k, 0.3 * Math.sin(t * 0.05 * k + k) / k);
+			}
+			for (int k = 0; k < NUM_FILTERS; k++) {
+				str.setPar(t, k, 0.5 + 0.4 * Math.sin(t / 10.0 + k));
+			}
+		}
+		for (int t = 0; t < numVoiced; t++) {
+			lf0.setPar(t, 0, Math.log(120 + 30 * Math.sin(t / 25.0)));
+		}
+		return new HTSVocoder().htsMLSAVocoder(lf0, mcep, str, null, voiced, data, null);
+	}
+
+	/**
+	 * The MD5 checksum of the samples as 16 bit little-endian PCM, as they are sent to the client.
+	 */
+	private static String checksum(double[] audio) throws Exception {
+		MessageDigest md5 = MessageDigest.getInstance("MD5");
+		for (double x : audio) {
+			long sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(x)));
+			md5.update((byte) sample);
+			md5.update((byte) (sample >> 8));
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : md5.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	@Test
+	public void testMixedExcitation() throws Exception {
+		double[] audio = vocode(true);
+		Assert.assertEquals(NUM_FRAMES * 80, audio.length);
+		Assert.assertEquals(249.2536, audio[5000], 1e-3);
+		Assert.assertEquals("e79092614c4610b5570cf7daefdb62ed", checksum(audio));
+	}
+
+	@Test
+	public void testPulseOrNoiseExcitation() throws Exception {
+		double[] audio = vocode(false);
+		Assert.assertEquals(NUM_FRAMES * 80, audio.length);
+		Assert.assertEquals(-87.8479, audio[5000], 1e-3);
+		Assert.assertEquals("9379f5e1b04da15e3aae8608b5fa1187", checksum(audio));
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.util.Random;
+
+import marytts.exceptions.MaryConfigurationException;
+import marytts.util.math.FftPlan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OverlapAddVocoderTest {
+
+	@Test
+	public void testEnvelopeIsFrequencyResponseOfMLSAFilter() {
+		int order = 25;
+		double alpha = 0.42;
+		Random random = new Random(1);
+		double[] mc = new double[order];
+		mc[0] = 1.5;
+		for (int i = 1; i < order; i++) {
+			mc[i] = 0.3 * random.nextGaussian() / i;
+		}
+
+		OverlapAddVocoder vocoder = new OverlapAddVocoder();
+		vocoder.setUp(order, alpha, 80, null);
+		int n = vocoder.getFftSize();
+		double[] re = new double[n / 2 + 1];
+		double[] im = new double[n / 2 + 1];
+		vocoder.computeEnvelope(mc, re, im);
+
+		// the impulse response of the MLSA filter, set up as in HTSVocoder:
+		double[] b = new double[order];
+		HTSVocoder.mc2b(mc, b, order - 1, alpha);
+		int vsize = 3 * order - 1;
+		double[] d = new double[(vsize * (3 + HTSVocoder.PADEORDER) + 5 * HTSVocoder.PADEORDER + 6) - 3 * order];
+		int pt2 = 2 * (HTSVocoder.PADEORDER + 1) + HTSVocoder.PADEORDER * (order + 1);
+		int[] pt3 = new int[HTSVocoder.PADEORDER + 1];
+		for (int i = HTSVocoder.PADEORDER; i >= 1; i--) {
+			pt3[i] = 2 * (HTSVocoder.PADEORDER + 1) + (i - 1) * (order + 1);
+		}
+		double[] ir = new double[n];
+		for (int i = 0; i < n; i++) {
+			ir[i] = HTSVocoder.mlsadf(i == 0 ? Math.exp(b[0]) : 0.0, b, order, alpha, d, pt2, pt3);
+		}
+		FftPlan.get(n).realTransform(ir, false);
+
+		for (int k = 1; k < n / 2; k++) {
+			double amplitude = Math.hypot(re[k], im[k]);
+			Assert.assertEquals("real part of bin " + k, ir[2 * k], re[k], 0.01 * amplitude);
+			Assert.assertEquals("imaginary part of bin " + k, ir[2 * k + 1], im[k], 0.01 * amplitude);
+		}
+		Assert.assertEquals(ir[0], re[0], 0.01 * Math.abs(re[0]));
+		Assert.assertEquals(ir[1], re[n / 2], 0.01 * Math.abs(re[n / 2]));
+	}
+
+	@Test
+	public void testRefusesFourierMagnitudes() throws Exception {
+		HMMData htsData = new HMMData();
+		htsData.setVocoder(OverlapAddVocoder.class.getName());
+		Assert.assertTrue(htsData.createVocoder() instanceof OverlapAddVocoder);
+		htsData.setUseFourierMag(true);
+		try {
+			htsData.createVocoder();
+			Assert.fail("the overlap-add vocoder cannot use Fourier magnitudes");
+		} catch (MaryConfigurationException e) {
+			// expected
+		}
+		htsData.setVocoder(HTSVocoder.class.getName());
+		Assert.assertTrue(htsData.createVocoder() instanceof HTSVocoder);
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.prosody;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+public class ProsodyRuleSetTest {
+
+	private static ProsodyRuleSet parse(String xml) throws Exception {
+		return ProsodyRuleSet.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void testDefaultRulesCompile() throws Exception {
+		InputStream in = ProsodyRuleSetTest.class.getResourceAsStream("tobipredparams.xml");
+		try {
+			ProsodyRuleSet rules = ProsodyRuleSet.parse(in);
+			assertEquals(14, rules.getListDefinitions().size());
+			assertEquals(3, rules.getAccentPositionRules().size());
+			assertEquals(10, rules.getAccentShapeRules().size());
+			assertEquals(9, rules.getBoundaryRules().size());
+			for (ProsodyRuleSet.Rule rule : rules.getBoundaryRules()) {
+				assertNotNull(rule.getAction());
+				assertTrue(rule.getAction().hasAttribute("bi"));
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testRuleParts() throws Exception {
+		ProsodyRuleSet rules = parse("<tobipredparams><accentposition>" //
+				+ "<rule><attributes pos=\"NN\"/><nextPlus2Text word=\"x\"/><action accent=\"tone\"/><sentence type=\"decl\"/></rule>"
+				+ "<rule><previousAttributes pos=\"ART\"/></rule>" //
+				+ "</accentposition></tobipredparams>");
+		assertEquals(0, rules.getListDefinitions().size());
+		assertEquals(0, rules.getBoundaryRules().size());
+		assertEquals(2, rules.getAccentPositionRules().size());
+
+		ProsodyRuleSet.Rule first = rules.getAccentPositionRules().get(0);
+		// parts after the action are never looked at
+		assertEquals(2, first.getConditions().size());
+		assertEquals("tone", first.getAction().getAttribute("accent"));
+		ProsodyRuleSet.RulePart attributes = first.getConditions().get(0);
+		assertEquals(1, attributes.getAttributeCount());
+		assertEquals("pos", attributes.getAttributeName(0));
+		assertEquals("NN", attributes.getAttributeValue(0));
+		assertEquals("", attributes.getAttribute("word"));
+		assertEquals(0, attributes.getTokenOffset());
+		ProsodyRuleSet.RulePart nextPlus2 = first.getConditions().get(1);
+		assertTrue(nextPlus2.isTextOfOtherToken());
+		assertFalse(nextPlus2.isAttributesOfOtherToken());
+		assertEquals(3, nextPlus2.getTokenOffset());
+
+		ProsodyRuleSet.Rule second = rules.getAccentPositionRules().get(1);
+		assertNull(second.getAction());
+		assertTrue(second.getConditions().get(0).isAttributesOfOtherToken());
+		assertEquals(-1, second.getConditions().get(0).getTokenOffset());
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.synthesis;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.exceptions.MaryConfigurationException;
+import marytts.server.metrics.MetricsRegistry;
+
+import org.junit.Test;
+
+public class LazyVoiceTest {
+
+	private static final Locale LOCALE = new Locale("xx");
+
+	private static class TestVoice extends Voice {
+		final AtomicInteger loads = new AtomicInteger();
+		volatile CountDownLatch loadStarted;
+		volatile CountDownLatch mayFinishLoading;
+
+		TestVoice(String name) throws MaryConfigurationException {
+			super(name, LOCALE, new AudioFormat(16000, 16, 1, true, false), null, new Gender("female"));
+		}
+
+		@Override
+		protected void loadVoiceData(VoiceData voiceData) throws MaryConfigurationException {
+			loads.incrementAndGet();
+			if (loadStarted != null) {
+				loadStarted.countDown();
+			}
+			if (mayFinishLoading != null) {
+				try {
+					mayFinishLoading.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private static TestVoice createLazyVoice(String name) throws MaryConfigurationException {
+		System.setProperty("voice." + name + ".allophoneset", "jar:/marytts/features/allophones.ROOT.xml");
+		System.setProperty("voice." + name + ".lazy", "true");
+		return new TestVoice(name);
+	}
+
+	@Test
+	public void testLoadsOnFirstUse() throws Exception {
+		TestVoice voice = createLazyVoice("lazy-first-use");
+		assertTrue(voice.isLazy());
+		assertFalse(voice.isLoaded());
+		assertEquals(0, voice.loads.get());
+		Voice.VoiceData data = voice.getVoiceData();
+		assertNotNull(data);
+		assertTrue(voice.isLoaded());
+		assertSame(data, voice.getVoiceData());
+		assertEquals(1, voice.loads.get());
+		assertEquals(1, voice.getLoadCount());
+	}
+
+	@Test
+	public void testLoadsOnceForConcurrentRequests() throws Exception {
+		final TestVoice voice = createLazyVoice("lazy-single-flight");
+		voice.loadStarted = new CountDownLatch(1);
+		voice.mayFinishLoading = new CountDownLatch(1);
+		int numThreads = 8;
+		final Voice.VoiceData[] results = new Voice.VoiceData[numThreads];
+		Thread[] threads = new Thread[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					results[index] = voice.getVoiceData();
+				}
+			};
+			threads[i].start();
+		}
+		voice.loadStarted.await();
+		Thread.sleep(50); // let the other threads queue up behind the loading one
+		voice.mayFinishLoading.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(1, voice.loads.get());
+		assertEquals(1, voice.getLoadCount());
+		for (Voice.VoiceData result : results) {
+			assertNotNull(result);
+			assertSame(results[0], result);
+		}
+	}
+
+	@Test
+	public void testUnloadsIdleVoice() throws Exception {
+		TestVoice voice = createLazyVoice("lazy-idle");
+		Voice.registerVoice(voice);
+		Voice.VoiceData first = voice.getVoiceData();
+		assertEquals(0, Voice.unloadIdleVoices(Long.MAX_VALUE));
+		assertTrue(voice.isLoaded());
+		Thread.sleep(5);
+		assertTrue(Voice.unloadIdleVoices(1) >= 1);
+		assertFalse(voice.isLoaded());
+		assertEquals(1, voice.getEvictionCount());
+		// used again, it is loaded again:
+		assertNotSame(first, voice.getVoiceData());
+		assertEquals(2, voice.getLoadCount());
+		// and both events are in the metrics:
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		assertEquals(2, registry.counter("mary_voice_loads_total", "", "voice", "lazy-idle").getCount());
+		assertEquals(1, registry.counter("mary_voice_evictions_total", "", "voice", "lazy-idle").getCount());
+	}
+
+	@Test
+	public void testUnloadsLeastRecentlyUsedVoice() throws Exception {
+		TestVoice oldest = createLazyVoice("lazy-lru-1");
+		TestVoice middle = createLazyVoice("lazy-lru-2");
+		TestVoice newest = createLazyVoice("lazy-lru-3");
+		Voice.registerVoice(oldest);
+		Voice.registerVoice(middle);
+		Voice.registerVoice(newest);
+		// voices loaded by other tests must not be the least recently used:
+		Voice.unloadIdleVoices(0);
+		oldest.getVoiceData();
+		Thread.sleep(5);
+		middle.getVoiceData();
+		Thread.sleep(5);
+		newest.getVoiceData();
+		assertTrue(Voice.unloadLeastRecentlyUsedVoice(newest));
+		assertFalse(oldest.isLoaded());
+		assertTrue(middle.isLoaded());
+		assertTrue(newest.isLoaded());
+		assertTrue(Voice.unloadLeastRecentlyUsedVoice(newest));
+		assertFalse(middle.isLoaded());
+		assertTrue(newest.isLoaded());
+	}
+
+	@Test
+	public void testDoesNotUnloadVoiceInUse() throws Exception {
+		TestVoice voice = createLazyVoice("lazy-in-use");
+		Voice.registerVoice(voice);
+		voice.acquire();
+		Voice.VoiceData data = voice.getVoiceData();
+		try {
+			assertTrue(voice.isInUse());
+			assertFalse(voice.unload());
+			Thread.sleep(5);
+			Voice.unloadIdleVoices(1);
+			Voice.unloadLeastRecentlyUsedVoice(null);
+			assertTrue(voice.isLoaded());
+			assertSame(data, voice.getVoiceData());
+		} finally {
+			voice.release();
+		}
+		assertFalse(voice.isInUse());
+		assertTrue(voice.unload());
+		assertFalse(voice.isLoaded());
+		assertEquals(1, voice.getLoadCount());
+		assertEquals(1, voice.getEvictionCount());
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchSynthesizerTest {
+	private static final int PARALLELISM = 2;
+
+	private BatchSynthesizer synthesizer;
+
+	@Before
+	public void setUp() {
+		synthesizer = new BatchSynthesizer(PARALLELISM, null);
+	}
+
+	@After
+	public void tearDown() {
+		synthesizer.shutdown();
+	}
+
+	/**
+	 * Items which fail, because they ask for an input type which does not exist.
+	 */
+	private static List<BatchSynthesizer.Item> failingItems(int count) {
+		List<BatchSynthesizer.Item> items = new ArrayList<BatchSynthesizer.Item>();
+		for (int i = 0; i < count; i++) {
+			items.add(new BatchSynthesizer.Item("item" + i, "text", null, Collections.singletonMap("INPUT_TYPE", "NO_SUCH_TYPE")));
+		}
+		return items;
+	}
+
+	/**
+	 * A callback which counts the results.
+	 */
+	private static class CountingCallback implements BatchSynthesizer.Callback {
+		final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger completed = new AtomicInteger();
+
+		public void completed(BatchSynthesizer.Item item, byte[] output, String fileExtension) throws IOException {
+			completed.incrementAndGet();
+		}
+
+		public void failed(BatchSynthesizer.Item item, Exception e) throws IOException {
+			Assert.assertNotNull(e);
+			failed.add(item.getId());
+		}
+	}
+
+	/**
+	 * Whether the thread is blocked acquiring a permit of a semaphore.
+	 */
+	private static boolean isWaitingForPermit(Thread thread) {
+		if (thread.getState() != Thread.State.WAITING) {
+			return false;
+		}
+		for (StackTraceElement frame : thread.getStackTrace()) {
+			if (frame.getClassName().equals(Semaphore.class.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testItemFailures() throws Exception {
+		CountingCallback callback = new CountingCallback();
+		synthesizer.process(failingItems(10), callback);
+		Assert.assertEquals(0, callback.completed.get());
+		Assert.assertEquals(10, callback.failed.size());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(callback.failed.contains("item" + i));
+		}
+	}
+
+	@Test
+	public void testInFlightBound() throws Exception {
+		final List<BatchSynthesizer.Item> items = failingItems(20);
+		final AtomicInteger taken = new AtomicInteger();
+		final Iterable<BatchSynthesizer.Item> lazyItems = new Iterable<BatchSynthesizer.Item>() {
+			public Iterator<BatchSynthesizer.Item> iterator() {
+				final Iterator<BatchSynthesizer.Item> it = items.iterator();
+				return new Iterator<BatchSynthesizer.Item>() {
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					public BatchSynthesizer.Item next() {
+						taken.incrementAndGet();
+						return it.next();
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+		// the callback holds up the processing threads until the test has looked at the number of items taken:
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final CountingCallback callback = new CountingCallback() {
+			@Override
+			public void failed(BatchSynthesizer.Item item, Exception e) throws IOException {
+				try {
+					proceed.await();
+				} catch (InterruptedException ie) {
+					throw new IOException(ie);
+				}
+				super.failed(item, e);
+			}
+		};
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		Thread batch = new Thread() {
+			public void run() {
+				try {
+					synthesizer.process(lazyItems, callback);
+				} catch (Exception e) {
+					failure.set(e);
+				}
+			}
+		};
+		batch.start();
+		// with all threads held up, the batch thread blocks once it has taken as many items as may be in flight, plus the one it
+		// is waiting to submit:
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!isWaitingForPermit(batch) && System.currentTimeMillis() < deadline) {
+			Thread.yield();
+		}
+		Assert.assertTrue(isWaitingForPermit(batch));
+		Assert.assertEquals(2 * PARALLELISM + 1, taken.get());
+		proceed.countDown();
+		batch.join(10000);
+		Assert.assertFalse(batch.isAlive());
+		Assert.assertNull(failure.get());
+		Assert.assertEquals(20, taken.get());
+		Assert.assertEquals(20, callback.failed.size());
+	}
+
+	@Test
+	public void testCallbackIOException() throws Exception {
+		final IOException clientGone = new IOException("client gone");
+		try {
+			synthesizer.process(failingItems(10), new CountingCallback() {
+				@Override
+				public void failed(BatchSynthesizer.Item item, Exception e) throws IOException {
+					throw clientGone;
+				}
+			});
+			Assert.fail("Expected the callback failure to be reported");
+		} catch (IOException e) {
+			Assert.assertSame(clientGone, e);
+		}
+	}
+
+	@Test
+	public void testCallbackRuntimeException() throws Exception {
+		final IllegalStateException bug = new IllegalStateException("bug in callback");
+		final AtomicInteger calls = new AtomicInteger();
+		try {
+			synthesizer.process(failingItems(100), new CountingCallback() {
+				@Override
+				public void failed(BatchSynthesizer.Item item, Exception e) throws IOException {
+					calls.incrementAndGet();
+					throw bug;
+				}
+			});
+			Assert.fail("Expected the callback failure to be reported");
+		} catch (IllegalStateException e) {
+			Assert.assertSame(bug, e);
+		}
+		// no further items are taken once the failure is known:
+		Assert.assertTrue(calls.get() < 100);
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MemoryAdmissionControlTest {
+
+	@Test
+	public void testAdmitsWhileMemoryFits() throws Exception {
+		MemoryAdmissionControl mac = new MemoryAdmissionControl(true, 0, 0);
+		MemoryAdmissionControl.Reservation r1 = mac.admit(1000);
+		MemoryAdmissionControl.Reservation r2 = mac.admit(1000);
+		assertNotNull(r1);
+		assertNotNull(r2);
+		assertEquals(2, mac.getInProgress());
+		assertEquals(2000, mac.getReservedBytes());
+		r1.release();
+		r1.release();
+		r2.release();
+		assertEquals(0, mac.getInProgress());
+		assertEquals(0, mac.getReservedBytes());
+		assertEquals(2, mac.getAdmittedCount());
+	}
+
+	@Test
+	public void testRejectsWhenHeapIsExhausted() throws Exception {
+		long maxHeap = Runtime.getRuntime().maxMemory();
+		MemoryAdmissionControl mac = new MemoryAdmissionControl(true, 50, 0);
+		// the first request is always admitted, even if it will not fit:
+		MemoryAdmissionControl.Reservation r1 = mac.admit(2 * maxHeap);
+		assertNotNull(r1);
+		assertNull(mac.admit(1000));
+		assertEquals(1, mac.getRejectedCount());
+		r1.release();
+		assertNotNull(mac.admit(1000));
+	}
+
+	@Test
+	public void testWaitingRequestAdmittedOnRelease() throws Exception {
+		long maxHeap = Runtime.getRuntime().maxMemory();
+		MemoryAdmissionControl mac = new MemoryAdmissionControl(true, 10000, 0);
+		final MemoryAdmissionControl.Reservation r1 = mac.admit(2 * maxHeap);
+		new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+				}
+				r1.release();
+			}
+		}.start();
+		assertNotNull(mac.admit(1000));
+		assertEquals(0, mac.getWaiting());
+	}
+
+	@Test
+	public void testDisabledAdmitsEverything() throws Exception {
+		long maxHeap = Runtime.getRuntime().maxMemory();
+		MemoryAdmissionControl mac = new MemoryAdmissionControl(false, 0, 0);
+		assertNotNull(mac.admit(2 * maxHeap));
+		assertNotNull(mac.admit(2 * maxHeap));
+	}
+}
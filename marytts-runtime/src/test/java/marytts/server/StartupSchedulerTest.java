@@ -0,0 +1,93 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import marytts.exceptions.MaryConfigurationException;
+
+import org.junit.Test;
+
+public class StartupSchedulerTest {
+
+	private static StartupScheduler.Task record(final List<String> log, final String id, final long sleepMillis) {
+		return new StartupScheduler.Task() {
+			public void run() throws Exception {
+				Thread.sleep(sleepMillis);
+				log.add(id);
+			}
+		};
+	}
+
+	@Test
+	public void testDependenciesRespected() throws Exception {
+		for (int threads : new int[] { 1, 4 }) {
+			List<String> log = new CopyOnWriteArrayList<String>();
+			StartupScheduler scheduler = new StartupScheduler("test", threads);
+			scheduler.addTask("synthesis", Arrays.asList("engine", "features"), record(log, "synthesis", 1));
+			scheduler.addTask("engine", null, record(log, "engine", 30));
+			scheduler.addTask("features", Collections.singletonList("unknown"), record(log, "features", 1));
+			scheduler.addTask("tokeniser", null, record(log, "tokeniser", 1));
+			scheduler.run();
+			assertEquals(4, log.size());
+			assertTrue(log.indexOf("engine") < log.indexOf("synthesis"));
+			assertTrue(log.indexOf("features") < log.indexOf("synthesis"));
+			assertEquals("synthesis", scheduler.getCriticalPath().get(scheduler.getCriticalPath().size() - 1));
+			if (threads > 1) {
+				// engine and features start together, engine takes longer
+				assertEquals(Arrays.asList("engine", "synthesis"), scheduler.getCriticalPath());
+			}
+		}
+	}
+
+	@Test(expected = MaryConfigurationException.class)
+	public void testCycleDetected() throws Exception {
+		List<String> log = new CopyOnWriteArrayList<String>();
+		StartupScheduler scheduler = new StartupScheduler("test", 2);
+		scheduler.addTask("a", Collections.singletonList("b"), record(log, "a", 0));
+		scheduler.addTask("b", Collections.singletonList("a"), record(log, "b", 0));
+		scheduler.run();
+	}
+
+	@Test
+	public void testFailureStopsDependents() throws Exception {
+		List<String> log = new CopyOnWriteArrayList<String>();
+		StartupScheduler scheduler = new StartupScheduler("test", 2);
+		scheduler.addTask("broken", null, new StartupScheduler.Task() {
+			public void run() throws Exception {
+				throw new IllegalStateException("broken");
+			}
+		});
+		scheduler.addTask("dependent", Collections.singletonList("broken"), record(log, "dependent", 0));
+		try {
+			scheduler.run();
+			fail("expected an exception");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains("broken"));
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertTrue(log.isEmpty());
+	}
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.binary;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import marytts.server.binary.BinaryProtocol.Frame;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryMaryServerTest {
+	private BinaryMaryServer server;
+	private Socket socket;
+	private DataInputStream in;
+	private OutputStream out;
+
+	/**
+	 * Echoes the payload in two DATA frames, or waits to be cancelled if the payload is "wait".
+	 */
+	private static class EchoServer extends BinaryMaryServer {
+		EchoServer() throws Exception {
+			super(InetAddress.getLoopbackAddress(), 0, 4);
+		}
+
+		EchoServer(int numThreads, int queueSize, int maxRequestsPerConnection) throws Exception {
+			super(InetAddress.getLoopbackAddress(), 0, numThreads, queueSize, maxRequestsPerConnection);
+		}
+
+		@Override
+		protected void process(Exchange exchange) throws Exception {
+			byte[] payload = exchange.getPayload();
+			if (new String(payload, "UTF-8").equals("wait")) {
+				while (!exchange.isCancelled()) {
+					Thread.sleep(5);
+				}
+				return;
+			}
+			int half = payload.length / 2;
+			exchange.getOutputStream().write(payload, 0, half);
+			exchange.getOutputStream().write(payload, half, payload.length - half);
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		start(new EchoServer());
+	}
+
+	private void start(BinaryMaryServer newServer) throws Exception {
+		server = newServer;
+		new Thread(server).start();
+		socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+		in = new DataInputStream(socket.getInputStream());
+		out = socket.getOutputStream();
+	}
+
+	private void restart(BinaryMaryServer newServer) throws Exception {
+		tearDown();
+		start(newServer);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		socket.close();
+		server.shutdown();
+	}
+
+	private void send(byte type, int requestId, String payload) throws Exception {
+		ByteBuffer frame = BinaryProtocol.encode(type, requestId, payload.getBytes("UTF-8"));
+		out.write(frame.array(), 0, frame.limit());
+		out.flush();
+	}
+
+	private Frame receive() throws Exception {
+		int length = in.readInt();
+		byte type = in.readByte();
+		int requestId = in.readInt();
+		byte[] payload = new byte[length - BinaryProtocol.HEADER_SIZE];
+		in.readFully(payload);
+		return new Frame(type, requestId, payload);
+	}
+
+	@Test
+	public void testDecodeIncomplete() {
+		ByteBuffer frame = BinaryProtocol.encode(BinaryProtocol.DATA, 7, new byte[] { 1, 2, 3 });
+		ByteBuffer partial = ByteBuffer.wrap(frame.array(), 0, frame.limit() - 1);
+		Assert.assertNull(BinaryProtocol.decode(partial));
+		Assert.assertEquals(0, partial.position());
+		Frame decoded = BinaryProtocol.decode(frame);
+		Assert.assertEquals(BinaryProtocol.DATA, decoded.type);
+		Assert.assertEquals(7, decoded.requestId);
+		Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, decoded.payload);
+		Assert.assertFalse(frame.hasRemaining());
+	}
+
+	@Test
+	public void testMultiplexedRequests() throws Exception {
+		int n = 20;
+		for (int i = 0; i < n; i++) {
+			send(BinaryProtocol.SYNTHESIS, i, "request number " + i);
+		}
+		Map<Integer, StringBuilder> outputs = new HashMap<Integer, StringBuilder>();
+		int ended = 0;
+		while (ended < n) {
+			Frame frame = receive();
+			if (frame.type == BinaryProtocol.DATA) {
+				StringBuilder output = outputs.get(frame.requestId);
+				if (output == null) {
+					output = new StringBuilder();
+					outputs.put(frame.requestId, output);
+				}
+				output.append(new String(frame.payload, "UTF-8"));
+			} else {
+				Assert.assertEquals(BinaryProtocol.END, frame.type);
+				ended++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			Assert.assertEquals("request number " + i, outputs.get(i).toString());
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		send(BinaryProtocol.SYNTHESIS, 1, "wait");
+		send(BinaryProtocol.CANCEL, 1, "");
+		Frame frame = receive();
+		Assert.assertEquals(BinaryProtocol.ERROR, frame.type);
+		Assert.assertEquals(1, frame.requestId);
+	}
+
+	@Test
+	public void testDuplicateRequestId() throws Exception {
+		send(BinaryProtocol.SYNTHESIS, 1, "wait");
+		send(BinaryProtocol.SYNTHESIS, 1, "again");
+		Frame frame = receive();
+		Assert.assertEquals(BinaryProtocol.ERROR, frame.type);
+		Assert.assertEquals(1, frame.requestId);
+		send(BinaryProtocol.CANCEL, 1, "");
+		Assert.assertEquals(BinaryProtocol.ERROR, receive().type);
+	}
+
+	@Test
+	public void testTooManyRequestsOnConnection() throws Exception {
+		restart(new EchoServer(4, 100, 2));
+		send(BinaryProtocol.SYNTHESIS, 1, "wait");
+		send(BinaryProtocol.SYNTHESIS, 2, "wait");
+		send(BinaryProtocol.SYNTHESIS, 3, "wait");
+		Frame frame = receive();
+		Assert.assertEquals(BinaryProtocol.ERROR, frame.type);
+		Assert.assertEquals(3, frame.requestId);
+		send(BinaryProtocol.CANCEL, 1, "");
+		send(BinaryProtocol.CANCEL, 2, "");
+		Assert.assertEquals(BinaryProtocol.ERROR, receive().type);
+		Assert.assertEquals(BinaryProtocol.ERROR, receive().type);
+		// the connection can be used again:
+		send(BinaryProtocol.SYNTHESIS, 4, "again");
+		Assert.assertEquals(BinaryProtocol.DATA, receive().type);
+	}
+
+	@Test
+	public void testFullQueueRejectsRequests() throws Exception {
+		restart(new EchoServer(1, 1, 32));
+		// one request is processed, at most one waits, and the others are rejected:
+		for (int i = 1; i <= 3; i++) {
+			send(BinaryProtocol.SYNTHESIS, i, "wait");
+		}
+		Frame frame = receive();
+		Assert.assertEquals(BinaryProtocol.ERROR, frame.type);
+		Assert.assertTrue(frame.requestId == 2 || frame.requestId == 3);
+		Assert.assertTrue(new String(frame.payload, "UTF-8").contains("busy"));
+	}
+
+	@Test
+	public void testHalfCloseAnswersPendingRequests() throws Exception {
+		send(BinaryProtocol.SYNTHESIS, 1, "before shutdown");
+		socket.shutdownOutput();
+		StringBuilder output = new StringBuilder();
+		Frame frame;
+		while ((frame = receive()).type == BinaryProtocol.DATA) {
+			output.append(new String(frame.payload, "UTF-8"));
+		}
+		Assert.assertEquals(BinaryProtocol.END, frame.type);
+		Assert.assertEquals("before shutdown", output.toString());
+		// and then the server closes the connection:
+		Assert.assertEquals(-1, in.read());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testOversizedFrameClosesConnection() throws Exception {
+		ByteBuffer header = ByteBuffer.allocate(BinaryProtocol.LENGTH_SIZE + BinaryProtocol.HEADER_SIZE);
+		header.putInt(BinaryMaryServer.MAX_REQUEST_LENGTH + 1000).put(BinaryProtocol.SYNTHESIS).putInt(1);
+		out.write(header.array());
+		out.flush();
+		receive();
+	}
+
+	@Test(expected = EOFException.class)
+	public void testInvalidFrameClosesConnection() throws Exception {
+		out.write(new byte[] { 0, 0, 0, 1, 0 });
+		out.flush();
+		receive();
+	}
+}
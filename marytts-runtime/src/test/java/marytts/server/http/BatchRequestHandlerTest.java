@@ -0,0 +1,67 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import marytts.server.BatchSynthesizer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchRequestHandlerTest {
+
+	@Test
+	public void testParseItems() throws Exception {
+		Map<String, String> defaults = new HashMap<String, String>();
+		defaults.put("VOICE", "default-voice");
+		defaults.put("AUDIO", "WAVE");
+		List<BatchSynthesizer.Item> items = BatchRequestHandler.parseItems(
+				"Hello world\n\nprompt2\tGood morning\tVOICE=other-voice\tAUDIO=AU\n", defaults);
+		Assert.assertEquals(2, items.size());
+		BatchSynthesizer.Item first = items.get(0);
+		Assert.assertEquals("1", first.getId());
+		Assert.assertEquals("Hello world", first.getText());
+		Assert.assertEquals("default-voice", first.getVoice());
+		Assert.assertEquals("WAVE", first.getParams().get("AUDIO"));
+		BatchSynthesizer.Item second = items.get(1);
+		Assert.assertEquals("prompt2", second.getId());
+		Assert.assertEquals("Good morning", second.getText());
+		Assert.assertEquals("other-voice", second.getVoice());
+		Assert.assertEquals("AU", second.getParams().get("AUDIO"));
+		Assert.assertFalse(second.getParams().containsKey("VOICE"));
+	}
+
+	@Test
+	public void testUniqueEntryNames() {
+		BatchRequestHandler.EntryNames names = new BatchRequestHandler.EntryNames();
+		Assert.assertEquals("prompt.wav", names.get("prompt", "wav"));
+		Assert.assertEquals("prompt_2.wav", names.get("prompt", "wav"));
+		// ids which only differ in characters that are replaced:
+		Assert.assertEquals("a_b.wav", names.get("a/b", "wav"));
+		Assert.assertEquals("a_b_2.wav", names.get("a:b", "wav"));
+		Assert.assertEquals("prompt.error.txt", names.get("prompt", "error.txt"));
+		// a suffixed name which is also an id:
+		Assert.assertEquals("prompt_2_2.wav", names.get("prompt_2", "wav"));
+		Assert.assertEquals("prompt_3.wav", names.get("prompt", "wav"));
+	}
+}
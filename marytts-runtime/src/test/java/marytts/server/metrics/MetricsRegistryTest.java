@@ -0,0 +1,88 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.metrics;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void testCounter() {
+		MetricsRegistry registry = new MetricsRegistry(null);
+		registry.counter("test_total", "A test", "kind", "a").inc();
+		registry.counter("test_total", "A test", "kind", "a").add(2);
+		registry.counter("test_total", "A test", "kind", "b").inc();
+		Assert.assertSame(registry.counter("test_total", "A test", "kind", "a"),
+				registry.counter("test_total", "A test", "kind", "a"));
+		Assert.assertEquals("# HELP test_total A test\n" + "# TYPE test_total counter\n" + "test_total{kind=\"a\"} 3\n"
+				+ "test_total{kind=\"b\"} 1\n", registry.toPrometheus());
+	}
+
+	@Test
+	public void testHistogram() {
+		MetricsRegistry registry = new MetricsRegistry(null);
+		Histogram h = registry.histogram("test_seconds", "Durations", new double[] { 0.1, 1 }, "stage", "x");
+		h.observe(0.05);
+		h.observe(0.1);
+		h.observe(0.5);
+		h.observe(3);
+		Assert.assertEquals(4, h.getCount());
+		Assert.assertEquals(3.65, h.getSum(), 1.E-9);
+		Assert.assertEquals("# HELP test_seconds Durations\n" + "# TYPE test_seconds histogram\n"
+				+ "test_seconds_bucket{stage=\"x\",le=\"0.1\"} 2\n" + "test_seconds_bucket{stage=\"x\",le=\"1.0\"} 3\n"
+				+ "test_seconds_bucket{stage=\"x\",le=\"+Inf\"} 4\n" + "test_seconds_sum{stage=\"x\"} 3.65\n"
+				+ "test_seconds_count{stage=\"x\"} 4\n", registry.toPrometheus());
+	}
+
+	@Test
+	public void testLabelEscaping() {
+		MetricsRegistry registry = new MetricsRegistry(null);
+		registry.counter("test_total", "A test", "voice", "a\"b\\c").inc();
+		Assert.assertTrue(registry.toPrometheus().contains("test_total{voice=\"a\\\"b\\\\c\"} 1\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLabelNamesMustMatch() {
+		MetricsRegistry registry = new MetricsRegistry(null);
+		registry.counter("test_total", "A test", "voice", "a");
+		registry.counter("test_total", "A test", "locale", "en");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeMustMatch() {
+		MetricsRegistry registry = new MetricsRegistry(null);
+		registry.counter("test", "A test");
+		registry.histogram("test", "A test", new double[] { 1 });
+	}
+
+	@Test
+	public void testJMX() throws Exception {
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		MetricsRegistry registry = new MetricsRegistry(server);
+		registry.counter("test_total", "A test", "voice", "cmu-slt-hsmm").add(5);
+		ObjectName name = new ObjectName("marytts:type=Metrics,name=test_total,voice=\"cmu-slt-hsmm\"");
+		Assert.assertEquals(5L, server.getAttribute(name, "Count"));
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import marytts.features.FeatureDefinition;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FFRTargetCostFunctionTest {
+	private static final String DEFINITION = "ByteValuedFeatureProcessors\n" //
+			+ "2 | phone 0 a b c\n" //
+			+ "1 | stress 0 1\n" //
+			+ "ShortValuedFeatureProcessors\n" //
+			+ "ContinuousFeatureProcessors\n";
+
+	private FFRTargetCostFunction costFunction;
+
+	private static FeatureDefinition createFeatureDefinition() throws Exception {
+		return new FeatureDefinition(new BufferedReader(new StringReader(DEFINITION)), true);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		costFunction = new FFRTargetCostFunction();
+		costFunction.featureDefinition = createFeatureDefinition();
+		costFunction.rememberWhichWeightsAreNonZero();
+	}
+
+	@Test
+	public void testOwnWeights() {
+		Assert.assertSame(costFunction.byteFeatureCosts, costFunction.getByteFeatureCosts(costFunction.featureDefinition));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownWeights() throws Exception {
+		// equal weights, but not compiled for this object:
+		costFunction.getByteFeatureCosts(createFeatureDefinition());
+	}
+}
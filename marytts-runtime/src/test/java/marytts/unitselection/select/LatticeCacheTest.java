@@ -0,0 +1,236 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import marytts.datatypes.MaryXML;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureVector;
+import marytts.unitselection.data.FeatureFileReader;
+import marytts.unitselection.data.Unit;
+import marytts.unitselection.data.UnitDatabase;
+import marytts.unitselection.select.viterbi.ViterbiCandidate;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class LatticeCacheTest {
+	private static final int NUM_UNITS = 6;
+
+	private TestDatabase database;
+	private UnitSelector selector;
+
+	@Before
+	public void setUp() throws Exception {
+		database = new TestDatabase();
+		selector = new UnitSelector();
+		selector.load(database, 0.5f, -1);
+	}
+
+	/**
+	 * A sentence of one token per phone, with the given phones and, as the attribute "f" of each phone, its target feature.
+	 */
+	private static List<Element> createSentence(String phones, int... features) throws Exception {
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		Element s = doc.createElement("s");
+		doc.appendChild(s);
+		List<Element> tokens = new ArrayList<Element>();
+		for (int i = 0; i < phones.length(); i++) {
+			Element t = doc.createElement(MaryXML.TOKEN);
+			Element ph = doc.createElement(MaryXML.PHONE);
+			ph.setAttribute("p", phones.substring(i, i + 1));
+			ph.setAttribute("f", String.valueOf(features[i]));
+			t.appendChild(ph);
+			s.appendChild(t);
+			tokens.add(t);
+		}
+		return tokens;
+	}
+
+	private static List<Target> createTargets(List<Element> tokens) {
+		List<Target> targets = new ArrayList<Target>();
+		for (Element t : tokens) {
+			Element ph = (Element) t.getFirstChild();
+			Target target = new Target(ph.getAttribute("p"), ph);
+			setFeatures(target);
+			targets.add(target);
+		}
+		return targets;
+	}
+
+	private static void setFeatures(Target target) {
+		byte f = Byte.parseByte(target.getMaryxmlElement().getAttribute("f"));
+		target.setFeatureVector(new FeatureVector(new byte[] { f }, new short[0], new float[] { 0.5f }, 0));
+	}
+
+	@Test
+	public void testSentenceEquality() throws Exception {
+		LatticeCache.Sentence sentence = new LatticeCache.Sentence(createTargets(createSentence("abc", 1, 2, 3)));
+		LatticeCache.Sentence same = new LatticeCache.Sentence(createTargets(createSentence("abc", 1, 2, 3)));
+		Assert.assertEquals(sentence, same);
+		Assert.assertEquals(sentence.hashCode(), same.hashCode());
+		// other phones, other features, other blacklist:
+		Assert.assertFalse(sentence.equals(new LatticeCache.Sentence(createTargets(createSentence("abd", 1, 2, 3)))));
+		Assert.assertFalse(sentence.equals(new LatticeCache.Sentence(createTargets(createSentence("abc", 1, 2, 0)))));
+		List<Element> blacklisted = createSentence("abc", 1, 2, 3);
+		blacklisted.get(1).setAttribute("blacklist", "42");
+		Assert.assertFalse(sentence.equals(new LatticeCache.Sentence(createTargets(blacklisted))));
+		// continuous features count too:
+		List<Target> targets = createTargets(createSentence("abc", 1, 2, 3));
+		targets.get(2).setFeatureVector(new FeatureVector(new byte[] { 3 }, new short[0], new float[] { 0.25f }, 0));
+		Assert.assertFalse(sentence.equals(new LatticeCache.Sentence(targets)));
+	}
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		List<Element> sentence = createSentence("abcd", 0, 1, 2, 3);
+		List<SelectedUnit> first = selector.selectUnits(sentence, null);
+		Assert.assertEquals(4, database.candidateLookups);
+		Assert.assertEquals(1, selector.latticeCache.size());
+
+		// the same sentence again, even as other elements: no candidates are looked up
+		List<SelectedUnit> again = selector.selectUnits(createSentence("abcd", 0, 1, 2, 3), null);
+		Assert.assertEquals(4, database.candidateLookups);
+		Assert.assertEquals(unitIndices(first), unitIndices(again));
+
+		// other features: a new lattice
+		selector.selectUnits(createSentence("abcd", 0, 1, 2, 2), null);
+		Assert.assertEquals(8, database.candidateLookups);
+		Assert.assertEquals(2, selector.latticeCache.size());
+
+		// a blacklist: a new lattice
+		List<Element> blacklisted = createSentence("abcd", 0, 1, 2, 3);
+		blacklisted.get(0).setAttribute("blacklist", "1");
+		selector.selectUnits(blacklisted, null);
+		Assert.assertEquals(12, database.candidateLookups);
+		Assert.assertEquals(3, selector.latticeCache.size());
+	}
+
+	@Test
+	public void testClearedWhenFull() throws Exception {
+		selector.latticeCache = new LatticeCache(2);
+		selector.selectUnits(createSentence("ab", 0, 1), null);
+		selector.selectUnits(createSentence("ab", 1, 1), null);
+		Assert.assertEquals(2, selector.latticeCache.size());
+		selector.selectUnits(createSentence("ab", 2, 1), null);
+		Assert.assertEquals(1, selector.latticeCache.size());
+		// the first sentence was forgotten, the last one is remembered:
+		int lookups = database.candidateLookups;
+		selector.selectUnits(createSentence("ab", 2, 1), null);
+		Assert.assertEquals(lookups, database.candidateLookups);
+		selector.selectUnits(createSentence("ab", 0, 1), null);
+		Assert.assertEquals(lookups + 2, database.candidateLookups);
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		selector.latticeCache = new LatticeCache(0);
+		Assert.assertFalse(selector.latticeCache.isEnabled());
+		selector.selectUnits(createSentence("ab", 0, 1), null);
+		selector.selectUnits(createSentence("ab", 0, 1), null);
+		Assert.assertEquals(4, database.candidateLookups);
+		Assert.assertEquals(0, selector.latticeCache.size());
+	}
+
+	private static List<Integer> unitIndices(List<SelectedUnit> selectedUnits) {
+		List<Integer> indices = new ArrayList<Integer>();
+		for (SelectedUnit selectedUnit : selectedUnits) {
+			indices.add(selectedUnit.getUnit().index);
+		}
+		return indices;
+	}
+
+	/**
+	 * Every unit is a candidate for every target; the target feature of each phone is the preferred unit modulo 4.
+	 */
+	private static class TestDatabase extends UnitDatabase {
+		private final Unit[] units;
+		int candidateLookups;
+
+		TestDatabase() {
+			units = new Unit[NUM_UNITS];
+			for (int i = 0; i < NUM_UNITS; i++) {
+				units[i] = new Unit(1000L * i, 1000, i);
+			}
+			targetCostFunction = new TestTargetCostFunction();
+			joinCostFunction = new JoinCostFunction() {
+				public double cost(Target t1, Unit u1, Target t2, Unit u2) {
+					return u2.index == u1.index + 1 ? 0 : 0.5;
+				}
+
+				public void init(String configPrefix) {
+				}
+			};
+		}
+
+		@Override
+		public List<ViterbiCandidate> getCandidates(Target target) {
+			candidateLookups++;
+			List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>();
+			for (Unit unit : units) {
+				candidates.add(new ViterbiCandidate(target, unit, targetCostFunction));
+			}
+			return candidates;
+		}
+
+		private static class TestTargetCostFunction implements TargetCostFunction {
+			public double cost(Target target, Unit unit) {
+				return Math.abs(unit.index % 4 - target.getFeatureVector().getByteFeature(0)) / 4.;
+			}
+
+			public FeatureVector getFeatureVector(Unit unit) {
+				return null;
+			}
+
+			public FeatureVector[] getFeatureVectors() {
+				return null;
+			}
+
+			public String getFeature(Unit unit, String featureName) {
+				return String.valueOf(unit.index);
+			}
+
+			public FeatureDefinition getFeatureDefinition() {
+				return null;
+			}
+
+			public void computeTargetFeatures(Target target) {
+				setFeatures(target);
+			}
+
+			public void load(String featureFileName, InputStream weightsStream, FeatureProcessorManager featProc) {
+				throw new UnsupportedOperationException();
+			}
+
+			public void load(FeatureFileReader featureFileReader, InputStream weightsStream, FeatureProcessorManager featProc) {
+				throw new UnsupportedOperationException();
+			}
+		}
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select.viterbi;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureVector;
+import marytts.unitselection.data.FeatureFileReader;
+import marytts.unitselection.data.Unit;
+import marytts.unitselection.data.UnitDatabase;
+import marytts.unitselection.select.JoinCostFunction;
+import marytts.unitselection.select.SelectedUnit;
+import marytts.unitselection.select.StatisticalCostFunction;
+import marytts.unitselection.select.Target;
+import marytts.unitselection.select.TargetCostFunction;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ViterbiTest {
+	private static final int NUM_UNITS = 8;
+	private static final int NUM_TARGETS = 4;
+	private static final float W_TARGET_COSTS = 0.4f;
+
+	private TestDatabase database;
+	private List<Target> targets;
+
+	@Before
+	public void setUp() {
+		database = new TestDatabase(NUM_UNITS);
+		targets = createTargets(NUM_TARGETS);
+	}
+
+	private static List<Target> createTargets(int numTargets) {
+		List<Target> targets = new ArrayList<Target>();
+		for (int i = 0; i < numTargets; i++) {
+			Target target = new Target("p", null);
+			target.setFeatureVector(new FeatureVector(new byte[] { (byte) ((3 * i + 1) % 4) }, new short[0], new float[0], 0));
+			targets.add(target);
+		}
+		return targets;
+	}
+
+	private static int[] unitIndices(List<SelectedUnit> selectedUnits) {
+		int[] indices = new int[selectedUnits.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = selectedUnits.get(i).getUnit().index;
+		}
+		return indices;
+	}
+
+	private double score(int[] units) {
+		double score = 0;
+		for (int i = 0; i < units.length; i++) {
+			double joinCost = i == 0 ? 0 : database.joinCost(units[i - 1], units[i]);
+			score += (1 - W_TARGET_COSTS) * joinCost + W_TARGET_COSTS * database.targetCost(targets.get(i), units[i]);
+		}
+		return score;
+	}
+
+	@Test
+	public void testReuseLattice() throws Exception {
+		Viterbi viterbi = new Viterbi(targets, database, W_TARGET_COSTS, -1);
+		viterbi.setRecordLattice(true);
+		viterbi.apply();
+		int[] expected = unitIndices(viterbi.getSelectedUnits());
+		ViterbiLattice lattice = viterbi.getLattice();
+		Assert.assertEquals(NUM_TARGETS, lattice.getNumberOfPoints());
+		Assert.assertEquals(NUM_TARGETS * NUM_UNITS, lattice.getNumberOfCandidates());
+		int costComputations = database.targetCostComputations;
+
+		List<Target> sameTargets = createTargets(NUM_TARGETS);
+		Viterbi again = new Viterbi(sameTargets, lattice, database, W_TARGET_COSTS, 0, -1);
+		again.apply();
+		List<SelectedUnit> selectedUnits = again.getSelectedUnits();
+		Assert.assertArrayEquals(expected, unitIndices(selectedUnits));
+		Assert.assertSame(sameTargets.get(0), selectedUnits.get(0).getTarget());
+		Assert.assertEquals(costComputations, database.targetCostComputations);
+		Assert.assertSame(lattice, again.getLattice());
+	}
+
+	@Test
+	public void testNoLatticeUnlessRecorded() throws Exception {
+		Viterbi viterbi = new Viterbi(targets, database, W_TARGET_COSTS, -1);
+		viterbi.apply();
+		Assert.assertNull(viterbi.getLattice());
+	}
+
+	@Test
+	public void testExcludedUnits() throws Exception {
+		Viterbi viterbi = new Viterbi(targets, database, W_TARGET_COSTS, -1);
+		viterbi.setRecordLattice(true);
+		viterbi.apply();
+		int[] best = unitIndices(viterbi.getSelectedUnits());
+		Set<Integer> excluded = new HashSet<Integer>();
+		excluded.add(best[1]);
+		Viterbi again = new Viterbi(createTargets(NUM_TARGETS), viterbi.getLattice(), database, W_TARGET_COSTS, 0, -1);
+		again.setExcludedUnits(excluded);
+		again.apply();
+		for (int index : unitIndices(again.getSelectedUnits())) {
+			Assert.assertFalse(excluded.contains(index));
+		}
+	}
+
+	@Test
+	public void testNBestPaths() throws Exception {
+		// all paths, by exhaustive search:
+		List<Double> scores = new ArrayList<Double>();
+		int[] units = new int[NUM_TARGETS];
+		for (int p = 0; p < Math.pow(NUM_UNITS, NUM_TARGETS); p++) {
+			for (int i = 0, rest = p; i < NUM_TARGETS; i++, rest /= NUM_UNITS) {
+				units[i] = rest % NUM_UNITS;
+			}
+			scores.add(score(units));
+		}
+		Collections.sort(scores);
+
+		int n = 10;
+		Viterbi viterbi = new Viterbi(targets, database, W_TARGET_COSTS, -1);
+		viterbi.setNBest(n);
+		viterbi.apply();
+		List<List<SelectedUnit>> nBest = viterbi.getNBestSelectedUnits(n);
+		double[] nBestScores = viterbi.getNBestScores(n);
+		Assert.assertEquals(n, nBest.size());
+		Assert.assertEquals(n, nBestScores.length);
+		Set<String> distinct = new HashSet<String>();
+		for (int k = 0; k < n; k++) {
+			int[] path = unitIndices(nBest.get(k));
+			Assert.assertEquals(scores.get(k), nBestScores[k], 1.E-12);
+			Assert.assertEquals(nBestScores[k], score(path), 1.E-12);
+			distinct.add(Arrays.toString(path));
+		}
+		Assert.assertEquals(n, distinct.size());
+
+		Viterbi oneBest = new Viterbi(targets, database, W_TARGET_COSTS, -1);
+		oneBest.apply();
+		Assert.assertArrayEquals(unitIndices(oneBest.getSelectedUnits()), unitIndices(nBest.get(0)));
+	}
+
+	@Test
+	public void testExactPruning() throws Exception {
+		database = new TestDatabase(40);
+		targets = createTargets(20);
+		for (int beamSize : new int[] { -1, 10 }) {
+			for (int n : new int[] { 1, 4 }) {
+				Viterbi viterbi = new Viterbi(targets, database, W_TARGET_COSTS, beamSize);
+				viterbi.setNBest(n);
+				viterbi.apply();
+				Viterbi pruned = new Viterbi(targets, database, W_TARGET_COSTS, beamSize);
+				pruned.setNBest(n);
+				pruned.setPruning(true, 0);
+				pruned.apply();
+				Assert.assertEquals(0, viterbi.getNumberOfSkippedJoinCosts());
+				if (beamSize == -1) {
+					Assert.assertTrue(pruned.getNumberOfSkippedJoinCosts() > 0);
+				}
+				Assert.assertArrayEquals(viterbi.getNBestScores(n), pruned.getNBestScores(n), 0);
+				List<List<SelectedUnit>> expected = viterbi.getNBestSelectedUnits(n);
+				List<List<SelectedUnit>> actual = pruned.getNBestSelectedUnits(n);
+				Assert.assertEquals(expected.size(), actual.size());
+				for (int k = 0; k < expected.size(); k++) {
+					Assert.assertArrayEquals(unitIndices(expected.get(k)), unitIndices(actual.get(k)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testInexactPruning() throws Exception {
+		database = new TestDatabase(40);
+		targets = createTargets(20);
+		Viterbi exact = new Viterbi(targets, database, W_TARGET_COSTS, -1);
+		exact.setPruning(true, 0);
+		exact.apply();
+		Viterbi inexact = new Viterbi(targets, database, W_TARGET_COSTS, -1);
+		inexact.setPruning(false, 0.1);
+		inexact.apply();
+		// fewer join costs are computed, since fewer paths survive:
+		Assert.assertTrue(inexact.nJoinCosts < exact.nJoinCosts);
+		List<SelectedUnit> selectedUnits = inexact.getSelectedUnits();
+		Assert.assertEquals(targets.size(), selectedUnits.size());
+		Assert.assertTrue(score(unitIndices(selectedUnits)) >= score(unitIndices(exact.getSelectedUnits())));
+	}
+
+	@Test
+	public void testStatisticalCostComputedOncePerExtension() throws Exception {
+		database = new TestDatabase(20);
+		targets = createTargets(10);
+		final int[] sCosts = new int[1];
+		database.setSCostFunction(new StatisticalCostFunction() {
+			public double cost(Unit u1, Unit u2) {
+				sCosts[0]++;
+				return (u1.index * 5 + u2.index) % 3 / 6.;
+			}
+
+			public void init(String configPrefix) {
+			}
+		});
+		Viterbi viterbi = new Viterbi(targets, database, W_TARGET_COSTS, 0.2f, -1);
+		viterbi.apply();
+		int unpruned = sCosts[0];
+		// every candidate extends every path, except at the first point:
+		Assert.assertEquals(9 * 20 * 20, unpruned);
+		sCosts[0] = 0;
+		Viterbi pruned = new Viterbi(targets, database, W_TARGET_COSTS, 0.2f, -1);
+		pruned.setPruning(true, 0);
+		pruned.apply();
+		Assert.assertTrue(pruned.getNumberOfSkippedJoinCosts() > 0);
+		Assert.assertEquals(unpruned, sCosts[0]);
+		Assert.assertArrayEquals(unitIndices(viterbi.getSelectedUnits()), unitIndices(pruned.getSelectedUnits()));
+	}
+
+	/**
+	 * Every unit is a candidate for every target; the join costs are zero between adjacent units.
+	 */
+	private static class TestDatabase extends UnitDatabase {
+		private final Unit[] units;
+		int targetCostComputations;
+
+		TestDatabase(int numUnits) {
+			units = new Unit[numUnits];
+			for (int i = 0; i < numUnits; i++) {
+				units[i] = new Unit(1000L * i, 1000, i);
+			}
+			targetCostFunction = new TestTargetCostFunction();
+			joinCostFunction = new JoinCostFunction() {
+				public double cost(Target t1, Unit u1, Target t2, Unit u2) {
+					return joinCost(u1.index, u2.index);
+				}
+
+				public void init(String configPrefix) {
+				}
+			};
+		}
+
+		void setSCostFunction(StatisticalCostFunction sCostFunction) {
+			this.sCostFunction = sCostFunction;
+		}
+
+		double targetCost(Target target, int unit) {
+			return Math.abs(unit % 4 - target.getFeatureVector().getByteFeature(0)) / 4.;
+		}
+
+		double joinCost(int left, int right) {
+			return right == left + 1 ? 0 : 0.1 + (left * 7 + right * 3) % 5 / 5.;
+		}
+
+		@Override
+		public List<ViterbiCandidate> getCandidates(Target target) {
+			List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>();
+			for (Unit unit : units) {
+				candidates.add(new ViterbiCandidate(target, unit, targetCostFunction));
+			}
+			return candidates;
+		}
+
+		private class TestTargetCostFunction implements TargetCostFunction {
+			public double cost(Target target, Unit unit) {
+				targetCostComputations++;
+				return targetCost(target, unit.index);
+			}
+
+			public FeatureVector getFeatureVector(Unit unit) {
+				return null;
+			}
+
+			public FeatureVector[] getFeatureVectors() {
+				return null;
+			}
+
+			public String getFeature(Unit unit, String featureName) {
+				return String.valueOf(unit.index);
+			}
+
+			public FeatureDefinition getFeatureDefinition() {
+				return null;
+			}
+
+			public void computeTargetFeatures(Target target) {
+			}
+
+			public void load(String featureFileName, InputStream weightsStream, FeatureProcessorManager featProc) {
+				throw new UnsupportedOperationException();
+			}
+
+			public void load(FeatureFileReader featureFileReader, InputStream weightsStream, FeatureProcessorManager featProc) {
+				throw new UnsupportedOperationException();
+			}
+		}
+	}
+}
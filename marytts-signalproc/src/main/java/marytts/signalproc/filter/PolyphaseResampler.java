@@ -0,0 +1,349 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.signalproc.filter;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import marytts.signalproc.process.InlineDataProcessor;
+import marytts.signalproc.window.BlackmanWindow;
+import marytts.signalproc.window.Window;
+import marytts.util.data.BlockwiseDoubleDataSource;
+import marytts.util.data.DoubleDataSource;
+import marytts.util.data.audio.AudioDoubleDataSource;
+import marytts.util.data.audio.DDSAudioInputStream;
+
+/**
+ * A sampling rate converter which reads its input from a double data source as the output is requested, so that it can be used on
+ * audio which is still being produced. The output sampling rate is the input rate multiplied by up/down, the ratio of the two
+ * rates reduced to lowest terms. The input is conceptually upsampled by inserting up-1 zeros after each sample, low-pass
+ * filtered with a Blackman-windowed sinc below the lower of the two Nyquist frequencies, and downsampled by keeping every
+ * down-th sample; the polyphase implementation computes only the samples which are kept, each from the taps of one of the up
+ * phases of the filter.
+ * <p>
+ * The filter tables depend only on the ratio of the rates and are shared between all resamplers for the same ratio; at most
+ * {@link #MAX_TABLES} of them are kept. The output is aligned with the input, i.e. the delay of the filter is compensated, and
+ * the number of output samples is the number of input samples multiplied by up/down, rounded up. The output is not clipped.
+ */
+public class PolyphaseResampler extends BlockwiseDoubleDataSource {
+	/** The number of output samples computed at a time */
+	public static final int DEFAULT_BLOCKSIZE = 512;
+	/** The number of zero crossings of the sinc on either side of its centre, at the lower of the two rates */
+	protected static final int ZERO_CROSSINGS = 32;
+	/** The cutoff frequency, as a fraction of the lower of the two Nyquist frequencies */
+	protected static final double CUTOFF = 0.9;
+	/**
+	 * The largest up or down factor for which a filter table is built; a table holds about 2 * {@link #ZERO_CROSSINGS} times the
+	 * larger of the two factors doubles
+	 */
+	public static final int MAX_FACTOR = 1024;
+	/** The largest ratio of the higher to the lower sampling rate; the input buffer grows with the downsampling ratio */
+	public static final int MAX_RATE_RATIO = 16;
+	/** The lowest sampling rate, in Hertz, to or from which audio is converted */
+	public static final int MIN_SAMPLING_RATE = 4000;
+	/** The number of filter tables kept for reuse */
+	public static final int MAX_TABLES = 16;
+
+	private static final ConcurrentMap<Long, FilterTable> tables = new ConcurrentHashMap<Long, FilterTable>();
+
+	private static final InlineDataProcessor CLIPPER = new InlineDataProcessor() {
+		public void applyInline(double[] data, int off, int len) {
+			for (int i = off; i < off + len; i++) {
+				if (data[i] > 1) {
+					data[i] = 1;
+				} else if (data[i] < -1) {
+					data[i] = -1;
+				}
+			}
+		}
+	};
+
+	private final FilterTable table;
+	/** The input samples from index inStart on; negative indices are the zeros before the start of the input */
+	private double[] in;
+	private long inStart;
+	private int inCount;
+	/** The number of samples read from the input source so far */
+	private long inputRead;
+	private boolean inputEnded;
+	/** The index of the next output sample */
+	private long outPos;
+	private long outputLength = DoubleDataSource.NOT_SPECIFIED;
+
+	/**
+	 * Convert the audio input stream to the given sampling rate. The audio is read from ais only as the returned stream is read.
+	 * Samples which exceed the value range after filtering are clipped.
+	 *
+	 * @param ais
+	 *            mono PCM audio with 8, 16 or 24 bits per sample
+	 * @param samplingRate
+	 *            the sampling rate of the returned audio, in Hertz
+	 * @return an audio input stream in the format of ais, but with the given sampling rate, or ais itself if it already has that
+	 *         sampling rate
+	 * @throws IllegalArgumentException
+	 *             if ais is not mono PCM audio, or if the ratio of the rates cannot be handled
+	 */
+	public static AudioInputStream resample(AudioInputStream ais, int samplingRate) {
+		AudioFormat format = ais.getFormat();
+		if ((int) format.getSampleRate() == samplingRate) {
+			return ais;
+		}
+		PolyphaseResampler resampler = new PolyphaseResampler(new AudioDoubleDataSource(ais), (int) format.getSampleRate(),
+				samplingRate);
+		resampler.dataProcessor = CLIPPER;
+		AudioFormat targetFormat = new AudioFormat(format.getEncoding(), samplingRate, format.getSampleSizeInBits(),
+				format.getChannels(), format.getFrameSize(), samplingRate, format.isBigEndian());
+		return new DDSAudioInputStream(resampler, targetFormat);
+	}
+
+	/**
+	 * Create a resampler.
+	 *
+	 * @param inputSource
+	 *            the signal to resample
+	 * @param inputSamplingRate
+	 *            the sampling rate of inputSource, in Hertz
+	 * @param outputSamplingRate
+	 *            the sampling rate of the data delivered by this data source, in Hertz
+	 * @throws IllegalArgumentException
+	 *             if {@link #canResample(int, int)} is false for the two rates
+	 */
+	public PolyphaseResampler(DoubleDataSource inputSource, int inputSamplingRate, int outputSamplingRate) {
+		super(inputSource, DEFAULT_BLOCKSIZE);
+		table = getFilterTable(inputSamplingRate, outputSamplingRate);
+		int history = table.taps - 1;
+		in = new double[Math.max(2 * table.taps, DEFAULT_BLOCKSIZE * table.down / table.up + table.taps)];
+		inStart = -history;
+		inCount = history;
+		long inputLength = inputSource.getDataLength();
+		if (inputLength != DoubleDataSource.NOT_SPECIFIED) {
+			dataLength = getOutputLength(inputLength);
+		}
+	}
+
+	/**
+	 * Whether audio can be converted between the two sampling rates.
+	 *
+	 * @param inputSamplingRate
+	 *            the sampling rate of the input, in Hertz
+	 * @param outputSamplingRate
+	 *            the sampling rate of the output, in Hertz
+	 * @return true if both rates are at least {@link #MIN_SAMPLING_RATE}, neither is more than {@link #MAX_RATE_RATIO} times the
+	 *         other, and the output rate divided by the input rate, in lowest terms, has neither a numerator nor a denominator
+	 *         larger than {@link #MAX_FACTOR}
+	 */
+	public static boolean canResample(int inputSamplingRate, int outputSamplingRate) {
+		if (inputSamplingRate < MIN_SAMPLING_RATE || outputSamplingRate < MIN_SAMPLING_RATE) {
+			return false;
+		}
+		int lower = Math.min(inputSamplingRate, outputSamplingRate);
+		int higher = Math.max(inputSamplingRate, outputSamplingRate);
+		// the larger of the up and down factors is the higher rate divided by the gcd:
+		return higher <= (long) MAX_RATE_RATIO * lower && higher / gcd(lower, higher) <= MAX_FACTOR;
+	}
+
+	/**
+	 * The filter table for the given rates, shared by all resamplers with the same ratio of rates.
+	 */
+	static FilterTable getFilterTable(int inputSamplingRate, int outputSamplingRate) {
+		if (!canResample(inputSamplingRate, outputSamplingRate)) {
+			throw new IllegalArgumentException("Cannot resample from " + inputSamplingRate + " Hz to " + outputSamplingRate + " Hz");
+		}
+		int gcd = gcd(inputSamplingRate, outputSamplingRate);
+		int up = outputSamplingRate / gcd;
+		int down = inputSamplingRate / gcd;
+		Long key = Long.valueOf((long) up << 32 | down);
+		FilterTable table = tables.get(key);
+		if (table == null) {
+			table = new FilterTable(up, down);
+			if (tables.size() >= MAX_TABLES) {
+				tables.clear();
+			}
+			FilterTable existing = tables.putIfAbsent(key, table);
+			if (existing != null) {
+				table = existing;
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * The number of filter tables currently kept for reuse.
+	 */
+	static int cachedTables() {
+		return tables.size();
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+	private long getOutputLength(long inputLength) {
+		return (inputLength * table.up + table.down - 1) / table.down;
+	}
+
+	/**
+	 * Whether or not any more data can be read from this data source.
+	 *
+	 * @return true if another call to getData() will return data, false otherwise.
+	 */
+	@Override
+	public boolean hasMoreData() {
+		if (currentlyInBuffer() > 0) {
+			return true;
+		}
+		if (!inputEnded && !inputSource.hasMoreData()) {
+			endOfInput();
+		}
+		return !inputEnded || outPos < outputLength;
+	}
+
+	@Override
+	public int available() {
+		return currentlyInBuffer() + (int) (inputSource.available() * (long) table.up / table.down);
+	}
+
+	private void endOfInput() {
+		inputEnded = true;
+		outputLength = getOutputLength(inputRead);
+	}
+
+	@Override
+	protected int readBlock(double[] target, int pos) {
+		int count = getBlockSize();
+		if (inputEnded) {
+			count = (int) Math.min(count, outputLength - outPos);
+		}
+		if (count <= 0) {
+			return 0;
+		}
+		readInput(inputIndex(outPos + count - 1));
+		if (inputEnded) {
+			count = (int) Math.min(count, outputLength - outPos);
+		}
+		int up = table.up;
+		int taps = table.taps;
+		double[] coefficients = table.coefficients;
+		for (int i = 0; i < count; i++) {
+			long t = (outPos + i) * table.down + table.delay;
+			long base = t / up;
+			int c = (int) (t - base * up) * taps;
+			// the newest input sample is multiplied with the first tap of the phase:
+			int x = (int) (base - inStart);
+			double sum = 0;
+			for (int k = 0; k < taps; k++) {
+				sum += coefficients[c + k] * in[x - k];
+			}
+			target[pos + i] = sum;
+		}
+		outPos += count;
+		return count;
+	}
+
+	/**
+	 * The index of the newest input sample needed for the given output sample.
+	 */
+	private long inputIndex(long outputIndex) {
+		return (outputIndex * table.down + table.delay) / table.up;
+	}
+
+	/**
+	 * Make sure that the input samples up to the given index are in the buffer, with the preceding taps-1 samples; read them from
+	 * the input source if necessary. After the end of the input, zeros are appended.
+	 */
+	private void readInput(long lastIndex) {
+		long firstIndex = inputIndex(outPos) - table.taps + 1;
+		int drop = (int) (firstIndex - inStart);
+		if (drop > 0) {
+			inCount -= drop;
+			System.arraycopy(in, drop, in, 0, inCount);
+			inStart = firstIndex;
+		}
+		int needed = (int) (lastIndex + 1 - inStart);
+		if (needed <= inCount) {
+			return;
+		}
+		if (needed > in.length) {
+			in = Arrays.copyOf(in, Math.max(needed, 2 * in.length));
+		}
+		while (!inputEnded && inCount < needed) {
+			int read = inputSource.getData(in, inCount, needed - inCount);
+			inCount += read;
+			inputRead += read;
+			if (read == 0 || !inputSource.hasMoreData()) {
+				endOfInput();
+			}
+		}
+		if (inCount < needed) {
+			Arrays.fill(in, inCount, needed, 0);
+			inCount = needed;
+		}
+	}
+
+	/**
+	 * The filter for one ratio of rates, with the taps of each phase in a contiguous slice.
+	 */
+	static final class FilterTable {
+		final int up;
+		final int down;
+		/** taps per phase */
+		final int taps;
+		/** half the length of the prototype filter, at the upsampled rate */
+		final long delay;
+		/** taps of phase p in [p * taps, (p + 1) * taps), in the order in which they are applied to the newest input sample first */
+		final double[] coefficients;
+
+		FilterTable(int up, int down) {
+			this.up = up;
+			this.down = down;
+			int factor = Math.max(up, down);
+			// an even number of taps per phase, so that the filter is centred on a sample of the upsampled signal:
+			taps = 2 * ((ZERO_CROSSINGS * factor + up - 1) / up);
+			int length = taps * up;
+			delay = length / 2;
+			// prototype low-pass at the upsampled rate, with a gain of up to make up for the inserted zeros:
+			double cutoff = CUTOFF * 0.5 / factor;
+			Window window = new BlackmanWindow(length + 1);
+			double[] prototype = new double[length];
+			double sum = 0;
+			for (int j = 0; j < length; j++) {
+				long m = j - delay;
+				double sinc = m == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * m) / (Math.PI * m);
+				prototype[j] = sinc * window.value(j);
+				sum += prototype[j];
+			}
+			coefficients = new double[length];
+			for (int p = 0; p < up; p++) {
+				for (int k = 0; k < taps; k++) {
+					coefficients[p * taps + k] = prototype[p + k * up] * up / sum;
+				}
+			}
+		}
+	}
+}
@@ -19,6 +19,19 @@ import javax.sound.sampled.AudioSystem;
 public class AppendableSequenceAudioInputStream extends SequenceAudioInputStream {
 	protected boolean doneAppending = false;
 
+	// timing of production and consumption, in nanoTime() units; all guarded by this:
+	private final long creationTime = nanoTime();
+	private long startTime = creationTime;
+	private long[] appendTimes = new long[8];
+	private int numAppends;
+	private long doneAppendingTime = -1;
+	private long firstReadTime = -1;
+	private long bytesRead;
+	private int underrunCount;
+	private long underrunTime;
+	private int readDepth;
+	private long readWaitStart = -1;
+
 	/**
 	 * Create a sequence audio input stream to which more AudioInputStreams can be appended after creation. When the currently
 	 * available audio input streams have been read, calls to read() will block until new audio data is appended or
@@ -47,6 +60,10 @@ public class AppendableSequenceAudioInputStream extends SequenceAudioInputStream
 		if (doneAppending)
 			throw new IllegalArgumentException("Cannot append after doneAppending() was called!");
 		m_audioInputStreamList.add(ais);
+		if (numAppends == appendTimes.length) {
+			appendTimes = Arrays.copyOf(appendTimes, 2 * numAppends);
+		}
+		appendTimes[numAppends++] = nanoTime();
 		// System.err.println("Appending audio");
 		notifyAll();
 	}
@@ -56,20 +73,33 @@ public class AppendableSequenceAudioInputStream extends SequenceAudioInputStream
 	 * read.
 	 */
 	public synchronized void doneAppending() {
+		if (!doneAppending) {
+			doneAppendingTime = nanoTime();
+		}
 		doneAppending = true;
 		// System.err.println("Done appending");
 		notifyAll();
 	}
 
 	public synchronized int read() throws IOException {
+		readDepth++;
+		try {
+			int n = readOrWait();
+			if (n != -1 && readDepth == 1) {
+				dataRead(1);
+			}
+			return n;
+		} finally {
+			readDepth--;
+		}
+	}
+
+	private int readOrWait() throws IOException {
 		while (m_audioInputStreamList.size() == 0) {
 			if (doneAppending) // never had any data, no more to come
 				return -1;
 			// no data yet, wait
-			try {
-				wait();
-			} catch (InterruptedException ie) {
-			}
+			waitForData();
 		}
 		int n = -1;
 		// Try to read data
@@ -77,24 +107,31 @@ public class AppendableSequenceAudioInputStream extends SequenceAudioInputStream
 			if (n == -1 && doneAppending) // finished reading
 				return -1;
 			// wait and try again
-			try {
-				wait();
-			} catch (InterruptedException ie) {
-			}
+			waitForData();
 		}
 		return n;
 	}
 
 	public synchronized int read(byte[] buf, int off, int len) throws IOException {
+		readDepth++;
+		try {
+			int n = readOrWait(buf, off, len);
+			if (n > 0 && readDepth == 1) {
+				dataRead(n);
+			}
+			return n;
+		} finally {
+			readDepth--;
+		}
+	}
+
+	private int readOrWait(byte[] buf, int off, int len) throws IOException {
 		int n = -1;
 		while (m_audioInputStreamList.size() == 0) {
 			if (doneAppending) // never had any data, no more to come
 				return -1;
 			// no data yet, wait
-			try {
-				wait();
-			} catch (InterruptedException ie) {
-			}
+			waitForData();
 		}
 		// Try to read data
 		while (m_nCurrentStream >= m_audioInputStreamList.size() || (n = super.read(buf, off, len)) <= 0) { // no data, but more
@@ -102,15 +139,140 @@ public class AppendableSequenceAudioInputStream extends SequenceAudioInputStream
 			if (n == -1 && doneAppending) // finished reading
 				return -1;
 			// wait and try again
-			try {
-				wait();
-			} catch (InterruptedException ie) {
-			}
+			waitForData();
 		}
 		// System.err.println("Read "+ n + " bytes");
 		return n;
 	}
 
+	private void waitForData() {
+		if (readWaitStart == -1) {
+			readWaitStart = nanoTime();
+		}
+		try {
+			wait();
+		} catch (InterruptedException ie) {
+		}
+	}
+
+	/**
+	 * Account for n bytes returned to the reader; if the reader had to wait for them after the first data was read, this was an
+	 * underrun. The reads of the superclass recurse into the read methods, so this is only called for the outermost read.
+	 */
+	private void dataRead(int n) {
+		long now = nanoTime();
+		if (firstReadTime == -1) {
+			firstReadTime = now;
+		} else if (readWaitStart != -1) {
+			underrunCount++;
+			underrunTime += now - readWaitStart;
+		}
+		readWaitStart = -1;
+		bytesRead += n;
+	}
+
+	/**
+	 * The clock by which production and consumption are timed. It is first called while this stream is constructed, before the
+	 * fields of a subclass are initialised.
+	 *
+	 * @return System.nanoTime(), unless overridden
+	 */
+	protected long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Wait until the first audio input stream has been appended, or until doneAppending() has been called.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized void awaitFirstAppend() throws InterruptedException {
+		while (m_audioInputStreamList.size() == 0 && !doneAppending) {
+			wait();
+		}
+	}
+
+	/**
+	 * Set the time from which the time to first audio and the append times are measured, by default the creation of this
+	 * stream. Requests which wait in a queue before their stream is created set it to their arrival.
+	 *
+	 * @param nanoTime
+	 *            the start time, in System.nanoTime() units
+	 */
+	public synchronized void setStartTime(long nanoTime) {
+		startTime = nanoTime;
+	}
+
+	/**
+	 * The time from the start time of this stream, see {@link #setStartTime(long)}, until the first audio input stream was
+	 * appended, i.e. the time to first audio.
+	 *
+	 * @return the time in nanoseconds, or -1 if nothing was appended yet
+	 */
+	public synchronized long getTimeToFirstAppend() {
+		return numAppends > 0 ? appendTimes[0] - startTime : -1;
+	}
+
+	/**
+	 * The times at which audio input streams were appended.
+	 *
+	 * @return for each appended stream, the time in nanoseconds since the start time of this stream
+	 */
+	public synchronized long[] getAppendTimes() {
+		long[] times = new long[numAppends];
+		for (int i = 0; i < numAppends; i++) {
+			times[i] = appendTimes[i] - startTime;
+		}
+		return times;
+	}
+
+	/**
+	 * The time from the creation of this stream until doneAppending() was called, i.e. the time it took to produce the audio.
+	 *
+	 * @return the time in nanoseconds, or -1 if doneAppending() has not been called yet
+	 */
+	public synchronized long getProductionTime() {
+		return doneAppendingTime != -1 ? doneAppendingTime - creationTime : -1;
+	}
+
+	/**
+	 * The time from the creation of this stream until the first data was read from it.
+	 *
+	 * @return the time in nanoseconds, or -1 if nothing was read yet
+	 */
+	public synchronized long getTimeToFirstRead() {
+		return firstReadTime != -1 ? firstReadTime - creationTime : -1;
+	}
+
+	/**
+	 * The number of audio frames read from this stream so far.
+	 *
+	 * @return the number of frames
+	 */
+	public synchronized long getFramesRead() {
+		int frameSize = getFormat().getFrameSize();
+		return frameSize > 0 ? bytesRead / frameSize : AudioSystem.NOT_SPECIFIED;
+	}
+
+	/**
+	 * The number of times a read had to wait for more audio to be appended, after the first audio had been read.
+	 *
+	 * @return the number of underruns
+	 */
+	public synchronized int getUnderrunCount() {
+		return underrunCount;
+	}
+
+	/**
+	 * The total time reads have waited in underruns.
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public synchronized long getUnderrunTime() {
+		return underrunTime;
+	}
+
 	/**
 	 * Return the frame length of this appendable sequence audio input stream. As long as <code>doneAppending()</code> has not
 	 * been called, returns <code>AudioSystem.NOT_SPECIFIED</code>; after that, the frame length is the sum of the frame lengths
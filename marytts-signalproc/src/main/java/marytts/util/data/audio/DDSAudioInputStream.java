@@ -30,12 +30,18 @@ import marytts.util.data.DoubleDataSource;
 
 /**
  * @author Marc Schr&ouml;der An audio input stream that draws its audio data from a DoubleDataSource.
+ *         <p>
+ *         The source may be of unknown length, in which case the data is produced block by block as it is read; the frame
+ *         length is then reported as <code>AudioSystem.NOT_SPECIFIED</code> until the source is exhausted, and as the number of
+ *         frames read after that.
  */
 public class DDSAudioInputStream extends AudioInputStream {
 	public static final int MAX_AMPLITUDE = 32767;
 	protected DoubleDataSource source;
 	protected double[] sampleBuf;
 	protected static final int SAMPLEBUFFERSIZE = 8192;
+	protected long framesRead = 0;
+	protected boolean endReached = false;
 
 	/**
 	 * From the given DoubleDataSource, create an AudioInputStream of the given audio format.
@@ -142,6 +148,9 @@ public class DDSAudioInputStream extends AudioInputStream {
 			totalRead += nRead;
 			assert currentPos <= off + len;
 		} while (source.hasMoreData() && totalRead < nSamples);
+		framesRead += totalRead;
+		if (!source.hasMoreData())
+			endReached = true;
 		if (totalRead == 0)
 			return -1;
 		else
@@ -228,7 +237,7 @@ public class DDSAudioInputStream extends AudioInputStream {
 	public long getFrameLength() {
 		long dataLength = source.getDataLength();
 		if (dataLength == DoubleDataSource.NOT_SPECIFIED)
-			return AudioSystem.NOT_SPECIFIED;
+			return endReached ? framesRead : AudioSystem.NOT_SPECIFIED;
 		else
 			return dataLength;
 	}
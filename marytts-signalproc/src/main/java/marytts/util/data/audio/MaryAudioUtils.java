@@ -70,7 +70,7 @@ public class MaryAudioUtils {
 
 	/**
 	 * Return an audio file format type for the given string. In addition to the built-in types, this can deal with MP3 supported
-	 * by tritonus.
+	 * by tritonus, and with the headerless types of the {@link RawAudioEncoder}s.
 	 * 
 	 * @param name
 	 *            name
@@ -84,6 +84,8 @@ public class MaryAudioUtils {
 		} else if (name.equals("Vorbis")) {
 			// supported by tritonus plugin
 			at = new AudioFileFormat.Type("Vorbis", "ogg");
+		} else if (RawAudioEncoder.forName(name) != null) {
+			at = RawAudioEncoder.forName(name).getType();
 		} else {
 			try {
 				at = (AudioFileFormat.Type) AudioFileFormat.Type.class.getField(name).get(null);
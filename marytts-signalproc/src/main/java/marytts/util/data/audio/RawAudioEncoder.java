@@ -0,0 +1,226 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import javax.sound.sampled.AudioFileFormat;
+
+/**
+ * Encoders for headerless audio, as used by telephony systems: 16 bit signed little-endian PCM, and the G.711 encodings
+ * &mu;-law and A-law with one byte per sample. Each encoder converts blocks of 16 bit PCM into a buffer provided by the caller,
+ * without allocating anything; the G.711 encoders look up each sample in a table computed once, which gives the same result as
+ * the reference implementation of the ITU.
+ * <p>
+ * Each encoder has its own {@link AudioFileFormat.Type}, so that it can be requested like any audio file type; see
+ * {@link StreamingAudioFileWriter}.
+ */
+public enum RawAudioEncoder {
+	/** 16 bit signed little-endian PCM */
+	PCM16(new AudioFileFormat.Type("PCM16", "raw"), 2) {
+		@Override
+		protected int encode(int sample, byte[] target, int pos) {
+			target[pos] = (byte) sample;
+			target[pos + 1] = (byte) (sample >> 8);
+			return 2;
+		}
+	},
+	/** G.711 &mu;-law */
+	ULAW(new AudioFileFormat.Type("ULAW", "ul"), 1) {
+		@Override
+		protected int encode(int sample, byte[] target, int pos) {
+			// the encoding only depends on the 14 most significant bits:
+			target[pos] = ULAW_TABLE[(sample >> 2) + 8192];
+			return 1;
+		}
+	},
+	/** G.711 A-law */
+	ALAW(new AudioFileFormat.Type("ALAW", "al"), 1) {
+		@Override
+		protected int encode(int sample, byte[] target, int pos) {
+			// the encoding only depends on the 13 most significant bits:
+			target[pos] = ALAW_TABLE[(sample >> 3) + 4096];
+			return 1;
+		}
+	};
+
+	private static final byte[] ULAW_TABLE = new byte[16384];
+	private static final byte[] ALAW_TABLE = new byte[8192];
+	static {
+		for (int i = 0; i < ULAW_TABLE.length; i++) {
+			ULAW_TABLE[i] = linearToUlaw((i - 8192) << 2);
+		}
+		for (int i = 0; i < ALAW_TABLE.length; i++) {
+			ALAW_TABLE[i] = linearToAlaw((i - 4096) << 3);
+		}
+	}
+
+	private final AudioFileFormat.Type type;
+	private final int bytesPerSample;
+
+	private RawAudioEncoder(AudioFileFormat.Type type, int bytesPerSample) {
+		this.type = type;
+		this.bytesPerSample = bytesPerSample;
+	}
+
+	/**
+	 * The audio file format type which requests this encoding.
+	 *
+	 * @return the type
+	 */
+	public AudioFileFormat.Type getType() {
+		return type;
+	}
+
+	/**
+	 * The number of bytes of encoded audio per sample.
+	 *
+	 * @return bytesPerSample
+	 */
+	public int getBytesPerSample() {
+		return bytesPerSample;
+	}
+
+	/**
+	 * The encoder for the given audio file format type.
+	 *
+	 * @param type
+	 *            an audio file format type
+	 * @return the encoder whose type has the same name, or null if type is not the type of an encoder
+	 */
+	public static RawAudioEncoder forType(AudioFileFormat.Type type) {
+		return type == null ? null : forName(type.toString());
+	}
+
+	/**
+	 * The encoder with the given name.
+	 *
+	 * @param name
+	 *            the name of an encoder, such as "ULAW"
+	 * @return the encoder, or null if there is no encoder with that name
+	 */
+	public static RawAudioEncoder forName(String name) {
+		for (RawAudioEncoder encoder : values()) {
+			if (encoder.name().equals(name)) {
+				return encoder;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Encode 16 bit signed PCM samples.
+	 *
+	 * @param pcm
+	 *            the samples, two bytes each
+	 * @param off
+	 *            the position of the first sample in pcm
+	 * @param numSamples
+	 *            the number of samples to encode
+	 * @param bigEndian
+	 *            whether the samples in pcm are big-endian
+	 * @param target
+	 *            the array to write the encoded samples into; it must have room for numSamples * {@link #getBytesPerSample()}
+	 *            bytes from targetPos on
+	 * @param targetPos
+	 *            the position in target where to write the first encoded sample
+	 * @return the number of bytes written into target
+	 */
+	public int encode(byte[] pcm, int off, int numSamples, boolean bigEndian, byte[] target, int targetPos) {
+		int hi = bigEndian ? 0 : 1;
+		int lo = 1 - hi;
+		int pos = targetPos;
+		for (int i = off, end = off + 2 * numSamples; i < end; i += 2) {
+			pos += encode(pcm[i + hi] << 8 | pcm[i + lo] & 0xFF, target, pos);
+		}
+		return pos - targetPos;
+	}
+
+	/**
+	 * Encode one sample.
+	 *
+	 * @param sample
+	 *            a 16 bit signed sample
+	 * @param target
+	 *            the array to write the encoded sample into
+	 * @param pos
+	 *            the position in target where to write it
+	 * @return the number of bytes written
+	 */
+	protected abstract int encode(int sample, byte[] target, int pos);
+
+	/**
+	 * The G.711 &mu;-law code of a 16 bit sample, as computed by linear2ulaw() in the ITU reference implementation.
+	 */
+	private static byte linearToUlaw(int sample) {
+		int value = sample >> 2;
+		int mask;
+		if (value < 0) {
+			value = -value;
+			mask = 0x7F;
+		} else {
+			mask = 0xFF;
+		}
+		if (value > 8159) { // clip the magnitude
+			value = 8159;
+		}
+		value += 0x84 >> 2; // bias
+		int segment = segment(value, 0x3F);
+		if (segment == 8) {
+			return (byte) (0x7F ^ mask);
+		}
+		return (byte) (((segment << 4) | ((value >> (segment + 1)) & 0xF)) ^ mask);
+	}
+
+	/**
+	 * The G.711 A-law code of a 16 bit sample, as computed by linear2alaw() in the ITU reference implementation.
+	 */
+	private static byte linearToAlaw(int sample) {
+		int value = sample >> 3;
+		int mask;
+		if (value >= 0) {
+			mask = 0xD5;
+		} else {
+			mask = 0x55;
+			value = -value - 1;
+		}
+		int segment = segment(value, 0x1F);
+		if (segment == 8) {
+			return (byte) (0x7F ^ mask);
+		}
+		int code = segment << 4;
+		if (segment < 2) {
+			code |= (value >> 1) & 0xF;
+		} else {
+			code |= (value >> segment) & 0xF;
+		}
+		return (byte) (code ^ mask);
+	}
+
+	/**
+	 * The index of the segment containing the value, among eight segments each twice as long as the previous one; 8 if the value
+	 * is beyond the last segment.
+	 */
+	private static int segment(int value, int firstSegmentEnd) {
+		int segment = 0;
+		for (int end = firstSegmentEnd; segment < 8 && value > end; end = 2 * end + 1) {
+			segment++;
+		}
+		return segment;
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * Write audio files to an output stream as the audio data is read, without first collecting the whole file in memory.
+ * <p>
+ * The <code>AudioSystem</code> WAVE writer refuses audio input streams of unknown length, because the RIFF header contains the
+ * data size. For PCM data, this class writes the RIFF header itself: with the exact sizes if the length of the stream is known,
+ * and with the sizes set to <code>0xFFFFFFFF</code> otherwise, as is usual for WAVE data which is streamed while it is being
+ * produced. The types of the {@link RawAudioEncoder}s produce headerless PCM, &mu;-law or A-law audio, encoded block by block
+ * into the output buffer. All other file types are written by {@link AudioSystem}, which copies the audio data block by block
+ * for formats such as AU whose header can express an unknown length.
+ */
+public class StreamingAudioFileWriter {
+	/**
+	 * The size that is written into the RIFF header for the RIFF and data chunks if the length of the audio is not known.
+	 */
+	public static final int UNKNOWN_SIZE = 0xFFFFFFFF;
+
+	private static final int WAVE_HEADER_SIZE = 44;
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Write the audio data to the output stream, in the given file format. The output stream is neither flushed nor closed.
+	 *
+	 * @param ais
+	 *            the audio to write; it is read until it reports end-of-stream.
+	 * @param type
+	 *            the audio file format type
+	 * @param os
+	 *            the output stream to write to
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if the audio cannot be read or written, or if the file type does not support the audio format
+	 */
+	public static long write(AudioInputStream ais, AudioFileFormat.Type type, OutputStream os) throws IOException {
+		if (type == AudioFileFormat.Type.WAVE && isPCM(ais.getFormat())) {
+			return writeWave(ais, os);
+		}
+		RawAudioEncoder encoder = RawAudioEncoder.forType(type);
+		if (encoder != null) {
+			return writeRaw(ais, encoder, os);
+		}
+		return AudioSystem.write(ais, type, os);
+	}
+
+	private static boolean isPCM(AudioFormat format) {
+		return format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+				|| format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED;
+	}
+
+	private static long writeWave(AudioInputStream ais, OutputStream os) throws IOException {
+		// WAVE files contain unsigned 8 bit data or signed little-endian data of more than 8 bit:
+		AudioFormat format = ais.getFormat();
+		int bits = format.getSampleSizeInBits();
+		AudioFormat.Encoding waveEncoding = bits <= 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+		if (format.getEncoding() != waveEncoding || bits > 8 && format.isBigEndian()) {
+			AudioFormat waveFormat = new AudioFormat(waveEncoding, format.getSampleRate(), bits, format.getChannels(),
+					format.getFrameSize(), format.getFrameRate(), false);
+			ais = AudioSystem.getAudioInputStream(waveFormat, ais);
+			format = waveFormat;
+		}
+		long frameLength = ais.getFrameLength();
+		int dataSize = UNKNOWN_SIZE;
+		int riffSize = UNKNOWN_SIZE;
+		if (frameLength != AudioSystem.NOT_SPECIFIED) {
+			long dataLength = frameLength * format.getFrameSize();
+			if (dataLength + 1 + WAVE_HEADER_SIZE - 8 < 0xFFFFFFFFL) { // otherwise, too long for a RIFF file
+				dataSize = (int) dataLength;
+				riffSize = (int) (dataLength + (dataLength & 1) + WAVE_HEADER_SIZE - 8);
+			}
+		}
+
+		byte[] buf = new byte[Math.max(BUFFER_SIZE, WAVE_HEADER_SIZE)];
+		int pos = 0;
+		pos = putASCII(buf, pos, "RIFF");
+		pos = putInt(buf, pos, riffSize);
+		pos = putASCII(buf, pos, "WAVE");
+		pos = putASCII(buf, pos, "fmt ");
+		pos = putInt(buf, pos, 16); // chunk size, 16 for PCM
+		pos = putShort(buf, pos, 1); // PCM format
+		pos = putShort(buf, pos, format.getChannels());
+		pos = putInt(buf, pos, (int) format.getSampleRate());
+		pos = putInt(buf, pos, (int) format.getFrameRate() * format.getFrameSize()); // byte rate
+		pos = putShort(buf, pos, format.getFrameSize()); // block align
+		pos = putShort(buf, pos, bits);
+		pos = putASCII(buf, pos, "data");
+		pos = putInt(buf, pos, dataSize);
+		assert pos == WAVE_HEADER_SIZE;
+		os.write(buf, 0, WAVE_HEADER_SIZE);
+
+		long written = 0;
+		int n;
+		while ((n = ais.read(buf)) != -1) {
+			os.write(buf, 0, n);
+			written += n;
+		}
+		if ((written & 1) != 0 && dataSize != UNKNOWN_SIZE) {
+			os.write(0); // RIFF chunks are padded to an even size
+			written++;
+		}
+		return WAVE_HEADER_SIZE + written;
+	}
+
+	private static long writeRaw(AudioInputStream ais, RawAudioEncoder encoder, OutputStream os) throws IOException {
+		AudioFormat format = ais.getFormat();
+		if (format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED || format.getSampleSizeInBits() != 16
+				|| format.getChannels() != 1) {
+			AudioFormat pcmFormat = new AudioFormat(format.getSampleRate(), 16, 1, true, format.isBigEndian());
+			try {
+				ais = AudioSystem.getAudioInputStream(pcmFormat, ais);
+			} catch (IllegalArgumentException iae) {
+				throw new IOException("Cannot convert " + format + " to " + encoder, iae);
+			}
+			format = pcmFormat;
+		}
+		boolean bigEndian = format.isBigEndian();
+		byte[] pcm = new byte[BUFFER_SIZE];
+		byte[] encoded = new byte[BUFFER_SIZE / 2 * encoder.getBytesPerSample()];
+		long written = 0;
+		int pending = 0; // a byte of an incomplete sample left over from the previous read
+		int n;
+		while ((n = ais.read(pcm, pending, pcm.length - pending)) != -1) {
+			int available = pending + n;
+			int numSamples = available / 2;
+			int len = encoder.encode(pcm, 0, numSamples, bigEndian, encoded, 0);
+			os.write(encoded, 0, len);
+			written += len;
+			pending = available - 2 * numSamples;
+			if (pending > 0) {
+				pcm[0] = pcm[available - 1];
+			}
+		}
+		return written;
+	}
+
+	private static int putASCII(byte[] buf, int pos, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			buf[pos++] = (byte) s.charAt(i);
+		}
+		return pos;
+	}
+
+	private static int putInt(byte[] buf, int pos, int value) {
+		buf[pos++] = (byte) value;
+		buf[pos++] = (byte) (value >>> 8);
+		buf[pos++] = (byte) (value >>> 16);
+		buf[pos++] = (byte) (value >>> 24);
+		return pos;
+	}
+
+	private static int putShort(byte[] buf, int pos, int value) {
+		buf[pos++] = (byte) value;
+		buf[pos++] = (byte) (value >>> 8);
+		return pos;
+	}
+}
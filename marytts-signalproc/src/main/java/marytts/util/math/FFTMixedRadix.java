@@ -176,6 +176,11 @@ public class FFTMixedRadix {
 			h.imag[w] = 0.0;
 		}
 
+		if (MathUtils.isPowerOfTwo(xlen)) {
+			FftPlan.get(xlen).transform(h.real, h.imag, false);
+			return h;
+		}
+
 		mixedRadixFFTBase(h.real, h.imag, xlen, xlen, xlen, 1);
 
 		for (w = 0; w < xlen; w++)
@@ -224,6 +229,11 @@ public class FFTMixedRadix {
 			h.imag[w] = 0.0;
 		}
 
+		if (MathUtils.isPowerOfTwo(fftSize)) {
+			FftPlan.get(fftSize).transform(h.real, h.imag, false);
+			return h;
+		}
+
 		mixedRadixFFTBase(h.real, h.imag, fftSize, fftSize, fftSize, 1);
 
 		int midVal = (int) (Math.floor(fftSize / 2) + 1);
@@ -312,6 +322,13 @@ public class FFTMixedRadix {
 		ComplexArray h = new ComplexArray(x.real.length);
 
 		int w;
+		if (MathUtils.isPowerOfTwo(x.real.length)) {
+			System.arraycopy(x.real, 0, h.real, 0, x.real.length);
+			System.arraycopy(x.imag, 0, h.imag, 0, x.imag.length);
+			FftPlan.get(x.real.length).transform(h.real, h.imag, true);
+			return h;
+		}
+
 		for (w = 0; w < x.real.length; w++) {
 			h.real[w] = x.real[w] / x.real.length;
 			h.imag[w] = x.imag[w] / x.real.length;
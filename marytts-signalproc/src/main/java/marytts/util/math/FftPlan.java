@@ -0,0 +1,269 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.math;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A precomputed plan for radix-2 FFTs of one size. The bit-reversal permutation and the twiddle factors are computed once when
+ * the plan is created; the transforms work in place on the arrays passed by the caller and allocate nothing. Plans are immutable
+ * and can be shared between any number of threads; {@link #get(int)} returns a shared plan for each size.
+ * <p>
+ * The transforms compute exactly what the corresponding methods in {@link FFT} compute, including the data layout and the
+ * scaling of the inverse transforms.
+ */
+public final class FftPlan {
+	private static final ConcurrentMap<Integer, FftPlan> plans = new ConcurrentHashMap<Integer, FftPlan>();
+
+	private final int size;
+	/** for each i, the index with the reversed bits; for the half size, rev[i] &gt;&gt; 1 */
+	private final int[] bitReverse;
+	/** cos(-2 pi k / size), sin(-2 pi k / size) for k = 0 .. size/2 - 1 */
+	private final double[] cos;
+	private final double[] sin;
+
+	/**
+	 * The shared plan for the given size.
+	 *
+	 * @param size
+	 *            the number of complex points of the complex transforms, or the number of real points of the real transform; a
+	 *            power of two
+	 * @return the plan
+	 * @throws IllegalArgumentException
+	 *             if size is not a power of two
+	 */
+	public static FftPlan get(int size) {
+		FftPlan plan = plans.get(size);
+		if (plan == null) {
+			plan = new FftPlan(size);
+			FftPlan existing = plans.putIfAbsent(size, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Create a plan for the given size. Usually, {@link #get(int)} should be used instead.
+	 *
+	 * @param size
+	 *            a power of two
+	 * @throws IllegalArgumentException
+	 *             if size is not a power of two
+	 */
+	public FftPlan(int size) {
+		if (size < 1 || (size & (size - 1)) != 0) {
+			throw new IllegalArgumentException("FFT size must be a power of two, but is " + size);
+		}
+		this.size = size;
+		int bits = Integer.numberOfTrailingZeros(size);
+		bitReverse = new int[size];
+		for (int i = 0; i < size; i++) {
+			bitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		}
+		int half = Math.max(1, size / 2);
+		cos = new double[half];
+		sin = new double[half];
+		for (int k = 0; k < half; k++) {
+			double phi = -MathUtils.TWOPI * k / size;
+			cos[k] = Math.cos(phi);
+			sin[k] = Math.sin(phi);
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Complex FFT or inverse FFT of size points, in place, as {@link FFT#transform(double[], double[], boolean)}.
+	 *
+	 * @param real
+	 *            the real parts, of length size
+	 * @param imag
+	 *            the imaginary parts, of length size
+	 * @param inverse
+	 *            whether to calculate the inverse FFT, including the division by size
+	 */
+	public void transform(double[] real, double[] imag, boolean inverse) {
+		if (real.length != size || imag.length != size) {
+			throw new IllegalArgumentException("Arrays must have length " + size);
+		}
+		for (int i = 0; i < size; i++) {
+			int j = bitReverse[i];
+			if (i < j) {
+				double tmp = real[i];
+				real[i] = real[j];
+				real[j] = tmp;
+				tmp = imag[i];
+				imag[i] = imag[j];
+				imag[j] = tmp;
+			}
+		}
+		double sign = inverse ? -1 : 1;
+		for (int blockLength = 2; blockLength <= size; blockLength <<= 1) {
+			int halfBlockLength = blockLength >> 1;
+			int stride = size / blockLength;
+			for (int n = 0; n < halfBlockLength; n++) {
+				double wReal = cos[n * stride];
+				double wImag = sign * sin[n * stride];
+				for (int i = n; i < size; i += blockLength) {
+					int j = i + halfBlockLength;
+					double tmpReal = wReal * real[j] - wImag * imag[j];
+					double tmpImag = wReal * imag[j] + wImag * real[j];
+					real[j] = real[i] - tmpReal;
+					imag[j] = imag[i] - tmpImag;
+					real[i] += tmpReal;
+					imag[i] += tmpImag;
+				}
+			}
+		}
+		if (inverse) {
+			double scale = 1.0 / size;
+			for (int i = 0; i < size; i++) {
+				real[i] *= scale;
+				imag[i] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * Complex FFT or inverse FFT of size points, in place, as {@link FFT#transform(double[], boolean)}: even indices hold the real
+	 * parts, odd indices the imaginary parts.
+	 *
+	 * @param realAndImag
+	 *            the interleaved complex numbers, of length 2*size
+	 * @param inverse
+	 *            whether to calculate the inverse FFT, including the division by size
+	 */
+	public void transform(double[] realAndImag, boolean inverse) {
+		if (realAndImag.length != 2 * size) {
+			throw new IllegalArgumentException("Array must have length " + 2 * size);
+		}
+		interleavedTransform(realAndImag, size, 1, inverse);
+	}
+
+	/**
+	 * The interleaved transform of n = size / twiddleStride points.
+	 */
+	private void interleavedTransform(double[] data, int n, int twiddleStride, boolean inverse) {
+		int shift = twiddleStride == 1 ? 0 : 1;
+		for (int i = 0; i < n; i++) {
+			int j = bitReverse[i] >> shift;
+			if (i < j) {
+				int twoi = i << 1;
+				int twoj = j << 1;
+				double tmp = data[twoi];
+				data[twoi] = data[twoj];
+				data[twoj] = tmp;
+				tmp = data[twoi + 1];
+				data[twoi + 1] = data[twoj + 1];
+				data[twoj + 1] = tmp;
+			}
+		}
+		double sign = inverse ? -1 : 1;
+		for (int blockLength = 2; blockLength <= n; blockLength <<= 1) {
+			int halfBlockLength = blockLength >> 1;
+			int stride = twiddleStride * (n / blockLength);
+			for (int k = 0; k < halfBlockLength; k++) {
+				double wReal = cos[k * stride];
+				double wImag = sign * sin[k * stride];
+				for (int i = k; i < n; i += blockLength) {
+					int twoi = i << 1;
+					int twoj = (i + halfBlockLength) << 1;
+					double tmpReal = wReal * data[twoj] - wImag * data[twoj + 1];
+					double tmpImag = wReal * data[twoj + 1] + wImag * data[twoj];
+					data[twoj] = data[twoi] - tmpReal;
+					data[twoj + 1] = data[twoi + 1] - tmpImag;
+					data[twoi] += tmpReal;
+					data[twoi + 1] += tmpImag;
+				}
+			}
+		}
+		if (inverse) {
+			double scale = 1.0 / n;
+			for (int i = 0, len = 2 * n; i < len; i++) {
+				data[i] *= scale;
+			}
+		}
+	}
+
+	/**
+	 * FFT of size real points, or its inverse, in place, as {@link FFT#realTransform(double[], boolean)}: this uses a complex
+	 * transform of half the size. In the forward direction, the result is the positive frequency half of the complex transform,
+	 * with the real-valued first and last components in data[0] and data[1]. The inverse transform must be multiplied by 2/size.
+	 *
+	 * @param data
+	 *            the data, of length size
+	 * @param inverse
+	 *            whether to calculate the inverse transform
+	 */
+	public void realTransform(double[] data, boolean inverse) {
+		if (data.length != size) {
+			throw new IllegalArgumentException("Array must have length " + size);
+		}
+		if (size < 4) {
+			throw new IllegalArgumentException("Real transform needs at least 4 points");
+		}
+		int halfN = size >> 1;
+		double c1 = 0.5;
+		double c2;
+		double sign;
+		if (!inverse) {
+			c2 = -0.5;
+			sign = 1;
+			interleavedTransform(data, halfN, 2, false);
+		} else {
+			c2 = 0.5;
+			sign = -1;
+		}
+		int n4 = size >> 2;
+		for (int i = 1; i < n4; i++) { // Case i=0 done separately below.
+			double wReal = cos[i];
+			double wImag = sign * sin[i];
+			int twoI = i << 1;
+			int twoIPlus1 = twoI + 1;
+			int nMinusTwoI = size - twoI;
+			int nMinusTwoIPlus1 = nMinusTwoI + 1;
+			double h1r = c1 * (data[twoI] + data[nMinusTwoI]);
+			double h1i = c1 * (data[twoIPlus1] - data[nMinusTwoIPlus1]);
+			double h2r = -c2 * (data[twoIPlus1] + data[nMinusTwoIPlus1]);
+			double h2i = c2 * (data[twoI] - data[nMinusTwoI]);
+			data[twoI] = h1r + wReal * h2r - wImag * h2i;
+			data[twoIPlus1] = h1i + wReal * h2i + wImag * h2r;
+			data[nMinusTwoI] = h1r - wReal * h2r + wImag * h2i;
+			data[nMinusTwoIPlus1] = -h1i + wReal * h2i + wImag * h2r;
+		}
+		if (!inverse) {
+			double tmp = data[0];
+			data[0] += data[1];
+			data[1] = tmp - data[1];
+			data[halfN + 1] = -data[halfN + 1];
+		} else {
+			double tmp = data[0];
+			data[0] = 0.5 * (tmp + data[1]);
+			data[1] = 0.5 * (tmp - data[1]);
+			data[halfN + 1] = -data[halfN + 1];
+			interleavedTransform(data, halfN, 2, true);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.signalproc.filter;
+
+import marytts.util.data.BaseDoubleDataSource;
+import marytts.util.data.BufferedDoubleDataSource;
+import marytts.util.data.DoubleDataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PolyphaseResamplerTest {
+
+	private static double[] sine(int length, int samplingRate, double frequency, double amplitude) {
+		double[] signal = new double[length];
+		for (int i = 0; i < length; i++) {
+			signal[i] = amplitude * Math.sin(2 * Math.PI * frequency * i / samplingRate);
+		}
+		return signal;
+	}
+
+	/**
+	 * The largest difference between the two signals, ignoring the given number of samples at either end.
+	 */
+	private static double maxError(double[] expected, double[] actual, int margin) {
+		double max = 0;
+		for (int i = margin; i < expected.length - margin; i++) {
+			max = Math.max(max, Math.abs(expected[i] - actual[i]));
+		}
+		return max;
+	}
+
+	private static void assertResamplesSine(int inputRate, int outputRate, double frequency) {
+		double seconds = 0.5;
+		double[] signal = sine((int) (seconds * inputRate), inputRate, frequency, 0.5);
+		double[] result = new PolyphaseResampler(new BufferedDoubleDataSource(signal), inputRate, outputRate).getAllData();
+		int expectedLength = (int) Math.ceil(signal.length * (double) outputRate / inputRate);
+		Assert.assertEquals(expectedLength, result.length);
+		double[] expected = sine(expectedLength, outputRate, frequency, 0.5);
+		double err = maxError(expected, result, outputRate / 50);
+		Assert.assertTrue(inputRate + " to " + outputRate + " Hz: error " + err, err < 1.E-3);
+	}
+
+	@Test
+	public void testDownsample() {
+		assertResamplesSine(16000, 8000, 1000);
+		assertResamplesSine(22050, 8000, 440);
+		assertResamplesSine(48000, 16000, 3000);
+	}
+
+	@Test
+	public void testUpsample() {
+		assertResamplesSine(8000, 16000, 1000);
+		assertResamplesSine(16000, 22050, 2500);
+	}
+
+	@Test
+	public void testAliasSuppressed() {
+		// 5 kHz is above the Nyquist frequency of 8 kHz audio:
+		double[] signal = sine(8000, 16000, 5000, 0.5);
+		double[] result = new PolyphaseResampler(new BufferedDoubleDataSource(signal), 16000, 8000).getAllData();
+		double err = maxError(new double[result.length], result, 160);
+		Assert.assertTrue("Residual amplitude " + err, err < 0.5E-3);
+	}
+
+	@Test
+	public void testStreaming() {
+		double[] signal = sine(12345, 22050, 440, 0.5);
+		double[] all = new PolyphaseResampler(new BufferedDoubleDataSource(signal), 22050, 8000).getAllData();
+		// the same input, from a source which does not know its length and delivers it in small pieces:
+		DoubleDataSource unknownLength = new BaseDoubleDataSource(new BufferedDoubleDataSource(signal)) {
+			{
+				dataLength = DoubleDataSource.NOT_SPECIFIED;
+			}
+
+			@Override
+			public int getData(double[] target, int targetPos, int length) {
+				return super.getData(target, targetPos, Math.min(length, 7));
+			}
+		};
+		PolyphaseResampler resampler = new PolyphaseResampler(unknownLength, 22050, 8000);
+		Assert.assertEquals(DoubleDataSource.NOT_SPECIFIED, resampler.getDataLength());
+		double[] pieces = new double[all.length + 10];
+		int pos = 0;
+		while (resampler.hasMoreData()) {
+			pos += resampler.getData(pieces, pos, Math.min(13, pieces.length - pos));
+		}
+		Assert.assertEquals(all.length, pos);
+		for (int i = 0; i < all.length; i++) {
+			Assert.assertEquals(all[i], pieces[i], 0);
+		}
+	}
+
+	@Test
+	public void testSharedTables() {
+		Assert.assertSame(PolyphaseResampler.getFilterTable(16000, 8000), PolyphaseResampler.getFilterTable(44100, 22050));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedRatio() {
+		PolyphaseResampler.getFilterTable(16000, 16001);
+	}
+
+	@Test
+	public void testCanResample() {
+		Assert.assertTrue(PolyphaseResampler.canResample(16000, 8000));
+		Assert.assertTrue(PolyphaseResampler.canResample(22050, 16000));
+		Assert.assertTrue(PolyphaseResampler.canResample(48000, 4000));
+		// below the lowest rate:
+		Assert.assertFalse(PolyphaseResampler.canResample(16000, 1));
+		Assert.assertFalse(PolyphaseResampler.canResample(16000, 3999));
+		Assert.assertFalse(PolyphaseResampler.canResample(16000, 0));
+		// too far apart:
+		Assert.assertFalse(PolyphaseResampler.canResample(4000, 96000));
+		Assert.assertFalse(PolyphaseResampler.canResample(Integer.MAX_VALUE, 8000));
+		// factors too large in lowest terms:
+		Assert.assertFalse(PolyphaseResampler.canResample(16000, 16001));
+		Assert.assertFalse(PolyphaseResampler.canResample(16001, 16000));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRateTooLow() {
+		PolyphaseResampler.getFilterTable(16000, 1);
+	}
+
+	@Test
+	public void testTableCacheBounded() {
+		for (int rate = 4000; rate < 4000 + 2000 * PolyphaseResampler.MAX_TABLES; rate += 1000) {
+			PolyphaseResampler.getFilterTable(rate, 8000);
+		}
+		Assert.assertTrue(PolyphaseResampler.cachedTables() <= PolyphaseResampler.MAX_TABLES);
+	}
+}
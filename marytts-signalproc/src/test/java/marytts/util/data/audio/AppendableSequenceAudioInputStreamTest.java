@@ -0,0 +1,131 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AppendableSequenceAudioInputStreamTest {
+	private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, false);
+
+	private static AudioInputStream chunk(int numFrames) {
+		return new AudioInputStream(new ByteArrayInputStream(new byte[2 * numFrames]), FORMAT, numFrames);
+	}
+
+	@Test
+	public void testTiming() throws Exception {
+		AppendableSequenceAudioInputStream audio = new AppendableSequenceAudioInputStream(FORMAT, null);
+		Assert.assertEquals(-1, audio.getTimeToFirstAppend());
+		Assert.assertEquals(-1, audio.getProductionTime());
+		audio.append(chunk(100));
+		audio.append(chunk(200));
+		audio.doneAppending();
+		long[] appendTimes = audio.getAppendTimes();
+		Assert.assertEquals(2, appendTimes.length);
+		Assert.assertEquals(appendTimes[0], audio.getTimeToFirstAppend());
+		Assert.assertTrue(appendTimes[1] >= appendTimes[0]);
+		Assert.assertTrue(audio.getProductionTime() >= appendTimes[1]);
+		byte[] buf = new byte[1000];
+		while (audio.read(buf) != -1) {
+		}
+		Assert.assertEquals(300, audio.getFramesRead());
+		Assert.assertEquals(0, audio.getUnderrunCount());
+	}
+
+	@Test
+	public void testTimingFromStartTime() throws Exception {
+		long arrival = System.nanoTime() - 5000000000L;
+		AppendableSequenceAudioInputStream audio = new AppendableSequenceAudioInputStream(FORMAT, null);
+		audio.setStartTime(arrival);
+		long before = System.nanoTime();
+		audio.append(chunk(100));
+		long after = System.nanoTime();
+		Assert.assertTrue(audio.getTimeToFirstAppend() >= before - arrival);
+		Assert.assertTrue(audio.getTimeToFirstAppend() <= after - arrival);
+		Assert.assertEquals(audio.getTimeToFirstAppend(), audio.getAppendTimes()[0]);
+	}
+
+	/**
+	 * A stream with a clock that only advances when told to, and which reports the next reading of the clock.
+	 */
+	private static class ClockedStream extends AppendableSequenceAudioInputStream {
+		volatile long now;
+		volatile CountDownLatch nextReading;
+
+		ClockedStream() {
+			super(FORMAT, null);
+		}
+
+		@Override
+		protected long nanoTime() {
+			CountDownLatch latch = nextReading;
+			if (latch != null) {
+				nextReading = null;
+				latch.countDown();
+			}
+			return now;
+		}
+	}
+
+	@Test
+	public void testUnderrun() throws Exception {
+		final ClockedStream audio = new ClockedStream();
+		audio.append(chunk(100));
+		byte[] buf = new byte[1000];
+		Assert.assertEquals(200, audio.read(buf));
+		// the next reading of the clock is the reader starting to wait:
+		final CountDownLatch readerWaiting = new CountDownLatch(1);
+		audio.nextReading = readerWaiting;
+		Thread producer = new Thread() {
+			public void run() {
+				try {
+					readerWaiting.await();
+				} catch (InterruptedException e) {
+				}
+				// the reader holds the lock until it waits, so this append wakes it:
+				audio.now += 50000000;
+				audio.append(chunk(100));
+				audio.doneAppending();
+			}
+		};
+		producer.start();
+		// waits for the producer:
+		Assert.assertEquals(200, audio.read(buf));
+		Assert.assertEquals(-1, audio.read(buf));
+		producer.join();
+		Assert.assertEquals(1, audio.getUnderrunCount());
+		Assert.assertEquals(50000000, audio.getUnderrunTime());
+	}
+
+	@Test
+	public void testAwaitFirstAppend() throws Exception {
+		AppendableSequenceAudioInputStream audio = new AppendableSequenceAudioInputStream(FORMAT, null);
+		audio.doneAppending();
+		// returns immediately when no audio is going to come:
+		audio.awaitFirstAppend();
+		Assert.assertEquals(-1, audio.getTimeToFirstAppend());
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+import marytts.util.data.BaseDoubleDataSource;
+import marytts.util.data.BufferedDoubleDataSource;
+import marytts.util.data.DoubleDataSource;
+import marytts.util.math.FFTTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DDSAudioInputStreamTest {
+	@Test
+	public void testUnknownLengthReportedAtEnd() throws Exception {
+		int samplingRate = 16000;
+		AudioFormat af = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, samplingRate, 16, 1, 2, samplingRate, false);
+		double[] signal = FFTTest.getSampleSignal(20000);
+		DoubleDataSource unknownLength = new BaseDoubleDataSource(new BufferedDoubleDataSource(signal)) {
+			public long getDataLength() {
+				return DoubleDataSource.NOT_SPECIFIED;
+			}
+		};
+		DDSAudioInputStream ais = new DDSAudioInputStream(unknownLength, af);
+		Assert.assertEquals(AudioSystem.NOT_SPECIFIED, ais.getFrameLength());
+		byte[] buf = new byte[4096];
+		long total = 0;
+		int n;
+		while ((n = ais.read(buf)) != -1) {
+			total += n;
+		}
+		Assert.assertEquals(2 * signal.length, total);
+		Assert.assertEquals(signal.length, ais.getFrameLength());
+	}
+}
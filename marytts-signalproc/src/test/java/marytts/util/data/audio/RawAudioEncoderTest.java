@@ -0,0 +1,118 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RawAudioEncoderTest {
+	private static final int NUM_SAMPLES = 65536;
+
+	/**
+	 * All 16 bit sample values, in ascending order.
+	 */
+	private static byte[] allSamples(boolean bigEndian) {
+		byte[] pcm = new byte[2 * NUM_SAMPLES];
+		for (int i = 0; i < NUM_SAMPLES; i++) {
+			int sample = i - 32768;
+			pcm[2 * i + (bigEndian ? 0 : 1)] = (byte) (sample >> 8);
+			pcm[2 * i + (bigEndian ? 1 : 0)] = (byte) sample;
+		}
+		return pcm;
+	}
+
+	/**
+	 * The G.711 decoders of the ITU reference implementation, ulaw2linear() and alaw2linear().
+	 */
+	private static int ulawToLinear(int code) {
+		int u = ~code & 0xFF;
+		int t = (((u & 0xF) << 3) + 0x84) << ((u & 0x70) >> 4);
+		return (u & 0x80) != 0 ? 0x84 - t : t - 0x84;
+	}
+
+	private static int alawToLinear(int code) {
+		int a = (code ^ 0x55) & 0xFF;
+		int t = (a & 0xF) << 4;
+		int segment = (a & 0x70) >> 4;
+		if (segment == 0) {
+			t += 8;
+		} else {
+			t = (t + 0x108) << (segment - 1);
+		}
+		return (a & 0x80) != 0 ? t : -t;
+	}
+
+	private static int decode(RawAudioEncoder encoder, byte code) {
+		return encoder == RawAudioEncoder.ULAW ? ulawToLinear(code & 0xFF) : alawToLinear(code & 0xFF);
+	}
+
+	private static byte[] encode(RawAudioEncoder encoder, byte[] pcm, boolean bigEndian) {
+		byte[] encoded = new byte[NUM_SAMPLES * encoder.getBytesPerSample()];
+		int len = encoder.encode(pcm, 0, NUM_SAMPLES, bigEndian, encoded, 0);
+		Assert.assertEquals(encoded.length, len);
+		return encoded;
+	}
+
+	private static void assertG711(RawAudioEncoder encoder) {
+		// encoding the value of each code gives the code again; mu-law has two codes for 0:
+		for (int code = 0; code < 256; code++) {
+			int value = decode(encoder, (byte) code);
+			byte[] pcm = new byte[] { (byte) value, (byte) (value >> 8) };
+			byte[] encoded = new byte[1];
+			encoder.encode(pcm, 0, 1, false, encoded, 0);
+			if (encoder != RawAudioEncoder.ULAW || code != 0x7F) {
+				Assert.assertEquals(encoder + " code " + code, code, encoded[0] & 0xFF);
+			}
+		}
+		// larger samples never get codes for smaller values:
+		byte[] encoded = encode(encoder, allSamples(false), false);
+		for (int i = 1; i < NUM_SAMPLES; i++) {
+			Assert.assertTrue(encoder + " sample " + (i - 32768), decode(encoder, encoded[i - 1]) <= decode(encoder, encoded[i]));
+		}
+	}
+
+	@Test
+	public void testUlaw() {
+		assertG711(RawAudioEncoder.ULAW);
+		Assert.assertEquals((byte) 0xFF, encode(RawAudioEncoder.ULAW, allSamples(false), false)[32768]);
+	}
+
+	@Test
+	public void testAlaw() {
+		assertG711(RawAudioEncoder.ALAW);
+		Assert.assertEquals((byte) 0xD5, encode(RawAudioEncoder.ALAW, allSamples(false), false)[32768]);
+	}
+
+	@Test
+	public void testEndianness() {
+		Assert.assertArrayEquals(encode(RawAudioEncoder.ULAW, allSamples(false), false),
+				encode(RawAudioEncoder.ULAW, allSamples(true), true));
+		// PCM16 is always little-endian:
+		Assert.assertArrayEquals(allSamples(false), encode(RawAudioEncoder.PCM16, allSamples(true), true));
+	}
+
+	@Test
+	public void testTypes() {
+		for (RawAudioEncoder encoder : RawAudioEncoder.values()) {
+			Assert.assertSame(encoder, RawAudioEncoder.forType(MaryAudioUtils.getAudioFileFormatType(encoder.name())));
+		}
+		Assert.assertNull(RawAudioEncoder.forName("WAVE"));
+	}
+}
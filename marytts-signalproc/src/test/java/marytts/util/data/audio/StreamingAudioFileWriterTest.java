@@ -0,0 +1,85 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamingAudioFileWriterTest {
+	private static final AudioFormat BIG_ENDIAN_16K = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 16000, 16, 1, 2, 16000,
+			true);
+
+	private static byte[] testData(int numFrames) {
+		byte[] data = new byte[2 * numFrames];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 7);
+		}
+		return data;
+	}
+
+	@Test
+	public void testKnownLengthSameAsAudioSystem() throws Exception {
+		byte[] data = testData(1000);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(data), BIG_ENDIAN_16K, 1000), AudioFileFormat.Type.WAVE,
+				expected);
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		long written = StreamingAudioFileWriter.write(new AudioInputStream(new ByteArrayInputStream(data), BIG_ENDIAN_16K, 1000),
+				AudioFileFormat.Type.WAVE, actual);
+		Assert.assertEquals(actual.size(), written);
+		Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+
+	@Test
+	public void testUnknownLength() throws Exception {
+		byte[] data = testData(1000);
+		AudioInputStream ais = new AudioInputStream(new ByteArrayInputStream(data), BIG_ENDIAN_16K, AudioSystem.NOT_SPECIFIED);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamingAudioFileWriter.write(ais, AudioFileFormat.Type.WAVE, out);
+		byte[] wav = out.toByteArray();
+		Assert.assertEquals(44 + data.length, wav.length);
+		for (int i : new int[] { 4, 5, 6, 7, 40, 41, 42, 43 }) {
+			Assert.assertEquals((byte) 0xFF, wav[i]);
+		}
+		// samples are converted to little endian:
+		Assert.assertEquals(data[1], wav[44]);
+		Assert.assertEquals(data[0], wav[45]);
+	}
+
+	@Test
+	public void testRawEncoding() throws Exception {
+		byte[] data = testData(1000);
+		AudioInputStream ais = new AudioInputStream(new ByteArrayInputStream(data), BIG_ENDIAN_16K, AudioSystem.NOT_SPECIFIED);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long written = StreamingAudioFileWriter.write(ais, RawAudioEncoder.ULAW.getType(), out);
+		Assert.assertEquals(1000, written);
+		byte[] expected = new byte[1000];
+		RawAudioEncoder.ULAW.encode(data, 0, 1000, true, expected, 0);
+		Assert.assertArrayEquals(expected, out.toByteArray());
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.math;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FftPlanTest {
+
+	private static double[][] dft(double[] real, double[] imag) {
+		int n = real.length;
+		double[][] result = new double[2][n];
+		for (int k = 0; k < n; k++) {
+			for (int t = 0; t < n; t++) {
+				double phi = -MathUtils.TWOPI * k * t / n;
+				result[0][k] += real[t] * Math.cos(phi) - imag[t] * Math.sin(phi);
+				result[1][k] += real[t] * Math.sin(phi) + imag[t] * Math.cos(phi);
+			}
+		}
+		return result;
+	}
+
+	private static double[] random(Random random, int n) {
+		double[] x = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = random.nextGaussian();
+		}
+		return x;
+	}
+
+	@Test
+	public void testTransformMatchesDFT() {
+		Random random = new Random(42);
+		for (int n = 1; n <= 256; n <<= 1) {
+			double[] real = random(random, n);
+			double[] imag = random(random, n);
+			double[][] expected = dft(real, imag);
+			FftPlan.get(n).transform(real, imag, false);
+			Assert.assertArrayEquals("real, n=" + n, expected[0], real, 1.E-9);
+			Assert.assertArrayEquals("imag, n=" + n, expected[1], imag, 1.E-9);
+		}
+	}
+
+	@Test
+	public void testInterleavedTransformMatchesSplit() {
+		Random random = new Random(43);
+		int n = 128;
+		double[] real = random(random, n);
+		double[] imag = random(random, n);
+		double[] realAndImag = new double[2 * n];
+		for (int i = 0; i < n; i++) {
+			realAndImag[2 * i] = real[i];
+			realAndImag[2 * i + 1] = imag[i];
+		}
+		FftPlan plan = FftPlan.get(n);
+		plan.transform(real, imag, false);
+		plan.transform(realAndImag, false);
+		for (int i = 0; i < n; i++) {
+			Assert.assertEquals(real[i], realAndImag[2 * i], 1.E-12);
+			Assert.assertEquals(imag[i], realAndImag[2 * i + 1], 1.E-12);
+		}
+	}
+
+	@Test
+	public void testRealTransformRoundTrip() {
+		double[] signal = FFTTest.getSampleSignal(1024);
+		double[] data = signal.clone();
+		FftPlan plan = FftPlan.get(data.length);
+		plan.realTransform(data, false);
+		// data[0] is the DC component, data[2], data[3] the first frequency bin:
+		double[][] expected = dft(signal, new double[signal.length]);
+		Assert.assertEquals(expected[0][0], data[0], 1.E-9);
+		Assert.assertEquals(expected[0][signal.length / 2], data[1], 1.E-9);
+		Assert.assertEquals(expected[0][1], data[2], 1.E-9);
+		Assert.assertEquals(expected[1][1], data[3], 1.E-9);
+		// the inverse complex transform already includes the scaling by 2/n:
+		plan.realTransform(data, true);
+		double err = MathUtils.sumSquaredError(signal, data);
+		Assert.assertTrue("Error: " + err, err < 1.E-16);
+	}
+
+	@Test
+	public void testSharedPlans() {
+		Assert.assertSame(FftPlan.get(512), FftPlan.get(512));
+		Assert.assertEquals(512, FftPlan.get(512).getSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotPowerOfTwo() {
+		FftPlan.get(100);
+	}
+}